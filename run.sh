@@ -41,8 +41,10 @@ echo ""
 echo "Then run the schema file:"
 echo "  psql -U linksplit -d linksplit -f src/main/resources/db/migration/V1__initial_schema.sql"
 echo ""
-echo "Finally, start the application with:"
-echo "  java -jar target/url-shortening-service-1.0.0-SNAPSHOT.jar"
+echo "Finally, start the application with a short code key and an ad session secret:"
+echo "  SHORT_CODE_KEY=\$(openssl rand -base64 32) AD_SESSION_SECRET=\$(openssl rand -base64 32) \\"
+echo "    java -jar target/url-shortening-service-1.0.0-SNAPSHOT.jar"
+echo "  (keep both: every instance and restart must use the same ones)"
 echo ""
 echo "The application will be available at http://localhost:8080"
 echo "Production domain: https://cli.p"
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.linksplit.benchmark;
+
+import com.linksplit.util.Base62Encoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Base62Encoder} against the implementation it replaced
+ * ({@code StringBuilder.insert(0, ...)} to encode, {@code String.indexOf} to decode),
+ * on six-digit codes as produced by the short-code allocator. Run with
+ * {@code -prof gc} to see the per-call allocation of each variant.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Base62EncoderBenchmark {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int VALUES = 1024;
+    private static final long SIX_DIGIT_SPACE = 56_800_235_584L;
+
+    private final Base62Encoder encoder = new Base62Encoder();
+    private final char[] chars = new char[6];
+    private final byte[] bytes = new byte[6];
+    private long[] values;
+    private String[] codes;
+    private byte[][] codeBytes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        values = new long[VALUES];
+        codes = new String[VALUES];
+        codeBytes = new byte[VALUES][];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = random.nextLong(SIX_DIGIT_SPACE);
+            codes[i] = encoder.encodeFixed(values[i], 6);
+            codeBytes[i] = codes[i].getBytes();
+        }
+    }
+
+    private int advance() {
+        next = (next + 1) & (VALUES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return legacyEncode(values[advance()]);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(values[advance()]);
+    }
+
+    @Benchmark
+    public String encodeFixed() {
+        return encoder.encodeFixed(values[advance()], 6);
+    }
+
+    @Benchmark
+    public char[] encodeFixedIntoChars() {
+        encoder.encodeFixed(values[advance()], 6, chars, 0);
+        return chars;
+    }
+
+    @Benchmark
+    public byte[] encodeFixedIntoBytes() {
+        encoder.encodeFixed(values[advance()], 6, bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public long decodeLegacy() {
+        return legacyDecode(codes[advance()]);
+    }
+
+    @Benchmark
+    public long decode() {
+        return encoder.decode(codes[advance()]);
+    }
+
+    @Benchmark
+    public long decodeBytes() {
+        byte[] code = codeBytes[advance()];
+        return encoder.decode(code, 0, code.length);
+    }
+
+    private static String legacyEncode(long number) {
+        if (number == 0) {
+            return String.valueOf(ALPHABET.charAt(0));
+        }
+        StringBuilder encoded = new StringBuilder();
+        while (number > 0) {
+            encoded.insert(0, ALPHABET.charAt((int) (number % 62)));
+            number = number / 62;
+        }
+        return encoded.toString();
+    }
+
+    private static long legacyDecode(String encoded) {
+        long result = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            int digit = ALPHABET.indexOf(encoded.charAt(i));
+            if (digit == -1) {
+                throw new IllegalArgumentException("Invalid character in encoded string: " + encoded.charAt(i));
+            }
+            result = result * 62 + digit;
+        }
+        return result;
+    }
+}
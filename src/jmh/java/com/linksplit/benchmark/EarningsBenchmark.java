@@ -0,0 +1,68 @@
+package com.linksplit.benchmark;
+
+import com.linksplit.util.EarningsRate;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Earnings for one view count, as computed on every synchronously recorded view:
+ * the {@code BigDecimal} calculation {@code RevenueService} and
+ * {@code AnalyticsService} used (rates rebuilt from the configured doubles, a
+ * scale-10 division, two multiplies and a rounding) against a precomputed
+ * {@link EarningsRate}. {@code fixedPointUnits} is the arithmetic alone;
+ * {@code fixedPoint} includes the one {@code BigDecimal} built for the column write.
+ * Run with {@code -prof gc} to compare allocation per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EarningsBenchmark {
+
+    private static final int VALUES = 1024;
+
+    private final double cpmRate = 1.50;
+    private final double revenueShare = 0.70;
+    private final EarningsRate rate = EarningsRate.of(cpmRate, revenueShare);
+    private long[] viewCounts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        viewCounts = new long[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            viewCounts[i] = 1 + random.nextLong(10_000_000);
+        }
+    }
+
+    private long nextViewCount() {
+        next = (next + 1) & (VALUES - 1);
+        return viewCounts[next];
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        return BigDecimal.valueOf(nextViewCount())
+                .divide(BigDecimal.valueOf(1000), 10, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(cpmRate))
+                .multiply(BigDecimal.valueOf(revenueShare))
+                .setScale(4, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public BigDecimal fixedPoint() {
+        return rate.earnings(nextViewCount());
+    }
+
+    @Benchmark
+    public long fixedPointUnits() {
+        return rate.earningsUnits(nextViewCount());
+    }
+}
@@ -0,0 +1,100 @@
+package com.linksplit.benchmark;
+
+import com.linksplit.service.GeoIpDatabase;
+import com.linksplit.service.GeoLocationService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup throughput of {@link GeoIpDatabase} over synthetic, evenly spaced IPv4 ranges
+ * drawn from a few thousand distinct locations, roughly the shape of a city-level file.
+ * <p>
+ * The setup prints the retained heap of the database per million ranges, measured
+ * around the build, next to the array-only estimate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class GeoIpLookupBenchmark {
+
+    private static final int DISTINCT_LOCATIONS = 5000;
+    private static final int QUERIES = 1 << 16;
+
+    @Param({"1000000", "3000000"})
+    public int ranges;
+
+    private GeoIpDatabase database;
+    private long[] v4Queries;
+    private String[] textQueries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long heapBefore = usedHeap();
+
+        GeoLocationService.GeoLocation[] locations = new GeoLocationService.GeoLocation[DISTINCT_LOCATIONS];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = GeoLocationService.GeoLocation.builder()
+                    .country("Country " + (i % 250))
+                    .region("Region " + (i % 2000))
+                    .city("City " + i)
+                    .latitude((double) (i % 180) - 90)
+                    .longitude((double) (i % 360) - 180)
+                    .build();
+        }
+
+        long span = (1L << 32) / ranges;
+        SplittableRandom random = new SplittableRandom(42);
+        GeoIpDatabase.Builder builder = new GeoIpDatabase.Builder();
+        for (int i = 0; i < ranges; i++) {
+            long start = i * span;
+            builder.addV4(start, start + span - 1, locations[random.nextInt(locations.length)]);
+        }
+        database = builder.build();
+        builder = null;
+
+        long retained = usedHeap() - heapBefore;
+        System.out.printf("%n%,d ranges: ~%,d bytes retained (%.1f MB per million ranges), arrays alone %,d bytes%n",
+                ranges, retained, retained / (ranges / 1_000_000.0) / (1 << 20), database.getRangeFootprintBytes());
+
+        v4Queries = new long[QUERIES];
+        textQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long address = random.nextLong(1L << 32);
+            v4Queries[i] = address;
+            textQueries[i] = (address >>> 24) + "." + (address >>> 16 & 0xff) + "." + (address >>> 8 & 0xff) + "." + (address & 0xff);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int advance() {
+            next = next + 1 & (QUERIES - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public GeoLocationService.GeoLocation lookupNumeric(Cursor cursor) {
+        return database.lookupV4(v4Queries[cursor.advance()]);
+    }
+
+    @Benchmark
+    public GeoLocationService.GeoLocation lookupText(Cursor cursor) {
+        return database.lookup(textQueries[cursor.advance()]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,135 @@
+package com.linksplit.benchmark;
+
+import com.linksplit.dto.LinkRoute;
+import com.linksplit.entity.Link;
+import com.linksplit.entity.User;
+import com.linksplit.repository.LinkRepository;
+import com.linksplit.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache-miss cost of resolving a short code: the full {@link Link} entity (with its
+ * eagerly joined owner) against the {@link LinkRoute} projection, on in-memory H2.
+ * <p>
+ * The setup also prints the retained heap per cached value for both shapes, measured
+ * over {@value #LINKS} loaded results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkRouteBenchmark {
+
+    private static final int USERS = 100;
+    private static final int LINKS = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private LinkRepository linkRepository;
+    private String[] shortCodes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BenchmarkConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:routes;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.open-in-view=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        linkRepository = context.getBean(LinkRepository.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+
+        shortCodes = new String[LINKS];
+        List<Link> links = new ArrayList<>(LINKS);
+        for (int u = 0; u < USERS; u++) {
+            User user = userRepository.save(User.builder()
+                    .email("creator" + u + "@example.com")
+                    .role("USER")
+                    .build());
+            for (int i = 0; i < LINKS / USERS; i++) {
+                int n = u * (LINKS / USERS) + i;
+                shortCodes[n] = String.format("b%05d", n);
+                links.add(Link.builder()
+                        .shortCode(shortCodes[n])
+                        .longUrl("https://example.com/articles/" + n + "?utm_source=benchmark&utm_medium=link")
+                        .user(user)
+                        .build());
+            }
+        }
+        linkRepository.saveAll(links);
+
+        long entityBytes = retainedBytes(code -> linkRepository.findByShortCode(code));
+        long routeBytes = retainedBytes(code -> linkRepository.findRouteByShortCode(code));
+        System.out.printf("%nRetained per cached value: Link entity ~%,d bytes, LinkRoute ~%,d bytes%n",
+                entityBytes / LINKS, routeBytes / LINKS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int advance() {
+            next = next + 1 == LINKS ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Optional<Link> missLoadsEntity(Cursor cursor) {
+        return linkRepository.findByShortCode(shortCodes[cursor.advance()]);
+    }
+
+    @Benchmark
+    public Optional<LinkRoute> missLoadsRoute(Cursor cursor) {
+        return linkRepository.findRouteByShortCode(shortCodes[cursor.advance()]);
+    }
+
+    private long retainedBytes(java.util.function.Function<String, Optional<?>> loader) {
+        long before = usedHeap();
+        Object[] held = new Object[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            held[i] = loader.apply(shortCodes[i]).orElseThrow();
+        }
+        long retained = usedHeap() - before;
+        if (held[LINKS - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return retained;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Link.class)
+    @EnableJpaRepositories(basePackageClasses = LinkRepository.class)
+    static class BenchmarkConfig {
+    }
+}
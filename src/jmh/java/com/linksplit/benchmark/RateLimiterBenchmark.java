@@ -0,0 +1,94 @@
+package com.linksplit.benchmark;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.IpViewTracker;
+import com.linksplit.repository.IpViewTrackerRepository;
+import com.linksplit.service.InMemoryRateLimiter;
+import com.linksplit.service.JpaRateLimiter;
+import com.linksplit.service.RateLimiter;
+import com.linksplit.service.ViewLimitService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the rate limiter engines with IPs drawn uniformly from a fixed pool. Once
+ * the pool has used up its limits most calls are rejections, which is the hot path
+ * under abusive traffic. The JPA engine runs against in-memory H2, so its numbers are
+ * an upper bound for what PostgreSQL over the network would do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    @Param({"memory", "jpa"})
+    public String engine;
+
+    @Param({"10000"})
+    public int distinctIps;
+
+    private ConfigurableApplicationContext context;
+    private RateLimiter rateLimiter;
+    private String[] ips;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BenchmarkConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:ratelimit;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "app.view-fraud-prevention.engine=" + engine,
+                        "app.view-fraud-prevention.rate-limits.five-minutes.duration-minutes=5",
+                        "app.view-fraud-prevention.rate-limits.five-minutes.max-views=5",
+                        "app.view-fraud-prevention.rate-limits.hourly.duration-minutes=60",
+                        "app.view-fraud-prevention.rate-limits.hourly.max-views=20",
+                        "app.view-fraud-prevention.rate-limits.daily.duration-minutes=1440",
+                        "app.view-fraud-prevention.rate-limits.daily.max-views=50")
+                .run();
+        rateLimiter = context.getBean(RateLimiter.class);
+
+        ips = new String[distinctIps];
+        for (int i = 0; i < distinctIps; i++) {
+            ips[i] = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ViewLimitService.LimitType checkAndRecord() {
+        return rateLimiter.checkAndRecord(ips[ThreadLocalRandom.current().nextInt(ips.length)]);
+    }
+
+    @Benchmark
+    public ViewLimitService.LimitType check() {
+        return rateLimiter.check(ips[ThreadLocalRandom.current().nextInt(ips.length)]);
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = IpViewTracker.class)
+    @EnableJpaRepositories(basePackageClasses = IpViewTrackerRepository.class)
+    @Import({AppConfig.class, InMemoryRateLimiter.class, JpaRateLimiter.class})
+    static class BenchmarkConfig {
+    }
+}
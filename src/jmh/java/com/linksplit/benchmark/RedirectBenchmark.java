@@ -0,0 +1,99 @@
+package com.linksplit.benchmark;
+
+import com.linksplit.LinkSplitApplication;
+import com.linksplit.controller.RedirectFastPathFilter;
+import com.linksplit.entity.Link;
+import com.linksplit.entity.User;
+import com.linksplit.repository.LinkRepository;
+import com.linksplit.repository.UserRepository;
+import com.linksplit.security.SupabaseJwtAuthenticationFilter;
+import jakarta.servlet.Filter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Redirect cost with and without {@link RedirectFastPathFilter}, through the same
+ * filters the servlet container would run (fast path, Spring Security, the Supabase
+ * JWT filter) and the DispatcherServlet, on an in-memory H2 database. Requests go
+ * through MockMvc, so the numbers exclude Tomcat and the network.
+ * <p>
+ * Throughput mode gives requests per second per thread; sample mode reports the
+ * latency percentiles, including p0.99.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedirectBenchmark {
+
+    @Param({"false", "true"})
+    public boolean fastPath;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private String shortCode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(LinkSplitApplication.class)
+                .profiles("prod")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:redirects;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "logging.level.com.linksplit=WARN",
+                        "app.redirect-fast-path.enabled=" + fastPath)
+                .run();
+
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .email("bench@example.com")
+                .build());
+        shortCode = context.getBean(LinkRepository.class).save(Link.builder()
+                .shortCode("bench1")
+                .longUrl("https://example.com/landing")
+                .user(user)
+                .build()).getShortCode();
+
+        // Same order the container applies: fast path, then security, then the JWT filter
+        List<Filter> filters = new ArrayList<>();
+        context.getBeanProvider(RedirectFastPathFilter.class).ifAvailable(filters::add);
+        filters.add(context.getBean("springSecurityFilterChain", Filter.class));
+        filters.add(context.getBean(SupabaseJwtAuthenticationFilter.class));
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .addFilters(filters.toArray(new Filter[0]))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult linkRoute() throws Exception {
+        return mockMvc.perform(get("/link/" + shortCode)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult legacyRoute() throws Exception {
+        return mockMvc.perform(get("/" + shortCode)).andReturn();
+    }
+}
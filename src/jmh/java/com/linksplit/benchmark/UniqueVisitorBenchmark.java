@@ -0,0 +1,81 @@
+package com.linksplit.benchmark;
+
+import com.linksplit.service.ViewRollupService;
+import com.linksplit.util.HyperLogLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unique visitor counting with a {@link HyperLogLog} against the exact
+ * {@code HashSet} of IP strings it replaced, over {@code visitors} distinct IPs seen
+ * three times each. {@code mergeDailySketches} is the dashboard read path: decode and
+ * merge 30 stored daily sketches. Run with {@code -prof gc}; {@code gc.alloc.rate.norm}
+ * is close to the retained size of each structure (the set grows with the visitors, a
+ * sketch stays at 4 KB).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UniqueVisitorBenchmark {
+
+    private static final int DAYS = 30;
+
+    @Param({"1000", "100000"})
+    public int visitors;
+
+    private String[] ipAddresses;
+    private byte[][] dailySketches;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        ipAddresses = new String[visitors * 3];
+        for (int i = 0; i < ipAddresses.length; i++) {
+            int visitor = i < visitors ? i : random.nextInt(visitors);
+            ipAddresses[i] = "10." + (visitor >>> 16) + "." + ((visitor >>> 8) & 0xff) + "." + (visitor & 0xff);
+        }
+
+        dailySketches = new byte[DAYS][];
+        for (int day = 0; day < DAYS; day++) {
+            HyperLogLog sketch = new HyperLogLog(ViewRollupService.VISITOR_SKETCH_PRECISION);
+            for (int i = day; i < ipAddresses.length; i += DAYS) {
+                sketch.add(ipAddresses[i]);
+            }
+            dailySketches[day] = sketch.toBytes();
+        }
+    }
+
+    @Benchmark
+    public long exactHashSet() {
+        Set<String> unique = new HashSet<>();
+        for (String ipAddress : ipAddresses) {
+            unique.add(ipAddress);
+        }
+        return unique.size();
+    }
+
+    @Benchmark
+    public long hyperLogLog() {
+        HyperLogLog sketch = new HyperLogLog(ViewRollupService.VISITOR_SKETCH_PRECISION);
+        for (String ipAddress : ipAddresses) {
+            sketch.add(ipAddress);
+        }
+        return sketch.estimate();
+    }
+
+    @Benchmark
+    public long mergeDailySketches() {
+        HyperLogLog sketch = new HyperLogLog(ViewRollupService.VISITOR_SKETCH_PRECISION);
+        for (byte[] bytes : dailySketches) {
+            sketch.merge(HyperLogLog.fromBytes(bytes));
+        }
+        return sketch.estimate();
+    }
+}
@@ -17,16 +17,197 @@ public class AppConfig {
     private double cpmRate = 1.00;
     private double revenueShare = 0.50;
     private ViewFraudPrevention viewFraudPrevention = new ViewFraudPrevention();
+    private ViewIngestion viewIngestion = new ViewIngestion();
+    private ViewCounters viewCounters = new ViewCounters();
+    private GeoIp geoIp = new GeoIp();
+    private ViewEnrichment viewEnrichment = new ViewEnrichment();
+    private ViewRollup viewRollup = new ViewRollup();
+    private Analytics analytics = new Analytics();
+    private ShortCodeFilter shortCodeFilter = new ShortCodeFilter();
+    private RouteCache routeCache = new RouteCache();
+    private AdSession adSession = new AdSession();
+    private RedirectFastPath redirectFastPath = new RedirectFastPath();
+    private ShortCodes shortCodes = new ShortCodes();
+    private BulkLinks bulkLinks = new BulkLinks();
+    private ViewExport viewExport = new ViewExport();
+    private UserStats userStats = new UserStats();
+    private Earnings earnings = new Earnings();
+    private Ledger ledger = new Ledger();
 
     @Data
     public static class ViewFraudPrevention {
         private boolean enabled = true;
+        private Engine engine = Engine.MEMORY;
+        private long evictionIntervalMillis = 60000;
         private Map<String, RateLimit> rateLimits = new HashMap<>();
         
+        public enum Engine {
+            MEMORY, // per-instance ring buffers, reset on restart
+            JPA     // ip_view_tracker table, shared across instances
+        }
+        
         @Data
         public static class RateLimit {
             private int durationMinutes;
             private int maxViews;
         }
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class ViewIngestion {
+        // When false, views are written synchronously on the request thread
+        private boolean async = false;
+        private int queueCapacity = 10000;
+        private int batchSize = 200;
+        private int writerThreads = 2;
+        private long pollTimeoutMillis = 250;
+        private long offerTimeoutMillis = 50;
+        private long shutdownTimeoutSeconds = 30;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+        public enum OverflowPolicy {
+            DROP,        // reject the view and count it as dropped
+            BLOCK,       // wait up to offerTimeoutMillis for space, then drop
+            CALLER_RUNS  // write the view synchronously on the request thread
+        }
+    }
+
+    @Data
+    public static class ViewCounters {
+        // Buffer view/duplicate increments in memory and flush them periodically
+        private boolean writeBehind = false;
+        private long flushIntervalMillis = 1000;
+    }
+
+    @Data
+    public static class GeoIp {
+        // DB-IP "IP to City Lite" CSV; empty means remote lookups only
+        private String databasePath = "";
+        private boolean remoteFallback = true;
+        private int remoteConnectTimeoutMillis = 500;
+        private int remoteReadTimeoutMillis = 1000;
+        private long reloadCheckIntervalMillis = 60000;
+    }
+
+    @Data
+    public static class ViewEnrichment {
+        // When true, views are stored raw and location/device fields are filled in later
+        private boolean deferred = false;
+        private int batchSize = 500;
+        private int maxBatchesPerRun = 20;
+        private long intervalMillis = 2000;
+    }
+
+    @Data
+    public static class ViewRollup {
+        // Fold views into hourly rollup tables for the analytics dashboard; when false
+        // the dashboard reads raw views for everything not rolled up
+        private boolean enabled = true;
+        private int batchSize = 5000;
+        private int maxBatchesPerRun = 20;
+        private long intervalMillis = 60000;
+    }
+
+    @Data
+    public static class Analytics {
+        private Engine engine = Engine.ROLLUP;
+        // Raw views are read with a cursor of this fetch size and aggregated in chunks
+        // of this many rows, in parallel on the common fork/join pool
+        private int fetchSize = 1000;
+        private int chunkSize = 4096;
+
+        public enum Engine {
+            ROLLUP, // hourly rollups plus raw views for partial hours and the tail
+            SQL     // GROUP BY queries over link_views for the whole range
+        }
+    }
+
+    @Data
+    public static class ShortCodeFilter {
+        // Bloom filter of existing codes; when false only the negative cache is used
+        private boolean enabled = true;
+        // Minimum sizing; rebuilds size for twice the current link count when larger
+        private long expectedInsertions = 1_000_000;
+        private double falsePositiveRate = 0.01;
+        private long syncIntervalMillis = 2000;
+        // Each incremental scan re-reads ids seen this recently, for inserts that commit
+        // out of id order
+        private long syncLookbackMillis = 60000;
+        private long rebuildCheckIntervalMillis = 600000;
+        // Full rebuild at least this often, checked every rebuildCheckIntervalMillis
+        private long rebuildIntervalMillis = 3600000;
+        private long negativeCacheSize = 100_000;
+        private long negativeCacheTtlSeconds = 60;
+    }
+
+    @Data
+    public static class RouteCache {
+        private long maximumSize = 10000;
+        // Entries read after this age are reloaded in the background; must be
+        // shorter than expireAfterWriteMinutes to have any effect
+        private long refreshAfterWriteMinutes = 5;
+        private long expireAfterWriteMinutes = 60;
+    }
+
+    @Data
+    public static class AdSession {
+        // HMAC key for ad-page tokens; required and must be shared by all instances
+        private String secret = "";
+        private long ttlMinutes = 30;
+    }
+
+    @Data
+    public static class RedirectFastPath {
+        // Serve redirects for known short codes from a servlet filter ahead of
+        // Spring Security and MVC
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class ShortCodes {
+        // Key of the id-to-code permutation; must be identical on all instances and
+        // never change once links exist
+        private String key;
+    }
+
+    @Data
+    public static class BulkLinks {
+        // URLs validated, inserted and committed together; results are streamed per chunk
+        private int chunkSize = 500;
+        private long maxLinksPerRequest = 100_000;
+        // Threads, shared by all requests, that validate and allocate the next chunk
+        // while the current one is inserted
+        private int prepareThreads = 4;
+    }
+
+    @Data
+    public static class ViewExport {
+        // Rows read per keyset page query; each page is written and flushed to the
+        // client before the next is read
+        private int fetchSize = 1000;
+    }
+
+    @Data
+    public static class UserStats {
+        // Per-user link, view, earnings and payout totals shown on the admin pages and
+        // the creator dashboard; cached entries may lag the counters by this long
+        private long maximumSize = 10000;
+        private long expireAfterWriteSeconds = 30;
+    }
+
+    @Data
+    public static class Earnings {
+        // Periodic recomputation of every link's earnings from its view count, in id
+        // ranges of this many links, each committed on its own
+        private long intervalMillis = 3600000;
+        private int chunkSize = 10000;
+    }
+
+    @Data
+    public static class Ledger {
+        // Background check of every balance row against its ledger entries and the
+        // link and payout totals, this many users per snapshot
+        private long reconcileIntervalMillis = 3600000;
+        private int reconcileBatchSize = 1000;
+    }
+}
@@ -1,6 +1,11 @@
 package com.linksplit.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.linksplit.dto.LinkRoute;
+import com.linksplit.dto.UserStats;
+import com.linksplit.repository.LinkRepository;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
@@ -12,7 +17,8 @@ import java.util.concurrent.TimeUnit;
 public class CacheConfig {
 
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(LoadingCache<String, LinkRoute> linkRouteCache,
+                                     Cache<Long, UserStats> userStatsCache) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
         cacheManager.setCaffeine(Caffeine.newBuilder()
                 .maximumSize(10000)
@@ -21,11 +27,53 @@ public class CacheConfig {
         
         // Register all cache names
         cacheManager.setCacheNames(java.util.List.of(
-                "shortUrls",
                 "geoLocation",
                 "userAgent"
         ));
         
+        // Registered so they show up in cache metrics alongside the others
+        registerCustomCache(cacheManager, "shortUrls", linkRouteCache);
+        registerCustomCache(cacheManager, "userStats", userStatsCache);
+        
         return cacheManager;
     }
-}
\ No newline at end of file
+
+    /**
+     * Short code to redirect route. Concurrent misses for the same code share one
+     * database load, and entries read after {@code refresh-after-write-minutes} are
+     * reloaded in the background while the old route keeps being served, so hot
+     * links never expire under load. The loader returns null for unknown codes,
+     * which Caffeine does not store.
+     */
+    @Bean
+    public LoadingCache<String, LinkRoute> linkRouteCache(LinkRepository linkRepository, AppConfig appConfig) {
+        AppConfig.RouteCache config = appConfig.getRouteCache();
+        return Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .refreshAfterWrite(config.getRefreshAfterWriteMinutes(), TimeUnit.MINUTES)
+                .expireAfterWrite(config.getExpireAfterWriteMinutes(), TimeUnit.MINUTES)
+                .recordStats()
+                .build(shortCode -> linkRepository.findRouteByShortCode(shortCode).orElse(null));
+    }
+
+    /**
+     * User id to link, view, earnings and payout totals. Filled in batches by
+     * UserStatsService, so it has no loader of its own.
+     */
+    @Bean
+    public Cache<Long, UserStats> userStatsCache(AppConfig appConfig) {
+        AppConfig.UserStats config = appConfig.getUserStats();
+        return Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    // The manager only accepts Cache<Object, Object>; its Spring wrappers are not used
+    // to write these caches, so the unchecked view never holds a wrong type
+    @SuppressWarnings("unchecked")
+    private static void registerCustomCache(CaffeineCacheManager cacheManager, String name, Cache<?, ?> cache) {
+        cacheManager.registerCustomCache(name, (Cache<Object, Object>) cache);
+    }
+}
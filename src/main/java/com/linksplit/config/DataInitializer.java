@@ -2,6 +2,7 @@ package com.linksplit.config;
 
 import com.linksplit.entity.*;
 import com.linksplit.repository.*;
+import com.linksplit.service.EarningsLedgerService;
 import com.linksplit.service.PaymentService;
 import com.linksplit.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -31,7 +32,8 @@ public class DataInitializer {
                                   PaymentMethodRepository paymentMethodRepository,
                                   PayoutRepository payoutRepository,
                                   PasswordEncoder passwordEncoder,
-                                  PaymentService paymentService) {
+                                  PaymentService paymentService,
+                                  EarningsLedgerService earningsLedgerService) {
         
         return args -> {
             // IMPORTANT: Skip ALL initialization if ANY users exist
@@ -153,6 +155,8 @@ public class DataInitializer {
                         .createdAt(LocalDateTime.now().minusDays(30 - i * 4))
                         .build();
                 linkRepository.save(link);
+                // The ledger is already open, so seeded earnings are posted like any other
+                earningsLedgerService.accrue(demoUser.getId(), link.getEstimatedEarnings());
                 
                 // Add sample views for analytics
                 for (int j = 0; j < Math.min(10, viewCounts[i]); j++) {
@@ -196,6 +200,7 @@ public class DataInitializer {
                     .notes("First payout - processed successfully")
                     .build();
             payoutRepository.save(completedPayout);
+            earningsLedgerService.recordPayoutStatus(completedPayout, null);
             
             Payout pendingPayout = Payout.builder()
                     .user(demoUser)
@@ -211,6 +216,7 @@ public class DataInitializer {
                     .notes("Pending payout - will be processed within 24-48 hours")
                     .build();
             payoutRepository.save(pendingPayout);
+            earningsLedgerService.recordPayoutStatus(pendingPayout, null);
             
             log.info("Created sample payout history");
             
@@ -30,7 +30,8 @@ public class SecurityConfig {
             )
             .authorizeHttpRequests(authorize -> authorize
                 .requestMatchers("/", "/auth/**", "/api/url", "/ad-page", "/css/**", "/js/**").permitAll()
-                .requestMatchers("/admin/**").hasRole("ADMIN")
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/admin/**", "/actuator/**").hasRole("ADMIN")
                 .requestMatchers("/dashboard", "/api/user/**", "/account/**", "/payouts/**", "/analytics/**").authenticated()
                 .anyRequest().permitAll()
             )
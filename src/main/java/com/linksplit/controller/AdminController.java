@@ -1,28 +1,41 @@
 package com.linksplit.controller;
 
 import com.linksplit.config.AppConfig;
+import com.linksplit.dto.PlatformStats;
+import com.linksplit.dto.UserStats;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.Payout;
 import com.linksplit.entity.User;
+import com.linksplit.repository.LinkJdbcRepository;
 import com.linksplit.repository.LinkRepository;
 import com.linksplit.repository.PayoutRepository;
 import com.linksplit.repository.UserRepository;
+import com.linksplit.service.AdminLinkService;
+import com.linksplit.service.EarningsLedgerService;
+import com.linksplit.service.GeoIpDatabase;
+import com.linksplit.service.GeoLocationService;
+import com.linksplit.service.PaymentService;
+import com.linksplit.service.PlatformStatsService;
 import com.linksplit.service.RevenueService;
+import com.linksplit.service.UserStatsService;
+import com.linksplit.service.ViewEnrichmentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/admin")
@@ -35,33 +48,27 @@ public class AdminController {
     private final LinkRepository linkRepository;
     private final PayoutRepository payoutRepository;
     private final RevenueService revenueService;
+    private final GeoLocationService geoLocationService;
+    private final ViewEnrichmentService viewEnrichmentService;
+    private final PlatformStatsService platformStatsService;
+    private final UserStatsService userStatsService;
+    private final AdminLinkService adminLinkService;
+    private final PaymentService paymentService;
+    private final EarningsLedgerService earningsLedgerService;
     private final AppConfig appConfig;
     
     @GetMapping
     public String adminDashboard(Model model) {
-        // Overall statistics
-        long totalUsers = userRepository.count();
-        long totalLinks = linkRepository.count();
-        Long totalViews = linkRepository.findAll().stream()
-                .mapToLong(Link::getViewCount)
-                .sum();
+        // Served from the periodically refreshed snapshot, not from the links table
+        PlatformStats stats = platformStatsService.getStats();
         
-        BigDecimal totalEarnings = linkRepository.findAll().stream()
-                .map(Link::getEstimatedEarnings)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Recent users
-        List<User> recentUsers = userRepository.findTop10ByOrderByCreatedAtDesc();
-        
-        // Top creators by earnings
-        List<Object[]> topCreators = userRepository.findTopCreatorsByEarnings(PageRequest.of(0, 10));
-        
-        model.addAttribute("totalUsers", totalUsers);
-        model.addAttribute("totalLinks", totalLinks);
-        model.addAttribute("totalViews", totalViews);
-        model.addAttribute("totalEarnings", totalEarnings);
-        model.addAttribute("recentUsers", recentUsers);
-        model.addAttribute("topCreators", topCreators);
+        model.addAttribute("totalUsers", stats.getTotalUsers());
+        model.addAttribute("totalLinks", stats.getTotalLinks());
+        model.addAttribute("totalViews", stats.getTotalViews());
+        model.addAttribute("totalEarnings", stats.getTotalEarnings());
+        model.addAttribute("recentUsers", stats.getRecentUsers());
+        model.addAttribute("topCreators", stats.getTopCreators());
+        model.addAttribute("statsRefreshedAt", stats.getRefreshedAt());
         
         return "admin/dashboard";
     }
@@ -74,15 +81,9 @@ public class AdminController {
         
         Page<User> users = userRepository.findAllByOrderByCreatedAtDesc(PageRequest.of(page, size));
         
-        // Calculate stats for each user
-        Map<Long, Map<String, Object>> userStats = new HashMap<>();
-        for (User user : users.getContent()) {
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("linkCount", linkRepository.countByUser(user));
-            stats.put("totalViews", linkRepository.getTotalViewsByUser(user));
-            stats.put("totalEarnings", linkRepository.getTotalEarningsByUser(user));
-            userStats.put(user.getId(), stats);
-        }
+        // Totals for the whole page in one batch
+        Map<Long, UserStats> userStats = userStatsService.getStats(
+                users.getContent().stream().map(User::getId).collect(Collectors.toList()));
         
         model.addAttribute("users", users);
         model.addAttribute("userStats", userStats);
@@ -99,38 +100,55 @@ public class AdminController {
         
         List<Link> userLinks = linkRepository.findByUserOrderByCreatedAtDesc(user, PageRequest.of(0, 50)).getContent();
         
-        Long totalViews = linkRepository.getTotalViewsByUser(user);
-        BigDecimal totalEarnings = linkRepository.getTotalEarningsByUser(user);
+        UserStats stats = userStatsService.getStats(user.getId());
         
         // Fetch user's payouts
         List<Payout> userPayouts = payoutRepository.findByUserOrderByRequestedAtDesc(user, PageRequest.of(0, 10)).getContent();
-        BigDecimal totalPaidOut = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.COMPLETED);
-        BigDecimal pendingPayouts = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.PENDING);
         
         model.addAttribute("user", user);
         model.addAttribute("links", userLinks);
-        model.addAttribute("totalViews", totalViews != null ? totalViews : 0L);
-        model.addAttribute("totalEarnings", totalEarnings != null ? totalEarnings : BigDecimal.ZERO);
-        model.addAttribute("linkCount", userLinks.size());
+        model.addAttribute("totalViews", stats.getTotalViews());
+        model.addAttribute("totalEarnings", stats.getTotalEarnings());
+        model.addAttribute("linkCount", stats.getLinkCount());
         model.addAttribute("appConfig", appConfig);
         model.addAttribute("payouts", userPayouts);
-        model.addAttribute("totalPaidOut", totalPaidOut != null ? totalPaidOut : BigDecimal.ZERO);
-        model.addAttribute("pendingPayouts", pendingPayouts != null ? pendingPayouts : BigDecimal.ZERO);
+        model.addAttribute("totalPaidOut", stats.getPaidOut());
+        model.addAttribute("pendingPayouts", stats.getPending());
         
         return "admin/user-details";
     }
     
     @GetMapping("/links")
     public String listLinks(
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "short_code") String field,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(required = false) Long beforeId,
             @RequestParam(defaultValue = "50") int size,
             Model model) {
         
-        Page<Link> links = linkRepository.findAll(PageRequest.of(page, size));
+        LinkJdbcRepository.LinkSearch search = null;
+        if (StringUtils.hasText(q)) {
+            try {
+                search = new LinkJdbcRepository.LinkSearch(
+                        LinkJdbcRepository.LinkSearch.Field.valueOf(field.toUpperCase()), q.trim());
+            } catch (IllegalArgumentException e) {
+                // Invalid field, show all
+            }
+        }
+        LinkJdbcRepository.LinkCursor cursor = before != null && beforeId != null
+                ? new LinkJdbcRepository.LinkCursor(before, beforeId)
+                : null;
+        
+        AdminLinkService.LinkPage links = adminLinkService.getPage(search, cursor, size);
         
-        model.addAttribute("links", links);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", links.getTotalPages());
+        model.addAttribute("links", links.links());
+        model.addAttribute("next", links.next());
+        model.addAttribute("approximateTotal", links.approximateTotal());
+        model.addAttribute("firstPage", cursor == null);
+        model.addAttribute("q", search != null ? search.term() : null);
+        model.addAttribute("field", search != null ? search.field().name().toLowerCase() : field);
+        model.addAttribute("size", size);
         
         return "admin/links";
     }
@@ -158,6 +176,7 @@ public class AdminController {
                     revenueService.recalculateUserEarnings(user);
                 }
                 
+                userStatsService.evict(user.getId());
                 redirectAttributes.addFlashAttribute("success", "Revenue settings reset to default");
             } else {
                 // Update custom rates
@@ -175,6 +194,7 @@ public class AdminController {
                 if (retroactive) {
                     revenueService.recalculateUserEarnings(user);
                 }
+                userStatsService.evict(user.getId());
                 
                 redirectAttributes.addFlashAttribute("success", 
                     retroactive ? "Revenue settings updated and applied retroactively" 
@@ -247,32 +267,9 @@ public class AdminController {
         log.info("Updating payout status for ID: {}, new status: {}", id, status);
         
         try {
-            Payout payout = payoutRepository.findById(id)
-                    .orElseThrow(() -> new IllegalArgumentException("Payout not found with ID: " + id));
-            
             Payout.PayoutStatus newStatus = Payout.PayoutStatus.valueOf(status.toUpperCase());
-            Payout.PayoutStatus oldStatus = payout.getStatus();
-            payout.setStatus(newStatus);
-            
-            if (newStatus == Payout.PayoutStatus.COMPLETED) {
-                payout.setProcessedAt(LocalDateTime.now());
-                if (transactionId != null && !transactionId.isEmpty()) {
-                    payout.setTransactionId(transactionId);
-                }
-            } else if (newStatus == Payout.PayoutStatus.FAILED) {
-                payout.setProcessedAt(LocalDateTime.now());
-                if (failedReason != null && !failedReason.isEmpty()) {
-                    payout.setFailedReason(failedReason);
-                }
-            } else if (newStatus == Payout.PayoutStatus.PROCESSING) {
-                payout.setProcessedAt(LocalDateTime.now());
-            }
-            
-            if (notes != null && !notes.isEmpty()) {
-                payout.setNotes(notes);
-            }
-            
-            payoutRepository.save(payout);
+            Payout.PayoutStatus oldStatus = paymentService.updatePayoutStatus(id, newStatus, transactionId,
+                    failedReason, notes);
             
             log.info("Successfully updated payout {} from {} to {}", id, oldStatus, newStatus);
             
@@ -287,4 +284,36 @@ public class AdminController {
         
         return "redirect:/admin/payouts";
     }
-}
\ No newline at end of file
+    
+    @PostMapping("/geoip/reload")
+    public String reloadGeoIpDatabase(RedirectAttributes redirectAttributes) {
+        if (!StringUtils.hasText(appConfig.getGeoIp().getDatabasePath())) {
+            redirectAttributes.addFlashAttribute("error", "No GeoIP database path configured");
+            return "redirect:/admin";
+        }
+        
+        try {
+            GeoIpDatabase database = geoLocationService.reloadDatabase();
+            redirectAttributes.addFlashAttribute("success", 
+                String.format("GeoIP database reloaded: %d IPv4 ranges, %d IPv6 ranges", 
+                    database.getV4RangeCount(), database.getV6RangeCount()));
+        } catch (Exception e) {
+            log.error("Error reloading GeoIP database: {}", e.getMessage());
+            redirectAttributes.addFlashAttribute("error", "Failed to reload GeoIP database: " + e.getMessage());
+        }
+        
+        return "redirect:/admin";
+    }
+    
+    @GetMapping("/enrichment/backlog")
+    @ResponseBody
+    public ViewEnrichmentService.Backlog enrichmentBacklog() {
+        return viewEnrichmentService.getBacklog();
+    }
+    
+    @GetMapping("/ledger/reconciliation")
+    @ResponseBody
+    public EarningsLedgerService.Reconciliation ledgerReconciliation() {
+        return earningsLedgerService.getLastReconciliation();
+    }
+}
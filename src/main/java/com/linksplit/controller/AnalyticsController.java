@@ -3,7 +3,6 @@ package com.linksplit.controller;
 import com.linksplit.dto.analytics.AnalyticsDashboard;
 import com.linksplit.entity.ClickHeatmap;
 import com.linksplit.entity.Link;
-import com.linksplit.entity.LinkView;
 import com.linksplit.entity.User;
 import com.linksplit.repository.ClickHeatmapRepository;
 import com.linksplit.repository.LinkRepository;
@@ -218,59 +217,34 @@ public class AnalyticsController {
         LocalDateTime endDate = LocalDateTime.now();
         
         List<Link> userLinks = linkRepository.findByUser(user);
-        List<LinkView> views = linkViewRepository.findByLinkInAndViewedAtBetween(userLinks, startDate, endDate);
         
-        // Aggregate location data
-        Map<String, LocationData> locationMap = new HashMap<>();
-        
-        for (LinkView view : views) {
-            String key = view.getCity() + "|" + view.getCountry();
-            
-            locationMap.computeIfAbsent(key, k -> {
-                LocationData loc = new LocationData();
-                loc.city = view.getCity();
-                loc.country = view.getCountry() != null ? view.getCountry() : "Unknown";
-                loc.latitude = view.getLatitude();
-                loc.longitude = view.getLongitude();
-                loc.views = 0;
-                loc.uniqueUsers = new HashSet<>();
-                return loc;
-            });
-            
-            LocationData loc = locationMap.get(key);
-            loc.views++;
-            loc.uniqueUsers.add(view.getIpAddress());
-        }
-        
-        // Convert to list and prepare response
+        // One row per (country, city) with its view and exact distinct visitor counts,
+        // so neither the views nor a set of IPs per city are held in memory
         List<Map<String, Object>> locations = new ArrayList<>();
-        for (LocationData loc : locationMap.values()) {
-            if (loc.latitude != null && loc.longitude != null) {
+        Set<String> countries = new HashSet<>();
+        long totalViews = 0;
+        for (Object[] row : linkViewRepository.getLocationStatistics(userLinks, startDate, endDate)) {
+            String country = row[0] != null ? (String) row[0] : "Unknown";
+            long views = ((Number) row[4]).longValue();
+            countries.add(country);
+            totalViews += views;
+            
+            if (row[2] != null && row[3] != null) {
                 Map<String, Object> locData = new HashMap<>();
-                locData.put("city", loc.city);
-                locData.put("country", loc.country);
-                locData.put("latitude", loc.latitude);
-                locData.put("longitude", loc.longitude);
-                locData.put("views", loc.views);
-                locData.put("uniqueUsers", loc.uniqueUsers.size());
+                locData.put("city", row[1]);
+                locData.put("country", country);
+                locData.put("latitude", row[2]);
+                locData.put("longitude", row[3]);
+                locData.put("views", views);
+                locData.put("uniqueUsers", ((Number) row[5]).longValue());
                 locations.add(locData);
             }
         }
         
         return ResponseEntity.ok(Map.of(
             "locations", locations,
-            "totalViews", views.size(),
-            "totalCountries", locationMap.values().stream()
-                .map(l -> l.country).distinct().count()
+            "totalViews", totalViews,
+            "totalCountries", countries.size()
         ));
     }
-    
-    private static class LocationData {
-        String city;
-        String country;
-        Double latitude;
-        Double longitude;
-        int views;
-        Set<String> uniqueUsers;
-    }
 }
\ No newline at end of file
@@ -1,12 +1,12 @@
 package com.linksplit.controller;
 
 import com.linksplit.config.AppConfig;
-import com.linksplit.entity.Link;
+import com.linksplit.dto.LinkRoute;
+import com.linksplit.service.AdSessionTokenService;
 import com.linksplit.service.AnalyticsService;
 import com.linksplit.service.UrlShorteningService;
 import com.linksplit.service.ViewLimitService;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -17,7 +17,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.util.UriUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 @Controller
@@ -27,24 +29,25 @@ public class RedirectController {
     private final UrlShorteningService urlShorteningService;
     private final AnalyticsService analyticsService;
     private final ViewLimitService viewLimitService;
+    private final AdSessionTokenService adSessionTokenService;
     private final AppConfig appConfig;
 
     @GetMapping("/link/{shortCode}")
-    public String handleRedirect(@PathVariable String shortCode, HttpServletRequest request, HttpSession session) {
-        Optional<Link> linkOpt = urlShorteningService.getLinkByShortCode(shortCode);
+    public String handleRedirect(@PathVariable String shortCode, HttpServletRequest request) {
+        Optional<LinkRoute> route = findRoute(shortCode);
         
-        if (linkOpt.isEmpty()) {
+        if (route.isEmpty()) {
             log.warn("Short code not found: {}", shortCode);
             return "error/404";
         }
         
-        // Capture the original referrer at the point of entry
+        // Capture the original referrer at the point of entry and carry it to the ad
+        // page, which seals it into the ad token
         String originalReferrer = request.getHeader("Referer");
         if (originalReferrer != null && !originalReferrer.isEmpty()) {
-            session.setAttribute("original_referrer_" + shortCode, originalReferrer);
-            log.info("Captured original referrer for {}: {}", shortCode, originalReferrer);
-        } else {
-            log.info("No referrer found for {}", shortCode);
+            log.debug("Captured original referrer for {}: {}", shortCode, originalReferrer);
+            return "redirect:/ad-page?id=" + shortCode + "&ref="
+                    + UriUtils.encodeQueryParam(originalReferrer, StandardCharsets.UTF_8);
         }
         
         return "redirect:/ad-page?id=" + shortCode;
@@ -58,29 +61,31 @@ public class RedirectController {
     }
 
     @GetMapping("/ad-page")
-    public String showAdPage(@RequestParam String id, Model model, HttpServletRequest request, HttpSession session) {
-        Optional<Link> linkOpt = urlShorteningService.getLinkByShortCode(id);
+    public String showAdPage(@RequestParam String id,
+                             @RequestParam(name = "ref", required = false) String originalReferrer,
+                             Model model, HttpServletRequest request) {
+        Optional<LinkRoute> route = findRoute(id);
         
-        if (linkOpt.isEmpty()) {
+        if (route.isEmpty()) {
             log.warn("Short code not found for ad page: {}", id);
             return "error/404";
         }
         
-        Link link = linkOpt.get();
+        LinkRoute link = route.get();
         String ipAddress = analyticsService.extractIpAddress(request);
         
         // Check rate limits but don't record view yet
         ViewLimitService.LimitType limitCheck = viewLimitService.checkRateLimit(ipAddress);
         
-        // Generate a unique session token for this ad view
-        String sessionToken = java.util.UUID.randomUUID().toString();
-        session.setAttribute("ad_session_" + id, sessionToken);
-        log.info("Generated session token for shortCode: {}, token: {}, sessionId: {}", id, sessionToken, session.getId());
+        // Signed token for this ad view; nothing is stored server-side until it is redeemed
+        AdSessionTokenService.AdSession adSession = adSessionTokenService.newSession(id, originalReferrer);
+        String sessionToken = adSessionTokenService.sign(adSession);
         
-        model.addAttribute("destinationUrl", link.getLongUrl());
+        model.addAttribute("destinationUrl", link.longUrl());
         model.addAttribute("countdownSeconds", appConfig.getAdDisplaySeconds());
         model.addAttribute("shortCode", id);
         model.addAttribute("sessionToken", sessionToken);
+        model.addAttribute("visitId", adSession.visitId());
         
         // Add rate limit message if view would be blocked
         if (limitCheck != ViewLimitService.LimitType.ALLOWED) {
@@ -96,38 +101,23 @@ public class RedirectController {
     public ResponseEntity<?> completeAdView(@RequestParam String shortCode, 
                                            @RequestParam String token,
                                            @RequestParam(required = false) Integer timeToSkip,
-                                           HttpServletRequest request,
-                                           HttpSession session) {
-        // Verify session token to prevent fraud
-        String sessionToken = (String) session.getAttribute("ad_session_" + shortCode);
-        log.info("Validating session token for shortCode: {}, expected: {}, received: {}, sessionId: {}", shortCode, sessionToken, token, session.getId());
-        if (sessionToken == null || !sessionToken.equals(token)) {
-            log.warn("Invalid session token for ad completion: {}. Expected: {}, Received: {}", shortCode, sessionToken, token);
-            
-            // For now, proceed but add additional validation
-            // Check if this is a valid shortCode at least
-            Optional<Link> linkValidation = urlShorteningService.getLinkByShortCode(shortCode);
-            if (linkValidation.isEmpty()) {
-                log.error("Invalid shortCode in ad completion request: {}", shortCode);
-                return ResponseEntity.badRequest().body(java.util.Map.of("error", "Invalid link"));
-            }
-            
-            log.warn("Proceeding with ad completion despite invalid session token");
+                                           HttpServletRequest request) {
+        // Verify and burn the ad token to prevent fraud and replays
+        Optional<AdSessionTokenService.AdSession> adSession = adSessionTokenService.redeem(token, shortCode);
+        if (adSession.isEmpty()) {
+            log.warn("Invalid ad token for completion of {}", shortCode);
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", "Invalid session"));
         }
         
-        // Get the original referrer stored when the user first accessed the link
-        String originalReferrer = (String) session.getAttribute("original_referrer_" + shortCode);
-        
-        // Remove tokens and referrer to prevent reuse
-        session.removeAttribute("ad_session_" + shortCode);
-        session.removeAttribute("original_referrer_" + shortCode);
+        // The original referrer captured when the user first accessed the link
+        String originalReferrer = adSession.get().referrer();
         
-        Optional<Link> linkOpt = urlShorteningService.getLinkByShortCode(shortCode);
-        if (linkOpt.isEmpty()) {
+        Optional<LinkRoute> route = findRoute(shortCode);
+        if (route.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
-        Link link = linkOpt.get();
+        LinkRoute link = route.get();
         boolean viewRecorded = analyticsService.recordView(link, request, timeToSkip, originalReferrer);
         
         if (viewRecorded) {
@@ -141,4 +131,10 @@ public class RedirectController {
             return ResponseEntity.ok(java.util.Map.of("success", false, "message", rateLimitMessage));
         }
     }
-}
\ No newline at end of file
+    
+    // Soft-deleted links are treated as missing
+    private Optional<LinkRoute> findRoute(String shortCode) {
+        return urlShorteningService.getRouteByShortCode(shortCode)
+                .filter(route -> !route.isDeleted());
+    }
+}
@@ -0,0 +1,131 @@
+package com.linksplit.controller;
+
+import com.linksplit.dto.LinkRoute;
+import com.linksplit.service.UrlShorteningService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Answers {@code GET /link/{shortCode}} and the legacy {@code GET /{shortCode}} for
+ * known links before the security filter chain and DispatcherServlet run, writing
+ * the 302 to the ad page directly. The legacy route goes straight to the ad page
+ * instead of hopping through {@code /link/{shortCode}} first.
+ * <p>
+ * Anything else, including unknown or deleted codes, continues down the normal
+ * chain, so {@link RedirectController} still renders the 404 page. Single-segment
+ * paths that belong to a controller mapping (e.g. {@code /dashboard}) are never
+ * treated as short codes.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(prefix = "app.redirect-fast-path", name = "enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class RedirectFastPathFilter extends OncePerRequestFilter {
+    private static final String LINK_PREFIX = "/link/";
+    private static final String AD_PAGE_PATH = "/ad-page?id=";
+    private static final int MAX_SHORT_CODE_LENGTH = 10;
+
+    private final UrlShorteningService urlShorteningService;
+    private final ApplicationContext applicationContext;
+
+    // Literal single-segment paths mapped by controllers; populated once the context is up
+    private volatile Set<String> reservedPaths;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void collectReservedPaths() {
+        Set<String> reserved = new HashSet<>();
+        for (RequestMappingHandlerMapping mapping
+                : applicationContext.getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+            for (RequestMappingInfo info : mapping.getHandlerMethods().keySet()) {
+                for (String pattern : info.getPatternValues()) {
+                    if (pattern.indexOf('/', 1) < 0 && pattern.indexOf('{') < 0 && pattern.length() > 1) {
+                        reserved.add(pattern.substring(1));
+                    }
+                }
+            }
+        }
+        reservedPaths = reserved;
+        log.debug("Redirect fast path skips {} reserved paths", reserved.size());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return reservedPaths == null || !"GET".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String uri = request.getRequestURI();
+        int start = request.getContextPath().length();
+        boolean legacy = !uri.startsWith(LINK_PREFIX, start);
+        int codeStart = legacy ? start + 1 : start + LINK_PREFIX.length();
+
+        if (!isShortCode(uri, codeStart)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String shortCode = uri.substring(codeStart);
+        if (legacy && reservedPaths.contains(shortCode)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Optional<LinkRoute> route = urlShorteningService.getRouteByShortCode(shortCode);
+        if (route.isEmpty() || route.get().isDeleted()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Same target RedirectController produces, minus the legacy hop
+        String referrer = request.getHeader("Referer");
+        StringBuilder location = new StringBuilder(start + AD_PAGE_PATH.length() + shortCode.length()
+                + (referrer != null ? referrer.length() + 16 : 0));
+        location.append(uri, 0, start).append(AD_PAGE_PATH).append(shortCode);
+        if (referrer != null && !referrer.isEmpty()) {
+            location.append("&ref=").append(UriUtils.encodeQueryParam(referrer, StandardCharsets.UTF_8));
+        }
+
+        response.setStatus(HttpServletResponse.SC_FOUND);
+        response.setHeader("Location", location.toString());
+        response.setHeader("Cache-Control", "no-store");
+    }
+
+    // True when uri[from..] is 1-10 base62 characters with nothing after them
+    private static boolean isShortCode(String uri, int from) {
+        int length = uri.length() - from;
+        if (length < 1 || length > MAX_SHORT_CODE_LENGTH) {
+            return false;
+        }
+        for (int i = from; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
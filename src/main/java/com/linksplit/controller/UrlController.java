@@ -1,19 +1,35 @@
 package com.linksplit.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.linksplit.dto.BulkLinkResult;
 import com.linksplit.dto.CreateUrlRequest;
 import com.linksplit.dto.CreateUrlResponse;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
+import com.linksplit.service.BulkLinkService;
 import com.linksplit.service.UrlShorteningService;
 import com.linksplit.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
@@ -21,6 +37,8 @@ import org.springframework.web.bind.annotation.*;
 public class UrlController {
     private final UrlShorteningService urlShorteningService;
     private final UserService userService;
+    private final BulkLinkService bulkLinkService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/url")
     public ResponseEntity<CreateUrlResponse> createShortUrl(
@@ -60,6 +78,42 @@ public class UrlController {
         }
     }
 
+    /**
+     * Creates links for a JSON array or an NDJSON stream of URLs, given either as
+     * strings or as {@code {"longUrl": ...}} objects. Responds with one NDJSON
+     * {@link BulkLinkResult} per URL, written as each chunk commits.
+     */
+    @PostMapping(value = "/url/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void createShortUrls(HttpServletRequest request, HttpServletResponse response,
+                                Authentication authentication) throws IOException {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        User user = userService.getUserByEmail(authentication.getName());
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+
+        // readValues unwraps a top-level array and also reads whitespace-separated values
+        try (MappingIterator<JsonNode> values = objectMapper.readerFor(JsonNode.class)
+                .readValues(request.getInputStream())) {
+            bulkLinkService.createLinks(new LongUrlIterator(values), user, results -> writeResults(out, results));
+        } catch (RuntimeJsonMappingException | UncheckedIOException | JsonProcessingException e) {
+            log.warn("Malformed bulk link input: {}", e.getMessage());
+            writeResults(out, List.of(BulkLinkResult.builder().error("Malformed input").build()));
+        }
+    }
+
+    private void writeResults(OutputStream out, List<BulkLinkResult> results) throws IOException {
+        for (BulkLinkResult result : results) {
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
     @DeleteMapping("/url/{linkId}")
     public ResponseEntity<Void> deleteLink(@PathVariable Long linkId, Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -80,4 +134,36 @@ public class UrlController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    // Parse errors surface as RuntimeExceptions wrapping the IOException; they are
+    // rethrown as UncheckedIOException so the caller can tell them from other failures
+    private record LongUrlIterator(Iterator<JsonNode> values) implements Iterator<String> {
+        @Override
+        public boolean hasNext() {
+            try {
+                return values.hasNext();
+            } catch (RuntimeException e) {
+                throw unwrap(e);
+            }
+        }
+
+        @Override
+        public String next() {
+            JsonNode value;
+            try {
+                value = values.next();
+            } catch (RuntimeException e) {
+                throw unwrap(e);
+            }
+            if (value.isTextual()) {
+                return value.asText();
+            }
+            JsonNode longUrl = value.path("longUrl");
+            return longUrl.isTextual() ? longUrl.asText() : null;
+        }
+
+        private static RuntimeException unwrap(RuntimeException e) {
+            return e.getCause() instanceof IOException cause ? new UncheckedIOException(cause) : e;
+        }
+    }
+}
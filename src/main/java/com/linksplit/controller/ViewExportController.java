@@ -0,0 +1,96 @@
+package com.linksplit.controller;
+
+import com.linksplit.entity.Link;
+import com.linksplit.entity.User;
+import com.linksplit.repository.ViewRollupJdbcRepository;
+import com.linksplit.service.UrlShorteningService;
+import com.linksplit.service.UserService;
+import com.linksplit.service.ViewExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Raw view exports for creators, per link or across all of their links. Responses
+ * are gzip-encoded CSV or NDJSON, streamed as they are read; a client that lost the
+ * connection resumes with {@code after} set to the last id it received.
+ */
+@RestController
+@RequestMapping("/api/analytics/export")
+@RequiredArgsConstructor
+@Slf4j
+public class ViewExportController {
+    private final ViewExportService viewExportService;
+    private final UrlShorteningService urlShorteningService;
+    private final UserService userService;
+
+    @GetMapping
+    public void exportUserViews(Authentication authentication, HttpServletResponse response,
+                                @RequestParam(defaultValue = "csv") String format,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                                @RequestParam(defaultValue = "0") long after) throws IOException {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        User user = userService.getUserByEmail(authentication.getName());
+        export(ViewRollupJdbcRepository.Scope.user(user.getId()), "views", response, format, startDate, endDate, after);
+    }
+
+    @GetMapping("/{shortCode}")
+    public void exportLinkViews(@PathVariable String shortCode, Authentication authentication,
+                                HttpServletResponse response,
+                                @RequestParam(defaultValue = "csv") String format,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                                @RequestParam(defaultValue = "0") long after) throws IOException {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        User user = userService.getUserByEmail(authentication.getName());
+        Optional<Link> link = urlShorteningService.getLinkByShortCode(shortCode);
+        // Anonymous links have no owner to export them
+        if (link.isEmpty() || link.get().getUser() == null || !link.get().getUser().getId().equals(user.getId())) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        export(ViewRollupJdbcRepository.Scope.link(link.get().getId()), "views-" + shortCode, response, format,
+                startDate, endDate, after);
+    }
+
+    private void export(ViewRollupJdbcRepository.Scope scope, String fileName, HttpServletResponse response,
+                        String formatName, LocalDateTime startDate, LocalDateTime endDate,
+                        long after) throws IOException {
+        ViewExportService.Format format;
+        try {
+            format = ViewExportService.Format.valueOf(formatName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown export format: " + formatName);
+            return;
+        }
+        // Exports cover all history unless a range is given
+        LocalDateTime start = startDate != null ? startDate : LocalDate.EPOCH.atStartOfDay();
+        LocalDateTime end = endDate != null ? endDate : LocalDateTime.now();
+
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + fileName + "." + format.getExtension() + "\"");
+
+        long rows = viewExportService.export(scope, start, end, after, format, response.getOutputStream());
+        log.info("Exported {} views as {} ({} to {}, after id {})", rows, format, start, end, after);
+    }
+}
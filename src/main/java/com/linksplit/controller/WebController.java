@@ -3,11 +3,14 @@ package com.linksplit.controller;
 import com.linksplit.dto.DashboardStats;
 import com.linksplit.dto.LoginRequest;
 import com.linksplit.dto.RegisterRequest;
+import com.linksplit.dto.UserStats;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
 import com.linksplit.repository.LinkRepository;
 import com.linksplit.repository.LinkViewRepository;
+import com.linksplit.service.LinkCounterService;
 import com.linksplit.service.UserService;
+import com.linksplit.service.UserStatsService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -24,9 +27,9 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Controller
 @RequiredArgsConstructor
@@ -35,6 +38,8 @@ public class WebController {
     private final UserService userService;
     private final LinkRepository linkRepository;
     private final LinkViewRepository linkViewRepository;
+    private final LinkCounterService linkCounterService;
+    private final UserStatsService userStatsService;
 
     @ModelAttribute
     public void addUserInfoToModel(Model model) {
@@ -93,24 +98,25 @@ public class WebController {
         Page<Link> userLinks = linkRepository.findByUserWithCommentsOrderByCreatedAtDesc(
             user, PageRequest.of(page, 10)
         );
+        linkCounterService.applyPending(userLinks.getContent());
         
-        Long totalViews = linkRepository.getTotalViewsByUser(user);
-        BigDecimal totalEarnings = linkRepository.getTotalEarningsByUser(user);
+        List<Link> allUserLinks = linkRepository.findByUser(user);
+        UserStats userStats = userStatsService.getStats(user.getId());
         
         // Calculate today's clicks
         LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
         LocalDateTime endOfDay = startOfDay.plusDays(1);
         Long todayClicks = linkViewRepository.getTodayClicksByLinks(
-            linkRepository.findByUser(user), 
+            allUserLinks, 
             startOfDay, 
             endOfDay
         );
         
         DashboardStats stats = DashboardStats.builder()
             .totalLinks(userLinks.getTotalElements())
-            .totalViews(totalViews != null ? totalViews : 0L)
+            .totalViews(userStats.getTotalViews() + linkCounterService.getPendingViews(allUserLinks))
             .todayClicks(todayClicks != null ? todayClicks : 0L)
-            .totalEarnings(totalEarnings != null ? totalEarnings : BigDecimal.ZERO)
+            .totalEarnings(userStats.getTotalEarnings())
             .build();
         
         model.addAttribute("stats", stats);
@@ -0,0 +1,21 @@
+package com.linksplit.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkLinkResult {
+    // Position of the URL in the uploaded array or NDJSON stream
+    private Long index;
+    private String shortUrl;
+    private String shortCode;
+    private String longUrl;
+    private String error;
+}
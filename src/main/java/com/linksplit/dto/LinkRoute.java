@@ -0,0 +1,19 @@
+package com.linksplit.dto;
+
+import com.linksplit.entity.Link;
+
+/**
+ * What the redirect path needs to know about a link, and all that is kept for it in
+ * the {@code shortUrls} cache. Loaded by a projection that does not touch {@code users}.
+ */
+public record LinkRoute(Long id, String shortCode, String longUrl, Long ownerId, Boolean deleted) {
+
+    public static LinkRoute of(Link link) {
+        return new LinkRoute(link.getId(), link.getShortCode(), link.getLongUrl(),
+                link.getUser() != null ? link.getUser().getId() : null, link.getDeleted());
+    }
+
+    public boolean isDeleted() {
+        return Boolean.TRUE.equals(deleted);
+    }
+}
@@ -0,0 +1,33 @@
+package com.linksplit.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Platform-wide totals for the admin dashboard, as of {@code refreshedAt}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlatformStats {
+    private long totalUsers;
+    private long totalLinks;
+    private long totalViews;
+    private BigDecimal totalEarnings;
+    private List<UserSummary> recentUsers;
+    private List<CreatorSummary> topCreators;
+    private LocalDateTime refreshedAt;
+
+    public record UserSummary(Long id, String email, String role, LocalDateTime createdAt) {
+    }
+
+    public record CreatorSummary(Long id, String email, BigDecimal totalEarnings) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.linksplit.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals for one user across their links and payouts. {@code pending} only counts
+ * payouts that have not been picked up for processing yet.
+ */
+@Value
+@Builder
+public class UserStats {
+    Long userId;
+    long linkCount;
+    long totalViews;
+    BigDecimal totalEarnings;
+    BigDecimal paidOut;
+    BigDecimal pending;
+
+    public static UserStats empty(Long userId) {
+        return UserStats.builder()
+                .userId(userId)
+                .totalEarnings(BigDecimal.ZERO)
+                .paidOut(BigDecimal.ZERO)
+                .pending(BigDecimal.ZERO)
+                .build();
+    }
+}
@@ -5,13 +5,18 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "links")
+@Table(name = "links",
+        indexes = {
+                @Index(name = "idx_links_created_at_id", columnList = "created_at, id"),
+                @Index(name = "idx_links_user_created_at_id", columnList = "user_id, created_at, id")
+        })
 @Data
 @Builder
 @NoArgsConstructor
@@ -39,6 +44,18 @@ public class Link {
     @Builder.Default
     private Long duplicateViewCount = 0L;
 
+    // Views and completed ad views folded in by ViewRollupService; written only by that
+    // job, never through the entity
+    @Column(name = "rolled_up_views", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Long rolledUpViews = 0L;
+
+    @Column(name = "rolled_up_completed_views", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Long rolledUpCompletedViews = 0L;
+
     @Column(name = "estimated_earnings", nullable = false, precision = 10, scale = 4)
     @Builder.Default
     private BigDecimal estimatedEarnings = BigDecimal.ZERO;
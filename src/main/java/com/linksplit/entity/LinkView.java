@@ -13,7 +13,11 @@ import java.time.LocalDateTime;
         uniqueConstraints = @UniqueConstraint(
                 name = "unique_view_per_hour",
                 columnNames = {"link_id", "ip_address", "viewed_at"}
-        ))
+        ),
+        indexes = {
+                @Index(name = "idx_link_views_link_viewed_at", columnList = "link_id, viewed_at"),
+                @Index(name = "idx_link_views_link_id_id", columnList = "link_id, id")
+        })
 @Data
 @Builder
 @NoArgsConstructor
@@ -90,6 +94,18 @@ public class LinkView {
     
     @Column(name = "session_id")
     private String sessionId;
+    
+    // Null until location and device fields have been filled in
+    @Column(name = "enriched_at")
+    private LocalDateTime enrichedAt;
+    
+    // Null until the view has been folded into the hourly rollups
+    @Column(name = "rolled_up_at")
+    private LocalDateTime rolledUpAt;
+    
+    // Null until the visitor IP has been added to the daily visitor sketch
+    @Column(name = "sketched_at")
+    private LocalDateTime sketchedAt;
 
     @PrePersist
     protected void onCreate() {
@@ -0,0 +1,285 @@
+package com.linksplit.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Plain JDBC access to {@code earnings_ledger} and the per-user running totals in
+ * {@code user_balances}. Entries are only ever inserted, and every batch of entries is
+ * added to the balances of its users in the caller's transaction, so a balance always
+ * equals the sum of its user's entries.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EarningsLedgerJdbcRepository {
+    // Same definitions as V13__add_earnings_ledger.sql
+    private static final String CREATE_LEDGER_SQL = "CREATE TABLE IF NOT EXISTS earnings_ledger (" +
+            "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+            "user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE, entry_type VARCHAR(16) NOT NULL, " +
+            "amount DECIMAL(14, 4) NOT NULL, payout_id BIGINT, created_at TIMESTAMP NOT NULL)";
+    private static final String CREATE_LEDGER_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_earnings_ledger_user_id ON earnings_ledger(user_id, id)";
+    private static final String CREATE_BALANCES_SQL = "CREATE TABLE IF NOT EXISTS user_balances (" +
+            "user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE, accrued DECIMAL(14, 4) NOT NULL, " +
+            "held DECIMAL(14, 4) NOT NULL, paid_out DECIMAL(14, 4) NOT NULL, updated_at TIMESTAMP NOT NULL)";
+
+    // Same definition as V14__add_earnings_ledger_opening.sql; holds one row once opened
+    private static final String CREATE_OPENING_SQL = "CREATE TABLE IF NOT EXISTS earnings_ledger_opening (" +
+            "id INT PRIMARY KEY, opened_at TIMESTAMP NOT NULL)";
+    private static final String INSERT_OPENING_SQL = "INSERT INTO earnings_ledger_opening (id, opened_at) VALUES (1, ?)";
+
+    private static final String INSERT_ENTRY_SQL = "INSERT INTO earnings_ledger (user_id, entry_type, amount, " +
+            "payout_id, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String ADD_BALANCE_SQL = "UPDATE user_balances SET accrued = accrued + ?, " +
+            "held = held + ?, paid_out = paid_out + ?, updated_at = ? WHERE user_id = ?";
+    private static final String INSERT_BALANCE_SQL = "INSERT INTO user_balances (user_id, accrued, held, " +
+            "paid_out, updated_at) VALUES (?, 0, 0, 0, ?)";
+    private static final String SELECT_BALANCE_SQL =
+            "SELECT user_id, accrued, held, paid_out FROM user_balances WHERE user_id = ?";
+    private static final String SELECT_BALANCES_IN_RANGE_SQL = "SELECT user_id, accrued, held, paid_out " +
+            "FROM user_balances WHERE user_id > ? AND user_id <= ?";
+    private static final String SELECT_USER_IDS_AFTER_SQL = "SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_BALANCES_AFTER_SQL = "SELECT user_id, accrued, held, paid_out " +
+            "FROM user_balances WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+    // Each entry type's effect on the three totals, summed per user
+    private static final String LEDGER_TOTALS_SQL =
+            "SUM(CASE WHEN entry_type = 'ACCRUAL' THEN amount ELSE 0 END), " +
+            "SUM(CASE WHEN entry_type = 'HOLD' THEN amount WHEN entry_type = 'RELEASE' THEN -amount ELSE 0 END), " +
+            "SUM(CASE WHEN entry_type = 'PAY' THEN amount WHEN entry_type = 'REVERSAL' THEN -amount ELSE 0 END)";
+    private static final String SUM_LEDGER_SQL = "SELECT user_id, " + LEDGER_TOTALS_SQL +
+            " FROM earnings_ledger WHERE user_id > ? AND user_id <= ? GROUP BY user_id";
+    private static final String SUM_LINK_EARNINGS_SQL = "SELECT user_id, SUM(estimated_earnings) FROM links " +
+            "WHERE user_id > ? AND user_id <= ? GROUP BY user_id";
+    private static final String SUM_PAYOUTS_SQL = "SELECT user_id, " +
+            "SUM(CASE WHEN status IN ('PENDING', 'PROCESSING') THEN amount ELSE 0 END), " +
+            "SUM(CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END) " +
+            "FROM payouts WHERE user_id > ? AND user_id <= ? GROUP BY user_id";
+
+    private static final RowMapper<Balance> BALANCE_MAPPER = (rs, rowNum) -> new Balance(rs.getLong(1),
+            rs.getBigDecimal(2), rs.getBigDecimal(3), rs.getBigDecimal(4));
+
+    private final JdbcTemplate jdbcTemplate;
+    // Resolved on first use; the database does not change while the application runs
+    private volatile Boolean postgres;
+
+    /**
+     * Creates the ledger tables when the schema is managed by Hibernate rather than the
+     * migrations.
+     */
+    public void createTablesIfMissing() {
+        jdbcTemplate.execute(CREATE_LEDGER_SQL);
+        jdbcTemplate.execute(CREATE_LEDGER_INDEX_SQL);
+        jdbcTemplate.execute(CREATE_BALANCES_SQL);
+        jdbcTemplate.execute(CREATE_OPENING_SQL);
+    }
+
+    /**
+     * Records the opening of the ledger, returning false when it was already opened.
+     * Must run in the transaction that writes the opening entries: an instance racing
+     * to open waits for it and then finds the row.
+     */
+    public boolean markOpened(LocalDateTime at) {
+        Timestamp timestamp = Timestamp.valueOf(at);
+        if (isPostgres()) {
+            return jdbcTemplate.update(INSERT_OPENING_SQL + " ON CONFLICT (id) DO NOTHING", timestamp) > 0;
+        }
+        if (!jdbcTemplate.queryForList("SELECT id FROM earnings_ledger_opening", Integer.class).isEmpty()) {
+            return false;
+        }
+        try {
+            return jdbcTemplate.update(INSERT_OPENING_SQL, timestamp) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public List<Long> findUserIdsAfter(long afterUserId, int limit) {
+        return jdbcTemplate.queryForList(SELECT_USER_IDS_AFTER_SQL, Long.class, afterUserId, limit);
+    }
+
+    /**
+     * Balances of the users with an id in {@code (afterUserId, throughUserId]}.
+     */
+    public Map<Long, Balance> findBalances(long afterUserId, long throughUserId) {
+        Map<Long, Balance> balances = new HashMap<>();
+        for (Balance balance : jdbcTemplate.query(SELECT_BALANCES_IN_RANGE_SQL, BALANCE_MAPPER, afterUserId,
+                throughUserId)) {
+            balances.put(balance.userId(), balance);
+        }
+        return balances;
+    }
+
+    /**
+     * Inserts the entries and adds them to their users' balances, creating balances
+     * that do not exist yet. Balance rows are updated in user id order so concurrent
+     * writers never deadlock on each other. Runs in the caller's transaction.
+     */
+    public void append(List<Entry> entries, LocalDateTime at) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.valueOf(at);
+
+        List<Object[]> entryArgs = new ArrayList<>(entries.size());
+        Map<Long, BigDecimal[]> totals = new TreeMap<>();
+        for (Entry entry : entries) {
+            entryArgs.add(new Object[]{entry.userId(), entry.type().name(), entry.amount(), entry.payoutId(),
+                    timestamp});
+            BigDecimal[] userTotals = totals.computeIfAbsent(entry.userId(),
+                    id -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+            EntryType type = entry.type();
+            userTotals[0] = userTotals[0].add(entry.amount().multiply(BigDecimal.valueOf(type.accruedSign)));
+            userTotals[1] = userTotals[1].add(entry.amount().multiply(BigDecimal.valueOf(type.heldSign)));
+            userTotals[2] = userTotals[2].add(entry.amount().multiply(BigDecimal.valueOf(type.paidOutSign)));
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, entryArgs);
+
+        List<Object[]> balanceArgs = new ArrayList<>(totals.size());
+        totals.forEach((userId, userTotals) -> balanceArgs.add(new Object[]{userTotals[0], userTotals[1],
+                userTotals[2], timestamp, userId}));
+        int[] updated = jdbcTemplate.batchUpdate(ADD_BALANCE_SQL, balanceArgs);
+
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(balanceArgs.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Object[] args : missing) {
+                openBalance((Long) args[4], timestamp);
+            }
+            jdbcTemplate.batchUpdate(ADD_BALANCE_SQL, missing);
+        }
+    }
+
+    public Optional<Balance> findBalance(long userId) {
+        return jdbcTemplate.query(SELECT_BALANCE_SQL, BALANCE_MAPPER, userId).stream().findFirst();
+    }
+
+    /**
+     * Reads the user's balance, creating an empty one if needed, and locks it until the
+     * current transaction ends.
+     */
+    public Balance lockBalance(long userId) {
+        openBalance(userId, Timestamp.valueOf(LocalDateTime.now()));
+        return jdbcTemplate.queryForObject(SELECT_BALANCE_SQL + " FOR UPDATE", BALANCE_MAPPER, userId);
+    }
+
+    /**
+     * Up to {@code limit} balances of users with an id above {@code afterUserId}, in
+     * user id order.
+     */
+    public List<Balance> findBalancesAfter(long afterUserId, int limit) {
+        return jdbcTemplate.query(SELECT_BALANCES_AFTER_SQL, BALANCE_MAPPER, afterUserId, limit);
+    }
+
+    /**
+     * The totals of the ledger entries of the users with an id in
+     * {@code (afterUserId, throughUserId]}, recomputed from the entries.
+     */
+    public Map<Long, Balance> sumLedger(long afterUserId, long throughUserId) {
+        Map<Long, Balance> totals = new HashMap<>();
+        jdbcTemplate.query(SUM_LEDGER_SQL, rs -> {
+            Balance balance = BALANCE_MAPPER.mapRow(rs, 0);
+            totals.put(balance.userId(), balance);
+        }, afterUserId, throughUserId);
+        return totals;
+    }
+
+    /**
+     * What the ledger totals of the users with an id in {@code (afterUserId,
+     * throughUserId]} should be according to their links and payouts: the sum of their
+     * links' estimated earnings, and their open and completed payout amounts.
+     */
+    public Map<Long, Balance> sumSources(long afterUserId, long throughUserId) {
+        Map<Long, BigDecimal> earnings = new HashMap<>();
+        jdbcTemplate.query(SUM_LINK_EARNINGS_SQL, rs -> {
+            earnings.put(rs.getLong(1), rs.getBigDecimal(2));
+        }, afterUserId, throughUserId);
+
+        Map<Long, Balance> totals = new HashMap<>();
+        jdbcTemplate.query(SUM_PAYOUTS_SQL, rs -> {
+            long userId = rs.getLong(1);
+            totals.put(userId, new Balance(userId, earnings.getOrDefault(userId, BigDecimal.ZERO),
+                    rs.getBigDecimal(2), rs.getBigDecimal(3)));
+        }, afterUserId, throughUserId);
+        earnings.forEach((userId, earned) -> totals.putIfAbsent(userId,
+                new Balance(userId, earned, BigDecimal.ZERO, BigDecimal.ZERO)));
+        return totals;
+    }
+
+    private void openBalance(long userId, Timestamp timestamp) {
+        if (isPostgres()) {
+            jdbcTemplate.update(INSERT_BALANCE_SQL + " ON CONFLICT (user_id) DO NOTHING", userId, timestamp);
+            return;
+        }
+        if (findBalance(userId).isPresent()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_BALANCE_SQL, userId, timestamp);
+        } catch (DuplicateKeyException e) {
+            // Another transaction created it first
+        }
+    }
+
+    // A failed insert would abort the whole transaction on PostgreSQL, so there the
+    // conflict is skipped instead of caught
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String productName = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equals(productName);
+            postgres = result;
+        }
+        return result;
+    }
+
+    /**
+     * How an entry moves money between a user's totals. Amounts are positive except
+     * for accruals, which are negative when earnings go down (rate cuts, deleted links).
+     */
+    public enum EntryType {
+        ACCRUAL(1, 0, 0),  // link earnings changed
+        HOLD(0, 1, 0),     // payout requested, or reopened
+        RELEASE(0, -1, 0), // payout no longer pending or processing
+        PAY(0, 0, 1),      // payout completed
+        REVERSAL(0, 0, -1); // completed payout moved back out of completed
+
+        private final int accruedSign;
+        private final int heldSign;
+        private final int paidOutSign;
+
+        EntryType(int accruedSign, int heldSign, int paidOutSign) {
+            this.accruedSign = accruedSign;
+            this.heldSign = heldSign;
+            this.paidOutSign = paidOutSign;
+        }
+    }
+
+    public record Entry(long userId, EntryType type, BigDecimal amount, Long payoutId) {
+    }
+
+    public record Balance(long userId, BigDecimal accrued, BigDecimal held, BigDecimal paidOut) {
+        public BigDecimal available() {
+            return accrued.subtract(held).subtract(paidOut);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.linksplit.repository;
+
+import com.linksplit.config.AppConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Plain JDBC access to {@code links} for batched inserts, grouped counter updates,
+ * short-code scans and the admin link browser, and to the {@code short_code_seq} id
+ * sequence.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LinkJdbcRepository {
+    // Earnings are recomputed from the new view count with the owner's custom rates
+    // (falling back to the configured defaults), matching RevenueService.calculateEarnings
+    private static final String APPLY_DELTAS_SQL = "UPDATE links SET view_count = view_count + ?, " +
+            "duplicate_view_count = duplicate_view_count + ?, " +
+            "estimated_earnings = ROUND((view_count + ?) " +
+            "* COALESCE((SELECT u.custom_cpm_rate FROM users u WHERE u.id = links.user_id), ?) " +
+            "* COALESCE((SELECT u.custom_revenue_share FROM users u WHERE u.id = links.user_id), ?) " +
+            "/ 1000, 4) " +
+            "WHERE id = ?";
+    // Read before and after the deltas are applied, for the earnings change of each link;
+    // the first read locks the rows, in id order like the update
+    private static final String LOCK_EARNINGS_SQL =
+            "SELECT id, user_id, estimated_earnings FROM links WHERE id IN (%s) ORDER BY id FOR UPDATE";
+    private static final String SELECT_EARNINGS_SQL = "SELECT id, estimated_earnings FROM links WHERE id IN (%s)";
+    // The same formula over the stored view count; only links not already holding the
+    // right amount are returned, so a run only writes links whose views or rates changed
+    private static final String EARNINGS_SQL = "ROUND(view_count " +
+            "* COALESCE((SELECT u.custom_cpm_rate FROM users u WHERE u.id = links.user_id), ?) " +
+            "* COALESCE((SELECT u.custom_revenue_share FROM users u WHERE u.id = links.user_id), ?) " +
+            "/ 1000, 4)";
+    private static final String LOCK_STALE_EARNINGS_SQL = "SELECT id, user_id, estimated_earnings, " + EARNINGS_SQL +
+            " FROM links WHERE id > ? AND id <= ? AND estimated_earnings <> " + EARNINGS_SQL + " FOR UPDATE";
+    private static final String LOCK_STALE_EARNINGS_BY_ID_SQL = "SELECT id, user_id, estimated_earnings, " +
+            EARNINGS_SQL + " FROM links WHERE id IN (%s) AND estimated_earnings <> " + EARNINGS_SQL +
+            " ORDER BY id FOR UPDATE";
+    // Counts only; the earnings they imply are settled later with lockStaleEarnings
+    private static final String ADD_COUNTS_SQL = "UPDATE links SET view_count = view_count + ?, " +
+            "duplicate_view_count = duplicate_view_count + ? WHERE id = ?";
+    private static final String UPDATE_EARNINGS_SQL = "UPDATE links SET estimated_earnings = ? WHERE id = ?";
+    // Ids per IN list
+    private static final int ID_CHUNK_SIZE = 1000;
+    private static final String INSERT_LINK_SQL = "INSERT INTO links (user_id, short_code, long_url, " +
+            "view_count, duplicate_view_count, estimated_earnings, deleted, created_at, updated_at) " +
+            "VALUES (?, ?, ?, 0, 0, 0, false, ?, ?)";
+    private static final String SELECT_SHORT_CODES_SQL =
+            "SELECT id, short_code FROM links WHERE id > ? ORDER BY id LIMIT ?";
+    // Newest first, resuming below the last (created_at, id) shown; the owner's email is
+    // joined in so no user entities are loaded
+    private static final String SELECT_ADMIN_LINKS_SQL = "SELECT l.id, l.short_code, l.long_url, l.user_id, " +
+            "u.email, l.view_count, l.duplicate_view_count, l.estimated_earnings, l.created_at " +
+            "FROM links l LEFT JOIN users u ON u.id = l.user_id%s " +
+            "ORDER BY l.created_at DESC, l.id DESC LIMIT ?";
+    private static final String COUNT_ADMIN_LINKS_SQL =
+            "SELECT COUNT(*) FROM links l LEFT JOIN users u ON u.id = l.user_id%s";
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+
+    // Each nextval hands out a block of this many ids; must match INCREMENT BY in
+    // V6__add_short_code_sequence.sql
+    public static final int SHORT_CODE_BLOCK_SIZE = 1000;
+    private static final String CREATE_SHORT_CODE_SEQUENCE_SQL = "CREATE SEQUENCE IF NOT EXISTS short_code_seq " +
+            "START WITH 0 MINVALUE 0 INCREMENT BY " + SHORT_CODE_BLOCK_SIZE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppConfig appConfig;
+    // Resolved on first use; the database does not change while the application runs
+    private volatile Boolean postgres;
+
+    /**
+     * Inserts the links with one batched statement, all stamped with {@code createdAt}.
+     * Runs in the caller's transaction.
+     */
+    public void insertLinks(List<NewLink> links, LocalDateTime createdAt) {
+        if (links.isEmpty()) {
+            return;
+        }
+
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        List<Object[]> args = new ArrayList<>(links.size());
+        for (NewLink link : links) {
+            args.add(new Object[]{link.userId(), link.shortCode(), link.longUrl(), timestamp, timestamp});
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_LINK_SQL, args);
+    }
+
+    /**
+     * Adds the given per-link view and duplicate-view deltas and refreshes each link's
+     * estimated earnings, using one batched statement for all links. Returns the
+     * earnings change of every link whose earnings changed. Runs in the caller's
+     * transaction, which holds the links' row locks from the first read on.
+     */
+    public List<EarningsChange> applyCounterDeltas(Collection<CounterDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+
+        BigDecimal defaultCpm = BigDecimal.valueOf(appConfig.getCpmRate());
+        BigDecimal defaultShare = BigDecimal.valueOf(appConfig.getRevenueShare());
+
+        // Update rows in id order so concurrent writers never deadlock on each other
+        List<CounterDelta> ordered = new ArrayList<>(deltas);
+        ordered.sort(Comparator.comparingLong(CounterDelta::linkId));
+        List<Long> linkIds = ordered.stream().map(CounterDelta::linkId).collect(Collectors.toList());
+
+        Map<Long, EarningsChange> before = new HashMap<>();
+        queryByIds(LOCK_EARNINGS_SQL, linkIds, rs -> {
+            long linkId = rs.getLong(1);
+            before.put(linkId, new EarningsChange(linkId, rs.getObject(2, Long.class), rs.getBigDecimal(3), null));
+        });
+
+        List<Object[]> args = new ArrayList<>(ordered.size());
+        for (CounterDelta delta : ordered) {
+            args.add(new Object[]{delta.views(), delta.duplicates(), delta.views(),
+                    defaultCpm, defaultShare, delta.linkId()});
+        }
+        jdbcTemplate.batchUpdate(APPLY_DELTAS_SQL, args);
+
+        List<EarningsChange> changes = new ArrayList<>();
+        queryByIds(SELECT_EARNINGS_SQL, linkIds, rs -> {
+            EarningsChange old = before.get(rs.getLong(1));
+            BigDecimal earnings = rs.getBigDecimal(2);
+            if (old != null && old.oldEarnings().compareTo(earnings) != 0) {
+                changes.add(new EarningsChange(old.linkId(), old.userId(), old.oldEarnings(), earnings));
+            }
+        });
+        return changes;
+    }
+
+    /**
+     * Locks the links with an id in {@code (afterId, throughId]} whose estimated
+     * earnings differ from what their stored view counts and owners' current rates
+     * give, and returns them with the recomputed amount. Runs in the caller's
+     * transaction.
+     */
+    public List<EarningsChange> lockStaleEarnings(long afterId, long throughId) {
+        BigDecimal defaultCpm = BigDecimal.valueOf(appConfig.getCpmRate());
+        BigDecimal defaultShare = BigDecimal.valueOf(appConfig.getRevenueShare());
+        return jdbcTemplate.query(LOCK_STALE_EARNINGS_SQL, (rs, rowNum) -> new EarningsChange(rs.getLong(1),
+                rs.getObject(2, Long.class), rs.getBigDecimal(3), rs.getBigDecimal(4)),
+                defaultCpm, defaultShare, afterId, throughId, defaultCpm, defaultShare);
+    }
+
+    /**
+     * Like {@link #lockStaleEarnings(long, long)}, for the given links. Runs in the
+     * caller's transaction.
+     */
+    public List<EarningsChange> lockStaleEarnings(Collection<Long> linkIds) {
+        BigDecimal defaultCpm = BigDecimal.valueOf(appConfig.getCpmRate());
+        BigDecimal defaultShare = BigDecimal.valueOf(appConfig.getRevenueShare());
+        List<Long> ordered = new ArrayList<>(linkIds);
+        Collections.sort(ordered);
+
+        List<EarningsChange> changes = new ArrayList<>();
+        for (int from = 0; from < ordered.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ordered.subList(from, Math.min(ordered.size(), from + ID_CHUNK_SIZE));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            List<Object> args = new ArrayList<>(chunk.size() + 4);
+            args.add(defaultCpm);
+            args.add(defaultShare);
+            args.addAll(chunk);
+            args.add(defaultCpm);
+            args.add(defaultShare);
+            changes.addAll(jdbcTemplate.query(String.format(LOCK_STALE_EARNINGS_BY_ID_SQL, placeholders),
+                    (rs, rowNum) -> new EarningsChange(rs.getLong(1), rs.getObject(2, Long.class),
+                            rs.getBigDecimal(3), rs.getBigDecimal(4)),
+                    args.toArray()));
+        }
+        return changes;
+    }
+
+    /**
+     * Adds the given per-link view and duplicate-view deltas without touching
+     * estimated earnings, using one batched statement for all links. Runs in the
+     * caller's transaction.
+     */
+    public void addCounts(Collection<CounterDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // Id order, as in applyCounterDeltas, so concurrent writers never deadlock
+        List<CounterDelta> ordered = new ArrayList<>(deltas);
+        ordered.sort(Comparator.comparingLong(CounterDelta::linkId));
+        List<Object[]> args = new ArrayList<>(ordered.size());
+        for (CounterDelta delta : ordered) {
+            args.add(new Object[]{delta.views(), delta.duplicates(), delta.linkId()});
+        }
+        jdbcTemplate.batchUpdate(ADD_COUNTS_SQL, args);
+    }
+
+    /**
+     * Writes the new earnings of the given links with one batched statement.
+     */
+    public void updateEarnings(List<EarningsChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(changes.size());
+        for (EarningsChange change : changes) {
+            args.add(new Object[]{change.newEarnings(), change.linkId()});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_EARNINGS_SQL, args);
+    }
+
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM links", Long.class);
+        return maxId != null ? maxId : 0;
+    }
+
+    /**
+     * Passes the short code of every link with an id above {@code afterId} to the
+     * consumer, reading in id-ordered pages of {@code pageSize} rows. Returns the
+     * highest id seen, or {@code afterId} when there were none.
+     */
+    public long forEachShortCode(long afterId, int pageSize, Consumer<String> consumer) {
+        long lastId = afterId;
+        while (true) {
+            long[] pageLastId = {lastId};
+            int[] rows = {0};
+            jdbcTemplate.query(SELECT_SHORT_CODES_SQL, rs -> {
+                pageLastId[0] = rs.getLong(1);
+                consumer.accept(rs.getString(2));
+                rows[0]++;
+            }, lastId, pageSize);
+            lastId = pageLastId[0];
+            if (rows[0] < pageSize) {
+                return lastId;
+            }
+        }
+    }
+
+    /**
+     * Up to {@code limit} links matching {@code search} (all links when null), newest
+     * first, starting after {@code before} (from the newest when null).
+     */
+    public List<AdminLinkRow> findAdminLinks(LinkSearch search, LinkCursor before, int limit) {
+        List<String> conditions = new ArrayList<>(2);
+        List<Object> args = new ArrayList<>(4);
+        addSearchCondition(search, conditions, args);
+        if (before != null) {
+            conditions.add("(l.created_at, l.id) < (?, ?)");
+            args.add(Timestamp.valueOf(before.createdAt()));
+            args.add(before.id());
+        }
+        args.add(limit);
+
+        return jdbcTemplate.query(String.format(SELECT_ADMIN_LINKS_SQL, where(conditions)), (rs, rowNum) ->
+                new AdminLinkRow(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getObject(4, Long.class),
+                        rs.getString(5), rs.getLong(6), rs.getLong(7), rs.getBigDecimal(8),
+                        rs.getTimestamp(9).toLocalDateTime()),
+                args.toArray());
+    }
+
+    /**
+     * Roughly how many links match {@code search} (all links when null). On PostgreSQL
+     * this is the planner's row estimate, so it costs no scan but can be off by the
+     * drift since the table was last analyzed; elsewhere the rows are counted.
+     */
+    public long estimateAdminLinkCount(LinkSearch search) {
+        List<String> conditions = new ArrayList<>(1);
+        List<Object> args = new ArrayList<>(1);
+        addSearchCondition(search, conditions, args);
+        String countSql = String.format(COUNT_ADMIN_LINKS_SQL, where(conditions));
+
+        if (!isPostgres()) {
+            Long count = jdbcTemplate.queryForObject(countSql, Long.class, args.toArray());
+            return count != null ? count : 0;
+        }
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + countSql.replace("COUNT(*)", "1"),
+                String.class, args.toArray());
+        // The first node is the top of the plan, whose rows are the matches
+        Matcher matcher = PLAN_ROWS.matcher(plan != null ? plan : "");
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    /**
+     * Creates {@code short_code_seq} when the schema is managed by Hibernate rather
+     * than the migrations.
+     */
+    public void createShortCodeSequenceIfMissing() {
+        jdbcTemplate.execute(CREATE_SHORT_CODE_SEQUENCE_SQL);
+    }
+
+    /**
+     * Reserves the next block of {@link #SHORT_CODE_BLOCK_SIZE} short-code ids and
+     * returns its first id. Blocks are never handed out twice, even across instances.
+     */
+    public long leaseShortCodeBlock() {
+        String sql = isPostgres()
+                ? "SELECT nextval('short_code_seq')"
+                : "SELECT NEXT VALUE FOR short_code_seq";
+        Long start = jdbcTemplate.queryForObject(sql, Long.class);
+        if (start == null) {
+            throw new IllegalStateException("short_code_seq returned no value");
+        }
+        return start;
+    }
+
+    private void queryByIds(String sql, List<Long> ids, RowCallbackHandler handler) {
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + ID_CHUNK_SIZE));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(String.format(sql, placeholders), handler, chunk.toArray());
+        }
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String productName = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equals(productName);
+            postgres = result;
+        }
+        return result;
+    }
+
+    // Each search is a prefix or substring LIKE served by its own index (see
+    // V12__add_admin_link_search_indexes.sql)
+    private static void addSearchCondition(LinkSearch search, List<String> conditions, List<Object> args) {
+        if (search == null) {
+            return;
+        }
+        String term = escapeLike(search.term());
+        switch (search.field()) {
+            case SHORT_CODE -> {
+                conditions.add("l.short_code LIKE ?");
+                args.add(term + "%");
+            }
+            case URL -> {
+                conditions.add("l.long_url ILIKE ?");
+                args.add("%" + term + "%");
+            }
+            case OWNER_EMAIL -> {
+                conditions.add("LOWER(u.email) LIKE ?");
+                args.add(term.toLowerCase(Locale.ROOT) + "%");
+            }
+        }
+    }
+
+    private static String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    // Backslash is the default LIKE escape character in both PostgreSQL and H2
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public record NewLink(Long userId, String shortCode, String longUrl) {
+    }
+
+    public record CounterDelta(long linkId, long views, long duplicates) {
+    }
+
+    /**
+     * A link's estimated earnings before and after a change; {@code userId} is null for
+     * anonymous links.
+     */
+    public record EarningsChange(long linkId, Long userId, BigDecimal oldEarnings, BigDecimal newEarnings) {
+
+        /**
+         * Net earnings change per owner, leaving out anonymous links.
+         */
+        public static Map<Long, BigDecimal> byUser(Collection<EarningsChange> changes) {
+            Map<Long, BigDecimal> deltas = new HashMap<>();
+            for (EarningsChange change : changes) {
+                if (change.userId() != null) {
+                    deltas.merge(change.userId(), change.newEarnings().subtract(change.oldEarnings()),
+                            BigDecimal::add);
+                }
+            }
+            return deltas;
+        }
+    }
+
+    public record LinkSearch(Field field, String term) {
+        public enum Field {
+            SHORT_CODE, // prefix, case-sensitive like the codes themselves
+            URL,        // substring, case-insensitive
+            OWNER_EMAIL // prefix, case-insensitive
+        }
+    }
+
+    public record LinkCursor(LocalDateTime createdAt, long id) {
+    }
+
+    public record AdminLinkRow(long id, String shortCode, String longUrl, Long userId, String userEmail,
+                               long viewCount, long duplicateViewCount, BigDecimal estimatedEarnings,
+                               LocalDateTime createdAt) {
+    }
+}
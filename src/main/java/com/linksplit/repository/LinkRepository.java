@@ -1,5 +1,6 @@
 package com.linksplit.repository;
 
+import com.linksplit.dto.LinkRoute;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
 import org.springframework.data.domain.Page;
@@ -19,6 +20,11 @@ import java.util.Optional;
 public interface LinkRepository extends JpaRepository<Link, Long> {
     Optional<Link> findByShortCode(String shortCode);
     
+    // l.user.id resolves to the user_id column, so no join with users
+    @Query("SELECT new com.linksplit.dto.LinkRoute(l.id, l.shortCode, l.longUrl, l.user.id, l.deleted) " +
+           "FROM Link l WHERE l.shortCode = :shortCode")
+    Optional<LinkRoute> findRouteByShortCode(@Param("shortCode") String shortCode);
+    
     Page<Link> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
     
     @EntityGraph(attributePaths = {"comments"})
@@ -45,6 +51,20 @@ public interface LinkRepository extends JpaRepository<Link, Long> {
     @Query("UPDATE Link l SET l.estimatedEarnings = :earnings WHERE l.id = :linkId")
     void updateEarnings(@Param("linkId") Long linkId, @Param("earnings") BigDecimal earnings);
     
+    // Projection, so the counters are read from the database rather than from entities
+    // already in the persistence context
+    @Query("SELECT l.id, l.rolledUpViews, l.rolledUpCompletedViews FROM Link l WHERE l.id IN :linkIds")
+    List<Object[]> findRolledUpViewCounts(@Param("linkIds") List<Long> linkIds);
+    
+    // One row: link count, total views and total earnings across the platform
+    @Query("SELECT COUNT(l), COALESCE(SUM(l.viewCount), 0), COALESCE(SUM(l.estimatedEarnings), 0) FROM Link l")
+    List<Object[]> getPlatformTotals();
+    
+    // Grouped on links alone; callers load the few users they need
+    @Query("SELECT l.user.id, SUM(l.estimatedEarnings) FROM Link l WHERE l.user IS NOT NULL GROUP BY l.user.id " +
+           "ORDER BY SUM(l.estimatedEarnings) DESC")
+    List<Object[]> findTopUserIdsByEarnings(Pageable pageable);
+    
     boolean existsByShortCode(String shortCode);
     
     long countByUser(User user);
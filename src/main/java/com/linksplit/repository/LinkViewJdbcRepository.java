@@ -0,0 +1,327 @@
+package com.linksplit.repository;
+
+import com.linksplit.entity.LinkView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Plain JDBC access to {@code link_views} for paths where going through the JPA
+ * persistence context costs more than it buys (batched ingestion, background
+ * enrichment, streaming raw views into the dashboard aggregator or an export).
+ */
+@Repository
+@RequiredArgsConstructor
+public class LinkViewJdbcRepository {
+    private static final String INSERT_PREFIX = "INSERT INTO link_views (link_id, viewed_at, ip_address, user_agent, " +
+            "country, city, region, latitude, longitude, device_type, browser, operating_system, " +
+            "referrer, time_to_skip, ad_completed, enriched_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // PostgreSQL allows at most 32767 bind parameters per statement (16 per row)
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String SELECT_UNENRICHED_SQL = "SELECT id, ip_address, user_agent, country FROM link_views " +
+            "WHERE enriched_at IS NULL ORDER BY id LIMIT ?";
+    private static final String APPLY_ENRICHMENT_SQL = "UPDATE link_views SET country = ?, city = ?, region = ?, " +
+            "latitude = ?, longitude = ?, device_type = ?, browser = ?, operating_system = ?, enriched_at = ? " +
+            "WHERE id = ?";
+    private static final String MARK_ENRICHED_SQL = "UPDATE link_views SET enriched_at = ? WHERE id = ?";
+
+    private static final String STREAM_NOT_ROLLED_UP_SQL = "SELECT viewed_at, ad_completed, time_to_skip, country, " +
+            "city, device_type, browser, operating_system, utm_source, referrer, user_agent FROM link_views " +
+            "WHERE %s AND viewed_at BETWEEN ? AND ? AND (rolled_up_at IS NULL OR viewed_at < ? OR viewed_at >= ?)";
+    private static final String SELECT_EXPORT_SQL = "SELECT lv.id, l.short_code, lv.viewed_at, lv.ip_address, " +
+            "lv.user_agent, lv.country, lv.city, lv.region, lv.device_type, lv.browser, lv.operating_system, " +
+            "lv.referrer, lv.utm_source, lv.utm_medium, lv.utm_campaign, lv.time_to_skip, lv.ad_completed " +
+            "FROM link_views lv JOIN links l ON l.id = lv.link_id " +
+            "WHERE %s AND lv.viewed_at BETWEEN ? AND ? AND lv.id > ? ORDER BY lv.id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the given views using multi-row INSERT statements. Each view must
+     * reference a link with a non-null id.
+     */
+    public int insertAll(List<LinkView> views) {
+        int inserted = 0;
+        for (int from = 0; from < views.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<LinkView> chunk = views.subList(from, Math.min(views.size(), from + MAX_ROWS_PER_STATEMENT));
+            inserted += jdbcTemplate.update(buildInsert(chunk.size()), ps -> bindRows(ps, chunk));
+        }
+        return inserted;
+    }
+
+    private String buildInsert(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+
+    private void bindRows(PreparedStatement ps, List<LinkView> views) throws SQLException {
+        int idx = 1;
+        for (LinkView view : views) {
+            ps.setLong(idx++, view.getLink().getId());
+            ps.setTimestamp(idx++, Timestamp.valueOf(view.getViewedAt()));
+            ps.setString(idx++, view.getIpAddress());
+            ps.setString(idx++, view.getUserAgent());
+            ps.setString(idx++, view.getCountry());
+            ps.setString(idx++, view.getCity());
+            ps.setString(idx++, view.getRegion());
+            ps.setObject(idx++, view.getLatitude(), Types.DOUBLE);
+            ps.setObject(idx++, view.getLongitude(), Types.DOUBLE);
+            ps.setString(idx++, view.getDeviceType());
+            ps.setString(idx++, view.getBrowser());
+            ps.setString(idx++, view.getOperatingSystem());
+            ps.setString(idx++, view.getReferrer());
+            ps.setObject(idx++, view.getTimeToSkip(), Types.INTEGER);
+            ps.setObject(idx++, view.getAdCompleted(), Types.BOOLEAN);
+            ps.setTimestamp(idx++, view.getEnrichedAt() != null ? Timestamp.valueOf(view.getEnrichedAt()) : null);
+        }
+    }
+
+    /**
+     * Raw views, oldest first. Selected by their missing {@code enriched_at} rather
+     * than by id, so a view whose insert commits after higher ids have been enriched
+     * is still found on a later run.
+     */
+    public List<RawView> findUnenriched(int limit) {
+        return jdbcTemplate.query(SELECT_UNENRICHED_SQL,
+                (rs, rowNum) -> new RawView(rs.getLong("id"), rs.getString("ip_address"),
+                        rs.getString("user_agent"), rs.getString("country") != null),
+                limit);
+    }
+
+    /**
+     * Writes location and device fields for enriched views and stamps rows that
+     * were already enriched, using one batch per kind.
+     */
+    public void applyEnrichment(List<LinkView> enriched, List<Long> alreadyEnrichedIds, LocalDateTime enrichedAt) {
+        Timestamp stamp = Timestamp.valueOf(enrichedAt);
+        if (!enriched.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPLY_ENRICHMENT_SQL, enriched, enriched.size(), (ps, view) -> {
+                ps.setString(1, view.getCountry());
+                ps.setString(2, view.getCity());
+                ps.setString(3, view.getRegion());
+                ps.setObject(4, view.getLatitude(), Types.DOUBLE);
+                ps.setObject(5, view.getLongitude(), Types.DOUBLE);
+                ps.setString(6, view.getDeviceType());
+                ps.setString(7, view.getBrowser());
+                ps.setString(8, view.getOperatingSystem());
+                ps.setTimestamp(9, stamp);
+                ps.setLong(10, view.getId());
+            });
+        }
+        if (!alreadyEnrichedIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(MARK_ENRICHED_SQL, alreadyEnrichedIds, alreadyEnrichedIds.size(), (ps, id) -> {
+                ps.setTimestamp(1, stamp);
+                ps.setLong(2, id);
+            });
+        }
+    }
+
+    /**
+     * Streams the views in scope in {@code [start, end]} that are not covered by the
+     * hourly rollups, which hold every stamped view for the hours in
+     * {@code [rolledUpFrom, rolledUpTo)}. Rows are read with a forward-only
+     * cursor of the given fetch size and handed over in column chunks of at most
+     * {@code chunkSize} rows, so memory does not grow with the number of views. Must
+     * run inside a transaction for the PostgreSQL driver to honour the fetch size.
+     */
+    public void streamViewsNotRolledUp(ViewRollupJdbcRepository.Scope scope, LocalDateTime start, LocalDateTime end,
+                                       LocalDateTime rolledUpFrom, LocalDateTime rolledUpTo,
+                                       int chunkSize, int fetchSize, Consumer<ViewChunk> consumer) {
+        String sql = String.format(STREAM_NOT_ROLLED_UP_SQL, scope.condition());
+        ViewChunk.Builder chunk = new ViewChunk.Builder(chunkSize);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, scope.id());
+            ps.setTimestamp(2, Timestamp.valueOf(start));
+            ps.setTimestamp(3, Timestamp.valueOf(end));
+            ps.setTimestamp(4, Timestamp.valueOf(rolledUpFrom));
+            ps.setTimestamp(5, Timestamp.valueOf(rolledUpTo));
+            return ps;
+        }, rs -> {
+            chunk.add(rs);
+            if (chunk.isFull()) {
+                consumer.accept(chunk.build());
+            }
+        });
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk.build());
+        }
+    }
+
+    /**
+     * Up to {@code limit} views in scope in {@code [start, end]} with an id above
+     * {@code afterId}, in id order, so an export reads one page per short query and
+     * resumes from the last id it delivered.
+     */
+    public List<ExportedView> findViewsForExport(ViewRollupJdbcRepository.Scope scope, LocalDateTime start,
+                                                 LocalDateTime end, long afterId, int limit) {
+        return jdbcTemplate.query(String.format(SELECT_EXPORT_SQL, scope.condition()), (rs, rowNum) ->
+                new ExportedView(rs.getLong(1), rs.getString(2), rs.getTimestamp(3).toLocalDateTime(),
+                        rs.getString(4), rs.getString(5), rs.getString(6), rs.getString(7), rs.getString(8),
+                        rs.getString(9), rs.getString(10), rs.getString(11), rs.getString(12), rs.getString(13),
+                        rs.getString(14), rs.getString(15), rs.getObject(16, Integer.class),
+                        rs.getObject(17, Boolean.class)),
+                scope.id(), Timestamp.valueOf(start), Timestamp.valueOf(end), afterId, limit);
+    }
+
+    public long countUnenriched() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM link_views WHERE enriched_at IS NULL", Long.class);
+        return count != null ? count : 0;
+    }
+
+    public LocalDateTime findOldestUnenrichedViewedAt() {
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(viewed_at) FROM link_views WHERE enriched_at IS NULL", Timestamp.class);
+        return oldest != null ? oldest.toLocalDateTime() : null;
+    }
+
+    /**
+     * A view still missing location/device data. {@code hasLocation} marks rows
+     * written before deferred enrichment, which only need stamping.
+     */
+    public record RawView(long id, String ipAddress, String userAgent, boolean hasLocation) {
+    }
+
+    /**
+     * One exported view with the short code of its link.
+     */
+    public record ExportedView(long id, String shortCode, LocalDateTime viewedAt, String ipAddress, String userAgent,
+                               String country, String city, String region, String deviceType, String browser,
+                               String operatingSystem, String referrer, String utmSource, String utmMedium,
+                               String utmCampaign, Integer timeToSkip, Boolean adCompleted) {
+    }
+
+    /**
+     * Raw views stored column by column: one array per field, with row {@code i} at
+     * index {@code i} of each. Hours are numbered since the epoch, as in
+     * {@link #hourNumber}; a null time to skip is stored as -1.
+     */
+    public record ViewChunk(int size, long[] hours, boolean[] completed, int[] timeToSkip, String[] countries,
+                            String[] cities, String[] deviceTypes, String[] browsers, String[] operatingSystems,
+                            String[] utmSources, String[] referrers, String[] userAgents) {
+
+        public static long hourNumber(LocalDateTime time) {
+            return time.truncatedTo(ChronoUnit.HOURS).toEpochSecond(ZoneOffset.UTC) / 3600;
+        }
+
+        public static LocalDateTime hourOf(long hourNumber) {
+            return LocalDateTime.ofEpochSecond(hourNumber * 3600, 0, ZoneOffset.UTC);
+        }
+
+        public static ViewChunk of(List<LinkView> views) {
+            Builder builder = new Builder(views.size());
+            views.forEach(builder::add);
+            return builder.build();
+        }
+
+        static final class Builder {
+            private final int capacity;
+            private int size;
+            private long[] hours;
+            private boolean[] completed;
+            private int[] timeToSkip;
+            private String[] countries;
+            private String[] cities;
+            private String[] deviceTypes;
+            private String[] browsers;
+            private String[] operatingSystems;
+            private String[] utmSources;
+            private String[] referrers;
+            private String[] userAgents;
+
+            Builder(int capacity) {
+                this.capacity = Math.max(1, capacity);
+                allocate();
+            }
+
+            void add(ResultSet rs) throws SQLException {
+                int timeToSkip = rs.getInt("time_to_skip");
+                if (rs.wasNull()) {
+                    timeToSkip = -1;
+                }
+                add(rs.getTimestamp("viewed_at").toLocalDateTime(), rs.getBoolean("ad_completed"),
+                        timeToSkip, rs.getString("country"), rs.getString("city"),
+                        rs.getString("device_type"), rs.getString("browser"), rs.getString("operating_system"),
+                        rs.getString("utm_source"), rs.getString("referrer"), rs.getString("user_agent"));
+            }
+
+            void add(LinkView view) {
+                add(view.getViewedAt(), Boolean.TRUE.equals(view.getAdCompleted()),
+                        view.getTimeToSkip() != null ? view.getTimeToSkip() : -1, view.getCountry(), view.getCity(),
+                        view.getDeviceType(), view.getBrowser(), view.getOperatingSystem(), view.getUtmSource(),
+                        view.getReferrer(), view.getUserAgent());
+            }
+
+            private void add(LocalDateTime viewedAt, boolean adCompleted, int skip, String country, String city,
+                             String deviceType, String browser, String operatingSystem, String utmSource,
+                             String referrer, String userAgent) {
+                hours[size] = hourNumber(viewedAt);
+                completed[size] = adCompleted;
+                timeToSkip[size] = skip;
+                countries[size] = country;
+                cities[size] = city;
+                deviceTypes[size] = deviceType;
+                browsers[size] = browser;
+                operatingSystems[size] = operatingSystem;
+                utmSources[size] = utmSource;
+                referrers[size] = referrer;
+                userAgents[size] = userAgent;
+                size++;
+            }
+
+            boolean isFull() {
+                return size == capacity;
+            }
+
+            boolean isEmpty() {
+                return size == 0;
+            }
+
+            // Hands the arrays over and starts a new set, so chunks can be processed
+            // while the next one is read
+            ViewChunk build() {
+                ViewChunk chunk = new ViewChunk(size, hours, completed, timeToSkip, countries, cities, deviceTypes,
+                        browsers, operatingSystems, utmSources, referrers, userAgents);
+                allocate();
+                return chunk;
+            }
+
+            private void allocate() {
+                size = 0;
+                hours = new long[capacity];
+                completed = new boolean[capacity];
+                timeToSkip = new int[capacity];
+                countries = new String[capacity];
+                cities = new String[capacity];
+                deviceTypes = new String[capacity];
+                browsers = new String[capacity];
+                operatingSystems = new String[capacity];
+                utmSources = new String[capacity];
+                referrers = new String[capacity];
+                userAgents = new String[capacity];
+            }
+        }
+    }
+}
@@ -33,13 +33,86 @@ public interface LinkViewRepository extends JpaRepository<LinkView, Long> {
     
     List<LinkView> findByLinkAndViewedAtBetween(Link link, LocalDateTime start, LocalDateTime end);
     
+    // Distinct visitor IPs in [start, end] that are not in the daily visitor sketches,
+    // which hold every stamped view for the days in [sketchedFrom, sketchedTo)
+    @Query("SELECT DISTINCT lv.ipAddress FROM LinkView lv WHERE lv.link IN :links " +
+           "AND lv.viewedAt BETWEEN :start AND :end AND lv.ipAddress IS NOT NULL " +
+           "AND (lv.sketchedAt IS NULL OR lv.viewedAt < :sketchedFrom OR lv.viewedAt >= :sketchedTo)")
+    List<String> findIpAddressesNotSketched(@Param("links") List<Link> links,
+                                            @Param("start") LocalDateTime start,
+                                            @Param("end") LocalDateTime end,
+                                            @Param("sketchedFrom") LocalDateTime sketchedFrom,
+                                            @Param("sketchedTo") LocalDateTime sketchedTo);
+    
+    // Views and completed views per link among views not yet in the rollups
+    @Query("SELECT lv.link.id, COUNT(lv), SUM(CASE WHEN lv.adCompleted = true THEN 1 ELSE 0 END) " +
+           "FROM LinkView lv WHERE lv.link IN :links AND lv.rolledUpAt IS NULL GROUP BY lv.link.id")
+    List<Object[]> getCompletionCountsNotRolledUp(@Param("links") List<Link> links);
+    
+    @Query("SELECT COUNT(DISTINCT lv.ipAddress) FROM LinkView lv WHERE lv.link IN :links " +
+           "AND lv.viewedAt BETWEEN :start AND :end")
+    Long countDistinctIpAddresses(@Param("links") List<Link> links,
+                                  @Param("start") LocalDateTime start,
+                                  @Param("end") LocalDateTime end);
+    
+    // Grouped projections over [start, end] for the push-down dashboard engine. Each
+    // returns one row per distinct value, with the view count last
+    
+    @Query("SELECT YEAR(lv.viewedAt), MONTH(lv.viewedAt), DAY(lv.viewedAt), HOUR(lv.viewedAt), COUNT(lv), " +
+           "SUM(CASE WHEN lv.adCompleted = true THEN 1 ELSE 0 END), SUM(lv.timeToSkip), COUNT(lv.timeToSkip) " +
+           "FROM LinkView lv WHERE lv.link IN :links AND lv.viewedAt BETWEEN :start AND :end " +
+           "GROUP BY YEAR(lv.viewedAt), MONTH(lv.viewedAt), DAY(lv.viewedAt), HOUR(lv.viewedAt)")
+    List<Object[]> getHourlyStatistics(@Param("links") List<Link> links,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
+    
     @Query("SELECT lv.country, COUNT(lv) FROM LinkView lv WHERE lv.link IN :links " +
-           "GROUP BY lv.country ORDER BY COUNT(lv) DESC")
-    List<Object[]> getCountryStatistics(@Param("links") List<Link> links);
+           "AND lv.viewedAt BETWEEN :start AND :end GROUP BY lv.country")
+    List<Object[]> getCountryStatistics(@Param("links") List<Link> links,
+                                        @Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end);
+    
+    @Query("SELECT lv.country, lv.city, MIN(lv.latitude), MIN(lv.longitude), COUNT(lv), COUNT(DISTINCT lv.ipAddress) " +
+           "FROM LinkView lv WHERE lv.link IN :links AND lv.viewedAt BETWEEN :start AND :end " +
+           "GROUP BY lv.country, lv.city")
+    List<Object[]> getLocationStatistics(@Param("links") List<Link> links,
+                                         @Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end);
+    
+    @Query("SELECT lv.country, lv.city, COUNT(lv) FROM LinkView lv WHERE lv.link IN :links " +
+           "AND lv.viewedAt BETWEEN :start AND :end AND lv.city IS NOT NULL GROUP BY lv.country, lv.city")
+    List<Object[]> getCityStatistics(@Param("links") List<Link> links,
+                                     @Param("start") LocalDateTime start,
+                                     @Param("end") LocalDateTime end);
+    
+    @Query("SELECT lv.deviceType, COUNT(lv) FROM LinkView lv WHERE lv.link IN :links " +
+           "AND lv.viewedAt BETWEEN :start AND :end GROUP BY lv.deviceType")
+    List<Object[]> getDeviceStatistics(@Param("links") List<Link> links,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
     
     @Query("SELECT lv.browser, COUNT(lv) FROM LinkView lv WHERE lv.link IN :links " +
-           "GROUP BY lv.browser ORDER BY COUNT(lv) DESC")
-    List<Object[]> getBrowserStatistics(@Param("links") List<Link> links);
+           "AND lv.viewedAt BETWEEN :start AND :end GROUP BY lv.browser")
+    List<Object[]> getBrowserStatistics(@Param("links") List<Link> links,
+                                        @Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end);
+    
+    @Query("SELECT lv.operatingSystem, COUNT(lv) FROM LinkView lv WHERE lv.link IN :links " +
+           "AND lv.viewedAt BETWEEN :start AND :end GROUP BY lv.operatingSystem")
+    List<Object[]> getOperatingSystemStatistics(@Param("links") List<Link> links,
+                                                @Param("start") LocalDateTime start,
+                                                @Param("end") LocalDateTime end);
+    
+    // The user agent only decides the source when there is neither a UTM source nor a
+    // referrer, so it is grouped on only then
+    @Query("SELECT lv.utmSource, lv.referrer, " +
+           "CASE WHEN lv.utmSource IS NULL AND (lv.referrer IS NULL OR lv.referrer = '') THEN lv.userAgent END, " +
+           "COUNT(lv) FROM LinkView lv WHERE lv.link IN :links AND lv.viewedAt BETWEEN :start AND :end " +
+           "GROUP BY lv.utmSource, lv.referrer, " +
+           "CASE WHEN lv.utmSource IS NULL AND (lv.referrer IS NULL OR lv.referrer = '') THEN lv.userAgent END")
+    List<Object[]> getTrafficSourceStatistics(@Param("links") List<Link> links,
+                                              @Param("start") LocalDateTime start,
+                                              @Param("end") LocalDateTime end);
     
     @Query("SELECT COUNT(lv) FROM LinkView lv WHERE lv.link IN :links " +
            "AND lv.viewedAt >= :startOfDay AND lv.viewedAt < :endOfDay")
@@ -20,12 +20,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Page<User> findAllByOrderByCreatedAtDesc(Pageable pageable);
     
-    @Query("SELECT u, SUM(l.estimatedEarnings) as totalEarnings " +
-           "FROM User u LEFT JOIN u.links l " +
-           "GROUP BY u " +
-           "ORDER BY totalEarnings DESC")
-    List<Object[]> findTopCreatorsByEarnings(Pageable pageable);
-
     @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.links WHERE u IN :users")
     List<User> findWithLinks(List<User> users);
 }
\ No newline at end of file
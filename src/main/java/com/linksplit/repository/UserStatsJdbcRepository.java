@@ -0,0 +1,67 @@
+package com.linksplit.repository;
+
+import com.linksplit.dto.UserStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-user link and payout totals for a batch of users, read with one grouped query
+ * instead of a count and two sums per user.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserStatsJdbcRepository {
+    // Both sides are grouped before the join, so a user's links are never multiplied
+    // by their payouts; each IN list is answered from the user_id indexes
+    private static final String SELECT_STATS_SQL = "SELECT u.id, " +
+            "COALESCE(l.link_count, 0), COALESCE(l.total_views, 0), COALESCE(l.total_earnings, 0), " +
+            "COALESCE(p.paid_out, 0), COALESCE(p.pending, 0) " +
+            "FROM users u " +
+            "LEFT JOIN (SELECT user_id, COUNT(*) AS link_count, SUM(view_count) AS total_views, " +
+            "SUM(estimated_earnings) AS total_earnings " +
+            "FROM links WHERE user_id IN (%1$s) GROUP BY user_id) l ON l.user_id = u.id " +
+            "LEFT JOIN (SELECT user_id, " +
+            "SUM(CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END) AS paid_out, " +
+            "SUM(CASE WHEN status = 'PENDING' THEN amount ELSE 0 END) AS pending " +
+            "FROM payouts WHERE user_id IN (%1$s) GROUP BY user_id) p ON p.user_id = u.id " +
+            "WHERE u.id IN (%1$s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Totals for each of the given users that exists; users without links or payouts
+     * get zero totals.
+     */
+    public Map<Long, UserStats> findStats(Collection<? extends Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Object> args = new ArrayList<>(userIds.size() * 3);
+        for (int i = 0; i < 3; i++) {
+            args.addAll(userIds);
+        }
+
+        Map<Long, UserStats> stats = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(userIds.size(), "?"));
+        jdbcTemplate.query(String.format(SELECT_STATS_SQL, placeholders), rs -> {
+            long userId = rs.getLong(1);
+            stats.put(userId, UserStats.builder()
+                    .userId(userId)
+                    .linkCount(rs.getLong(2))
+                    .totalViews(rs.getLong(3))
+                    .totalEarnings(rs.getBigDecimal(4))
+                    .paidOut(rs.getBigDecimal(5))
+                    .pending(rs.getBigDecimal(6))
+                    .build());
+        }, args.toArray());
+        return stats;
+    }
+}
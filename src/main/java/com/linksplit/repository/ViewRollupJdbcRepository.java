@@ -0,0 +1,380 @@
+package com.linksplit.repository;
+
+import com.linksplit.entity.LinkView;
+import com.linksplit.util.HyperLogLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Plain JDBC access to the hourly view rollups: {@code link_view_hourly} holds view,
+ * completion and time-to-skip totals per (link, hour), and
+ * {@code link_view_hourly_dimensions} holds view counts per (link, hour, dimension,
+ * value). All-time totals per link are kept in the {@code rolled_up_*} columns of
+ * {@code links}, and {@code link_view_daily_visitors} holds a {@link HyperLogLog}
+ * sketch of the visitor IPs per (link, day). Views are stamped in
+ * {@code link_views.rolled_up_at} and {@code link_views.sketched_at} as they are
+ * folded in.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ViewRollupJdbcRepository {
+    // Same definitions as V7__add_view_rollups.sql
+    private static final String CREATE_HOURLY_SQL = "CREATE TABLE IF NOT EXISTS link_view_hourly (" +
+            "link_id BIGINT NOT NULL, hour_bucket TIMESTAMP NOT NULL, views BIGINT NOT NULL, " +
+            "completed_views BIGINT NOT NULL, time_to_skip_total BIGINT NOT NULL, " +
+            "time_to_skip_count BIGINT NOT NULL, PRIMARY KEY (link_id, hour_bucket))";
+    private static final String CREATE_DIMENSIONS_SQL = "CREATE TABLE IF NOT EXISTS link_view_hourly_dimensions (" +
+            "link_id BIGINT NOT NULL, hour_bucket TIMESTAMP NOT NULL, dimension VARCHAR(16) NOT NULL, " +
+            "dimension_value VARCHAR(255) NOT NULL, views BIGINT NOT NULL, " +
+            "PRIMARY KEY (link_id, hour_bucket, dimension, dimension_value))";
+    // Same definition as V10__add_daily_visitor_sketches.sql
+    private static final String CREATE_VISITORS_SQL = "CREATE TABLE IF NOT EXISTS link_view_daily_visitors (" +
+            "link_id BIGINT NOT NULL, view_date DATE NOT NULL, sketch BYTEA NOT NULL, " +
+            "PRIMARY KEY (link_id, view_date))";
+
+    // Formatted with the stamp column of a Stamp
+    private static final String SELECT_UNSTAMPED_SQL = "SELECT id, link_id, viewed_at, ip_address, user_agent, " +
+            "country, city, device_type, browser, operating_system, referrer, utm_source, time_to_skip, ad_completed, " +
+            "enriched_at FROM link_views WHERE %s IS NULL AND enriched_at IS NOT NULL ORDER BY id LIMIT ?";
+    private static final String STAMP_SQL = "UPDATE link_views SET %s = ? WHERE id = ?";
+    private static final String STAMP_THROUGH_SQL = "UPDATE link_views SET %1$s = ? WHERE id <= ? AND %1$s IS NULL";
+
+    private static final String ADD_HOURLY_SQL = "UPDATE link_view_hourly SET views = views + ?, " +
+            "completed_views = completed_views + ?, time_to_skip_total = time_to_skip_total + ?, " +
+            "time_to_skip_count = time_to_skip_count + ? WHERE link_id = ? AND hour_bucket = ?";
+    private static final String INSERT_HOURLY_SQL = "INSERT INTO link_view_hourly (views, completed_views, " +
+            "time_to_skip_total, time_to_skip_count, link_id, hour_bucket) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String ADD_DIMENSION_SQL = "UPDATE link_view_hourly_dimensions SET views = views + ? " +
+            "WHERE link_id = ? AND hour_bucket = ? AND dimension = ? AND dimension_value = ?";
+    private static final String INSERT_DIMENSION_SQL = "INSERT INTO link_view_hourly_dimensions (views, link_id, " +
+            "hour_bucket, dimension, dimension_value) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String ADD_LINK_TOTALS_SQL = "UPDATE links SET rolled_up_views = rolled_up_views + ?, " +
+            "rolled_up_completed_views = rolled_up_completed_views + ? WHERE id = ?";
+
+    private static final String UPDATE_VISITORS_SQL = "UPDATE link_view_daily_visitors SET sketch = ? " +
+            "WHERE link_id = ? AND view_date = ?";
+    private static final String INSERT_VISITORS_SQL = "INSERT INTO link_view_daily_visitors (sketch, link_id, " +
+            "view_date) VALUES (?, ?, ?)";
+    private static final String SELECT_VISITORS_SQL = "SELECT link_id, view_date, sketch FROM link_view_daily_visitors " +
+            "WHERE link_id IN (%s) AND view_date >= ? AND view_date <= ?";
+    private static final String SCOPE_VISITORS_SQL = "SELECT sketch FROM link_view_daily_visitors " +
+            "WHERE %s AND view_date >= ? AND view_date < ?";
+
+    private static final String SUM_HOURLY_SQL = "SELECT hour_bucket, SUM(views), SUM(completed_views), " +
+            "SUM(time_to_skip_total), SUM(time_to_skip_count) FROM link_view_hourly " +
+            "WHERE %s AND hour_bucket >= ? AND hour_bucket < ? GROUP BY hour_bucket";
+    private static final String SUM_DIMENSIONS_SQL = "SELECT dimension, dimension_value, SUM(views) " +
+            "FROM link_view_hourly_dimensions WHERE %s AND hour_bucket >= ? AND hour_bucket < ? " +
+            "GROUP BY dimension, dimension_value";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the rollup tables when the schema is managed by Hibernate rather than
+     * the migrations.
+     */
+    public void createTablesIfMissing() {
+        jdbcTemplate.execute(CREATE_HOURLY_SQL);
+        jdbcTemplate.execute(CREATE_DIMENSIONS_SQL);
+        jdbcTemplate.execute(CREATE_VISITORS_SQL);
+    }
+
+    /**
+     * Makes sure the job has a watermark row, so {@link #lockWatermark} always finds one.
+     */
+    public void createWatermarkIfMissing(String jobName) {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM job_watermarks WHERE job_name = ?", Integer.class, jobName);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO job_watermarks (job_name, last_id, updated_at) VALUES (?, 0, ?)",
+                    jobName, Timestamp.valueOf(LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            // Another instance created it first
+        }
+    }
+
+    /**
+     * Reads the job's watermark and locks its row until the current transaction ends,
+     * so only one instance rolls up at a time.
+     */
+    public long lockWatermark(String jobName) {
+        Long lastId = jdbcTemplate.queryForObject(
+                "SELECT last_id FROM job_watermarks WHERE job_name = ? FOR UPDATE", Long.class, jobName);
+        return lastId != null ? lastId : 0;
+    }
+
+    public void saveWatermark(String jobName, long lastId, LocalDateTime updatedAt) {
+        jdbcTemplate.update("UPDATE job_watermarks SET last_id = ?, updated_at = ? WHERE job_name = ?",
+                lastId, Timestamp.valueOf(updatedAt), jobName);
+    }
+
+    /**
+     * Enriched views without the given stamp, oldest first, with the fields the
+     * rollups are keyed by. Only {@code id}, {@code viewedAt}, {@code enrichedAt} and
+     * the link id are guaranteed to be set. Selected by the missing stamp rather than
+     * by id, so a view whose insert commits after higher ids have been stamped is
+     * still found on a later run.
+     */
+    public List<SourceView> findUnstamped(Stamp stamp, int limit) {
+        return jdbcTemplate.query(String.format(SELECT_UNSTAMPED_SQL, stamp.column()),
+                ViewRollupJdbcRepository::mapSourceView, limit);
+    }
+
+    private static SourceView mapSourceView(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp enrichedAt = rs.getTimestamp("enriched_at");
+        LinkView view = LinkView.builder()
+                .id(rs.getLong("id"))
+                .viewedAt(rs.getTimestamp("viewed_at").toLocalDateTime())
+                .ipAddress(rs.getString("ip_address"))
+                .userAgent(rs.getString("user_agent"))
+                .country(rs.getString("country"))
+                .city(rs.getString("city"))
+                .deviceType(rs.getString("device_type"))
+                .browser(rs.getString("browser"))
+                .operatingSystem(rs.getString("operating_system"))
+                .referrer(rs.getString("referrer"))
+                .utmSource(rs.getString("utm_source"))
+                .timeToSkip(rs.getObject("time_to_skip", Integer.class))
+                .adCompleted(rs.getObject("ad_completed", Boolean.class))
+                .enrichedAt(enrichedAt != null ? enrichedAt.toLocalDateTime() : null)
+                .build();
+        return new SourceView(rs.getLong("link_id"), view);
+    }
+
+    /**
+     * Stamps the given views. Must commit in the same transaction as the totals or
+     * sketches they were folded into.
+     */
+    public void stamp(Stamp stamp, List<Long> viewIds, LocalDateTime stampedAt) {
+        Timestamp value = Timestamp.valueOf(stampedAt);
+        jdbcTemplate.batchUpdate(String.format(STAMP_SQL, stamp.column()), viewIds, viewIds.size(), (ps, id) -> {
+            ps.setTimestamp(1, value);
+            ps.setLong(2, id);
+        });
+    }
+
+    /**
+     * Stamps every unstamped view up to {@code lastId}, for views an id watermark
+     * covered before views were stamped individually. Returns how many were stamped.
+     */
+    public int stampThrough(Stamp stamp, long lastId, LocalDateTime stampedAt) {
+        return jdbcTemplate.update(String.format(STAMP_THROUGH_SQL, stamp.column()),
+                Timestamp.valueOf(stampedAt), lastId);
+    }
+
+    /**
+     * Adds the given totals to the hourly rows, creating rows that do not exist yet.
+     * Callers must hold the watermark lock, which keeps the update-then-insert free of
+     * races.
+     */
+    public void addHourly(Map<HourKey, HourTotals> totals) {
+        List<Object[]> args = new ArrayList<>(totals.size());
+        totals.forEach((key, value) -> args.add(new Object[]{value.views(), value.completedViews(),
+                value.timeToSkipTotal(), value.timeToSkipCount(), key.linkId(), Timestamp.valueOf(key.hour())}));
+        upsert(ADD_HOURLY_SQL, INSERT_HOURLY_SQL, args);
+    }
+
+    /**
+     * Dimension counterpart of {@link #addHourly}.
+     */
+    public void addDimensions(Map<DimensionKey, Long> totals) {
+        List<Object[]> args = new ArrayList<>(totals.size());
+        totals.forEach((key, views) -> args.add(new Object[]{views, key.linkId(), Timestamp.valueOf(key.hour()),
+                key.dimension(), key.value()}));
+        upsert(ADD_DIMENSION_SQL, INSERT_DIMENSION_SQL, args);
+    }
+
+    /**
+     * Adds view and completion totals to the per-link counters on {@code links}.
+     */
+    public void addLinkTotals(Map<Long, HourTotals> totals) {
+        // Update rows in id order so concurrent writers never deadlock on each other
+        List<Object[]> args = new ArrayList<>(totals.size());
+        totals.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> args.add(new Object[]{entry.getValue().views(), entry.getValue().completedViews(),
+                        entry.getKey()}));
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_LINK_TOTALS_SQL, args);
+        }
+    }
+
+    /**
+     * Stored visitor sketches for the given (link, day) keys; keys without one are
+     * absent from the result.
+     */
+    public Map<DayKey, HyperLogLog> findVisitorSketches(Collection<DayKey> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> linkIds = keys.stream().map(DayKey::linkId).distinct().collect(Collectors.toList());
+        LocalDate from = keys.stream().map(DayKey::day).min(LocalDate::compareTo).orElseThrow();
+        LocalDate to = keys.stream().map(DayKey::day).max(LocalDate::compareTo).orElseThrow();
+        List<Object> args = new ArrayList<>(linkIds);
+        args.add(Date.valueOf(from));
+        args.add(Date.valueOf(to));
+
+        // Fetches the bounding box of the keys and drops the rows that were not asked for
+        Map<DayKey, HyperLogLog> sketches = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(linkIds.size(), "?"));
+        jdbcTemplate.query(String.format(SELECT_VISITORS_SQL, placeholders), rs -> {
+            DayKey key = new DayKey(rs.getLong(1), rs.getDate(2).toLocalDate());
+            if (keys.contains(key)) {
+                sketches.put(key, HyperLogLog.fromBytes(rs.getBytes(3)));
+            }
+        }, args.toArray());
+        return sketches;
+    }
+
+    /**
+     * Stores the given sketches, replacing any stored for the same (link, day). Callers
+     * must hold the watermark lock of the sketch job.
+     */
+    public void saveVisitorSketches(Map<DayKey, HyperLogLog> sketches) {
+        List<Object[]> args = new ArrayList<>(sketches.size());
+        sketches.forEach((key, sketch) -> args.add(new Object[]{sketch.toBytes(), key.linkId(),
+                Date.valueOf(key.day())}));
+        upsert(UPDATE_VISITORS_SQL, INSERT_VISITORS_SQL, args);
+    }
+
+    /**
+     * Merges the visitor sketches of the days in {@code [fromDay, toDay)} for the links
+     * in scope into {@code target}, one row at a time.
+     */
+    public void mergeVisitorSketches(Scope scope, LocalDate fromDay, LocalDate toDay, HyperLogLog target) {
+        jdbcTemplate.query(String.format(SCOPE_VISITORS_SQL, scope.condition()),
+                rs -> {
+                    target.merge(HyperLogLog.fromBytes(rs.getBytes(1)));
+                },
+                scope.id(), Date.valueOf(fromDay), Date.valueOf(toDay));
+    }
+
+    // The UPDATE and INSERT take the same parameters in the same order
+    private void upsert(String updateSql, String insertSql, List<Object[]> args) {
+        if (args.isEmpty()) {
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate(updateSql, args);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(args.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(insertSql, missing);
+        }
+    }
+
+    /**
+     * Hourly totals in {@code [from, to)} for the links in scope, summed across links.
+     */
+    public List<HourlyTotal> sumHourly(Scope scope, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(String.format(SUM_HOURLY_SQL, scope.condition()),
+                (rs, rowNum) -> new HourlyTotal(rs.getTimestamp(1).toLocalDateTime(),
+                        new HourTotals(rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5))),
+                scope.id(), Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Views per dimension value in {@code [from, to)} for the links in scope.
+     */
+    public List<DimensionTotal> sumDimensions(Scope scope, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(String.format(SUM_DIMENSIONS_SQL, scope.condition()),
+                (rs, rowNum) -> new DimensionTotal(rs.getString(1), rs.getString(2), rs.getLong(3)),
+                scope.id(), Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Which links a rollup query covers: all links of one user, or a single link.
+     */
+    public static final class Scope {
+        private final String condition;
+        private final long id;
+
+        private Scope(String condition, long id) {
+            this.condition = condition;
+            this.id = id;
+        }
+
+        public static Scope user(long userId) {
+            return new Scope("link_id IN (SELECT id FROM links WHERE user_id = ?)", userId);
+        }
+
+        public static Scope link(long linkId) {
+            return new Scope("link_id = ?", linkId);
+        }
+
+        String condition() {
+            return condition;
+        }
+
+        long id() {
+            return id;
+        }
+    }
+
+    /**
+     * The {@code link_views} column that marks a view as folded into the rollups or
+     * into the daily visitor sketches.
+     */
+    public enum Stamp {
+        ROLLED_UP("rolled_up_at"),
+        SKETCHED("sketched_at");
+
+        private final String column;
+
+        Stamp(String column) {
+            this.column = column;
+        }
+
+        String column() {
+            return column;
+        }
+    }
+
+    public record SourceView(long linkId, LinkView view) {
+    }
+
+    public record HourKey(long linkId, LocalDateTime hour) {
+    }
+
+    public record DayKey(long linkId, LocalDate day) {
+    }
+
+    public record DimensionKey(long linkId, LocalDateTime hour, String dimension, String value) {
+    }
+
+    public record HourTotals(long views, long completedViews, long timeToSkipTotal, long timeToSkipCount) {
+        public HourTotals plus(HourTotals other) {
+            return new HourTotals(views + other.views, completedViews + other.completedViews,
+                    timeToSkipTotal + other.timeToSkipTotal, timeToSkipCount + other.timeToSkipCount);
+        }
+    }
+
+    public record HourlyTotal(LocalDateTime hour, HourTotals totals) {
+    }
+
+    public record DimensionTotal(String dimension, String value, long views) {
+    }
+}
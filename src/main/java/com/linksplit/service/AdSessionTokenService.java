@@ -0,0 +1,190 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Issues and redeems the token that ties an ad completion to the ad page it was shown
+ * on, without any server-side session.
+ * <p>
+ * A token is {@code base64url(payload) + "." + base64url(HMAC-SHA256(payload))}, where
+ * the payload carries the short code, issue time, a random nonce and the original
+ * referrer. Redeeming checks the signature, the short code, that the token is younger
+ * than {@code app.ad-session.ttl-minutes} and that the countdown could have finished,
+ * then burns the nonce so the token cannot be replayed on this instance.
+ * <p>
+ * Burned nonces only need to be remembered until their token expires, so they are
+ * kept in two generations that rotate every TTL.
+ */
+@Service
+@Slf4j
+public class AdSessionTokenService {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MAX_REFERRER_LENGTH = 1024;
+    // Allowance for the client's countdown timer finishing slightly early
+    private static final long COUNTDOWN_TOLERANCE_MILLIS = 1000;
+
+    private final AppConfig appConfig;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> macs;
+
+    // Guarded by this; one check-and-add per completed ad
+    private Set<Long> currentNonces = new HashSet<>();
+    private Set<Long> previousNonces = new HashSet<>();
+    private long generationStartedAt;
+
+    @Autowired
+    public AdSessionTokenService(AppConfig appConfig) {
+        this(appConfig, System::currentTimeMillis);
+    }
+
+    AdSessionTokenService(AppConfig appConfig, LongSupplier clock) {
+        this.appConfig = appConfig;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void init() {
+        String secret = appConfig.getAdSession().getSecret();
+        // A per-instance key would reject every token redeemed on another instance
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("app.ad-session.secret is not set; set AD_SESSION_SECRET to a long random "
+                    + "secret, the same on every instance");
+        }
+        key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 unavailable", e);
+            }
+        });
+        synchronized (this) {
+            generationStartedAt = clock.getAsLong();
+        }
+    }
+
+    public AdSession newSession(String shortCode, String referrer) {
+        if (referrer != null && referrer.length() > MAX_REFERRER_LENGTH) {
+            referrer = referrer.substring(0, MAX_REFERRER_LENGTH);
+        }
+        return new AdSession(shortCode, referrer, clock.getAsLong(), random.nextLong());
+    }
+
+    public String sign(AdSession session) {
+        String payload = session.shortCode() + '\n' + session.issuedAtMillis() + '\n'
+                + Long.toHexString(session.nonce()) + '\n'
+                + (session.referrer() != null ? session.referrer() : "");
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + '.' + encoder.encodeToString(macs.get().doFinal(payloadBytes));
+    }
+
+    /**
+     * Verifies the token for the given short code and burns its nonce. Empty when the
+     * token is malformed, forged, for another link, expired, redeemed before the
+     * countdown could have ended, or already used.
+     */
+    public Optional<AdSession> redeem(String token, String shortCode) {
+        Optional<AdSession> session = verify(token);
+        if (session.isEmpty()) {
+            return Optional.empty();
+        }
+
+        AdSession adSession = session.get();
+        long now = clock.getAsLong();
+        long ttlMillis = appConfig.getAdSession().getTtlMinutes() * 60_000L;
+        long earliestCompletion = adSession.issuedAtMillis()
+                + appConfig.getAdDisplaySeconds() * 1000L - COUNTDOWN_TOLERANCE_MILLIS;
+
+        if (!adSession.shortCode().equals(shortCode)) {
+            log.warn("Ad token for {} presented for {}", adSession.shortCode(), shortCode);
+            return Optional.empty();
+        }
+        if (now - adSession.issuedAtMillis() > ttlMillis) {
+            log.debug("Expired ad token for {}", shortCode);
+            return Optional.empty();
+        }
+        if (now < earliestCompletion) {
+            log.warn("Ad token for {} redeemed {} ms before the countdown could end", shortCode, earliestCompletion - now);
+            return Optional.empty();
+        }
+        if (!burnNonce(adSession.nonce(), now, ttlMillis)) {
+            log.warn("Replayed ad token for {}", shortCode);
+            return Optional.empty();
+        }
+        return session;
+    }
+
+    private Optional<AdSession> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return Optional.empty();
+        }
+
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payloadBytes = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, macs.get().doFinal(payloadBytes))) {
+                return Optional.empty();
+            }
+
+            String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split("\n", 4);
+            if (fields.length != 4) {
+                return Optional.empty();
+            }
+            return Optional.of(new AdSession(fields[0], fields[3].isEmpty() ? null : fields[3],
+                    Long.parseLong(fields[1]), Long.parseUnsignedLong(fields[2], 16)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private synchronized boolean burnNonce(long nonce, long now, long ttlMillis) {
+        if (now - generationStartedAt >= ttlMillis) {
+            previousNonces = currentNonces;
+            currentNonces = new HashSet<>();
+            generationStartedAt = now;
+        }
+        return !previousNonces.contains(nonce) && currentNonces.add(nonce);
+    }
+
+    synchronized int getRememberedNonceCount() {
+        return currentNonces.size() + previousNonces.size();
+    }
+
+    /**
+     * One ad page view. {@link #visitId()} is a short identifier for it that is safe to
+     * expose to the page, e.g. for heatmap tracking.
+     */
+    public record AdSession(String shortCode, String referrer, long issuedAtMillis, long nonce) {
+        public String visitId() {
+            return Long.toHexString(nonce);
+        }
+    }
+}
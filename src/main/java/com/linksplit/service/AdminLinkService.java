@@ -0,0 +1,45 @@
+package com.linksplit.service;
+
+import com.linksplit.repository.LinkJdbcRepository;
+import com.linksplit.repository.LinkJdbcRepository.AdminLinkRow;
+import com.linksplit.repository.LinkJdbcRepository.LinkCursor;
+import com.linksplit.repository.LinkJdbcRepository.LinkSearch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Pages of links for the admin link browser, newest first. Pages are keyed on the
+ * (created_at, id) of the last link shown rather than an offset, so every page costs
+ * the same index range read however deep it is, and links created meanwhile do not
+ * shift later pages. The total is the planner's estimate, not a count.
+ */
+@Service
+@RequiredArgsConstructor
+public class AdminLinkService {
+    static final int MAX_PAGE_SIZE = 200;
+
+    private final LinkJdbcRepository linkJdbcRepository;
+
+    public LinkPage getPage(LinkSearch search, LinkCursor before, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // One extra row tells whether there is a next page
+        List<AdminLinkRow> rows = linkJdbcRepository.findAdminLinks(search, before, limit + 1);
+
+        LinkCursor next = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            AdminLinkRow last = rows.get(limit - 1);
+            next = new LinkCursor(last.createdAt(), last.id());
+        }
+        return new LinkPage(rows, next, linkJdbcRepository.estimateAdminLinkCount(search));
+    }
+
+    /**
+     * @param next             where the following page starts, or null on the last page
+     * @param approximateTotal estimated number of matching links across all pages
+     */
+    public record LinkPage(List<AdminLinkRow> links, LinkCursor next, long approximateTotal) {
+    }
+}
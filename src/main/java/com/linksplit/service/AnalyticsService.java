@@ -1,10 +1,14 @@
 package com.linksplit.service;
 
 import com.linksplit.config.AppConfig;
+import com.linksplit.dto.LinkRoute;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.LinkView;
+import com.linksplit.repository.LinkJdbcRepository;
 import com.linksplit.repository.LinkRepository;
 import com.linksplit.repository.LinkViewRepository;
+import com.linksplit.util.EarningsRate;
+import com.linksplit.util.UserAgentParser;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,20 +17,24 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AnalyticsService {
     private final LinkRepository linkRepository;
+    private final LinkJdbcRepository linkJdbcRepository;
     private final LinkViewRepository linkViewRepository;
     private final ViewLimitService viewLimitService;
     private final GeoLocationService geoLocationService;
     private final AppConfig appConfig;
     private final RevenueService revenueService;
+    private final ViewIngestionService viewIngestionService;
+    private final LinkCounterService linkCounterService;
+    private final ViewEnrichmentService viewEnrichmentService;
+    
+    private volatile EarningsRate defaultRate;
 
     @Transactional
     public boolean recordView(Link link, HttpServletRequest request) {
@@ -40,6 +48,11 @@ public class AnalyticsService {
     
     @Transactional
     public boolean recordView(Link link, HttpServletRequest request, Integer timeToSkip, String originalReferrer) {
+        return recordView(LinkRoute.of(link), request, timeToSkip, originalReferrer);
+    }
+    
+    @Transactional
+    public boolean recordView(LinkRoute link, HttpServletRequest request, Integer timeToSkip, String originalReferrer) {
         String ipAddress = extractIpAddress(request);
         String userAgent = request.getHeader("User-Agent");
         
@@ -48,94 +61,97 @@ public class AnalyticsService {
         
         if (limitResult != ViewLimitService.LimitType.ALLOWED) {
             log.info("View blocked for IP {}: {}", ipAddress, limitResult.getMessage());
-            linkRepository.incrementDuplicateViewCount(link.getId());
+            linkCounterService.recordDuplicate(link.id());
             
             // Store the limit message in request for display
             request.setAttribute("rateLimitMessage", limitResult.getMessage());
             return false;
         }
         
+        String referrer = originalReferrer != null ? originalReferrer : request.getHeader("Referer");
+        
+        if (viewIngestionService.isEnabled()) {
+            // Enrichment and persistence happen on the ingestion writers
+            ViewEvent event = new ViewEvent(link.id(), link.shortCode(), ipAddress, userAgent,
+                    referrer, timeToSkip, LocalDateTime.now());
+            if (!viewIngestionService.submit(event)) {
+                request.setAttribute("rateLimitMessage", "Server busy, view not recorded");
+                return false;
+            }
+            return true;
+        }
+        
         try {
-            // Get geographic location from IP
-            GeoLocationService.GeoLocation location = geoLocationService.getLocation(ipAddress);
-            
-            // Parse user agent for device and browser info
-            DeviceInfo deviceInfo = parseUserAgent(userAgent);
-            
+            LocalDateTime now = LocalDateTime.now();
             LinkView view = LinkView.builder()
-                    .link(link)
+                    .link(linkRepository.getReferenceById(link.id())) // proxy only, no select
                     .ipAddress(ipAddress)
                     .userAgent(userAgent)
-                    .viewedAt(LocalDateTime.now())
-                    .country(location.getCountry())
-                    .city(location.getCity())
-                    .region(location.getRegion())
-                    .latitude(location.getLatitude())
-                    .longitude(location.getLongitude())
-                    .deviceType(deviceInfo.deviceType)
-                    .browser(deviceInfo.browser)
-                    .operatingSystem(deviceInfo.os)
-                    .referrer(originalReferrer != null ? originalReferrer : request.getHeader("Referer"))
+                    .viewedAt(now)
+                    .referrer(referrer)
                     .timeToSkip(timeToSkip) // Now properly set from frontend
                     .adCompleted(true) // This is set when ad completion is recorded
                     .build();
             
+            // With deferred enrichment the background job fills these in
+            if (!viewEnrichmentService.isDeferred()) {
+                enrich(view, ipAddress, userAgent);
+                view.setEnrichedAt(now);
+            }
+            
             // Log referrer information for debugging
-            String finalReferrer = originalReferrer != null ? originalReferrer : request.getHeader("Referer");
             log.info("Recording view for link {} with referrer: {} (original: {}, current: {})", 
-                link.getShortCode(), finalReferrer, originalReferrer, request.getHeader("Referer"));
+                link.shortCode(), referrer, originalReferrer, request.getHeader("Referer"));
             
             linkViewRepository.save(view);
-            linkRepository.incrementViewCount(link.getId());
-            
-            // Flush to ensure view count is updated in database
-            linkRepository.flush();
             
-            // Fetch the updated link to get the correct view count
-            Link updatedLink = linkRepository.findById(link.getId())
-                    .orElseThrow(() -> new RuntimeException("Link not found after update"));
-            
-            // Update earnings based on the actual new view count
-            Long oldViewCount = link.getViewCount();
-            Long newViewCount = updatedLink.getViewCount();
-            BigDecimal oldEarnings = link.getEstimatedEarnings();
-            BigDecimal newEarnings = link.getUser() != null 
-                ? revenueService.calculateEarnings(newViewCount, link.getUser())
-                : calculateEarnings(newViewCount);
-            linkRepository.updateEarnings(link.getId(), newEarnings);
-            
-            log.info("Recorded view for link {} from IP {}. Views: {} -> {}, Earnings: {} -> {}", 
-                link.getShortCode(), ipAddress, oldViewCount, newViewCount, oldEarnings, newEarnings);
+            // Earnings and their ledger accrual follow with the next counter flush
+            linkCounterService.recordView(link.id());
+            log.info("Recorded view for link {} from IP {}", link.shortCode(), ipAddress);
             return true;
         } catch (Exception e) {
-            log.error("Failed to record view for link {}: {}", link.getShortCode(), e.getMessage());
+            log.error("Failed to record view for link {}: {}", link.shortCode(), e.getMessage());
             return false;
         }
     }
 
-    @Scheduled(fixedDelay = 3600000)
-    @Transactional
+    private void enrich(LinkView view, String ipAddress, String userAgent) {
+        // Get geographic location from IP
+        GeoLocationService.GeoLocation location = geoLocationService.getLocation(ipAddress);
+        
+        // Parse user agent for device and browser info
+        UserAgentParser.DeviceInfo deviceInfo = UserAgentParser.parse(userAgent);
+        
+        view.setCountry(location.getCountry());
+        view.setCity(location.getCity());
+        view.setRegion(location.getRegion());
+        view.setLatitude(location.getLatitude());
+        view.setLongitude(location.getLongitude());
+        view.setDeviceType(deviceInfo.deviceType());
+        view.setBrowser(deviceInfo.browser());
+        view.setOperatingSystem(deviceInfo.operatingSystem());
+    }
+
+    /**
+     * Brings every link's estimated earnings in line with its view count and its
+     * owner's current rates. Works through id ranges of {@code app.earnings.chunk-size}
+     * links, each in its own transaction, so locks are only held for one range at a
+     * time; see {@link RevenueService#refreshEarnings(long, long)}.
+     */
+    @Scheduled(fixedDelayString = "${app.earnings.interval-millis:3600000}")
     public void updateEarnings() {
         log.info("Starting earnings calculation job");
+        long started = System.nanoTime();
+        int chunkSize = appConfig.getEarnings().getChunkSize();
+        long maxId = linkJdbcRepository.findMaxId();
         
-        List<Link> allLinks = linkRepository.findAll();
-        
-        for (Link link : allLinks) {
-            if (link.getViewCount() > 0) {
-                // IMPORTANT: Use user-specific rates if the link has a user
-                BigDecimal earnings;
-                if (link.getUser() != null) {
-                    // Use RevenueService which respects custom user rates
-                    earnings = revenueService.calculateEarnings(link.getViewCount(), link.getUser());
-                } else {
-                    // Only use default rates for links without users (shouldn't happen)
-                    earnings = calculateEarnings(link.getViewCount());
-                }
-                linkRepository.updateEarnings(link.getId(), earnings);
-            }
+        long updated = 0;
+        for (long afterId = 0; afterId < maxId; afterId += chunkSize) {
+            updated += revenueService.refreshEarnings(afterId, Math.min(afterId + chunkSize, maxId));
         }
         
-        log.info("Completed earnings calculation for {} links", allLinks.size());
+        log.info("Completed earnings calculation: {} links changed up to id {} in {} ms", updated, maxId,
+                (System.nanoTime() - started) / 1_000_000);
     }
 
     public BigDecimal calculateEarnings(Long viewCount) {
@@ -143,14 +159,9 @@ public class AnalyticsService {
             return BigDecimal.ZERO;
         }
         
-        BigDecimal views = new BigDecimal(viewCount);
-        BigDecimal cpm = new BigDecimal(appConfig.getCpmRate());
-        BigDecimal revenueShare = new BigDecimal(appConfig.getRevenueShare());
-        
-        return views.divide(new BigDecimal(1000), 10, RoundingMode.HALF_UP)
-                .multiply(cpm)
-                .multiply(revenueShare)
-                .setScale(4, RoundingMode.HALF_UP);
+        EarningsRate rate = EarningsRate.refresh(defaultRate, appConfig.getCpmRate(), appConfig.getRevenueShare());
+        defaultRate = rate;
+        return rate.earnings(viewCount);
     }
 
     public String extractIpAddress(HttpServletRequest request) {
@@ -182,60 +193,4 @@ public class AnalyticsService {
         // Fallback to remote address
         return request.getRemoteAddr();
     }
-    
-    private DeviceInfo parseUserAgent(String userAgent) {
-        DeviceInfo info = new DeviceInfo();
-        
-        if (userAgent == null) {
-            info.deviceType = "Unknown";
-            info.browser = "Unknown";
-            info.os = "Unknown";
-            return info;
-        }
-        
-        // Detect device type
-        if (userAgent.contains("Mobile") || userAgent.contains("Android") || userAgent.contains("iPhone")) {
-            info.deviceType = "Mobile";
-        } else if (userAgent.contains("Tablet") || userAgent.contains("iPad")) {
-            info.deviceType = "Tablet";
-        } else {
-            info.deviceType = "Desktop";
-        }
-        
-        // Detect browser
-        if (userAgent.contains("Chrome") && !userAgent.contains("Edg")) {
-            info.browser = "Chrome";
-        } else if (userAgent.contains("Safari") && !userAgent.contains("Chrome")) {
-            info.browser = "Safari";
-        } else if (userAgent.contains("Firefox")) {
-            info.browser = "Firefox";
-        } else if (userAgent.contains("Edg")) {
-            info.browser = "Edge";
-        } else {
-            info.browser = "Other";
-        }
-        
-        // Detect OS
-        if (userAgent.contains("Windows")) {
-            info.os = "Windows";
-        } else if (userAgent.contains("Mac OS")) {
-            info.os = "macOS";
-        } else if (userAgent.contains("Linux")) {
-            info.os = "Linux";
-        } else if (userAgent.contains("Android")) {
-            info.os = "Android";
-        } else if (userAgent.contains("iPhone") || userAgent.contains("iPad")) {
-            info.os = "iOS";
-        } else {
-            info.os = "Other";
-        }
-        
-        return info;
-    }
-    
-    private static class DeviceInfo {
-        String deviceType;
-        String browser;
-        String os;
-    }
-}
\ No newline at end of file
+}
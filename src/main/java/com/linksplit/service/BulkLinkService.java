@@ -0,0 +1,227 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.dto.BulkLinkResult;
+import com.linksplit.entity.User;
+import com.linksplit.repository.LinkJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates links for a stream of URLs in chunks of {@code app.bulk-links.chunk-size}.
+ * <p>
+ * Each chunk is validated, gets all its codes from one
+ * {@link ShortCodeAllocator#allocate(int)} call, and is written with a single JDBC batch
+ * insert in its own transaction. The next chunk is read, validated and allocated on a
+ * pool of {@code app.bulk-links.prepare-threads} threads shared by all requests while
+ * the current one is being inserted, so at most two chunks are held in memory; when the
+ * pool and its queue are full the request thread prepares the chunk itself. Results
+ * are handed to the caller as soon as their chunk has committed; a chunk that fails to
+ * commit reports an error for every URL in it and does not affect the other chunks.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkLinkService {
+    private final AppConfig appConfig;
+    private final UrlShorteningService urlShorteningService;
+    private final ShortCodeAllocator shortCodeAllocator;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final LinkJdbcRepository linkJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Allocation takes a database lock, so chunks are not prepared on the common pool
+    private ExecutorService preparers;
+
+    @PostConstruct
+    void init() {
+        int threads = appConfig.getBulkLinks().getPrepareThreads();
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Runs rejected chunks on the caller even after shutdown, so no request waits
+        // on a chunk that was never prepared
+        preparers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), runnable -> {
+                    Thread thread = new Thread(runnable, "bulk-link-prepare-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> task.run());
+    }
+
+    @PreDestroy
+    void stop() {
+        preparers.shutdown();
+    }
+
+    /**
+     * Receives the results of one committed chunk, in input order.
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+        void onChunk(List<BulkLinkResult> results) throws IOException;
+    }
+
+    /**
+     * Creates a link owned by {@code user} for every URL the iterator yields, one
+     * result per URL. Reading stops at {@code app.bulk-links.max-links-per-request},
+     * which is reported as a final error result. If the iterator itself fails (e.g. on
+     * malformed input), the chunks read before the failure are still created and the
+     * failure is rethrown afterwards.
+     */
+    public void createLinks(Iterator<String> longUrls, User user, ChunkListener listener) throws IOException {
+        AppConfig.BulkLinks config = appConfig.getBulkLinks();
+        ChunkReader reader = new ChunkReader(longUrls, config.getChunkSize(), config.getMaxLinksPerRequest());
+
+        CompletableFuture<PreparedChunk> pending = prepareNext(reader);
+        int chunks = 0;
+        while (pending != null) {
+            PreparedChunk chunk = pending.join();
+            pending = prepareNext(reader);
+            listener.onChunk(persist(chunk, user));
+            chunks++;
+        }
+
+        log.info("Bulk link creation for user {}: {} URLs in {} chunks",
+                user.getId(), reader.nextIndex, chunks);
+
+        if (reader.limitReached) {
+            listener.onChunk(List.of(BulkLinkResult.builder()
+                    .index(reader.nextIndex)
+                    .error("Limit of " + config.getMaxLinksPerRequest() + " links per request reached")
+                    .build()));
+        }
+        if (reader.failure != null) {
+            throw reader.failure;
+        }
+    }
+
+    private CompletableFuture<PreparedChunk> prepareNext(ChunkReader reader) {
+        long firstIndex = reader.nextIndex;
+        List<String> longUrls = reader.next();
+        if (longUrls.isEmpty()) {
+            return null;
+        }
+        return CompletableFuture.supplyAsync(() -> prepare(firstIndex, longUrls), preparers);
+    }
+
+    PreparedChunk prepare(long firstIndex, List<String> longUrls) {
+        // Sequential: validation is cheap string work, not worth a fork/join split
+        String[] errors = new String[longUrls.size()];
+        int valid = 0;
+        for (int i = 0; i < longUrls.size(); i++) {
+            try {
+                urlShorteningService.validateUrl(longUrls.get(i));
+                valid++;
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+            }
+        }
+
+        try {
+            List<String> shortCodes = valid > 0 ? shortCodeAllocator.allocate(valid) : List.of();
+            return new PreparedChunk(firstIndex, longUrls, errors, shortCodes, false);
+        } catch (Exception e) {
+            log.error("Failed to allocate short codes for bulk chunk at {}: {}", firstIndex, e.getMessage());
+            return new PreparedChunk(firstIndex, longUrls, errors, List.of(), true);
+        }
+    }
+
+    List<BulkLinkResult> persist(PreparedChunk chunk, User user) {
+        List<LinkJdbcRepository.NewLink> newLinks = new ArrayList<>(chunk.shortCodes().size());
+        Iterator<String> shortCodes = chunk.shortCodes().iterator();
+        for (int i = 0; i < chunk.longUrls().size() && shortCodes.hasNext(); i++) {
+            if (chunk.errors()[i] == null) {
+                newLinks.add(new LinkJdbcRepository.NewLink(user.getId(), shortCodes.next(), chunk.longUrls().get(i)));
+            }
+        }
+
+        boolean committed = false;
+        if (!chunk.allocationFailed()) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        linkJdbcRepository.insertLinks(newLinks, LocalDateTime.now()));
+                newLinks.forEach(link -> shortCodeFilterService.recordCreated(link.shortCode()));
+                committed = true;
+            } catch (Exception e) {
+                log.error("Failed to insert bulk chunk at {}: {}", chunk.firstIndex(), e.getMessage());
+            }
+        }
+
+        List<BulkLinkResult> results = new ArrayList<>(chunk.longUrls().size());
+        Iterator<LinkJdbcRepository.NewLink> created = newLinks.iterator();
+        for (int i = 0; i < chunk.longUrls().size(); i++) {
+            BulkLinkResult.BulkLinkResultBuilder result = BulkLinkResult.builder()
+                    .index(chunk.firstIndex() + i)
+                    .longUrl(chunk.longUrls().get(i));
+            if (chunk.errors()[i] != null) {
+                result.error(chunk.errors()[i]);
+            } else if (!committed) {
+                result.error("Failed to create short URL");
+            } else {
+                String shortCode = created.next().shortCode();
+                result.shortCode(shortCode).shortUrl(urlShorteningService.getFullShortUrl(shortCode));
+            }
+            results.add(result.build());
+        }
+        return results;
+    }
+
+    /**
+     * A validated chunk. {@code errors[i]} is non-null for URLs that failed validation,
+     * and {@code shortCodes} holds one code per valid URL, in order.
+     */
+    record PreparedChunk(long firstIndex, List<String> longUrls, String[] errors,
+                         List<String> shortCodes, boolean allocationFailed) {
+    }
+
+    private static final class ChunkReader {
+        private final Iterator<String> source;
+        private final int chunkSize;
+        private final long maxLinks;
+
+        long nextIndex;
+        boolean limitReached;
+        RuntimeException failure;
+
+        ChunkReader(Iterator<String> source, int chunkSize, long maxLinks) {
+            this.source = source;
+            this.chunkSize = chunkSize;
+            this.maxLinks = maxLinks;
+        }
+
+        List<String> next() {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            if (failure != null || limitReached) {
+                return chunk;
+            }
+            try {
+                while (chunk.size() < chunkSize && source.hasNext()) {
+                    if (nextIndex >= maxLinks) {
+                        limitReached = true;
+                        break;
+                    }
+                    chunk.add(source.next());
+                    nextIndex++;
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            return chunk;
+        }
+    }
+}
@@ -1,175 +1,285 @@
 package com.linksplit.service;
 
+import com.linksplit.config.AppConfig;
 import com.linksplit.dto.analytics.*;
 import com.linksplit.entity.Link;
-import com.linksplit.entity.LinkView;
 import com.linksplit.entity.User;
 import com.linksplit.repository.ClickHeatmapRepository;
 import com.linksplit.repository.LinkRepository;
+import com.linksplit.repository.LinkViewJdbcRepository;
 import com.linksplit.repository.LinkViewRepository;
+import com.linksplit.repository.ViewRollupJdbcRepository;
+import com.linksplit.util.HyperLogLog;
+import com.linksplit.util.TrafficSourceClassifier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CreatorAnalyticsService {
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("MMM dd");
+    
     private final LinkRepository linkRepository;
     private final LinkViewRepository linkViewRepository;
+    private final LinkViewJdbcRepository linkViewJdbcRepository;
     private final ClickHeatmapRepository clickHeatmapRepository;
+    private final LinkCounterService linkCounterService;
+    private final ViewRollupService viewRollupService;
+    private final AppConfig appConfig;
     
+    // Repeatable read, so the rollup watermark, the rollups and the raw views not yet
+    // rolled up are all read from the same snapshot
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     public AnalyticsDashboard getAnalyticsDashboard(User user, LocalDateTime startDate, LocalDateTime endDate) {
-        List<Link> userLinks = linkRepository.findByUser(user);
-        List<LinkView> views = linkViewRepository.findByLinkInAndViewedAtBetween(userLinks, startDate, endDate);
+        List<Link> userLinks = linkCounterService.applyPending(linkRepository.findByUser(user));
+        ViewStatistics statistics = collectStatistics(userLinks, ViewRollupJdbcRepository.Scope.user(user.getId()),
+                startDate, endDate);
         
         return AnalyticsDashboard.builder()
-                .overview(calculateOverview(userLinks, views))
-                .trafficSources(analyzeTrafficSources(views))
-                .geographicData(analyzeGeographicData(views))
-                .deviceAnalytics(analyzeDevices(views))
-                .timeAnalytics(analyzeTimePatterns(views))
-                .topPerformingLinks(getTopPerformingLinks(userLinks))
+                .overview(calculateOverview(userLinks, statistics, countUniqueVisitors(userLinks,
+                        ViewRollupJdbcRepository.Scope.user(user.getId()), startDate, endDate)))
+                .trafficSources(analyzeTrafficSources(statistics))
+                .geographicData(analyzeGeographicData(statistics))
+                .deviceAnalytics(analyzeDevices(statistics))
+                .timeAnalytics(analyzeTimePatterns(statistics))
+                .topPerformingLinks(getTopPerformingLinks(userLinks, calculateCompletionRates(userLinks)))
                 .build();
     }
     
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     public AnalyticsDashboard getAnalyticsForLink(Link link, LocalDateTime startDate, LocalDateTime endDate) {
         List<Link> singleLinkList = Collections.singletonList(link);
-        List<LinkView> views = linkViewRepository.findByLinkAndViewedAtBetween(link, startDate, endDate);
+        ViewRollupJdbcRepository.Scope scope = ViewRollupJdbcRepository.Scope.link(link.getId());
+        ViewStatistics statistics = collectStatistics(singleLinkList, scope, startDate, endDate);
         
         return AnalyticsDashboard.builder()
-                .overview(calculateOverview(singleLinkList, views))
-                .trafficSources(analyzeTrafficSources(views))
-                .geographicData(analyzeGeographicData(views))
-                .deviceAnalytics(analyzeDevices(views))
-                .timeAnalytics(analyzeTimePatterns(views))
+                .overview(calculateOverview(singleLinkList, statistics,
+                        countUniqueVisitors(singleLinkList, scope, startDate, endDate)))
+                .trafficSources(analyzeTrafficSources(statistics))
+                .geographicData(analyzeGeographicData(statistics))
+                .deviceAnalytics(analyzeDevices(statistics))
+                .timeAnalytics(analyzeTimePatterns(statistics))
                 .topPerformingLinks(Collections.singletonList(
                     LinkPerformance.builder()
                         .shortCode(link.getShortCode())
                         .longUrl(link.getLongUrl())
                         .views(link.getViewCount())
                         .earnings(link.getEstimatedEarnings())
-                        .completionRate(calculateLinkCompletionRate(link))
+                        .completionRate(calculateCompletionRates(singleLinkList).getOrDefault(link.getId(), 0.0))
                         .deleted(link.getDeleted())
                         .build()
                 ))
                 .build();
     }
     
-    private OverviewMetrics calculateOverview(List<Link> links, List<LinkView> views) {
-        long totalViews = views.size();
-        long completedViews = views.stream().filter(v -> Boolean.TRUE.equals(v.getAdCompleted())).count();
-        double completionRate = totalViews > 0 ? (double) completedViews / totalViews * 100 : 0;
+    /**
+     * Totals for the views of the given links in {@code [startDate, endDate]}, from
+     * the engine selected by {@code app.analytics.engine}.
+     */
+    ViewStatistics collectStatistics(List<Link> links, ViewRollupJdbcRepository.Scope scope,
+                                     LocalDateTime startDate, LocalDateTime endDate) {
+        if (links.isEmpty()) {
+            return new ViewStatistics();
+        }
+        if (appConfig.getAnalytics().getEngine() == AppConfig.Analytics.Engine.SQL) {
+            return collectStatisticsWithSql(links, startDate, endDate);
+        }
+        return collectStatisticsFromRollups(scope, startDate, endDate);
+    }
+    
+    /**
+     * Whole hours inside the range come from the hourly rollups; raw views are only
+     * read for the partial hours at either end and for views the rollup job has not
+     * reached yet.
+     */
+    private ViewStatistics collectStatisticsFromRollups(ViewRollupJdbcRepository.Scope scope,
+                                                        LocalDateTime startDate, LocalDateTime endDate) {
+        ViewStatistics statistics = new ViewStatistics();
+        
+        LocalDateTime rolledUpFrom = startDate.truncatedTo(ChronoUnit.HOURS);
+        if (rolledUpFrom.isBefore(startDate)) {
+            rolledUpFrom = rolledUpFrom.plusHours(1);
+        }
+        LocalDateTime rolledUpTo = endDate.truncatedTo(ChronoUnit.HOURS);
+        
+        if (rolledUpFrom.isBefore(rolledUpTo)) {
+            viewRollupService.addRollups(statistics, scope, rolledUpFrom, rolledUpTo);
+        } else {
+            // Nothing comes from the rollups, so every view in the range is read raw
+            rolledUpFrom = startDate;
+            rolledUpTo = startDate;
+        }
+        
+        // Raw views are streamed into the aggregator chunk by chunk, never as entities
+        AppConfig.Analytics config = appConfig.getAnalytics();
+        LocalDateTime rawFrom = rolledUpFrom;
+        LocalDateTime rawTo = rolledUpTo;
+        ViewAggregator rawViews = ViewAggregator.aggregate(consumer -> linkViewJdbcRepository.streamViewsNotRolledUp(
+                scope, startDate, endDate, rawFrom, rawTo,
+                config.getChunkSize(), config.getFetchSize(), consumer), ForkJoinPool.commonPool());
+        rawViews.addTo(statistics);
+        log.debug("Dashboard statistics: {} views, {} read raw", statistics.getViews(), rawViews.getViews());
+        return statistics;
+    }
+    
+    /**
+     * Every section from GROUP BY queries over {@code link_views}, so only one row per
+     * hour or distinct dimension value reaches the application.
+     */
+    private ViewStatistics collectStatisticsWithSql(List<Link> links, LocalDateTime startDate, LocalDateTime endDate) {
+        ViewStatistics statistics = new ViewStatistics();
+        for (Object[] row : linkViewRepository.getHourlyStatistics(links, startDate, endDate)) {
+            LocalDateTime hour = LocalDateTime.of(toInt(row[0]), toInt(row[1]), toInt(row[2]), toInt(row[3]), 0);
+            statistics.addHour(hour, toLong(row[4]), toLong(row[5]), toLong(row[6]), toLong(row[7]));
+        }
+        
+        addGroups(statistics, ViewDimension.COUNTRY, linkViewRepository.getCountryStatistics(links, startDate, endDate));
+        addGroups(statistics, ViewDimension.DEVICE, linkViewRepository.getDeviceStatistics(links, startDate, endDate));
+        addGroups(statistics, ViewDimension.BROWSER, linkViewRepository.getBrowserStatistics(links, startDate, endDate));
+        addGroups(statistics, ViewDimension.OPERATING_SYSTEM,
+                linkViewRepository.getOperatingSystemStatistics(links, startDate, endDate));
+        for (Object[] row : linkViewRepository.getCityStatistics(links, startDate, endDate)) {
+            String country = row[0] != null ? (String) row[0] : ViewDimension.UNKNOWN;
+            statistics.addDimension(ViewDimension.CITY, country + "|" + row[1], toLong(row[2]));
+        }
+        for (Object[] row : linkViewRepository.getTrafficSourceStatistics(links, startDate, endDate)) {
+            String source = TrafficSourceClassifier.classify((String) row[0], (String) row[1], (String) row[2]);
+            statistics.addDimension(ViewDimension.TRAFFIC_SOURCE, source, toLong(row[3]));
+        }
+        return statistics;
+    }
+    
+    private static void addGroups(ViewStatistics statistics, ViewDimension dimension, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            String value = row[0] != null ? (String) row[0] : ViewDimension.UNKNOWN;
+            statistics.addDimension(dimension, value, toLong(row[1]));
+        }
+    }
+    
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+    
+    // SUM over no non-null values is null
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+    
+    /**
+     * Distinct visitor IPs in the range. With the rollup engine, whole days come from
+     * merging the daily visitor sketches and only the remaining IPs are read raw and
+     * added to the merged sketch, so the count carries the sketch's error (about 1.6%,
+     * see {@link HyperLogLog}). Ranges without a whole sketched day,
+     * and the SQL engine, count exactly in the database.
+     */
+    long countUniqueVisitors(List<Link> links, ViewRollupJdbcRepository.Scope scope,
+                             LocalDateTime startDate, LocalDateTime endDate) {
+        if (links.isEmpty()) {
+            return 0;
+        }
+        LocalDate sketchedFrom = startDate.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? startDate.toLocalDate() : startDate.toLocalDate().plusDays(1);
+        LocalDate sketchedTo = endDate.toLocalDate();
+        if (appConfig.getAnalytics().getEngine() == AppConfig.Analytics.Engine.SQL
+                || !sketchedFrom.isBefore(sketchedTo)) {
+            Long count = linkViewRepository.countDistinctIpAddresses(links, startDate, endDate);
+            return count != null ? count : 0;
+        }
         
-        OptionalDouble avgTimeToSkip = views.stream()
-                .filter(v -> v.getTimeToSkip() != null)
-                .mapToInt(LinkView::getTimeToSkip)
-                .average();
+        HyperLogLog visitors = viewRollupService.getVisitorSketch(scope, sketchedFrom, sketchedTo);
+        linkViewRepository.findIpAddressesNotSketched(links, startDate, endDate,
+                sketchedFrom.atStartOfDay(), sketchedTo.atStartOfDay()).forEach(visitors::add);
+        return visitors.estimate();
+    }
+    
+    private OverviewMetrics calculateOverview(List<Link> links, ViewStatistics statistics, long uniqueVisitors) {
+        long totalViews = statistics.getViews();
+        long completedViews = statistics.getCompletedViews();
+        double completionRate = totalViews > 0 ? (double) completedViews / totalViews * 100 : 0;
         
         return OverviewMetrics.builder()
                 .totalLinks(links.size())
                 .totalViews(totalViews)
                 .completedViews(completedViews)
                 .completionRate(completionRate)
-                .averageTimeToSkip(avgTimeToSkip.orElse(0))
-                .uniqueVisitors(views.stream().map(LinkView::getIpAddress).distinct().count())
+                .averageTimeToSkip(statistics.getAverageTimeToSkip())
+                .uniqueVisitors(uniqueVisitors)
                 .build();
     }
     
-    private List<TrafficSource> analyzeTrafficSources(List<LinkView> views) {
-        Map<String, Long> sourceCount = new HashMap<>();
-        
-        for (LinkView view : views) {
-            String source = "Direct";
-            if (view.getUtmSource() != null) {
-                source = view.getUtmSource();
-            } else if (view.getReferrer() != null && !view.getReferrer().isEmpty()) {
-                source = identifyTrafficSource(view.getReferrer(), view.getUserAgent());
-            } else {
-                // Check user agent for mobile app patterns when no referrer is present
-                source = identifyTrafficSourceFromUserAgent(view.getUserAgent());
-            }
-            sourceCount.merge(source, 1L, Long::sum);
-        }
-        
-        return sourceCount.entrySet().stream()
+    private List<TrafficSource> analyzeTrafficSources(ViewStatistics statistics) {
+        return statistics.getViewsBy(ViewDimension.TRAFFIC_SOURCE).entrySet().stream()
                 .map(entry -> TrafficSource.builder()
                         .source(entry.getKey())
                         .visits(entry.getValue())
-                        .percentage((double) entry.getValue() / views.size() * 100)
+                        .percentage((double) entry.getValue() / statistics.getViews() * 100)
                         .build())
                 .sorted((a, b) -> Long.compare(b.getVisits(), a.getVisits()))
                 .limit(10)
                 .collect(Collectors.toList());
     }
     
-    private List<GeographicData> analyzeGeographicData(List<LinkView> views) {
-        Map<String, GeographicData.GeographicDataBuilder> countryMap = new HashMap<>();
-        
-        for (LinkView view : views) {
-            String country = view.getCountry() != null ? view.getCountry() : "Unknown";
-            countryMap.computeIfAbsent(country, k -> GeographicData.builder()
-                    .country(k)
-                    .views(0L)
-                    .cities(new HashSet<>()))
-                    .views(countryMap.get(country).build().getViews() + 1);
-            
-            if (view.getCity() != null) {
-                countryMap.get(country).build().getCities().add(view.getCity());
-            }
+    private List<GeographicData> analyzeGeographicData(ViewStatistics statistics) {
+        Map<String, Set<String>> citiesByCountry = new HashMap<>();
+        for (String countryAndCity : statistics.getViewsBy(ViewDimension.CITY).keySet()) {
+            int separator = countryAndCity.indexOf('|');
+            citiesByCountry.computeIfAbsent(countryAndCity.substring(0, separator), k -> new HashSet<>())
+                    .add(countryAndCity.substring(separator + 1));
         }
         
-        return countryMap.values().stream()
-                .map(builder -> {
-                    GeographicData data = builder.build();
-                    data.setPercentage((double) data.getViews() / views.size() * 100);
-                    return data;
-                })
+        return statistics.getViewsBy(ViewDimension.COUNTRY).entrySet().stream()
+                .map(entry -> GeographicData.builder()
+                        .country(entry.getKey())
+                        .views(entry.getValue())
+                        .percentage((double) entry.getValue() / statistics.getViews() * 100)
+                        .cities(citiesByCountry.getOrDefault(entry.getKey(), new HashSet<>()))
+                        .build())
                 .sorted((a, b) -> Long.compare(b.getViews(), a.getViews()))
                 .limit(20)
                 .collect(Collectors.toList());
     }
     
-    private DeviceAnalytics analyzeDevices(List<LinkView> views) {
-        Map<String, Long> deviceTypes = new HashMap<>();
-        Map<String, Long> browsers = new HashMap<>();
-        Map<String, Long> operatingSystems = new HashMap<>();
-        
-        for (LinkView view : views) {
-            deviceTypes.merge(view.getDeviceType() != null ? view.getDeviceType() : "Unknown", 1L, Long::sum);
-            browsers.merge(view.getBrowser() != null ? view.getBrowser() : "Unknown", 1L, Long::sum);
-            operatingSystems.merge(view.getOperatingSystem() != null ? view.getOperatingSystem() : "Unknown", 1L, Long::sum);
-        }
-        
+    private DeviceAnalytics analyzeDevices(ViewStatistics statistics) {
         return DeviceAnalytics.builder()
-                .deviceTypes(convertToPercentageMap(deviceTypes, views.size()))
-                .browsers(convertToPercentageMap(browsers, views.size()))
-                .operatingSystems(convertToPercentageMap(operatingSystems, views.size()))
+                .deviceTypes(convertToPercentageMap(statistics.getViewsBy(ViewDimension.DEVICE), statistics.getViews()))
+                .browsers(convertToPercentageMap(statistics.getViewsBy(ViewDimension.BROWSER), statistics.getViews()))
+                .operatingSystems(convertToPercentageMap(
+                        statistics.getViewsBy(ViewDimension.OPERATING_SYSTEM), statistics.getViews()))
                 .build();
     }
     
-    private TimeAnalytics analyzeTimePatterns(List<LinkView> views) {
-        log.info("Analyzing time patterns for {} views", views.size());
+    private TimeAnalytics analyzeTimePatterns(ViewStatistics statistics) {
+        log.debug("Analyzing time patterns for {} hours", statistics.getViewsByHour().size());
         Map<Integer, Long> hourlyDistribution = new TreeMap<>();
         Map<Integer, Long> dailyDistribution = new TreeMap<>();
-        Map<String, Long> weeklyTrend = new TreeMap<>();
+        Map<LocalDate, Long> viewsByDay = new HashMap<>();
         
-        for (LinkView view : views) {
-            LocalDateTime viewTime = view.getViewedAt();
-            hourlyDistribution.merge(viewTime.getHour(), 1L, Long::sum);
-            dailyDistribution.merge(viewTime.getDayOfWeek().getValue(), 1L, Long::sum);
-            
-            // Create daily data for the traffic over time chart
-            String dayKey = viewTime.format(DateTimeFormatter.ofPattern("MMM dd"));
-            weeklyTrend.merge(dayKey, 1L, Long::sum);
+        for (Map.Entry<LocalDateTime, Long> entry : statistics.getViewsByHour().entrySet()) {
+            LocalDateTime hour = entry.getKey();
+            long views = entry.getValue();
+            hourlyDistribution.merge(hour.getHour(), views, Long::sum);
+            dailyDistribution.merge(hour.getDayOfWeek().getValue(), views, Long::sum);
+            viewsByDay.merge(hour.toLocalDate(), views, Long::sum);
         }
         
-        log.info("Generated weeklyTrend data: {}", weeklyTrend);
+        // Create daily data for the traffic over time chart, formatting each day once
+        Map<String, Long> weeklyTrend = new TreeMap<>();
+        viewsByDay.forEach((day, views) -> weeklyTrend.merge(day.format(DAY_FORMAT), views, Long::sum));
+        
+        log.debug("Generated weeklyTrend data: {}", weeklyTrend);
         
         return TimeAnalytics.builder()
                 .hourlyDistribution(hourlyDistribution)
@@ -180,7 +290,7 @@ public class CreatorAnalyticsService {
                 .build();
     }
     
-    private List<LinkPerformance> getTopPerformingLinks(List<Link> links) {
+    private List<LinkPerformance> getTopPerformingLinks(List<Link> links, Map<Long, Double> completionRates) {
         // Separate active and deleted links
         List<LinkPerformance> activeLinks = links.stream()
                 .filter(link -> !Boolean.TRUE.equals(link.getDeleted()))
@@ -189,7 +299,7 @@ public class CreatorAnalyticsService {
                         .longUrl(link.getLongUrl())
                         .views(link.getViewCount())
                         .earnings(link.getEstimatedEarnings())
-                        .completionRate(calculateLinkCompletionRate(link))
+                        .completionRate(completionRates.getOrDefault(link.getId(), 0.0))
                         .deleted(false)
                         .build())
                 .sorted((a, b) -> Long.compare(b.getViews(), a.getViews()))
@@ -204,7 +314,7 @@ public class CreatorAnalyticsService {
                         .longUrl(link.getLongUrl())
                         .views(link.getViewCount())
                         .earnings(link.getEstimatedEarnings())
-                        .completionRate(calculateLinkCompletionRate(link))
+                        .completionRate(completionRates.getOrDefault(link.getId(), 0.0))
                         .deleted(true)
                         .build())
                 .sorted((a, b) -> Long.compare(b.getViews(), a.getViews()))
@@ -218,71 +328,30 @@ public class CreatorAnalyticsService {
         return combined;
     }
     
-    private double calculateLinkCompletionRate(Link link) {
-        List<LinkView> views = linkViewRepository.findByLink(link);
-        if (views.isEmpty()) return 0;
-        
-        long completed = views.stream().filter(v -> Boolean.TRUE.equals(v.getAdCompleted())).count();
-        return (double) completed / views.size() * 100;
-    }
-    
-    private String identifyTrafficSource(String referrer, String userAgent) {
-        try {
-            java.net.URL netUrl = new java.net.URL(referrer);
-            String domain = netUrl.getHost().replaceFirst("^www\\.", "");
-            
-            // Handle special cases for messaging platforms
-            if (domain.contains("t.me") || domain.contains("telegram")) {
-                return "Telegram";
-            } else if (domain.contains("whatsapp") || domain.contains("chat.whatsapp.com")) {
-                return "WhatsApp";
-            } else if (domain.contains("facebook.com") || domain.contains("fb.com")) {
-                return "Facebook";
-            } else if (domain.contains("twitter.com") || domain.contains("x.com")) {
-                return "Twitter/X";
-            } else if (domain.contains("instagram.com")) {
-                return "Instagram";
-            } else if (domain.contains("linkedin.com")) {
-                return "LinkedIn";
-            } else if (domain.contains("youtube.com") || domain.contains("youtu.be")) {
-                return "YouTube";
-            } else if (domain.contains("google.com") || domain.contains("google.")) {
-                return "Google";
-            } else if (domain.contains("bing.com")) {
-                return "Bing";
-            } else if (domain.contains("yahoo.com")) {
-                return "Yahoo";
-            }
-            
-            return domain;
-        } catch (Exception e) {
-            return "Unknown";
+    /**
+     * All-time completion rate per link id, in percent. Rolled-up views come from the
+     * counters on {@code links}; only views not rolled up yet are aggregated from
+     * {@code link_views}, in one grouped query for all links.
+     */
+    private Map<Long, Double> calculateCompletionRates(List<Link> links) {
+        if (links.isEmpty()) {
+            return Collections.emptyMap();
         }
-    }
-    
-    private String identifyTrafficSourceFromUserAgent(String userAgent) {
-        if (userAgent == null || userAgent.isEmpty()) {
-            return "Direct";
+        Map<Long, long[]> counts = new HashMap<>();
+        List<Long> linkIds = links.stream().map(Link::getId).collect(Collectors.toList());
+        for (Object[] row : linkRepository.findRolledUpViewCounts(linkIds)) {
+            counts.put((Long) row[0], new long[]{toLong(row[1]), toLong(row[2])});
         }
-        
-        String ua = userAgent.toLowerCase();
-        
-        // Check for messaging app user agents
-        if (ua.contains("telegram") || ua.contains("telegrambot")) {
-            return "Telegram";
-        } else if (ua.contains("whatsapp")) {
-            return "WhatsApp";
-        } else if (ua.contains("facebookexternalhit") || ua.contains("fban") || ua.contains("fbav")) {
-            return "Facebook";
-        } else if (ua.contains("twitterbot") || ua.contains("twitter")) {
-            return "Twitter/X";
-        } else if (ua.contains("instagrambot") || ua.contains("instagram")) {
-            return "Instagram";
-        } else if (ua.contains("linkedinbot") || ua.contains("linkedin")) {
-            return "LinkedIn";
+        for (Object[] row : linkViewRepository.getCompletionCountsNotRolledUp(links)) {
+            long[] total = counts.computeIfAbsent((Long) row[0], id -> new long[2]);
+            total[0] += toLong(row[1]);
+            total[1] += toLong(row[2]);
         }
         
-        return "Direct";
+        Map<Long, Double> completionRates = new HashMap<>();
+        counts.forEach((linkId, total) -> completionRates.put(linkId,
+                total[0] > 0 ? (double) total[1] / total[0] * 100 : 0));
+        return completionRates;
     }
     
     private String extractDomain(String url) {
@@ -0,0 +1,291 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.Payout;
+import com.linksplit.repository.EarningsLedgerJdbcRepository;
+import com.linksplit.repository.EarningsLedgerJdbcRepository.Balance;
+import com.linksplit.repository.EarningsLedgerJdbcRepository.Entry;
+import com.linksplit.repository.EarningsLedgerJdbcRepository.EntryType;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Creators' money as an append-only ledger. Every change to a link's estimated
+ * earnings is posted as an accrual for its owner, and every payout status change as
+ * the entries that move its amount into or out of held and paid-out, in the same
+ * transaction as the change itself. Each user's totals are kept in one balance row
+ * updated with the entries, so the available balance is a primary-key read.
+ * <p>
+ * A background job walks the balances every
+ * {@code app.ledger.reconcile-interval-millis} and checks them against both the
+ * ledger entries and the link and payout tables they were posted from. It only
+ * reports; differences point at a write path that changed earnings without posting.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EarningsLedgerService {
+    // Differences listed in the report; the rest are only counted
+    static final int MAX_REPORTED_DISCREPANCIES = 20;
+
+    private final EarningsLedgerJdbcRepository earningsLedgerJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AppConfig appConfig;
+
+    private final AtomicReference<Reconciliation> lastReconciliation = new AtomicReference<>();
+
+    // Before the web server and schedulers start, so no entry can be posted against
+    // balances the opening has not yet counted
+    @PostConstruct
+    void init() {
+        earningsLedgerJdbcRepository.createTablesIfMissing();
+        // Fails startup rather than serving balances that miss the opening
+        Boolean opened = transactionTemplate.execute(status -> openLedger(LocalDateTime.now()));
+        if (Boolean.TRUE.equals(opened)) {
+            log.info("Opened earnings ledger from existing link earnings and payouts");
+        }
+    }
+
+    /**
+     * Unless the ledger was already opened, posts for every user the difference between
+     * their link earnings and payouts and their balance, so balances start out matching
+     * the totals they were posted from. Balances are normally absent at this point; the
+     * difference keeps any that exist from being counted twice.
+     */
+    boolean openLedger(LocalDateTime at) {
+        if (!earningsLedgerJdbcRepository.markOpened(at)) {
+            return false;
+        }
+        int batchSize = appConfig.getLedger().getReconcileBatchSize();
+        long afterUserId = 0;
+        while (true) {
+            List<Long> userIds = earningsLedgerJdbcRepository.findUserIdsAfter(afterUserId, batchSize);
+            if (userIds.isEmpty()) {
+                return true;
+            }
+            long through = userIds.get(userIds.size() - 1);
+            Map<Long, Balance> expected = earningsLedgerJdbcRepository.sumSources(afterUserId, through);
+            Map<Long, Balance> current = earningsLedgerJdbcRepository.findBalances(afterUserId, through);
+
+            List<Entry> entries = new ArrayList<>();
+            for (Long userId : userIds) {
+                Balance zero = new Balance(userId, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+                Balance target = expected.getOrDefault(userId, zero);
+                Balance balance = current.getOrDefault(userId, zero);
+                addOpening(entries, userId, EntryType.ACCRUAL, EntryType.ACCRUAL,
+                        target.accrued().subtract(balance.accrued()));
+                addOpening(entries, userId, EntryType.HOLD, EntryType.RELEASE,
+                        target.held().subtract(balance.held()));
+                addOpening(entries, userId, EntryType.PAY, EntryType.REVERSAL,
+                        target.paidOut().subtract(balance.paidOut()));
+            }
+            earningsLedgerJdbcRepository.append(entries, at);
+            afterUserId = through;
+        }
+    }
+
+    // Accruals carry their sign; the other types move a positive amount one way or back
+    private static void addOpening(List<Entry> entries, long userId, EntryType increase, EntryType decrease,
+                                   BigDecimal difference) {
+        if (difference.signum() == 0) {
+            return;
+        }
+        if (increase == EntryType.ACCRUAL || difference.signum() > 0) {
+            entries.add(new Entry(userId, increase, difference, null));
+        } else {
+            entries.add(new Entry(userId, decrease, difference.negate(), null));
+        }
+    }
+
+    /**
+     * Posts earnings changes, keyed by user id. Zero changes are skipped.
+     */
+    @Transactional
+    public void accrue(Map<Long, BigDecimal> earningsDeltas) {
+        List<Entry> entries = new ArrayList<>(earningsDeltas.size());
+        earningsDeltas.forEach((userId, delta) -> {
+            if (delta.signum() != 0) {
+                entries.add(new Entry(userId, EntryType.ACCRUAL, delta, null));
+            }
+        });
+        earningsLedgerJdbcRepository.append(entries, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void accrue(Long userId, BigDecimal earningsDelta) {
+        accrue(Map.of(userId, earningsDelta));
+    }
+
+    /**
+     * Posts a payout moving from {@code from} to its current status; {@code from} is
+     * null for a new payout. Pending and processing payouts are held, completed ones
+     * paid out, failed and cancelled ones neither.
+     */
+    @Transactional
+    public void recordPayoutStatus(Payout payout, Payout.PayoutStatus from) {
+        Bucket before = Bucket.of(from);
+        Bucket after = Bucket.of(payout.getStatus());
+        if (before == after) {
+            return;
+        }
+        long userId = payout.getUser().getId();
+        List<Entry> entries = new ArrayList<>(2);
+        if (before.leave != null) {
+            entries.add(new Entry(userId, before.leave, payout.getAmount(), payout.getId()));
+        }
+        if (after.enter != null) {
+            entries.add(new Entry(userId, after.enter, payout.getAmount(), payout.getId()));
+        }
+        earningsLedgerJdbcRepository.append(entries, LocalDateTime.now());
+    }
+
+    public BigDecimal getAvailableBalance(Long userId) {
+        return getBalance(userId).available();
+    }
+
+    public Balance getBalance(Long userId) {
+        return earningsLedgerJdbcRepository.findBalance(userId)
+                .orElseGet(() -> new Balance(userId, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+    }
+
+    /**
+     * The available balance, with the balance row locked until the current transaction
+     * ends so no other payout can be requested against the same money meanwhile.
+     */
+    @Transactional
+    public BigDecimal lockAvailableBalance(Long userId) {
+        return earningsLedgerJdbcRepository.lockBalance(userId).available();
+    }
+
+    public Reconciliation getLastReconciliation() {
+        return lastReconciliation.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.ledger.reconcile-interval-millis:3600000}",
+            initialDelayString = "${app.ledger.reconcile-interval-millis:3600000}")
+    public void reconcileScheduled() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("Earnings ledger reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    Reconciliation reconcile() {
+        long started = System.nanoTime();
+        int batchSize = appConfig.getLedger().getReconcileBatchSize();
+        // Each batch reads from one snapshot, so writes landing between its queries
+        // do not show up as differences
+        TransactionTemplate snapshot = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.setReadOnly(true);
+
+        List<Discrepancy> discrepancies = new ArrayList<>();
+        long[] checked = {0};
+        long[] found = {0};
+        long afterUserId = 0;
+        while (true) {
+            long batchAfter = afterUserId;
+            Long lastUserId = snapshot.execute(status -> {
+                List<Balance> balances = earningsLedgerJdbcRepository.findBalancesAfter(batchAfter, batchSize);
+                if (balances.isEmpty()) {
+                    return null;
+                }
+                long through = balances.get(balances.size() - 1).userId();
+                Map<Long, Balance> ledger = earningsLedgerJdbcRepository.sumLedger(batchAfter, through);
+                Map<Long, Balance> sources = earningsLedgerJdbcRepository.sumSources(batchAfter, through);
+                for (Balance balance : balances) {
+                    checked[0]++;
+                    Discrepancy discrepancy = Discrepancy.of(balance, ledger.get(balance.userId()),
+                            sources.get(balance.userId()));
+                    if (discrepancy != null) {
+                        found[0]++;
+                        if (discrepancies.size() < MAX_REPORTED_DISCREPANCIES) {
+                            discrepancies.add(discrepancy);
+                        }
+                    }
+                }
+                return balances.size() < batchSize ? null : through;
+            });
+            if (lastUserId == null) {
+                break;
+            }
+            afterUserId = lastUserId;
+        }
+
+        Reconciliation result = new Reconciliation(checked[0], found[0], discrepancies, LocalDateTime.now());
+        lastReconciliation.set(result);
+        if (found[0] > 0) {
+            log.warn("Earnings ledger reconciliation found {} of {} balances off, e.g. {}", found[0], checked[0],
+                    discrepancies.get(0));
+        } else {
+            log.info("Earnings ledger reconciled {} balances in {} ms", checked[0],
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        return result;
+    }
+
+    private enum Bucket {
+        NONE(null, null),
+        HELD(EntryType.HOLD, EntryType.RELEASE),
+        PAID(EntryType.PAY, EntryType.REVERSAL);
+
+        private final EntryType enter;
+        private final EntryType leave;
+
+        Bucket(EntryType enter, EntryType leave) {
+            this.enter = enter;
+            this.leave = leave;
+        }
+
+        static Bucket of(Payout.PayoutStatus status) {
+            if (status == null) {
+                return NONE;
+            }
+            return switch (status) {
+                case PENDING, PROCESSING -> HELD;
+                case COMPLETED -> PAID;
+                default -> NONE;
+            };
+        }
+    }
+
+    /**
+     * A balance that does not match the sum of its ledger entries, or whose entries do
+     * not match the user's link earnings and payouts.
+     */
+    public record Discrepancy(long userId, Balance balance, Balance ledger, Balance expected) {
+        static Discrepancy of(Balance balance, Balance ledger, Balance expected) {
+            Balance zero = new Balance(balance.userId(), BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+            Balance ledgerTotals = ledger != null ? ledger : zero;
+            Balance expectedTotals = expected != null ? expected : zero;
+            if (sameTotals(balance, ledgerTotals) && sameTotals(balance, expectedTotals)) {
+                return null;
+            }
+            return new Discrepancy(balance.userId(), balance, ledgerTotals, expectedTotals);
+        }
+
+        private static boolean sameTotals(Balance a, Balance b) {
+            return a.accrued().compareTo(b.accrued()) == 0
+                    && a.held().compareTo(b.held()) == 0
+                    && a.paidOut().compareTo(b.paidOut()) == 0;
+        }
+    }
+
+    public record Reconciliation(long checkedBalances, long discrepancyCount, List<Discrepancy> discrepancies,
+                                 LocalDateTime finishedAt) {
+    }
+}
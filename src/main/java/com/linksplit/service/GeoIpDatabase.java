@@ -0,0 +1,408 @@
+package com.linksplit.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable in-memory IP range to location table.
+ * <p>
+ * IPv4 ranges are kept as parallel sorted {@code long[]} start/end arrays; IPv6 ranges
+ * as high/low 64-bit halves compared unsigned. Each range points into a deduplicated
+ * location table, so a lookup is one binary search (allocation-free for IPv4).
+ * Ranges must not overlap.
+ * <p>
+ * {@link #load(Path)} reads the DB-IP "IP to City Lite" CSV layout:
+ * {@code ip_start,ip_end,continent,country,stateprov,city,latitude,longitude}, with
+ * ISO country codes that are expanded to English country names.
+ */
+public final class GeoIpDatabase {
+    private final long[] v4Starts;
+    private final long[] v4Ends;
+    private final int[] v4Locations;
+
+    private final long[] v6StartHigh;
+    private final long[] v6StartLow;
+    private final long[] v6EndHigh;
+    private final long[] v6EndLow;
+    private final int[] v6Locations;
+
+    private final GeoLocationService.GeoLocation[] locations;
+
+    private GeoIpDatabase(Builder builder) {
+        int[] v4Order = builder.v4.sortedOrder();
+        this.v4Starts = builder.v4.column(0, v4Order);
+        this.v4Ends = builder.v4.column(1, v4Order);
+        this.v4Locations = builder.v4.locations(v4Order);
+
+        int[] v6Order = builder.v6.sortedOrder();
+        this.v6StartHigh = builder.v6.column(0, v6Order);
+        this.v6StartLow = builder.v6.column(1, v6Order);
+        this.v6EndHigh = builder.v6.column(2, v6Order);
+        this.v6EndLow = builder.v6.column(3, v6Order);
+        this.v6Locations = builder.v6.locations(v6Order);
+
+        this.locations = builder.locations.toArray(new GeoLocationService.GeoLocation[0]);
+    }
+
+    public static GeoIpDatabase load(Path csv) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    public static GeoIpDatabase read(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        Map<String, String> countryNames = new HashMap<>();
+        List<String> fields = new ArrayList<>(8);
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            splitCsv(line, fields);
+            if (fields.size() < 8) {
+                throw new IOException("Line " + lineNumber + ": expected 8 columns, found " + fields.size());
+            }
+
+            String country = countryNames.computeIfAbsent(fields.get(3), GeoIpDatabase::countryName);
+            GeoLocationService.GeoLocation location = GeoLocationService.GeoLocation.builder()
+                    .country(country)
+                    .region(fields.get(4))
+                    .city(fields.get(5))
+                    .latitude(parseCoordinate(fields.get(6)))
+                    .longitude(parseCoordinate(fields.get(7)))
+                    .build();
+
+            if (!builder.addRange(fields.get(0), fields.get(1), location) && lineNumber > 1) {
+                // The first line may be a header; anything later is a broken file
+                throw new IOException("Line " + lineNumber + ": invalid IP range " + fields.get(0) + " - " + fields.get(1));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the location of the range containing the address, or null when the
+     * address is not covered or is not an IP literal.
+     */
+    public GeoLocationService.GeoLocation lookup(String ipAddress) {
+        long v4 = parseIpv4(ipAddress);
+        if (v4 >= 0) {
+            return lookupV4(v4);
+        }
+        if (ipAddress.indexOf(':') < 0) {
+            return null;
+        }
+
+        byte[] bytes = parseIpv6(ipAddress);
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == 4) {
+            // IPv4-mapped address
+            return lookupV4(toLong(bytes, 0, 4));
+        }
+        return lookupV6(toLong(bytes, 0, 8), toLong(bytes, 8, 8));
+    }
+
+    public GeoLocationService.GeoLocation lookupV4(long address) {
+        int low = 0;
+        int high = v4Starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (v4Starts[mid] <= address) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // high is now the last range starting at or before the address
+        if (high < 0 || address > v4Ends[high]) {
+            return null;
+        }
+        return locations[v4Locations[high]];
+    }
+
+    public GeoLocationService.GeoLocation lookupV6(long addressHigh, long addressLow) {
+        int low = 0;
+        int high = v6StartHigh.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(v6StartHigh[mid], v6StartLow[mid], addressHigh, addressLow) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0 || compare(addressHigh, addressLow, v6EndHigh[high], v6EndLow[high]) > 0) {
+            return null;
+        }
+        return locations[v6Locations[high]];
+    }
+
+    public int getV4RangeCount() {
+        return v4Starts.length;
+    }
+
+    public int getV6RangeCount() {
+        return v6StartHigh.length;
+    }
+
+    public int getLocationCount() {
+        return locations.length;
+    }
+
+    /**
+     * Bytes held by the range arrays, excluding the shared location objects.
+     */
+    public long getRangeFootprintBytes() {
+        return (long) v4Starts.length * (8 + 8 + 4) + (long) v6StartHigh.length * (4 * 8 + 4);
+    }
+
+    private static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+        int result = Long.compareUnsigned(aHigh, bHigh);
+        return result != 0 ? result : Long.compareUnsigned(aLow, bLow);
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address, returning -1 when the text is not one.
+     */
+    static long parseIpv4(String text) {
+        long result = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                result = result << 8 | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || dots != 3) {
+            return -1;
+        }
+        return result << 8 | octet;
+    }
+
+    // Callers pass text containing ':'; with a hex digit or ':' up front as well,
+    // InetAddress parses it as a literal and never falls back to a DNS lookup
+    private static byte[] parseIpv6(String text) {
+        char first = text.charAt(0);
+        if (Character.digit(first, 16) < 0 && first != ':') {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(text).getAddress();
+        } catch (UnknownHostException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset, int length) {
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result = result << 8 | (bytes[i] & 0xff);
+        }
+        return result;
+    }
+
+    private static String countryName(String code) {
+        if (code.length() != 2) {
+            return code;
+        }
+        String name = new Locale("", code).getDisplayCountry(Locale.ENGLISH);
+        return name.isEmpty() ? code : name;
+    }
+
+    private static Double parseCoordinate(String text) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Minimal RFC 4180 splitting: quoted fields may contain commas and doubled quotes
+    private static void splitCsv(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+
+    /**
+     * Collects ranges in any order; {@link #build()} sorts them. Equal locations are
+     * stored once.
+     */
+    public static final class Builder {
+        private final RangeColumns v4 = new RangeColumns(2);
+        private final RangeColumns v6 = new RangeColumns(4);
+        private final List<GeoLocationService.GeoLocation> locations = new ArrayList<>();
+        private final Map<GeoLocationService.GeoLocation, Integer> locationIndex = new HashMap<>();
+
+        public Builder addV4(long start, long end, GeoLocationService.GeoLocation location) {
+            v4.add(locationId(location), start, end);
+            return this;
+        }
+
+        public Builder addV6(long startHigh, long startLow, long endHigh, long endLow,
+                             GeoLocationService.GeoLocation location) {
+            v6.add(locationId(location), startHigh, startLow, endHigh, endLow);
+            return this;
+        }
+
+        /**
+         * Adds a range given as two IP literals of the same family. Returns false when
+         * either bound is not a valid address.
+         */
+        public boolean addRange(String start, String end, GeoLocationService.GeoLocation location) {
+            long v4Start = parseIpv4(start);
+            long v4End = parseIpv4(end);
+            if (v4Start >= 0 && v4End >= 0) {
+                addV4(v4Start, v4End, location);
+                return true;
+            }
+            if (start.indexOf(':') < 0 || end.indexOf(':') < 0) {
+                return false;
+            }
+
+            byte[] startBytes = parseIpv6(start);
+            byte[] endBytes = parseIpv6(end);
+            if (startBytes == null || endBytes == null || startBytes.length != 16 || endBytes.length != 16) {
+                return false;
+            }
+            addV6(toLong(startBytes, 0, 8), toLong(startBytes, 8, 8),
+                    toLong(endBytes, 0, 8), toLong(endBytes, 8, 8), location);
+            return true;
+        }
+
+        public GeoIpDatabase build() {
+            return new GeoIpDatabase(this);
+        }
+
+        private int locationId(GeoLocationService.GeoLocation location) {
+            return locationIndex.computeIfAbsent(location, key -> {
+                locations.add(key);
+                return locations.size() - 1;
+            });
+        }
+    }
+
+    // Growable row-major long columns plus a location id per row
+    private static final class RangeColumns {
+        private final int width;
+        private long[] values = new long[0];
+        private int[] locationIds = new int[0];
+        private int size;
+        private boolean sorted = true;
+
+        RangeColumns(int width) {
+            this.width = width;
+        }
+
+        void add(int locationId, long... row) {
+            if (size == locationIds.length) {
+                int capacity = Math.max(1024, size * 2);
+                values = Arrays.copyOf(values, capacity * width);
+                locationIds = Arrays.copyOf(locationIds, capacity);
+            }
+            System.arraycopy(row, 0, values, size * width, width);
+            locationIds[size++] = locationId;
+            if (size > 1 && compareStarts(size - 2, size - 1) > 0) {
+                sorted = false;
+            }
+        }
+
+        // Files are normally sorted already; only fall back to a boxed sort when not
+        int[] sortedOrder() {
+            int[] result = new int[size];
+            if (sorted) {
+                for (int i = 0; i < size; i++) {
+                    result[i] = i;
+                }
+                return result;
+            }
+
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, this::compareStarts);
+            for (int i = 0; i < size; i++) {
+                result[i] = order[i];
+            }
+            return result;
+        }
+
+        long[] column(int column, int[] order) {
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = values[order[i] * width + column];
+            }
+            return result;
+        }
+
+        int[] locations(int[] order) {
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = locationIds[order[i]];
+            }
+            return result;
+        }
+
+        private int compareStarts(int a, int b) {
+            int baseA = a * width;
+            int baseB = b * width;
+            if (width == 2) {
+                return Long.compare(values[baseA], values[baseB]);
+            }
+            return compare(values[baseA], values[baseA + 1], values[baseB], values[baseB + 1]);
+        }
+    }
+}
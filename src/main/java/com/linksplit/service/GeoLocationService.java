@@ -2,30 +2,130 @@ package com.linksplit.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linksplit.config.AppConfig;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Resolves IP addresses to locations from the local {@link GeoIpDatabase} configured
+ * with {@code app.geo-ip.database-path}. The database is reloaded without a restart
+ * when the file changes (or on demand from the admin panel) and swapped in atomically.
+ * <p>
+ * Addresses the database does not cover fall back to ip-api.com when
+ * {@code app.geo-ip.remote-fallback} is enabled, with short timeouts and cached results.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GeoLocationService {
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final AppConfig appConfig;
+    private final CacheManager cacheManager;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     // Using ip-api.com (free, no API key required)
     private static final String IP_API_URL = "http://ip-api.com/json/";
     
-    @Cacheable(value = "geoLocation", key = "#ipAddress")
+    private RestTemplate restTemplate;
+    private volatile GeoIpDatabase database;
+    private FileTime databaseModifiedAt;
+    
+    @PostConstruct
+    void init() {
+        AppConfig.GeoIp config = appConfig.getGeoIp();
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(config.getRemoteConnectTimeoutMillis());
+        requestFactory.setReadTimeout(config.getRemoteReadTimeoutMillis());
+        restTemplate = new RestTemplate(requestFactory);
+        
+        if (StringUtils.hasText(config.getDatabasePath())) {
+            try {
+                reloadDatabase();
+            } catch (IOException e) {
+                log.error("Failed to load GeoIP database {}: {}", config.getDatabasePath(), e.getMessage());
+            }
+        }
+    }
+    
     public GeoLocation getLocation(String ipAddress) {
+        // Skip localhost/private IPs
+        if (ipAddress == null || isPrivateIP(ipAddress)) {
+            return GeoLocation.unknown();
+        }
+        
+        GeoIpDatabase current = database;
+        if (current != null) {
+            GeoLocation location = current.lookup(ipAddress);
+            if (location != null) {
+                return location;
+            }
+        }
+        
+        if (!appConfig.getGeoIp().isRemoteFallback()) {
+            return GeoLocation.unknown();
+        }
+        
+        Cache cache = cacheManager.getCache("geoLocation");
+        return cache != null ? cache.get(ipAddress, () -> lookupRemote(ipAddress)) : lookupRemote(ipAddress);
+    }
+    
+    /**
+     * Loads the configured database file and swaps it in. Lookups keep using the
+     * previous database until the new one is fully built.
+     */
+    public synchronized GeoIpDatabase reloadDatabase() throws IOException {
+        Path path = Path.of(appConfig.getGeoIp().getDatabasePath());
+        FileTime modifiedAt = Files.getLastModifiedTime(path);
+        
+        long started = System.nanoTime();
+        GeoIpDatabase loaded = GeoIpDatabase.load(path);
+        database = loaded;
+        databaseModifiedAt = modifiedAt;
+        
+        log.info("Loaded GeoIP database {}: {} IPv4 ranges, {} IPv6 ranges, {} locations in {} ms",
+                path, loaded.getV4RangeCount(), loaded.getV6RangeCount(), loaded.getLocationCount(),
+                (System.nanoTime() - started) / 1_000_000);
+        return loaded;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.geo-ip.reload-check-interval-millis:60000}")
+    public void reloadIfChanged() {
+        String databasePath = appConfig.getGeoIp().getDatabasePath();
+        if (!StringUtils.hasText(databasePath)) {
+            return;
+        }
+        
         try {
-            // Skip localhost/private IPs
-            if (isPrivateIP(ipAddress)) {
-                return GeoLocation.unknown();
+            FileTime modifiedAt = Files.getLastModifiedTime(Path.of(databasePath));
+            synchronized (this) {
+                if (modifiedAt.equals(databaseModifiedAt)) {
+                    return;
+                }
             }
-            
+            reloadDatabase();
+        } catch (IOException e) {
+            log.error("Failed to reload GeoIP database {}: {}", databasePath, e.getMessage());
+        }
+    }
+    
+    public boolean isDatabaseLoaded() {
+        return database != null;
+    }
+    
+    private GeoLocation lookupRemote(String ipAddress) {
+        try {
             String url = IP_API_URL + ipAddress;
             String response = restTemplate.getForObject(url, String.class);
             JsonNode json = objectMapper.readTree(response);
@@ -72,4 +172,4 @@ public class GeoLocationService {
                     .build();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-local rate limiter keeping the most recent view timestamps of each IP in a
+ * fixed-size {@code long[]} ring, sized to the largest {@code max-views} of any window.
+ * <p>
+ * An IP has used up a window of {@code d} millis with a limit of {@code m} views exactly
+ * when its m-th most recent view is younger than {@code d}, so every window is answered
+ * with a single array read. IPs whose newest view has aged out of the longest window are
+ * evicted periodically.
+ * <p>
+ * Limits are per instance and reset on restart; use the {@code jpa} engine when several
+ * instances must share them.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.view-fraud-prevention", name = "engine", havingValue = "memory", matchIfMissing = true)
+@Slf4j
+public class InMemoryRateLimiter implements RateLimiter {
+    private final Window[] windows;
+    private final int capacity;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<String, Timestamps> timestampsByIp = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InMemoryRateLimiter(AppConfig appConfig) {
+        this(appConfig, System::currentTimeMillis);
+    }
+
+    InMemoryRateLimiter(AppConfig appConfig, LongSupplier clock) {
+        List<Window> configured = Window.fromConfig(appConfig);
+        this.windows = configured.toArray(new Window[0]);
+        this.capacity = Math.max(1, configured.stream().mapToInt(Window::maxViews).max().orElse(1));
+        this.retentionMillis = configured.stream().mapToLong(Window::durationMillis).max().orElse(0);
+        this.clock = clock;
+    }
+
+    @Override
+    public ViewLimitService.LimitType check(String ipAddress) {
+        Timestamps timestamps = timestampsByIp.get(ipAddress);
+        if (timestamps == null) {
+            return ViewLimitService.LimitType.ALLOWED;
+        }
+        synchronized (timestamps) {
+            return firstExceeded(timestamps, clock.getAsLong());
+        }
+    }
+
+    @Override
+    public ViewLimitService.LimitType checkAndRecord(String ipAddress) {
+        while (true) {
+            Timestamps timestamps = timestampsByIp.computeIfAbsent(ipAddress, ip -> new Timestamps(capacity));
+            synchronized (timestamps) {
+                if (timestamps.retired) {
+                    // Evicted between lookup and lock; retry against a fresh entry
+                    continue;
+                }
+                long now = clock.getAsLong();
+                ViewLimitService.LimitType result = firstExceeded(timestamps, now);
+                if (result == ViewLimitService.LimitType.ALLOWED) {
+                    timestamps.add(now);
+                }
+                return result;
+            }
+        }
+    }
+
+    @Override
+    public void record(String ipAddress) {
+        while (true) {
+            Timestamps timestamps = timestampsByIp.computeIfAbsent(ipAddress, ip -> new Timestamps(capacity));
+            synchronized (timestamps) {
+                if (!timestamps.retired) {
+                    timestamps.add(clock.getAsLong());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts views inside the window. Only the last {@code capacity} views are kept, so
+     * the result saturates at the largest configured limit.
+     */
+    @Override
+    public long countSince(String ipAddress, Duration window) {
+        Timestamps timestamps = timestampsByIp.get(ipAddress);
+        if (timestamps == null) {
+            return 0;
+        }
+        long since = clock.getAsLong() - window.toMillis();
+        synchronized (timestamps) {
+            int count = 0;
+            while (count < timestamps.size && timestamps.nthMostRecent(count + 1) > since) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    public int getTrackedIpCount() {
+        return timestampsByIp.size();
+    }
+
+    private ViewLimitService.LimitType firstExceeded(Timestamps timestamps, long now) {
+        for (Window window : windows) {
+            int maxViews = window.maxViews();
+            if (timestamps.size >= maxViews
+                    && (maxViews == 0 || timestamps.nthMostRecent(maxViews) > now - window.durationMillis())) {
+                return window.type();
+            }
+        }
+        return ViewLimitService.LimitType.ALLOWED;
+    }
+
+    @Scheduled(fixedDelayString = "${app.view-fraud-prevention.eviction-interval-millis:60000}")
+    public void evictIdle() {
+        long cutoff = clock.getAsLong() - retentionMillis;
+        int evicted = 0;
+        for (Map.Entry<String, Timestamps> entry : timestampsByIp.entrySet()) {
+            Timestamps timestamps = entry.getValue();
+            synchronized (timestamps) {
+                if (timestamps.size == 0 || timestamps.nthMostRecent(1) <= cutoff) {
+                    timestamps.retired = true;
+                    timestampsByIp.remove(entry.getKey(), timestamps);
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle IPs from rate limiter, {} still tracked", evicted, timestampsByIp.size());
+        }
+    }
+
+    // Guarded by its own monitor
+    private static final class Timestamps {
+        final long[] ring;
+        int head; // next slot to write
+        int size;
+        boolean retired;
+
+        Timestamps(int capacity) {
+            this.ring = new long[capacity];
+        }
+
+        void add(long timestamp) {
+            ring[head] = timestamp;
+            head = head + 1 == ring.length ? 0 : head + 1;
+            if (size < ring.length) {
+                size++;
+            }
+        }
+
+        // n is 1-based and at most size
+        long nthMostRecent(int n) {
+            int index = head - n;
+            return ring[index < 0 ? index + ring.length : index];
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.IpViewTracker;
+import com.linksplit.repository.IpViewTrackerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Rate limiter backed by the {@code ip_view_tracker} table. Runs one count query per
+ * window, but limits survive restarts and are shared by every instance.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.view-fraud-prevention", name = "engine", havingValue = "jpa")
+@Slf4j
+public class JpaRateLimiter implements RateLimiter {
+    private final IpViewTrackerRepository ipViewTrackerRepository;
+    private final List<Window> windows;
+
+    public JpaRateLimiter(IpViewTrackerRepository ipViewTrackerRepository, AppConfig appConfig) {
+        this.ipViewTrackerRepository = ipViewTrackerRepository;
+        this.windows = Window.fromConfig(appConfig);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ViewLimitService.LimitType check(String ipAddress) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Window window : windows) {
+            long count = ipViewTrackerRepository.countViewsSince(ipAddress, now.minus(Duration.ofMillis(window.durationMillis())));
+            if (count >= window.maxViews()) {
+                return window.type();
+            }
+        }
+        return ViewLimitService.LimitType.ALLOWED;
+    }
+
+    @Override
+    @Transactional
+    public ViewLimitService.LimitType checkAndRecord(String ipAddress) {
+        ViewLimitService.LimitType result = check(ipAddress);
+        if (result == ViewLimitService.LimitType.ALLOWED) {
+            record(ipAddress);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public void record(String ipAddress) {
+        IpViewTracker tracker = IpViewTracker.builder()
+                .ipAddress(ipAddress)
+                .viewedAt(LocalDateTime.now())
+                .build();
+        ipViewTrackerRepository.save(tracker);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countSince(String ipAddress, Duration window) {
+        return ipViewTrackerRepository.countViewsSince(ipAddress, LocalDateTime.now().minus(window));
+    }
+
+    // Clean up old records every hour to prevent table bloat
+    @Scheduled(fixedDelay = 3600000) // 1 hour
+    @Transactional
+    public void cleanupOldRecords() {
+        LocalDateTime twoDaysAgo = LocalDateTime.now().minusDays(2);
+        ipViewTrackerRepository.deleteOldRecords(twoDaysAgo);
+        log.info("Cleaned up IP view tracker records older than 2 days");
+    }
+}
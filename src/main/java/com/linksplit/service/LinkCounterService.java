@@ -0,0 +1,265 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.Link;
+import com.linksplit.repository.LinkJdbcRepository;
+import com.linksplit.repository.LinkRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-link view and duplicate-view counters.
+ * <p>
+ * With {@code app.view-counters.write-behind} enabled, increments land in
+ * {@link LongAdder}s keyed by link id and are flushed to {@code links} on a schedule
+ * (and on shutdown) with one batched statement, so concurrent views of a hot link no
+ * longer queue on its row lock. Reads that show view counts should go through
+ * {@link #applyPending(Collection)} to include the not-yet-flushed deltas.
+ * <p>
+ * With write-behind disabled, every increment is written immediately, but only to the
+ * counts: the links' earnings are refreshed by the next scheduled flush, after the
+ * increment has committed. Otherwise every view would also update its owner's single
+ * ledger balance row, serialising all views of a creator's links on that row lock.
+ * <p>
+ * Either way, earnings are written together with their ledger accruals, one posting
+ * per owner per flush. Links whose refresh is lost in a crash are caught by the
+ * periodic {@link RevenueService#refreshEarnings(long, long)} pass.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LinkCounterService {
+    // Entries that stayed at zero for this many flushes are dropped from the map
+    private static final int IDLE_FLUSHES_BEFORE_EVICTION = 2;
+
+    private final AppConfig appConfig;
+    private final LinkRepository linkRepository;
+    private final LinkJdbcRepository linkJdbcRepository;
+    private final EarningsLedgerService earningsLedgerService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<Long, PendingCounts> pending = new ConcurrentHashMap<>();
+    // Links counted immediately whose earnings the next flush refreshes
+    private final Set<Long> staleEarnings = ConcurrentHashMap.newKeySet();
+
+    public boolean isWriteBehind() {
+        return appConfig.getViewCounters().isWriteBehind();
+    }
+
+    public void recordView(long linkId) {
+        if (isWriteBehind()) {
+            add(linkId, 1, false);
+        } else {
+            addCounts(List.of(new LinkJdbcRepository.CounterDelta(linkId, 1, 0)));
+        }
+    }
+
+    public void recordDuplicate(long linkId) {
+        if (isWriteBehind()) {
+            add(linkId, 1, true);
+        } else {
+            linkRepository.incrementDuplicateViewCount(linkId);
+        }
+    }
+
+    /**
+     * Adds grouped view counts. When write-behind is disabled the update joins the
+     * caller's transaction.
+     */
+    public void addViews(Map<Long, Long> viewDeltasByLinkId) {
+        if (isWriteBehind()) {
+            viewDeltasByLinkId.forEach((linkId, delta) -> add(linkId, delta, false));
+            return;
+        }
+
+        List<LinkJdbcRepository.CounterDelta> deltas = new ArrayList<>(viewDeltasByLinkId.size());
+        viewDeltasByLinkId.forEach((linkId, delta) -> deltas.add(new LinkJdbcRepository.CounterDelta(linkId, delta, 0)));
+        addCounts(deltas);
+    }
+
+    public long getPendingViews(long linkId) {
+        PendingCounts counts = pending.get(linkId);
+        return counts != null ? counts.views.sum() : 0;
+    }
+
+    public long getPendingViews(Collection<Link> links) {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for (Link link : links) {
+            total += getPendingViews(link.getId());
+        }
+        return total;
+    }
+
+    /**
+     * Merges unflushed deltas into the given links' view and duplicate counts. Only
+     * call this on detached entities, or the merged values would be written back.
+     */
+    public <T extends Collection<Link>> T applyPending(T links) {
+        if (pending.isEmpty()) {
+            return links;
+        }
+        for (Link link : links) {
+            PendingCounts counts = link.getId() != null ? pending.get(link.getId()) : null;
+            if (counts != null) {
+                link.setViewCount(link.getViewCount() + counts.views.sum());
+                link.setDuplicateViewCount(link.getDuplicateViewCount() + counts.duplicates.sum());
+            }
+        }
+        return links;
+    }
+
+    private void add(long linkId, long delta, boolean duplicate) {
+        while (true) {
+            PendingCounts counts = pending.get(linkId);
+            if (counts == null) {
+                counts = pending.computeIfAbsent(linkId, id -> new PendingCounts());
+            }
+
+            LongAdder adder = duplicate ? counts.duplicates : counts.views;
+            adder.add(delta);
+            if (!counts.retired) {
+                return;
+            }
+
+            // Raced with idle eviction: undo and retry against the live entry
+            adder.add(-delta);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.view-counters.flush-interval-millis:1000}")
+    public synchronized void flush() {
+        flushPending();
+        refreshStaleEarnings();
+    }
+
+    private void flushPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<LinkJdbcRepository.CounterDelta> deltas = new ArrayList<>();
+        for (Map.Entry<Long, PendingCounts> entry : pending.entrySet()) {
+            PendingCounts counts = entry.getValue();
+            long views = counts.views.sum();
+            long duplicates = counts.duplicates.sum();
+
+            if (views == 0 && duplicates == 0) {
+                if (++counts.idleFlushes >= IDLE_FLUSHES_BEFORE_EVICTION) {
+                    evictIfIdle(entry.getKey());
+                }
+                continue;
+            }
+
+            counts.idleFlushes = 0;
+            deltas.add(new LinkJdbcRepository.CounterDelta(entry.getKey(), views, duplicates));
+        }
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            apply(deltas);
+        } catch (Exception e) {
+            // Deltas stay in the adders and are retried on the next flush
+            log.error("Failed to flush view counters for {} links: {}", deltas.size(), e.getMessage());
+            return;
+        }
+
+        // Subtract what was written rather than resetting, so increments that raced
+        // with the flush are kept for the next one
+        for (LinkJdbcRepository.CounterDelta delta : deltas) {
+            PendingCounts counts = pending.get(delta.linkId());
+            counts.views.add(-delta.views());
+            counts.duplicates.add(-delta.duplicates());
+        }
+
+        log.debug("Flushed view counters for {} links", deltas.size());
+    }
+
+    // Joins the caller's transaction if there is one
+    private void apply(List<LinkJdbcRepository.CounterDelta> deltas) {
+        transactionTemplate.executeWithoutResult(status -> earningsLedgerService.accrue(
+                LinkJdbcRepository.EarningsChange.byUser(linkJdbcRepository.applyCounterDeltas(deltas))));
+    }
+
+    // Joins the caller's transaction if there is one
+    private void addCounts(List<LinkJdbcRepository.CounterDelta> deltas) {
+        linkJdbcRepository.addCounts(deltas);
+        List<Long> linkIds = deltas.stream().map(LinkJdbcRepository.CounterDelta::linkId).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            staleEarnings.addAll(linkIds);
+            return;
+        }
+        // A refresh before commit would still see the old count and drop the link
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                staleEarnings.addAll(linkIds);
+            }
+        });
+    }
+
+    private void refreshStaleEarnings() {
+        if (staleEarnings.isEmpty()) {
+            return;
+        }
+
+        // Remove before reading, so links counted meanwhile stay queued for the next flush
+        List<Long> linkIds = new ArrayList<>(staleEarnings);
+        staleEarnings.removeAll(linkIds);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<LinkJdbcRepository.EarningsChange> changes = linkJdbcRepository.lockStaleEarnings(linkIds);
+                linkJdbcRepository.updateEarnings(changes);
+                earningsLedgerService.accrue(LinkJdbcRepository.EarningsChange.byUser(changes));
+            });
+        } catch (Exception e) {
+            staleEarnings.addAll(linkIds);
+            log.error("Failed to refresh earnings of {} links: {}", linkIds.size(), e.getMessage());
+        }
+    }
+
+    private void evictIfIdle(Long linkId) {
+        pending.computeIfPresent(linkId, (id, counts) -> {
+            // Publish retirement before the final check; an increment that lands after
+            // it will observe the flag and move itself to a fresh entry
+            counts.retired = true;
+            if (counts.views.sum() != 0 || counts.duplicates.sum() != 0) {
+                counts.retired = false;
+                counts.idleFlushes = 0;
+                return counts;
+            }
+            return null;
+        });
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private static final class PendingCounts {
+        final LongAdder views = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        volatile boolean retired;
+        int idleFlushes; // only touched by the flushing thread
+    }
+}
@@ -26,6 +26,8 @@ public class PaymentService {
     private final PaymentMethodRepository paymentMethodRepository;
     private final PayoutRepository payoutRepository;
     private final LinkRepository linkRepository;
+    private final UserStatsService userStatsService;
+    private final EarningsLedgerService earningsLedgerService;
     
     private static final BigDecimal MINIMUM_PAYOUT = new BigDecimal("100.00"); // Minimum ₹100 for payout
     
@@ -102,35 +104,8 @@ public class PaymentService {
     
     @Transactional
     public Payout requestPayout(User user) {
-        // Get user's total earnings
-        BigDecimal totalEarnings = linkRepository.getTotalEarningsByUser(user);
-        if (totalEarnings == null) {
-            totalEarnings = BigDecimal.ZERO;
-        }
-        
-        // Get already paid out amount
-        BigDecimal totalPaidOut = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.COMPLETED);
-        if (totalPaidOut == null) {
-            totalPaidOut = BigDecimal.ZERO;
-        }
-        
-        // Get pending payouts amount
-        BigDecimal pendingPayouts = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.PENDING);
-        if (pendingPayouts == null) {
-            pendingPayouts = BigDecimal.ZERO;
-        }
-        
-        // Also check for processing payouts
-        BigDecimal processingPayouts = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.PROCESSING);
-        if (processingPayouts == null) {
-            processingPayouts = BigDecimal.ZERO;
-        }
-        
-        // Calculate available balance (earnings minus all payouts - completed, pending, and processing)
-        BigDecimal availableBalance = totalEarnings
-                .subtract(totalPaidOut)
-                .subtract(pendingPayouts)
-                .subtract(processingPayouts);
+        // Locks the user's balance row, so concurrent requests cannot both claim it
+        BigDecimal availableBalance = earningsLedgerService.lockAvailableBalance(user.getId());
         
         // Check minimum payout threshold
         if (availableBalance.compareTo(MINIMUM_PAYOUT) < 0) {
@@ -159,7 +134,10 @@ public class PaymentService {
                 .notes("Payout requested via " + primaryPaymentMethod.getUpiId())
                 .build();
         
-        return payoutRepository.save(payout);
+        Payout saved = payoutRepository.save(payout);
+        earningsLedgerService.recordPayoutStatus(saved, null);
+        userStatsService.evict(user.getId());
+        return saved;
     }
     
     @Transactional
@@ -178,30 +156,48 @@ public class PaymentService {
         payout.setStatus(Payout.PayoutStatus.CANCELLED);
         payout.setProcessedAt(LocalDateTime.now());
         payoutRepository.save(payout);
+        earningsLedgerService.recordPayoutStatus(payout, Payout.PayoutStatus.PENDING);
+        userStatsService.evict(user.getId());
     }
     
-    public BigDecimal getAvailableBalance(User user) {
-        BigDecimal totalEarnings = linkRepository.getTotalEarningsByUser(user);
-        if (totalEarnings == null) {
-            totalEarnings = BigDecimal.ZERO;
-        }
+    /**
+     * Moves a payout to a new status on an admin's behalf, returning the previous one.
+     */
+    @Transactional
+    public Payout.PayoutStatus updatePayoutStatus(Long payoutId, Payout.PayoutStatus newStatus, String transactionId,
+                                                  String failedReason, String notes) {
+        Payout payout = payoutRepository.findById(payoutId)
+                .orElseThrow(() -> new IllegalArgumentException("Payout not found with ID: " + payoutId));
         
-        BigDecimal totalPaidOut = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.COMPLETED);
-        if (totalPaidOut == null) {
-            totalPaidOut = BigDecimal.ZERO;
-        }
+        Payout.PayoutStatus oldStatus = payout.getStatus();
+        payout.setStatus(newStatus);
         
-        BigDecimal pendingPayouts = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.PENDING);
-        if (pendingPayouts == null) {
-            pendingPayouts = BigDecimal.ZERO;
+        if (newStatus == Payout.PayoutStatus.COMPLETED) {
+            payout.setProcessedAt(LocalDateTime.now());
+            if (transactionId != null && !transactionId.isEmpty()) {
+                payout.setTransactionId(transactionId);
+            }
+        } else if (newStatus == Payout.PayoutStatus.FAILED) {
+            payout.setProcessedAt(LocalDateTime.now());
+            if (failedReason != null && !failedReason.isEmpty()) {
+                payout.setFailedReason(failedReason);
+            }
+        } else if (newStatus == Payout.PayoutStatus.PROCESSING) {
+            payout.setProcessedAt(LocalDateTime.now());
         }
         
-        BigDecimal processingPayouts = payoutRepository.getTotalPayoutsByUserAndStatus(user, Payout.PayoutStatus.PROCESSING);
-        if (processingPayouts == null) {
-            processingPayouts = BigDecimal.ZERO;
+        if (notes != null && !notes.isEmpty()) {
+            payout.setNotes(notes);
         }
         
-        return totalEarnings.subtract(totalPaidOut).subtract(pendingPayouts).subtract(processingPayouts);
+        payoutRepository.save(payout);
+        earningsLedgerService.recordPayoutStatus(payout, oldStatus);
+        userStatsService.evict(payout.getUser().getId());
+        return oldStatus;
+    }
+    
+    public BigDecimal getAvailableBalance(User user) {
+        return earningsLedgerService.getAvailableBalance(user.getId());
     }
     
     // Scheduled job to process payouts (runs daily at 2 AM)
@@ -225,6 +221,8 @@ public class PaymentService {
                 payout.setProcessedAt(LocalDateTime.now());
                 payoutRepository.save(payout);
             }
+            earningsLedgerService.recordPayoutStatus(payout, Payout.PayoutStatus.PENDING);
+            userStatsService.evict(payout.getUser().getId());
         }
         
         log.info("Completed payout processing for {} payouts", pendingPayouts.size());
@@ -0,0 +1,95 @@
+package com.linksplit.service;
+
+import com.linksplit.dto.PlatformStats;
+import com.linksplit.entity.User;
+import com.linksplit.repository.LinkRepository;
+import com.linksplit.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a snapshot of the platform-wide totals shown on the admin dashboard, so the
+ * page reads one reference instead of scanning every link. The snapshot is rebuilt
+ * every {@code app.platform-stats.refresh-interval-millis} from aggregate queries:
+ * one pass over {@code links} for the totals, one grouped query for the top creators
+ * and one indexed read of the newest users. Only the few users shown are loaded.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlatformStatsService {
+    static final int TOP_CREATORS = 10;
+
+    private final UserRepository userRepository;
+    private final LinkRepository linkRepository;
+
+    private final AtomicReference<PlatformStats> snapshot = new AtomicReference<>();
+
+    /**
+     * The latest snapshot, building the first one on demand.
+     */
+    public PlatformStats getStats() {
+        PlatformStats stats = snapshot.get();
+        return stats != null ? stats : refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${app.platform-stats.refresh-interval-millis:60000}")
+    public void refreshScheduled() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Platform stats refresh failed, keeping previous snapshot: {}", e.getMessage());
+        }
+    }
+
+    PlatformStats refresh() {
+        long started = System.nanoTime();
+        Object[] totals = linkRepository.getPlatformTotals().get(0);
+
+        PlatformStats stats = PlatformStats.builder()
+                .totalUsers(userRepository.count())
+                .totalLinks(((Number) totals[0]).longValue())
+                .totalViews(((Number) totals[1]).longValue())
+                .totalEarnings((BigDecimal) totals[2])
+                .recentUsers(userRepository.findTop10ByOrderByCreatedAtDesc().stream()
+                        .map(user -> new PlatformStats.UserSummary(user.getId(), user.getEmail(), user.getRole(),
+                                user.getCreatedAt()))
+                        .collect(Collectors.toList()))
+                .topCreators(findTopCreators())
+                .refreshedAt(LocalDateTime.now())
+                .build();
+        snapshot.set(stats);
+        log.debug("Refreshed platform stats in {} ms", (System.nanoTime() - started) / 1_000_000);
+        return stats;
+    }
+
+    private List<PlatformStats.CreatorSummary> findTopCreators() {
+        List<Object[]> rows = linkRepository.findTopUserIdsByEarnings(PageRequest.of(0, TOP_CREATORS));
+        List<Long> userIds = rows.stream().map(row -> (Long) row[0]).collect(Collectors.toList());
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<PlatformStats.CreatorSummary> creators = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            User user = users.get((Long) row[0]);
+            // Deleted between the two queries
+            if (user != null) {
+                creators.add(new PlatformStats.CreatorSummary(user.getId(), user.getEmail(),
+                        row[1] != null ? (BigDecimal) row[1] : BigDecimal.ZERO));
+            }
+        }
+        return creators;
+    }
+}
@@ -0,0 +1,58 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sliding-window view limits per IP address, as configured under
+ * {@code app.view-fraud-prevention.rate-limits}. The implementation is selected with
+ * {@code app.view-fraud-prevention.engine}.
+ */
+public interface RateLimiter {
+
+    /**
+     * Returns the first configured window the IP has already used up, without
+     * recording anything.
+     */
+    ViewLimitService.LimitType check(String ipAddress);
+
+    /**
+     * Like {@link #check(String)}, but records a view when every window still has room.
+     */
+    ViewLimitService.LimitType checkAndRecord(String ipAddress);
+
+    /**
+     * Records a view unconditionally.
+     */
+    void record(String ipAddress);
+
+    long countSince(String ipAddress, Duration window);
+
+    record Window(ViewLimitService.LimitType type, long durationMillis, int maxViews) {
+
+        /**
+         * Configured windows, shortest first, mapped to the limit type they report.
+         */
+        public static List<Window> fromConfig(AppConfig appConfig) {
+            Map<String, AppConfig.ViewFraudPrevention.RateLimit> limits =
+                    appConfig.getViewFraudPrevention().getRateLimits();
+
+            List<Window> windows = new ArrayList<>(3);
+            addWindow(windows, limits.get("five-minutes"), ViewLimitService.LimitType.FIVE_MINUTE);
+            addWindow(windows, limits.get("hourly"), ViewLimitService.LimitType.HOURLY);
+            addWindow(windows, limits.get("daily"), ViewLimitService.LimitType.DAILY);
+            return List.copyOf(windows);
+        }
+
+        private static void addWindow(List<Window> windows, AppConfig.ViewFraudPrevention.RateLimit limit,
+                                      ViewLimitService.LimitType type) {
+            if (limit != null) {
+                windows.add(new Window(type, Duration.ofMinutes(limit.getDurationMinutes()).toMillis(), limit.getMaxViews()));
+            }
+        }
+    }
+}
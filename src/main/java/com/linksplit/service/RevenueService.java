@@ -1,16 +1,20 @@
 package com.linksplit.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.linksplit.config.AppConfig;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
+import com.linksplit.repository.LinkJdbcRepository;
+import com.linksplit.repository.LinkJdbcRepository.EarningsChange;
 import com.linksplit.repository.LinkRepository;
+import com.linksplit.util.EarningsRate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.List;
 
 @Service
@@ -19,8 +23,17 @@ import java.util.List;
 public class RevenueService {
     
     private final LinkRepository linkRepository;
+    private final LinkJdbcRepository linkJdbcRepository;
+    private final EarningsLedgerService earningsLedgerService;
     private final AppConfig appConfig;
     
+    // Users with custom rates; an entry is only used while it matches the user's
+    // current effective rates, so rate changes need no eviction
+    private final Cache<Long, EarningsRate> customRates = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build();
+    private volatile EarningsRate defaultRate;
+    
     /**
      * Calculate earnings for a specific number of views based on user's custom rates or defaults
      */
@@ -28,28 +41,37 @@ public class RevenueService {
         if (viewCount == null || viewCount == 0) {
             return BigDecimal.ZERO;
         }
+        return getEarningsRate(user).earnings(viewCount);
+    }
+    
+    /**
+     * The user's effective CPM rate times revenue share, precomputed for repeated
+     * earnings calculations; the configured defaults for a null user.
+     */
+    public EarningsRate getEarningsRate(User user) {
+        EarningsRate defaults = getDefaultEarningsRate();
+        if (user == null || (user.getCustomCpmRate() == null && user.getCustomRevenueShare() == null)) {
+            return defaults;
+        }
         
-        // Get CPM rate (custom or default)
-        BigDecimal cpmRate = user.getCustomCpmRate() != null 
-                ? user.getCustomCpmRate() 
-                : BigDecimal.valueOf(appConfig.getCpmRate());
-        
-        // Get revenue share (custom or default)
-        BigDecimal revenueShare = user.getCustomRevenueShare() != null 
-                ? user.getCustomRevenueShare() 
-                : BigDecimal.valueOf(appConfig.getRevenueShare());
-        
-        // Calculate: (views / 1000) * cpmRate * revenueShare
-        BigDecimal earnings = BigDecimal.valueOf(viewCount)
-                .divide(BigDecimal.valueOf(1000), 10, RoundingMode.HALF_UP)
-                .multiply(cpmRate)
-                .multiply(revenueShare)
-                .setScale(4, RoundingMode.HALF_UP);
-        
-        log.debug("Calculated earnings for {} views: CPM={}, Share={}, Earnings={}", 
-                viewCount, cpmRate, revenueShare, earnings);
-        
-        return earnings;
+        BigDecimal cpmRate = user.getCustomCpmRate() != null ? user.getCustomCpmRate() : defaults.getCpmRate();
+        BigDecimal revenueShare = user.getCustomRevenueShare() != null
+                ? user.getCustomRevenueShare()
+                : defaults.getRevenueShare();
+        EarningsRate rate = user.getId() != null ? customRates.getIfPresent(user.getId()) : null;
+        if (rate == null || !rate.isFor(cpmRate, revenueShare)) {
+            rate = EarningsRate.of(cpmRate, revenueShare);
+            if (user.getId() != null) {
+                customRates.put(user.getId(), rate);
+            }
+        }
+        return rate;
+    }
+    
+    public EarningsRate getDefaultEarningsRate() {
+        EarningsRate rate = EarningsRate.refresh(defaultRate, appConfig.getCpmRate(), appConfig.getRevenueShare());
+        defaultRate = rate;
+        return rate;
     }
     
     /**
@@ -61,6 +83,7 @@ public class RevenueService {
         
         List<Link> userLinks = linkRepository.findByUser(user);
         BigDecimal totalRecalculated = BigDecimal.ZERO;
+        BigDecimal totalChange = BigDecimal.ZERO;
         
         for (Link link : userLinks) {
             BigDecimal oldEarnings = link.getEstimatedEarnings();
@@ -69,6 +92,7 @@ public class RevenueService {
             if (oldEarnings.compareTo(newEarnings) != 0) {
                 link.setEstimatedEarnings(newEarnings);
                 linkRepository.save(link);
+                totalChange = totalChange.add(newEarnings.subtract(oldEarnings));
                 
                 log.debug("Updated link {} earnings from {} to {}", 
                     link.getShortCode(), oldEarnings, newEarnings);
@@ -76,11 +100,25 @@ public class RevenueService {
             
             totalRecalculated = totalRecalculated.add(newEarnings);
         }
+        earningsLedgerService.accrue(user.getId(), totalChange);
         
         log.info("Recalculation complete for user {}. Total earnings: {}", 
             user.getEmail(), totalRecalculated);
     }
     
+    /**
+     * Recomputes the estimated earnings of links with an id in {@code (afterId, throughId]}
+     * from their view counts and owners' current rates, writing and posting only the
+     * links whose amount changed. Returns the number of links changed.
+     */
+    @Transactional
+    public int refreshEarnings(long afterId, long throughId) {
+        List<EarningsChange> changes = linkJdbcRepository.lockStaleEarnings(afterId, throughId);
+        linkJdbcRepository.updateEarnings(changes);
+        earningsLedgerService.accrue(EarningsChange.byUser(changes));
+        return changes.size();
+    }
+    
     /**
      * Get effective CPM rate for a user
      */
@@ -0,0 +1,113 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.repository.LinkJdbcRepository;
+import com.linksplit.repository.LinkRepository;
+import com.linksplit.util.Base62Encoder;
+import com.linksplit.util.FeistelPermutation;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out short codes without collision checks between allocations. Ids are leased
+ * from {@code short_code_seq} in blocks, so instances never share an id, and each id
+ * is mapped through a keyed {@link FeistelPermutation} of the base62 space of
+ * {@code app.shortcode-length} digits. Distinct ids therefore always give distinct,
+ * fixed-length codes that do not reveal the creation order.
+ * <p>
+ * Links created before the allocator have random codes that a permuted id can land
+ * on. Such codes are skipped; the Bloom filter in {@link ShortCodeFilterService}
+ * rules almost all candidates out in memory, and only its "maybe" answers are checked
+ * against the database.
+ * <p>
+ * {@code app.short-codes.key} must be the same on every instance and must not change,
+ * or codes from the old and new key may coincide (they would then be skipped as taken).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShortCodeAllocator {
+    private static final int RADIX = 62;
+
+    private final AppConfig appConfig;
+    private final LinkJdbcRepository linkJdbcRepository;
+    private final LinkRepository linkRepository;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final Base62Encoder base62Encoder;
+
+    private FeistelPermutation permutation;
+    private int codeLength;
+
+    // Current lease; guarded by this
+    private long nextId;
+    private long blockEnd;
+
+    @PostConstruct
+    void init() {
+        codeLength = appConfig.getShortcodeLength();
+        String key = appConfig.getShortCodes().getKey();
+        if (key == null || key.isBlank()) {
+            throw new IllegalStateException("app.short-codes.key is not set; set SHORT_CODE_KEY to a long random "
+                    + "secret, the same on every instance");
+        }
+        permutation = new FeistelPermutation(RADIX, codeLength, key);
+        linkJdbcRepository.createShortCodeSequenceIfMissing();
+    }
+
+    public String allocate() {
+        while (true) {
+            String shortCode = base62Encoder.encodeFixed(permutation.permute(nextId()), codeLength);
+            if (isUnused(shortCode)) {
+                return shortCode;
+            }
+        }
+    }
+
+    /**
+     * Allocates {@code count} codes, reserving their ids under a single lock. Codes
+     * skipped as taken are replaced one at a time.
+     */
+    public List<String> allocate(int count) {
+        long[] ids = nextIds(count);
+        List<String> shortCodes = new ArrayList<>(count);
+        for (long id : ids) {
+            String shortCode = base62Encoder.encodeFixed(permutation.permute(id), codeLength);
+            shortCodes.add(isUnused(shortCode) ? shortCode : allocate());
+        }
+        return shortCodes;
+    }
+
+    private boolean isUnused(String shortCode) {
+        if (shortCodeFilterService.isDefinitelyUnused(shortCode) || !linkRepository.existsByShortCode(shortCode)) {
+            return true;
+        }
+        log.debug("Skipping allocated short code {}, already used by an older link", shortCode);
+        return false;
+    }
+
+    private synchronized long[] nextIds(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = nextId();
+        }
+        return ids;
+    }
+
+    private synchronized long nextId() {
+        if (nextId >= blockEnd) {
+            nextId = linkJdbcRepository.leaseShortCodeBlock();
+            blockEnd = nextId + LinkJdbcRepository.SHORT_CODE_BLOCK_SIZE;
+            log.debug("Leased short code ids [{}, {})", nextId, blockEnd);
+        }
+        if (nextId >= permutation.getDomainSize()) {
+            throw new IllegalStateException("All " + permutation.getDomainSize() + " short codes of length "
+                    + codeLength + " have been allocated");
+        }
+        return nextId++;
+    }
+}
@@ -0,0 +1,260 @@
+package com.linksplit.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linksplit.config.AppConfig;
+import com.linksplit.repository.LinkJdbcRepository;
+import com.linksplit.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers "does this short code definitely not exist?" without touching the database,
+ * so scanner and typo traffic on the redirect routes is rejected in memory.
+ * <p>
+ * Two layers: a Bloom filter of every existing short code, and a small TTL cache of
+ * codes that passed the filter but were then not found (false positives, and links
+ * deleted since the last rebuild). The filter is rebuilt from {@code links} once the
+ * application is ready, picks up links created on other instances with an
+ * incremental id scan every {@code sync-interval-millis}, and is rebuilt from scratch
+ * every {@code rebuild-interval-millis}, or sooner once deletions or growth degrade
+ * it. Until the first build completes every code is treated as possibly existing.
+ * <p>
+ * The incremental scan re-reads every id above the highest one seen
+ * {@code sync-lookback-millis} ago, so a link whose insert commits up to that long
+ * after a higher id was seen (a large bulk chunk, say) is still picked up. The
+ * periodic rebuild bounds how long a link committing later still can be missing.
+ */
+@Service
+@Slf4j
+public class ShortCodeFilterService {
+    private static final int SCAN_PAGE_SIZE = 10000;
+
+    private final AppConfig appConfig;
+    private final LinkJdbcRepository linkJdbcRepository;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+
+    private volatile BloomFilter filter;
+    private Cache<String, Boolean> unknownCodes;
+
+    // Highest id seen by each recent scan, oldest first; guarded by this
+    private final Deque<SyncPoint> syncPoints = new ArrayDeque<>();
+    private volatile long lastRebuildAt;
+    private final AtomicLong removedSinceRebuild = new AtomicLong();
+
+    private Counter filterRejections;
+    private Counter negativeCacheRejections;
+    private Counter falsePositives;
+
+    @Autowired
+    public ShortCodeFilterService(AppConfig appConfig, LinkJdbcRepository linkJdbcRepository,
+                                  MeterRegistry meterRegistry) {
+        this(appConfig, linkJdbcRepository, meterRegistry, System::currentTimeMillis);
+    }
+
+    ShortCodeFilterService(AppConfig appConfig, LinkJdbcRepository linkJdbcRepository, MeterRegistry meterRegistry,
+                           LongSupplier clock) {
+        this.appConfig = appConfig;
+        this.linkJdbcRepository = linkJdbcRepository;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void init() {
+        AppConfig.ShortCodeFilter config = appConfig.getShortCodeFilter();
+        unknownCodes = Caffeine.newBuilder()
+                .maximumSize(config.getNegativeCacheSize())
+                .expireAfterWrite(config.getNegativeCacheTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+
+        filterRejections = rejectionCounter("bloom_filter");
+        negativeCacheRejections = rejectionCounter("negative_cache");
+        falsePositives = Counter.builder("linksplit.shortcodes.filter.false_positives")
+                .description("Codes the Bloom filter passed that did not exist")
+                .register(meterRegistry);
+        Gauge.builder("linksplit.shortcodes.filter.expected_fpp", this,
+                        s -> s.filter != null ? s.filter.getExpectedFalsePositiveRate() : Double.NaN)
+                .description("Expected false-positive probability at the current fill")
+                .register(meterRegistry);
+        Gauge.builder("linksplit.shortcodes.filter.size", this,
+                        s -> s.filter != null ? s.filter.getSizeBytes() : 0)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("linksplit.shortcodes.filter.elements", this,
+                        s -> s.filter != null ? s.filter.getApproximateElementCount() : 0)
+                .register(meterRegistry);
+        Gauge.builder("linksplit.shortcodes.negative_cache.size", unknownCodes, Cache::estimatedSize)
+                .register(meterRegistry);
+    }
+
+    /**
+     * True when the code is known not to exist, either because the Bloom filter has
+     * never seen it or because it was recently looked up and not found.
+     */
+    public boolean isKnownMissing(String shortCode) {
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(shortCode)) {
+            filterRejections.increment();
+            return true;
+        }
+        if (unknownCodes.getIfPresent(shortCode) != null) {
+            negativeCacheRejections.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * True only when the Bloom filter is built and has never seen the code. Unlike
+     * {@link #isKnownMissing} this does not count as a rejected lookup.
+     */
+    public boolean isDefinitelyUnused(String shortCode) {
+        BloomFilter current = filter;
+        return current != null && !current.mightContain(shortCode);
+    }
+
+    /**
+     * Records that a code which got past {@link #isKnownMissing} was not in the database.
+     */
+    public void recordMiss(String shortCode) {
+        if (filter != null) {
+            falsePositives.increment();
+        }
+        unknownCodes.put(shortCode, Boolean.TRUE);
+    }
+
+    public void recordCreated(String shortCode) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(shortCode);
+        }
+        unknownCodes.invalidate(shortCode);
+    }
+
+    public void recordDeleted(String shortCode) {
+        // Bloom filters cannot forget; the negative cache covers the code until the
+        // next rebuild drops it
+        removedSinceRebuild.incrementAndGet();
+        unknownCodes.put(shortCode, Boolean.TRUE);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (appConfig.getShortCodeFilter().isEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replaces the filter with one built from a full scan of {@code links}, sized for
+     * twice the current link count (or the configured minimum, whichever is larger).
+     */
+    public synchronized void rebuild() {
+        AppConfig.ShortCodeFilter config = appConfig.getShortCodeFilter();
+        long start = System.currentTimeMillis();
+        long expected = config.getExpectedInsertions();
+        BloomFilter current = filter;
+        if (current != null) {
+            expected = Math.max(expected, current.getApproximateElementCount() * 2);
+        }
+
+        try {
+            removedSinceRebuild.set(0);
+            BloomFilter rebuilt = BloomFilter.create(expected, config.getFalsePositiveRate());
+            long maxId = linkJdbcRepository.forEachShortCode(0, SCAN_PAGE_SIZE, rebuilt::put);
+            if (rebuilt.getApproximateElementCount() > expected / 2) {
+                // Grew past the headroom while scanning; size again from the real count
+                expected = rebuilt.getApproximateElementCount() * 2;
+                rebuilt = BloomFilter.create(expected, config.getFalsePositiveRate());
+                maxId = linkJdbcRepository.forEachShortCode(0, SCAN_PAGE_SIZE, rebuilt::put);
+            }
+
+            // Codes created on this instance during the scan were added to the old filter
+            // only; the catch-up sync below re-reads them from the database
+            filter = rebuilt;
+            lastRebuildAt = clock.getAsLong();
+            syncPoints.clear();
+            syncPoints.add(new SyncPoint(lastRebuildAt, maxId));
+            syncNewLinks();
+
+            log.info("Short-code filter rebuilt: {} codes, {} KiB, k={}, expected fpp {} ({} ms)",
+                    rebuilt.getApproximateElementCount(), rebuilt.getSizeBytes() / 1024, rebuilt.getHashCount(),
+                    String.format("%.5f", rebuilt.getExpectedFalsePositiveRate()),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Failed to rebuild short-code filter: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.short-code-filter.sync-interval-millis:2000}")
+    public synchronized void syncNewLinks() {
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        try {
+            long now = clock.getAsLong();
+            long fromId = syncStartId(now - appConfig.getShortCodeFilter().getSyncLookbackMillis());
+            long maxId = linkJdbcRepository.forEachShortCode(fromId, SCAN_PAGE_SIZE, current::put);
+            syncPoints.add(new SyncPoint(now, Math.max(syncPoints.getLast().maxId(), maxId)));
+        } catch (Exception e) {
+            log.warn("Short-code filter sync failed: {}", e.getMessage());
+        }
+    }
+
+    // Drops the points that a newer one at or before the cutoff supersedes and returns
+    // the id the next scan starts after
+    private long syncStartId(long cutoff) {
+        SyncPoint start = syncPoints.removeFirst();
+        while (!syncPoints.isEmpty() && syncPoints.getFirst().at() <= cutoff) {
+            start = syncPoints.removeFirst();
+        }
+        syncPoints.addFirst(start);
+        return start.maxId();
+    }
+
+    @Scheduled(fixedDelayString = "${app.short-code-filter.rebuild-check-interval-millis:600000}")
+    public void rebuildIfStale() {
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        AppConfig.ShortCodeFilter config = appConfig.getShortCodeFilter();
+        boolean saturated = current.getExpectedFalsePositiveRate() > config.getFalsePositiveRate() * 2;
+        boolean manyRemoved = removedSinceRebuild.get() > current.getApproximateElementCount() / 10;
+        boolean due = clock.getAsLong() - lastRebuildAt >= config.getRebuildIntervalMillis();
+        if (saturated || manyRemoved || due) {
+            rebuild();
+        }
+    }
+
+    boolean isBuilt() {
+        return filter != null;
+    }
+
+    private Counter rejectionCounter(String layer) {
+        return Counter.builder("linksplit.shortcodes.rejected")
+                .description("Unknown short codes answered without a database query")
+                .tag("layer", layer)
+                .register(meterRegistry);
+    }
+
+    private record SyncPoint(long at, long maxId) {
+    }
+}
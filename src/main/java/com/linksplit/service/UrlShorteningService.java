@@ -1,17 +1,18 @@
 package com.linksplit.service;
 
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.linksplit.config.AppConfig;
+import com.linksplit.dto.LinkRoute;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
 import com.linksplit.repository.LinkRepository;
-import com.linksplit.util.Base62Encoder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.security.SecureRandom;
 import java.util.Optional;
 
 @Service
@@ -19,15 +20,17 @@ import java.util.Optional;
 @Slf4j
 public class UrlShorteningService {
     private final LinkRepository linkRepository;
-    private final Base62Encoder base62Encoder;
+    private final ShortCodeAllocator shortCodeAllocator;
     private final AppConfig appConfig;
-    private final SecureRandom random = new SecureRandom();
+    private final LoadingCache<String, LinkRoute> linkRouteCache;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final EarningsLedgerService earningsLedgerService;
 
     @Transactional
     public Link createShortUrl(String longUrl, User user) {
         validateUrl(longUrl);
         
-        String shortCode = generateUniqueShortCode();
+        String shortCode = shortCodeAllocator.allocate();
         
         Link link = Link.builder()
                 .shortCode(shortCode)
@@ -36,16 +39,32 @@ public class UrlShorteningService {
                 .build();
         
         Link savedLink = linkRepository.save(link);
+        shortCodeFilterService.recordCreated(shortCode);
         log.info("Created short URL: {} for long URL: {}", shortCode, longUrl);
         
         return savedLink;
     }
 
-    @Cacheable(value = "shortUrls", key = "#shortCode")
     public Optional<Link> getLinkByShortCode(String shortCode) {
         return linkRepository.findByShortCode(shortCode);
     }
 
+    /**
+     * Unknown codes are answered by {@link ShortCodeFilterService} where possible and
+     * are not cached here, so bogus traffic cannot evict real routes. Known codes go
+     * through the {@code shortUrls} loading cache, which coalesces concurrent misses.
+     */
+    public Optional<LinkRoute> getRouteByShortCode(String shortCode) {
+        if (shortCodeFilterService.isKnownMissing(shortCode)) {
+            return Optional.empty();
+        }
+        Optional<LinkRoute> route = Optional.ofNullable(linkRouteCache.get(shortCode));
+        if (route.isEmpty()) {
+            shortCodeFilterService.recordMiss(shortCode);
+        }
+        return route;
+    }
+
     public String getFullShortUrl(String shortCode) {
         String baseUrl = appConfig.getBaseUrl();
         log.info("Using baseUrl: {} for shortCode: {}", baseUrl, shortCode);
@@ -78,43 +97,35 @@ public class UrlShorteningService {
         }
         
         linkRepository.delete(link);
+        if (link.getUser() != null) {
+            // The link's earnings leave the owner's totals with it
+            earningsLedgerService.accrue(link.getUser().getId(), link.getEstimatedEarnings().negate());
+        }
+        forgetRouteAfterCommit(link.getShortCode());
         log.info("Deleted link with id: {} and shortCode: {}", linkId, link.getShortCode());
         return true;
     }
 
-    private String generateUniqueShortCode() {
-        String shortCode;
-        int attempts = 0;
-        final int maxAttempts = 10;
-        
-        do {
-            long randomNumber = Math.abs(random.nextLong());
-            shortCode = base62Encoder.encode(randomNumber);
-            
-            if (shortCode.length() > appConfig.getShortcodeLength()) {
-                shortCode = shortCode.substring(0, appConfig.getShortcodeLength());
-            } else if (shortCode.length() < appConfig.getShortcodeLength()) {
-                shortCode = padLeft(shortCode, appConfig.getShortcodeLength());
-            }
-            
-            attempts++;
-            if (attempts >= maxAttempts) {
-                throw new RuntimeException("Failed to generate unique short code after " + maxAttempts + " attempts");
+    private void forgetRouteAfterCommit(String shortCode) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            forgetRoute(shortCode);
+            return;
+        }
+        // Evicting before commit would let a concurrent redirect re-cache the old route
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                forgetRoute(shortCode);
             }
-        } while (linkRepository.existsByShortCode(shortCode));
-        
-        return shortCode;
+        });
     }
 
-    private String padLeft(String str, int length) {
-        StringBuilder sb = new StringBuilder(str);
-        while (sb.length() < length) {
-            sb.insert(0, '0');
-        }
-        return sb.toString();
+    private void forgetRoute(String shortCode) {
+        linkRouteCache.invalidate(shortCode);
+        shortCodeFilterService.recordDeleted(shortCode);
     }
 
-    private void validateUrl(String url) {
+    public void validateUrl(String url) {
         if (url == null || url.trim().isEmpty()) {
             throw new IllegalArgumentException("URL cannot be empty");
         }
@@ -0,0 +1,49 @@
+package com.linksplit.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.linksplit.dto.UserStats;
+import com.linksplit.repository.UserStatsJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Link, view, earnings and payout totals per user, for the admin user list and user
+ * pages and the creator dashboard header. A page of users is answered from the
+ * {@code userStats} cache, with every user not cached loaded by one grouped query.
+ * Entries expire after {@code app.user-stats.expire-after-write-seconds} and are
+ * evicted when a user's payouts or revenue settings change.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserStatsService {
+    private final UserStatsJdbcRepository userStatsJdbcRepository;
+    private final Cache<Long, UserStats> userStatsCache;
+
+    /**
+     * Totals for each of the given users, in no particular order. Users that do not
+     * exist get empty totals.
+     */
+    public Map<Long, UserStats> getStats(Collection<Long> userIds) {
+        Map<Long, UserStats> stats = new HashMap<>(userStatsCache.getAll(userIds,
+                userStatsJdbcRepository::findStats));
+        for (Long userId : userIds) {
+            stats.computeIfAbsent(userId, UserStats::empty);
+        }
+        return stats;
+    }
+
+    public UserStats getStats(Long userId) {
+        return getStats(List.of(userId)).get(userId);
+    }
+
+    public void evict(Long userId) {
+        userStatsCache.invalidate(userId);
+    }
+}
@@ -0,0 +1,266 @@
+package com.linksplit.service;
+
+import com.linksplit.repository.LinkViewJdbcRepository.ViewChunk;
+import com.linksplit.util.LongCountMap;
+import com.linksplit.util.StringDictionary;
+import com.linksplit.util.TrafficSourceClassifier;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Aggregates raw views for the analytics dashboard in a single pass over
+ * {@link ViewChunk column chunks}, filling the totals, the views per hour and every
+ * {@link ViewDimension} at once. Dimension values are dictionary-encoded to dense ids
+ * with plain {@code long} counters per id, hours and cities are counted in
+ * {@link LongCountMap}s, and each distinct referrer or user agent is classified as a
+ * traffic source only once. Nothing is allocated per view. Not safe for concurrent
+ * use; {@link #aggregate} gives each worker its own instance and merges them.
+ */
+public final class ViewAggregator {
+    // Chunks with more rows than this are split between fork/join workers
+    static final int SPLIT_THRESHOLD = 1024;
+
+    private long views;
+    private long completedViews;
+    private long timeToSkipTotal;
+    private long timeToSkipCount;
+    private final LongCountMap viewsByHour = new LongCountMap();
+    private final Column countries = new Column();
+    private final Column devices = new Column();
+    private final Column browsers = new Column();
+    private final Column operatingSystems = new Column();
+    private final Column sources = new Column();
+    // Keyed by country id in the high and city id in the low 32 bits
+    private final StringDictionary cityNames = new StringDictionary();
+    private final LongCountMap viewsByCity = new LongCountMap();
+    private final Memo referrerSources = new Memo(referrer -> TrafficSourceClassifier.classify(null, referrer, null));
+    private final Memo userAgentSources = new Memo(userAgent -> TrafficSourceClassifier.classify(null, null, userAgent));
+
+    /**
+     * Aggregates every chunk the source produces. Chunks are handed to the pool as they
+     * arrive, so reading the next chunk overlaps with aggregating the previous ones, and
+     * partial results are merged in arrival order. At most twice the pool's parallelism
+     * chunks are in flight, which bounds memory however many views the source holds.
+     */
+    public static ViewAggregator aggregate(ChunkSource source, ForkJoinPool pool) {
+        ViewAggregator result = new ViewAggregator();
+        Deque<ForkJoinTask<ViewAggregator>> pending = new ArrayDeque<>();
+        int maxPending = pool.getParallelism() * 2;
+        source.forEachChunk(chunk -> {
+            if (chunk.size() <= SPLIT_THRESHOLD && pending.isEmpty()) {
+                // Not worth a hand-off; typical for the partial hours of a dashboard range
+                result.add(chunk);
+                return;
+            }
+            pending.addLast(pool.submit(new ChunkTask(chunk, 0, chunk.size())));
+            if (pending.size() > maxPending) {
+                result.merge(pending.removeFirst().join());
+            }
+        });
+        while (!pending.isEmpty()) {
+            result.merge(pending.removeFirst().join());
+        }
+        return result;
+    }
+
+    public void add(ViewChunk chunk) {
+        add(chunk, 0, chunk.size());
+    }
+
+    void add(ViewChunk chunk, int from, int to) {
+        long[] hours = chunk.hours();
+        boolean[] completed = chunk.completed();
+        int[] timeToSkip = chunk.timeToSkip();
+        String[] countryValues = chunk.countries();
+        String[] cityValues = chunk.cities();
+        String[] deviceValues = chunk.deviceTypes();
+        String[] browserValues = chunk.browsers();
+        String[] osValues = chunk.operatingSystems();
+        String[] utmSources = chunk.utmSources();
+        String[] referrers = chunk.referrers();
+        String[] userAgents = chunk.userAgents();
+
+        for (int i = from; i < to; i++) {
+            viewsByHour.add(hours[i], 1);
+            if (completed[i]) {
+                completedViews++;
+            }
+            if (timeToSkip[i] >= 0) {
+                timeToSkipTotal += timeToSkip[i];
+                timeToSkipCount++;
+            }
+            int country = countries.add(orUnknown(countryValues[i]), 1);
+            if (cityValues[i] != null) {
+                viewsByCity.add(cityKey(country, cityNames.encode(cityValues[i])), 1);
+            }
+            devices.add(orUnknown(deviceValues[i]), 1);
+            browsers.add(orUnknown(browserValues[i]), 1);
+            operatingSystems.add(orUnknown(osValues[i]), 1);
+            sources.add(sourceOf(utmSources[i], referrers[i], userAgents[i]), 1);
+        }
+        views += to - from;
+    }
+
+    // Same rules as TrafficSourceClassifier.classify
+    private String sourceOf(String utmSource, String referrer, String userAgent) {
+        if (utmSource != null) {
+            return utmSource;
+        }
+        if (referrer != null && !referrer.isEmpty()) {
+            return referrerSources.get(referrer);
+        }
+        return userAgent != null ? userAgentSources.get(userAgent) : TrafficSourceClassifier.classify(null, null, null);
+    }
+
+    /**
+     * Adds another aggregator's counts to this one. Ids are re-encoded through this
+     * aggregator's dictionaries, so the cost depends on the number of distinct values,
+     * not views.
+     */
+    public void merge(ViewAggregator other) {
+        views += other.views;
+        completedViews += other.completedViews;
+        timeToSkipTotal += other.timeToSkipTotal;
+        timeToSkipCount += other.timeToSkipCount;
+        other.viewsByHour.forEach(viewsByHour::add);
+        countries.merge(other.countries);
+        devices.merge(other.devices);
+        browsers.merge(other.browsers);
+        operatingSystems.merge(other.operatingSystems);
+        sources.merge(other.sources);
+        other.viewsByCity.forEach((key, count) -> {
+            int country = countries.add(other.countries.dictionary.decode(countryId(key)), 0);
+            viewsByCity.add(cityKey(country, cityNames.encode(other.cityNames.decode(cityId(key)))), count);
+        });
+    }
+
+    /**
+     * Adds everything counted so far to the dashboard statistics, decoding ids back to
+     * the values the hourly rollups store.
+     */
+    public void addTo(ViewStatistics statistics) {
+        statistics.addTotals(views, completedViews, timeToSkipTotal, timeToSkipCount);
+        viewsByHour.forEach((hour, count) -> statistics.addViewsInHour(ViewChunk.hourOf(hour), count));
+        countries.addTo(statistics, ViewDimension.COUNTRY);
+        devices.addTo(statistics, ViewDimension.DEVICE);
+        browsers.addTo(statistics, ViewDimension.BROWSER);
+        operatingSystems.addTo(statistics, ViewDimension.OPERATING_SYSTEM);
+        sources.addTo(statistics, ViewDimension.TRAFFIC_SOURCE);
+        viewsByCity.forEach((key, count) -> statistics.addDimension(ViewDimension.CITY, ViewDimension.truncate(
+                countries.dictionary.decode(countryId(key)) + "|" + cityNames.decode(cityId(key))), count));
+    }
+
+    public long getViews() {
+        return views;
+    }
+
+    private static long cityKey(int countryId, int cityId) {
+        return ((long) countryId << 32) | cityId;
+    }
+
+    private static int countryId(long cityKey) {
+        return (int) (cityKey >>> 32);
+    }
+
+    private static int cityId(long cityKey) {
+        return (int) cityKey;
+    }
+
+    private static String orUnknown(String value) {
+        return value != null ? value : ViewDimension.UNKNOWN;
+    }
+
+    /**
+     * Supplies view chunks one at a time, typically from a database cursor.
+     */
+    @FunctionalInterface
+    public interface ChunkSource {
+        void forEachChunk(Consumer<ViewChunk> consumer);
+    }
+
+    // Views per dictionary id of one dimension
+    private static final class Column {
+        private final StringDictionary dictionary = new StringDictionary();
+        private long[] counts = new long[16];
+
+        int add(String value, long views) {
+            int id = dictionary.encode(value);
+            if (id == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+            counts[id] += views;
+            return id;
+        }
+
+        void merge(Column other) {
+            for (int id = 0; id < other.dictionary.size(); id++) {
+                add(other.dictionary.decode(id), other.counts[id]);
+            }
+        }
+
+        void addTo(ViewStatistics statistics, ViewDimension dimension) {
+            for (int id = 0; id < dictionary.size(); id++) {
+                if (counts[id] > 0) {
+                    statistics.addDimension(dimension, ViewDimension.truncate(dictionary.decode(id)), counts[id]);
+                }
+            }
+        }
+    }
+
+    // Remembers the result of a function per distinct input
+    private static final class Memo {
+        private final UnaryOperator<String> function;
+        private final StringDictionary inputs = new StringDictionary();
+        private String[] results = new String[16];
+
+        Memo(UnaryOperator<String> function) {
+            this.function = function;
+        }
+
+        String get(String input) {
+            int id = inputs.encode(input);
+            if (id == results.length) {
+                results = Arrays.copyOf(results, results.length * 2);
+            }
+            if (results[id] == null) {
+                results[id] = function.apply(input);
+            }
+            return results[id];
+        }
+    }
+
+    private static final class ChunkTask extends RecursiveTask<ViewAggregator> {
+        private final ViewChunk chunk;
+        private final int from;
+        private final int to;
+
+        ChunkTask(ViewChunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ViewAggregator compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                ViewAggregator aggregator = new ViewAggregator();
+                aggregator.add(chunk, from, to);
+                return aggregator;
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(chunk, from, middle);
+            left.fork();
+            ViewAggregator right = new ChunkTask(chunk, middle, to).compute();
+            ViewAggregator merged = left.join();
+            merged.merge(right);
+            return merged;
+        }
+    }
+}
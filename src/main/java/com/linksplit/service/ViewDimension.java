@@ -0,0 +1,67 @@
+package com.linksplit.service;
+
+import com.linksplit.entity.LinkView;
+import com.linksplit.util.TrafficSourceClassifier;
+
+/**
+ * Attributes of a view that the analytics dashboard breaks counts down by. The same
+ * values are stored in the hourly rollups and computed from raw views, so both sources
+ * can be added together.
+ */
+public enum ViewDimension {
+    COUNTRY("country"),
+    // Value is "country|city", so cities can be grouped under their country
+    CITY("city"),
+    DEVICE("device"),
+    BROWSER("browser"),
+    OPERATING_SYSTEM("os"),
+    TRAFFIC_SOURCE("source");
+
+    static final String UNKNOWN = "Unknown";
+    static final int MAX_VALUE_LENGTH = 255;
+
+    private final String key;
+
+    ViewDimension(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The view's value for this dimension, or null when it has none (only cities can
+     * be absent).
+     */
+    public String valueOf(LinkView view) {
+        String value = switch (this) {
+            case COUNTRY -> orUnknown(view.getCountry());
+            case CITY -> view.getCity() != null ? orUnknown(view.getCountry()) + "|" + view.getCity() : null;
+            case DEVICE -> orUnknown(view.getDeviceType());
+            case BROWSER -> orUnknown(view.getBrowser());
+            case OPERATING_SYSTEM -> orUnknown(view.getOperatingSystem());
+            case TRAFFIC_SOURCE -> TrafficSourceClassifier.classify(
+                    view.getUtmSource(), view.getReferrer(), view.getUserAgent());
+        };
+        return truncate(value);
+    }
+
+    // Values are stored in a VARCHAR(255) column of the rollups
+    static String truncate(String value) {
+        return value != null && value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value;
+    }
+
+    public static ViewDimension fromKey(String key) {
+        for (ViewDimension dimension : values()) {
+            if (dimension.key.equals(key)) {
+                return dimension;
+            }
+        }
+        throw new IllegalArgumentException("Unknown view dimension: " + key);
+    }
+
+    private static String orUnknown(String value) {
+        return value != null ? value : UNKNOWN;
+    }
+}
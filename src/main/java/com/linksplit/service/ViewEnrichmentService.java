@@ -0,0 +1,131 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.JobWatermark;
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.JobWatermarkRepository;
+import com.linksplit.repository.LinkViewJdbcRepository;
+import com.linksplit.util.UserAgentParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills in location and device fields of views stored raw by {@link AnalyticsService}
+ * and {@link ViewIngestionService} when {@code app.view-enrichment.deferred} is on.
+ * <p>
+ * Raw rows are found by their missing {@code enriched_at} stamp, oldest first, a batch
+ * at a time, so a view whose insert commits late is picked up by the next run however
+ * far the others have got. Each distinct IP and user agent in a batch is resolved once,
+ * lookups run outside any transaction, and the updates are committed together with the
+ * id of the last view enriched, which the backlog report shows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewEnrichmentService {
+    static final String JOB_NAME = "view-enrichment";
+
+    private final AppConfig appConfig;
+    private final LinkViewJdbcRepository linkViewJdbcRepository;
+    private final JobWatermarkRepository jobWatermarkRepository;
+    private final GeoLocationService geoLocationService;
+    private final TransactionTemplate transactionTemplate;
+
+    public boolean isDeferred() {
+        return appConfig.getViewEnrichment().isDeferred();
+    }
+
+    // Also runs with deferral off, so a backlog left from an earlier deferred period drains
+    @Scheduled(fixedDelayString = "${app.view-enrichment.interval-millis:2000}")
+    public void enrichPending() {
+        AppConfig.ViewEnrichment config = appConfig.getViewEnrichment();
+        try {
+            for (int i = 0; i < config.getMaxBatchesPerRun(); i++) {
+                if (enrichBatch(config) < config.getBatchSize()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("View enrichment failed, will retry pending views: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Enriches the next batch of raw views and returns how many were processed.
+     */
+    synchronized int enrichBatch(AppConfig.ViewEnrichment config) {
+        List<LinkViewJdbcRepository.RawView> rawViews = linkViewJdbcRepository.findUnenriched(config.getBatchSize());
+        if (rawViews.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, GeoLocationService.GeoLocation> locations = new HashMap<>();
+        Map<String, UserAgentParser.DeviceInfo> devices = new HashMap<>();
+        List<LinkView> enriched = new ArrayList<>(rawViews.size());
+        List<Long> alreadyEnriched = new ArrayList<>();
+
+        for (LinkViewJdbcRepository.RawView raw : rawViews) {
+            if (raw.hasLocation()) {
+                alreadyEnriched.add(raw.id());
+                continue;
+            }
+
+            GeoLocationService.GeoLocation location = raw.ipAddress() != null
+                    ? locations.computeIfAbsent(raw.ipAddress(), geoLocationService::getLocation)
+                    : GeoLocationService.GeoLocation.unknown();
+            UserAgentParser.DeviceInfo device = raw.userAgent() != null
+                    ? devices.computeIfAbsent(raw.userAgent(), UserAgentParser::parse)
+                    : UserAgentParser.DeviceInfo.UNKNOWN;
+
+            enriched.add(LinkView.builder()
+                    .id(raw.id())
+                    .country(location.getCountry())
+                    .city(location.getCity())
+                    .region(location.getRegion())
+                    .latitude(location.getLatitude())
+                    .longitude(location.getLongitude())
+                    .deviceType(device.deviceType())
+                    .browser(device.browser())
+                    .operatingSystem(device.operatingSystem())
+                    .build());
+        }
+
+        long lastId = rawViews.get(rawViews.size() - 1).id();
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            linkViewJdbcRepository.applyEnrichment(enriched, alreadyEnriched, now);
+            jobWatermarkRepository.save(JobWatermark.builder()
+                    .jobName(JOB_NAME)
+                    .lastId(lastId)
+                    .updatedAt(now)
+                    .build());
+        });
+
+        log.debug("Enriched {} views ({} distinct IPs, {} distinct user agents), last id {}",
+                rawViews.size(), locations.size(), devices.size(), lastId);
+        return rawViews.size();
+    }
+
+    public Backlog getBacklog() {
+        JobWatermark watermark = jobWatermarkRepository.findById(JOB_NAME).orElse(null);
+        return new Backlog(
+                linkViewJdbcRepository.countUnenriched(),
+                linkViewJdbcRepository.findOldestUnenrichedViewedAt(),
+                watermark != null ? watermark.getLastId() : 0L,
+                watermark != null ? watermark.getUpdatedAt() : null,
+                isDeferred());
+    }
+
+    public record Backlog(long pendingViews, LocalDateTime oldestPendingViewedAt,
+                          long watermark, LocalDateTime watermarkUpdatedAt, boolean deferred) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.linksplit.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compact, immutable description of a completed ad view, captured on the request
+ * thread and handed to {@link ViewIngestionService} for batched persistence.
+ */
+public record ViewEvent(
+        long linkId,
+        String shortCode,
+        String ipAddress,
+        String userAgent,
+        String referrer,
+        Integer timeToSkip,
+        LocalDateTime viewedAt
+) {
+}
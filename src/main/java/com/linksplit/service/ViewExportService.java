@@ -0,0 +1,249 @@
+package com.linksplit.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linksplit.config.AppConfig;
+import com.linksplit.repository.LinkViewJdbcRepository;
+import com.linksplit.repository.LinkViewJdbcRepository.ExportedView;
+import com.linksplit.repository.ViewRollupJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams raw views as gzipped CSV or NDJSON. Rows are read in keyset pages, each its
+ * own short query, and written into the compressed output before the next page is
+ * read, so memory does not depend on the size of the range and no connection or
+ * snapshot is held while a slow client downloads.
+ * <p>
+ * Rows are written in id order and each carries its id. An export that was cut off
+ * resumes by passing the last id received as {@code afterId}; the CSV header is only
+ * written when starting from the beginning, so resumed output can be appended.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewExportService {
+    private static final String[] COLUMNS = {"id", "short_code", "viewed_at", "ip_address", "user_agent",
+            "country", "city", "region", "device_type", "browser", "operating_system", "referrer",
+            "utm_source", "utm_medium", "utm_campaign", "time_to_skip", "ad_completed"};
+
+    private final LinkViewJdbcRepository linkViewJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final AppConfig appConfig;
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON(MediaType.APPLICATION_NDJSON_VALUE, "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Writes the views in scope in {@code [start, end]} with an id above
+     * {@code afterId} to {@code out}, gzip-compressed, and returns how many were
+     * written. The stream is finished but not closed.
+     */
+    public long export(ViewRollupJdbcRepository.Scope scope, LocalDateTime start, LocalDateTime end, long afterId,
+                       Format format, OutputStream out) throws IOException {
+        int pageSize = appConfig.getViewExport().getFetchSize();
+        // Sync flush, so every flush hands the rows written so far to the client
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 8192, true);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+        RowWriter rows = format == Format.CSV ? new CsvWriter(writer, afterId == 0) : new NdjsonWriter(writer);
+
+        long written = 0;
+        long lastId = afterId;
+        try {
+            while (true) {
+                List<ExportedView> page = linkViewJdbcRepository.findViewsForExport(scope, start, end, lastId,
+                        pageSize);
+                for (ExportedView view : page) {
+                    rows.write(view);
+                    written++;
+                }
+                rows.flush();
+                writer.flush();
+                if (page.size() < pageSize) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).id();
+            }
+        } catch (IOException e) {
+            // Usually the client went away
+            log.debug("View export aborted after {} rows: {}", written, e.getMessage());
+            throw e;
+        }
+        rows.finish();
+        rows.flush();
+        writer.flush();
+        gzip.finish();
+        return written;
+    }
+
+    private interface RowWriter {
+        void write(ExportedView view) throws IOException;
+
+        default void finish() throws IOException {
+        }
+
+        // Hands anything buffered to the underlying writer
+        default void flush() throws IOException {
+        }
+    }
+
+    private static final class CsvWriter implements RowWriter {
+        private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+        private final Writer writer;
+        private boolean headerPending;
+
+        CsvWriter(Writer writer, boolean header) {
+            this.writer = writer;
+            this.headerPending = header;
+        }
+
+        @Override
+        public void write(ExportedView view) throws IOException {
+            writeHeaderIfPending();
+            writer.write(Long.toString(view.id()));
+            field(view.shortCode());
+            field(view.viewedAt().toString());
+            field(view.ipAddress());
+            field(view.userAgent());
+            field(view.country());
+            field(view.city());
+            field(view.region());
+            field(view.deviceType());
+            field(view.browser());
+            field(view.operatingSystem());
+            field(view.referrer());
+            field(view.utmSource());
+            field(view.utmMedium());
+            field(view.utmCampaign());
+            value(view.timeToSkip() != null ? view.timeToSkip().toString() : null);
+            value(view.adCompleted() != null ? view.adCompleted().toString() : null);
+            writer.write("\r\n");
+        }
+
+        // An empty export still gets its header
+        @Override
+        public void finish() throws IOException {
+            writeHeaderIfPending();
+        }
+
+        private void writeHeaderIfPending() throws IOException {
+            if (headerPending) {
+                writer.write(String.join(",", COLUMNS));
+                writer.write("\r\n");
+                headerPending = false;
+            }
+        }
+
+        // Text, much of it from request headers and query strings: a value a spreadsheet
+        // would read as a formula gets a leading apostrophe so it is shown as text
+        private void field(String value) throws IOException {
+            if (value != null && !value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            value(value);
+        }
+
+        // RFC 4180: quote values containing a separator, quote or line break
+        private void value(String value) throws IOException {
+            writer.write(',');
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(Writer writer) throws IOException {
+            // The writer is flushed and finished by export, not by the generator, and
+            // rows are separated by the newline written after each one
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                    .setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ExportedView view) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField(COLUMNS[0], view.id());
+            generator.writeStringField(COLUMNS[1], view.shortCode());
+            generator.writeStringField(COLUMNS[2], view.viewedAt().toString());
+            generator.writeStringField(COLUMNS[3], view.ipAddress());
+            generator.writeStringField(COLUMNS[4], view.userAgent());
+            generator.writeStringField(COLUMNS[5], view.country());
+            generator.writeStringField(COLUMNS[6], view.city());
+            generator.writeStringField(COLUMNS[7], view.region());
+            generator.writeStringField(COLUMNS[8], view.deviceType());
+            generator.writeStringField(COLUMNS[9], view.browser());
+            generator.writeStringField(COLUMNS[10], view.operatingSystem());
+            generator.writeStringField(COLUMNS[11], view.referrer());
+            generator.writeStringField(COLUMNS[12], view.utmSource());
+            generator.writeStringField(COLUMNS[13], view.utmMedium());
+            generator.writeStringField(COLUMNS[14], view.utmCampaign());
+            generator.writeFieldName(COLUMNS[15]);
+            if (view.timeToSkip() != null) {
+                generator.writeNumber(view.timeToSkip());
+            } else {
+                generator.writeNull();
+            }
+            generator.writeFieldName(COLUMNS[16]);
+            if (view.adCompleted() != null) {
+                generator.writeBoolean(view.adCompleted());
+            } else {
+                generator.writeNull();
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.Link;
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.LinkViewJdbcRepository;
+import com.linksplit.util.UserAgentParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded in-memory queue of completed ad views drained by a pool of writer threads.
+ * Each writer persists its batch with a multi-row insert into {@code link_views} and
+ * one grouped counter update per distinct link, in a single transaction.
+ * <p>
+ * Only active when {@code app.view-ingestion.async} is enabled; otherwise
+ * {@link AnalyticsService} keeps writing views on the request thread.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewIngestionService {
+    private final AppConfig appConfig;
+    private final LinkViewJdbcRepository linkViewJdbcRepository;
+    private final LinkCounterService linkCounterService;
+    private final GeoLocationService geoLocationService;
+    private final ViewEnrichmentService viewEnrichmentService;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private BlockingQueue<ViewEvent> queue;
+    private ExecutorService writers;
+    private volatile boolean running;
+
+    private Counter acceptedCounter;
+    private Counter droppedCounter;
+    private Counter callerRunsCounter;
+    private Counter failedCounter;
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    void start() {
+        AppConfig.ViewIngestion config = appConfig.getViewIngestion();
+        if (!config.isAsync()) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+
+        Gauge.builder("linksplit.views.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Views waiting to be written")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("linksplit.views.ingest.batch.size")
+                .description("Views written per batch")
+                .register(meterRegistry);
+        acceptedCounter = outcomeCounter("accepted");
+        droppedCounter = outcomeCounter("dropped");
+        callerRunsCounter = outcomeCounter("caller_runs");
+        failedCounter = outcomeCounter("failed");
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(config.getWriterThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "view-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        running = true;
+        for (int i = 0; i < config.getWriterThreads(); i++) {
+            writers.execute(this::drainLoop);
+        }
+
+        log.info("Async view ingestion started: capacity={}, batchSize={}, writers={}, overflowPolicy={}",
+                config.getQueueCapacity(), config.getBatchSize(), config.getWriterThreads(), config.getOverflowPolicy());
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Hands a view to the writer pool. Returns false only when the view was dropped
+     * because the queue stayed full (or the caller-runs write failed).
+     */
+    public boolean submit(ViewEvent event) {
+        if (queue.offer(event)) {
+            acceptedCounter.increment();
+            return true;
+        }
+
+        AppConfig.ViewIngestion config = appConfig.getViewIngestion();
+        switch (config.getOverflowPolicy()) {
+            case CALLER_RUNS:
+                callerRunsCounter.increment();
+                return writeBatch(List.of(event));
+            case BLOCK:
+                try {
+                    if (queue.offer(event, config.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                        acceptedCounter.increment();
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP:
+            default:
+                break;
+        }
+
+        droppedCounter.increment();
+        log.warn("View ingestion queue full, dropped view for link {} from IP {}", event.shortCode(), event.ipAddress());
+        return false;
+    }
+
+    public int getQueueDepth() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    private void drainLoop() {
+        AppConfig.ViewIngestion config = appConfig.getViewIngestion();
+        List<ViewEvent> batch = new ArrayList<>(config.getBatchSize());
+
+        while (running || !queue.isEmpty()) {
+            try {
+                ViewEvent first = queue.poll(config.getPollTimeoutMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, config.getBatchSize() - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean writeBatch(List<ViewEvent> events) {
+        // Everything a batch does stays inside the try: an exception escaping to
+        // drainLoop would end that writer for good
+        try {
+            List<LinkView> views = new ArrayList<>(events.size());
+            Map<Long, Long> viewDeltas = new HashMap<>();
+            Map<Long, Link> linkRefs = new HashMap<>();
+
+            for (ViewEvent event : events) {
+                views.add(toLinkView(event, linkRefs));
+                viewDeltas.merge(event.linkId(), 1L, Long::sum);
+            }
+            if (!viewEnrichmentService.isDeferred()) {
+                enrich(views);
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                linkViewJdbcRepository.insertAll(views);
+                linkCounterService.addViews(viewDeltas);
+            });
+            batchSizeSummary.record(events.size());
+            return true;
+        } catch (Exception e) {
+            if (events.size() > 1) {
+                // One bad row (e.g. a link deleted meanwhile) must not take the whole batch down
+                log.warn("Batch of {} views failed ({}), retrying individually", events.size(), e.getMessage());
+                boolean allWritten = true;
+                for (ViewEvent event : events) {
+                    allWritten &= writeBatch(List.of(event));
+                }
+                return allWritten;
+            }
+            failedCounter.increment();
+            log.error("Failed to write view for link {}: {}", events.get(0).shortCode(), e.getMessage());
+            return false;
+        }
+    }
+
+    private LinkView toLinkView(ViewEvent event, Map<Long, Link> linkRefs) {
+        return LinkView.builder()
+                .link(linkRefs.computeIfAbsent(event.linkId(), id -> Link.builder().id(id).build()))
+                .ipAddress(event.ipAddress())
+                .userAgent(event.userAgent())
+                .viewedAt(event.viewedAt())
+                .referrer(event.referrer())
+                .timeToSkip(event.timeToSkip())
+                .adCompleted(true)
+                .build();
+    }
+
+    // Resolves each distinct IP and user agent of the batch once
+    private void enrich(List<LinkView> views) {
+        Map<String, GeoLocationService.GeoLocation> locations = new HashMap<>();
+        Map<String, UserAgentParser.DeviceInfo> devices = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (LinkView view : views) {
+            GeoLocationService.GeoLocation location =
+                    locations.computeIfAbsent(view.getIpAddress(), geoLocationService::getLocation);
+            UserAgentParser.DeviceInfo deviceInfo = view.getUserAgent() != null
+                    ? devices.computeIfAbsent(view.getUserAgent(), UserAgentParser::parse)
+                    : UserAgentParser.DeviceInfo.UNKNOWN;
+
+            view.setCountry(location.getCountry());
+            view.setCity(location.getCity());
+            view.setRegion(location.getRegion());
+            view.setLatitude(location.getLatitude());
+            view.setLongitude(location.getLongitude());
+            view.setDeviceType(deviceInfo.deviceType());
+            view.setBrowser(deviceInfo.browser());
+            view.setOperatingSystem(deviceInfo.operatingSystem());
+            view.setEnrichedAt(now);
+        }
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("linksplit.views.ingest.events")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!running) {
+            return;
+        }
+
+        // Writers keep draining until the queue is empty, then exit
+        running = false;
+        writers.shutdown();
+        try {
+            long timeout = appConfig.getViewIngestion().getShutdownTimeoutSeconds();
+            if (!writers.awaitTermination(timeout, TimeUnit.SECONDS)) {
+                log.error("View writers did not finish within {}s, {} queued views lost", timeout, queue.size());
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writers.shutdownNow();
+        }
+        log.info("Async view ingestion stopped");
+    }
+}
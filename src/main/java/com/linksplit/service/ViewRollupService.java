@@ -0,0 +1,230 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.JobWatermark;
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.JobWatermarkRepository;
+import com.linksplit.repository.ViewRollupJdbcRepository;
+import com.linksplit.repository.ViewRollupJdbcRepository.DayKey;
+import com.linksplit.repository.ViewRollupJdbcRepository.DimensionKey;
+import com.linksplit.repository.ViewRollupJdbcRepository.HourKey;
+import com.linksplit.repository.ViewRollupJdbcRepository.HourTotals;
+import com.linksplit.repository.ViewRollupJdbcRepository.Stamp;
+import com.linksplit.util.HyperLogLog;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the hourly view rollups read by {@link CreatorAnalyticsService}.
+ * <p>
+ * Enriched views without a {@code rolled_up_at} stamp are folded into the rollups in id
+ * order, a batch at a time, and stamped. The rollup updates and the stamps commit
+ * together, under a lock on the job's watermark row so that instances take turns, so
+ * a view is in the rollups exactly once if and only if it is stamped. A view whose
+ * insert commits after higher ids have been rolled up is simply found by a later run.
+ * The same batch adds to the all-time per-link counters on {@code links}.
+ * <p>
+ * A second job folds visitor IPs into one {@link HyperLogLog} sketch per (link, day)
+ * the same way, with its own {@code sketched_at} stamp and lock. It started from the
+ * first view when it was introduced, so the sketches cover views rolled up before it
+ * existed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewRollupService {
+    static final String JOB_NAME = "view-rollup";
+    static final String SKETCH_JOB_NAME = "visitor-sketch";
+    // Relative standard error of about 1.6%, at most 4 KB per sketch
+    public static final int VISITOR_SKETCH_PRECISION = 12;
+
+    private final AppConfig appConfig;
+    private final ViewRollupJdbcRepository viewRollupJdbcRepository;
+    private final JobWatermarkRepository jobWatermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        viewRollupJdbcRepository.createTablesIfMissing();
+        stampWatermarkedViews(JOB_NAME, Stamp.ROLLED_UP);
+        stampWatermarkedViews(SKETCH_JOB_NAME, Stamp.SKETCHED);
+    }
+
+    /**
+     * Views up to the id watermark a job kept before views were stamped individually
+     * are already folded in: stamps them once and clears the watermark. A no-op after
+     * the V15 and V16 migrations, which do the same.
+     */
+    void stampWatermarkedViews(String jobName, Stamp stamp) {
+        if (getWatermark(jobName) == 0) {
+            return;
+        }
+        transactionTemplate.execute(status -> {
+            long watermark = viewRollupJdbcRepository.lockWatermark(jobName);
+            if (watermark > 0) {
+                LocalDateTime now = LocalDateTime.now();
+                int stamped = viewRollupJdbcRepository.stampThrough(stamp, watermark, now);
+                viewRollupJdbcRepository.saveWatermark(jobName, 0, now);
+                log.info("Stamped {} views {} through watermark {}", stamped, stamp, watermark);
+            }
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.view-rollup.interval-millis:60000}")
+    public void rollUpPending() {
+        AppConfig.ViewRollup config = appConfig.getViewRollup();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            viewRollupJdbcRepository.createWatermarkIfMissing(JOB_NAME);
+            for (int i = 0; i < config.getMaxBatchesPerRun(); i++) {
+                if (rollUpBatch(config) < config.getBatchSize()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("View rollup failed, will retry views not rolled up: {}", e.getMessage());
+        }
+        try {
+            viewRollupJdbcRepository.createWatermarkIfMissing(SKETCH_JOB_NAME);
+            for (int i = 0; i < config.getMaxBatchesPerRun(); i++) {
+                if (sketchBatch(config) < config.getBatchSize()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Visitor sketch update failed, will retry views not sketched: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Folds the next batch of enriched views into the rollups and returns how many
+     * were processed.
+     */
+    synchronized int rollUpBatch(AppConfig.ViewRollup config) {
+        Integer processed = transactionTemplate.execute(status -> {
+            // Only taken as a lock; see stampWatermarkedViews for the stored id
+            viewRollupJdbcRepository.lockWatermark(JOB_NAME);
+            List<ViewRollupJdbcRepository.SourceView> views =
+                    viewRollupJdbcRepository.findUnstamped(Stamp.ROLLED_UP, config.getBatchSize());
+            if (views.isEmpty()) {
+                return 0;
+            }
+
+            Map<HourKey, HourTotals> hourly = new HashMap<>();
+            Map<DimensionKey, Long> dimensions = new HashMap<>();
+            List<Long> viewIds = new ArrayList<>(views.size());
+            for (ViewRollupJdbcRepository.SourceView source : views) {
+                add(source.linkId(), source.view(), hourly, dimensions);
+                viewIds.add(source.view().getId());
+            }
+
+            Map<Long, HourTotals> linkTotals = new HashMap<>();
+            hourly.forEach((key, totals) -> linkTotals.merge(key.linkId(), totals, HourTotals::plus));
+            viewRollupJdbcRepository.addHourly(hourly);
+            viewRollupJdbcRepository.addDimensions(dimensions);
+            viewRollupJdbcRepository.addLinkTotals(linkTotals);
+            viewRollupJdbcRepository.stamp(Stamp.ROLLED_UP, viewIds, LocalDateTime.now());
+            log.debug("Rolled up {} views into {} hourly rows", views.size(), hourly.size());
+            return views.size();
+        });
+        return processed != null ? processed : 0;
+    }
+
+    /**
+     * Adds the visitor IPs of the next batch of enriched views to the daily sketches
+     * and returns how many views were processed.
+     */
+    synchronized int sketchBatch(AppConfig.ViewRollup config) {
+        Integer processed = transactionTemplate.execute(status -> {
+            viewRollupJdbcRepository.lockWatermark(SKETCH_JOB_NAME);
+            List<ViewRollupJdbcRepository.SourceView> views =
+                    viewRollupJdbcRepository.findUnstamped(Stamp.SKETCHED, config.getBatchSize());
+            if (views.isEmpty()) {
+                return 0;
+            }
+
+            Map<DayKey, HyperLogLog> sketches = new HashMap<>();
+            List<Long> viewIds = new ArrayList<>(views.size());
+            for (ViewRollupJdbcRepository.SourceView source : views) {
+                LinkView view = source.view();
+                if (view.getIpAddress() != null) {
+                    sketches.computeIfAbsent(new DayKey(source.linkId(), view.getViewedAt().toLocalDate()),
+                            key -> new HyperLogLog(VISITOR_SKETCH_PRECISION)).add(view.getIpAddress());
+                }
+                viewIds.add(view.getId());
+            }
+
+            viewRollupJdbcRepository.findVisitorSketches(sketches.keySet())
+                    .forEach((key, stored) -> sketches.get(key).merge(stored));
+            viewRollupJdbcRepository.saveVisitorSketches(sketches);
+            viewRollupJdbcRepository.stamp(Stamp.SKETCHED, viewIds, LocalDateTime.now());
+            log.debug("Sketched {} views into {} daily sketches", views.size(), sketches.size());
+            return views.size();
+        });
+        return processed != null ? processed : 0;
+    }
+
+    private static void add(long linkId, LinkView view, Map<HourKey, HourTotals> hourly,
+                            Map<DimensionKey, Long> dimensions) {
+        LocalDateTime hour = view.getViewedAt().truncatedTo(ChronoUnit.HOURS);
+        Integer timeToSkip = view.getTimeToSkip();
+        hourly.merge(new HourKey(linkId, hour), new HourTotals(1,
+                Boolean.TRUE.equals(view.getAdCompleted()) ? 1 : 0,
+                timeToSkip != null ? timeToSkip : 0,
+                timeToSkip != null ? 1 : 0), HourTotals::plus);
+
+        for (ViewDimension dimension : ViewDimension.values()) {
+            String value = dimension.valueOf(view);
+            if (value != null) {
+                dimensions.merge(new DimensionKey(linkId, hour, dimension.getKey(), value), 1L, Long::sum);
+            }
+        }
+    }
+
+    private long getWatermark(String jobName) {
+        return jobWatermarkRepository.findById(jobName)
+                .map(JobWatermark::getLastId)
+                .orElse(0L);
+    }
+
+    /**
+     * Union of the visitor sketches of the days in {@code [fromDay, toDay)}.
+     */
+    public HyperLogLog getVisitorSketch(ViewRollupJdbcRepository.Scope scope, LocalDate fromDay, LocalDate toDay) {
+        HyperLogLog sketch = new HyperLogLog(VISITOR_SKETCH_PRECISION);
+        viewRollupJdbcRepository.mergeVisitorSketches(scope, fromDay, toDay, sketch);
+        return sketch;
+    }
+
+    /**
+     * Adds the rolled-up totals of the hours in {@code [fromHour, toHour)} to the
+     * statistics. Both bounds must be on the hour.
+     */
+    public void addRollups(ViewStatistics statistics, ViewRollupJdbcRepository.Scope scope,
+                           LocalDateTime fromHour, LocalDateTime toHour) {
+        for (ViewRollupJdbcRepository.HourlyTotal row : viewRollupJdbcRepository.sumHourly(scope, fromHour, toHour)) {
+            HourTotals totals = row.totals();
+            statistics.addHour(row.hour(), totals.views(), totals.completedViews(),
+                    totals.timeToSkipTotal(), totals.timeToSkipCount());
+        }
+        for (ViewRollupJdbcRepository.DimensionTotal row
+                : viewRollupJdbcRepository.sumDimensions(scope, fromHour, toHour)) {
+            statistics.addDimension(ViewDimension.fromKey(row.dimension()), row.value(), row.views());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.linksplit.service;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running view totals behind one analytics dashboard: overall counts, views per hour
+ * and views per value of each {@link ViewDimension}. Filled from hourly rollups and
+ * from raw views alike, so its size depends on the number of hours and distinct
+ * values in the range, not on the number of views. Raw views are counted by a
+ * {@link ViewAggregator} and added in one go.
+ */
+public class ViewStatistics {
+    private long views;
+    private long completedViews;
+    private long timeToSkipTotal;
+    private long timeToSkipCount;
+    private final Map<LocalDateTime, Long> viewsByHour = new HashMap<>();
+    private final Map<ViewDimension, Map<String, Long>> viewsByDimension = new EnumMap<>(ViewDimension.class);
+
+    public ViewStatistics() {
+        for (ViewDimension dimension : ViewDimension.values()) {
+            viewsByDimension.put(dimension, new HashMap<>());
+        }
+    }
+
+    public void addHour(LocalDateTime hour, long views, long completedViews, long timeToSkipTotal, long timeToSkipCount) {
+        addTotals(views, completedViews, timeToSkipTotal, timeToSkipCount);
+        addViewsInHour(hour, views);
+    }
+
+    /**
+     * Adds to the overall counts only; the views must also be added to their hours
+     * with {@link #addViewsInHour}.
+     */
+    public void addTotals(long views, long completedViews, long timeToSkipTotal, long timeToSkipCount) {
+        this.views += views;
+        this.completedViews += completedViews;
+        this.timeToSkipTotal += timeToSkipTotal;
+        this.timeToSkipCount += timeToSkipCount;
+    }
+
+    public void addViewsInHour(LocalDateTime hour, long views) {
+        viewsByHour.merge(hour, views, Long::sum);
+    }
+
+    public void addDimension(ViewDimension dimension, String value, long views) {
+        viewsByDimension.get(dimension).merge(value, views, Long::sum);
+    }
+
+    public long getViews() {
+        return views;
+    }
+
+    public long getCompletedViews() {
+        return completedViews;
+    }
+
+    public double getAverageTimeToSkip() {
+        return timeToSkipCount > 0 ? (double) timeToSkipTotal / timeToSkipCount : 0;
+    }
+
+    public Map<LocalDateTime, Long> getViewsByHour() {
+        return viewsByHour;
+    }
+
+    public Map<String, Long> getViewsBy(ViewDimension dimension) {
+        return viewsByDimension.get(dimension);
+    }
+}
@@ -2,36 +2,119 @@ package com.linksplit.util;
 
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+
+/**
+ * Base62 ({@code 0-9A-Za-z}) encoding of non-negative longs.
+ * <p>
+ * Encoding writes digits right to left into a fixed scratch array, and decoding looks
+ * each character up in a 128-entry table. The {@code char[]}/{@code byte[]} overloads
+ * work in caller-supplied buffers and allocate nothing.
+ */
 @Component
 public class Base62Encoder {
     private static final String BASE62_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
     private static final int BASE = BASE62_ALPHABET.length();
+    private static final char[] DIGITS = BASE62_ALPHABET.toCharArray();
 
-    public String encode(long number) {
-        if (number == 0) {
-            return String.valueOf(BASE62_ALPHABET.charAt(0));
+    /** Digits needed for {@link Long#MAX_VALUE}. */
+    public static final int MAX_LENGTH = 11;
+
+    // ASCII code point to digit value, -1 for characters outside the alphabet
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            VALUES[DIGITS[i]] = (byte) i;
         }
+    }
+
+    public String encode(long number) {
+        checkNonNegative(number);
+        char[] buffer = new char[MAX_LENGTH];
+        int start = MAX_LENGTH;
+        do {
+            buffer[--start] = DIGITS[(int) (number % BASE)];
+            number /= BASE;
+        } while (number > 0);
+        return new String(buffer, start, MAX_LENGTH - start);
+    }
+
+    /**
+     * Encodes into exactly {@code width} characters, left-padded with {@code '0'}.
+     */
+    public String encodeFixed(long number, int width) {
+        char[] buffer = new char[width];
+        encodeFixed(number, width, buffer, 0);
+        return new String(buffer);
+    }
 
-        StringBuilder encoded = new StringBuilder();
-        while (number > 0) {
-            int remainder = (int) (number % BASE);
-            encoded.insert(0, BASE62_ALPHABET.charAt(remainder));
-            number = number / BASE;
+    public void encodeFixed(long number, int width, char[] dest, int offset) {
+        checkNonNegative(number);
+        for (int i = offset + width - 1; i >= offset; i--) {
+            dest[i] = DIGITS[(int) (number % BASE)];
+            number /= BASE;
+        }
+        if (number != 0) {
+            throw new IllegalArgumentException("Value does not fit in " + width + " base62 digits");
         }
+    }
 
-        return encoded.toString();
+    /**
+     * ASCII variant of {@link #encodeFixed(long, int, char[], int)}.
+     */
+    public void encodeFixed(long number, int width, byte[] dest, int offset) {
+        checkNonNegative(number);
+        for (int i = offset + width - 1; i >= offset; i--) {
+            dest[i] = (byte) DIGITS[(int) (number % BASE)];
+            number /= BASE;
+        }
+        if (number != 0) {
+            throw new IllegalArgumentException("Value does not fit in " + width + " base62 digits");
+        }
     }
 
     public long decode(String encoded) {
+        return decode(encoded, 0, encoded.length());
+    }
+
+    /**
+     * Decodes {@code encoded[from, to)} without copying it.
+     */
+    public long decode(CharSequence encoded, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result = accumulate(result, encoded.charAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Decodes ASCII bytes {@code encoded[from, to)}, e.g. straight from a request buffer.
+     */
+    public long decode(byte[] encoded, int from, int to) {
         long result = 0;
-        for (int i = 0; i < encoded.length(); i++) {
-            char c = encoded.charAt(i);
-            int digit = BASE62_ALPHABET.indexOf(c);
-            if (digit == -1) {
-                throw new IllegalArgumentException("Invalid character in encoded string: " + c);
-            }
-            result = result * BASE + digit;
+        for (int i = from; i < to; i++) {
+            result = accumulate(result, (char) (encoded[i] & 0xff));
         }
         return result;
     }
-}
\ No newline at end of file
+
+    private static long accumulate(long result, char c) {
+        int digit = c < VALUES.length ? VALUES[c] : -1;
+        if (digit == -1) {
+            throw new IllegalArgumentException("Invalid character in encoded string: " + c);
+        }
+        if (result > (Long.MAX_VALUE - digit) / BASE) {
+            throw new IllegalArgumentException("Encoded value exceeds the range of a long");
+        }
+        return result * BASE + digit;
+    }
+
+    private static void checkNonNegative(long number) {
+        if (number < 0) {
+            throw new IllegalArgumentException("Cannot encode negative value: " + number);
+        }
+    }
+}
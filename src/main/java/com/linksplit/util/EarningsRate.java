@@ -0,0 +1,126 @@
+package com.linksplit.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A CPM rate times a revenue share, precomputed as a fixed-point {@code long} so that
+ * earnings for a view count are one multiply and one rounded divide, with no
+ * {@link BigDecimal} arithmetic.
+ * <p>
+ * Earnings are counted in units of {@code 10^-4}, the scale of
+ * {@code links.estimated_earnings}, and rounded half up exactly like
+ * {@code (views / 1000 * cpm * share).setScale(4, HALF_UP)}. The rate is held at scale
+ * 8, which is exact for the stored custom rates (scale 4 each); rates that need more
+ * digits, and products that would overflow, fall back to {@code BigDecimal}.
+ */
+public final class EarningsRate {
+    public static final int EARNINGS_SCALE = 4;
+
+    private static final int RATE_SCALE = 8;
+    // Scaled rate times views, over this, is earnings in units: 1000 views per CPM
+    // times 10^(RATE_SCALE - EARNINGS_SCALE)
+    private static final long DIVISOR = 1000L * 10_000L;
+    private static final long NOT_FIXED = -1;
+
+    private final BigDecimal cpmRate;
+    private final BigDecimal revenueShare;
+    private final double cpmRateValue;
+    private final double revenueShareValue;
+    private final BigDecimal rate;
+    private final long scaledRate;
+
+    private EarningsRate(BigDecimal cpmRate, BigDecimal revenueShare) {
+        this.cpmRate = cpmRate;
+        this.revenueShare = revenueShare;
+        this.cpmRateValue = cpmRate.doubleValue();
+        this.revenueShareValue = revenueShare.doubleValue();
+        this.rate = cpmRate.multiply(revenueShare);
+        this.scaledRate = toScaledRate(rate);
+    }
+
+    public static EarningsRate of(BigDecimal cpmRate, BigDecimal revenueShare) {
+        return new EarningsRate(cpmRate, revenueShare);
+    }
+
+    /**
+     * Configured rates, read the way the SQL earnings refresh binds them.
+     */
+    public static EarningsRate of(double cpmRate, double revenueShare) {
+        return new EarningsRate(BigDecimal.valueOf(cpmRate), BigDecimal.valueOf(revenueShare));
+    }
+
+    /**
+     * {@code current} if it was built from these configured rates, else a new rate.
+     */
+    public static EarningsRate refresh(EarningsRate current, double cpmRate, double revenueShare) {
+        if (current != null && current.cpmRateValue == cpmRate && current.revenueShareValue == revenueShare) {
+            return current;
+        }
+        return of(cpmRate, revenueShare);
+    }
+
+    public boolean isFor(BigDecimal cpmRate, BigDecimal revenueShare) {
+        return this.cpmRate.compareTo(cpmRate) == 0 && this.revenueShare.compareTo(revenueShare) == 0;
+    }
+
+    public BigDecimal getCpmRate() {
+        return cpmRate;
+    }
+
+    public BigDecimal getRevenueShare() {
+        return revenueShare;
+    }
+
+    /**
+     * Earnings for {@code views}, in units of {@code 10^-4}.
+     */
+    public long earningsUnits(long views) {
+        if (scaledRate != NOT_FIXED) {
+            long high = Math.multiplyHigh(views, scaledRate);
+            long low = views * scaledRate;
+            if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+                return divideHalfUp(low, DIVISOR);
+            }
+        }
+        return BigDecimal.valueOf(views).multiply(rate).movePointLeft(3)
+                .setScale(EARNINGS_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public BigDecimal earnings(long views) {
+        return toAmount(earningsUnits(views));
+    }
+
+    /**
+     * Units of {@code 10^-4} as an amount at the stored scale.
+     */
+    public static BigDecimal toAmount(long units) {
+        return BigDecimal.valueOf(units, EARNINGS_SCALE);
+    }
+
+    // Rounds half away from zero, as RoundingMode.HALF_UP does
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        if (remainder >= divisor - remainder) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    private static long toScaledRate(BigDecimal rate) {
+        if (rate.signum() < 0) {
+            return NOT_FIXED;
+        }
+        try {
+            return rate.setScale(RATE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return NOT_FIXED;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EarningsRate{cpm=" + cpmRate + ", share=" + revenueShare + "}";
+    }
+}
@@ -0,0 +1,99 @@
+package com.linksplit.util;
+
+/**
+ * Map from long keys to long counts with open addressing and linear probing, so
+ * counting needs no boxing and no entry objects. Not safe for concurrent use.
+ */
+public final class LongCountMap {
+    private long[] keys;
+    private long[] counts;
+    private boolean[] used;
+    private int size;
+
+    public LongCountMap() {
+        this(16);
+    }
+
+    public LongCountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new long[capacity];
+        counts = new long[capacity];
+        used = new boolean[capacity];
+    }
+
+    public void add(long key, long count) {
+        int mask = keys.length - 1;
+        int slot = spread(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        counts[slot] = count;
+        // Keep the table at most half full
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    public long get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = spread(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls the consumer once per key, in no particular order.
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        boolean[] oldUsed = used;
+        keys = new long[capacity];
+        counts = new long[capacity];
+        used = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = spread(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    // Keys are often consecutive (hour numbers) or packed id pairs
+    private static int spread(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long count);
+    }
+}
@@ -0,0 +1,97 @@
+package com.linksplit.util;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding of strings: gives each distinct string a dense int id, in the
+ * order the strings were first seen, so per-value counters can live in plain arrays
+ * indexed by id. Lookups use an open-addressing table with linear probing. Not safe
+ * for concurrent use.
+ */
+public final class StringDictionary {
+    private static final int EMPTY = -1;
+
+    private String[] values;
+    private int[] hashes;
+    private int[] slots;
+    private int size;
+
+    public StringDictionary() {
+        this(16);
+    }
+
+    public StringDictionary(int expectedSize) {
+        values = new String[Math.max(4, expectedSize)];
+        hashes = new int[values.length];
+        slots = new int[tableSize(values.length)];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * Id of the given non-null string, assigning the next id if it is new.
+     */
+    public int encode(String value) {
+        int hash = spread(value.hashCode());
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                return insert(slot, value, hash);
+            }
+            if (hashes[id] == hash && values[id].equals(value)) {
+                return id;
+            }
+        }
+    }
+
+    public String decode(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        return values[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int insert(int slot, String value, int hash) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        values[id] = value;
+        hashes[id] = hash;
+        slots[slot] = id;
+        // Keep the table at most half full
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int tableSize) {
+        slots = new int[tableSize];
+        Arrays.fill(slots, EMPTY);
+        int mask = tableSize - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    // Similar strings have similar hash codes; mix the high bits into the low bits
+    // that the table mask keeps
+    private static int spread(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
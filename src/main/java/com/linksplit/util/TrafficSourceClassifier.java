@@ -0,0 +1,80 @@
+package com.linksplit.util;
+
+/**
+ * Names the traffic source of a view from its UTM source, referrer or, failing both,
+ * its user agent (in-app browsers of messaging apps send no referrer).
+ */
+public final class TrafficSourceClassifier {
+
+    private TrafficSourceClassifier() {
+    }
+
+    public static String classify(String utmSource, String referrer, String userAgent) {
+        if (utmSource != null) {
+            return utmSource;
+        }
+        if (referrer != null && !referrer.isEmpty()) {
+            return fromReferrer(referrer);
+        }
+        return fromUserAgent(userAgent);
+    }
+
+    static String fromReferrer(String referrer) {
+        try {
+            java.net.URL netUrl = new java.net.URL(referrer);
+            String domain = netUrl.getHost().replaceFirst("^www\\.", "");
+
+            // Handle special cases for messaging platforms
+            if (domain.contains("t.me") || domain.contains("telegram")) {
+                return "Telegram";
+            } else if (domain.contains("whatsapp") || domain.contains("chat.whatsapp.com")) {
+                return "WhatsApp";
+            } else if (domain.contains("facebook.com") || domain.contains("fb.com")) {
+                return "Facebook";
+            } else if (domain.contains("twitter.com") || domain.contains("x.com")) {
+                return "Twitter/X";
+            } else if (domain.contains("instagram.com")) {
+                return "Instagram";
+            } else if (domain.contains("linkedin.com")) {
+                return "LinkedIn";
+            } else if (domain.contains("youtube.com") || domain.contains("youtu.be")) {
+                return "YouTube";
+            } else if (domain.contains("google.com") || domain.contains("google.")) {
+                return "Google";
+            } else if (domain.contains("bing.com")) {
+                return "Bing";
+            } else if (domain.contains("yahoo.com")) {
+                return "Yahoo";
+            }
+
+            return domain;
+        } catch (Exception e) {
+            return "Unknown";
+        }
+    }
+
+    static String fromUserAgent(String userAgent) {
+        if (userAgent == null || userAgent.isEmpty()) {
+            return "Direct";
+        }
+
+        String ua = userAgent.toLowerCase();
+
+        // Check for messaging app user agents
+        if (ua.contains("telegram") || ua.contains("telegrambot")) {
+            return "Telegram";
+        } else if (ua.contains("whatsapp")) {
+            return "WhatsApp";
+        } else if (ua.contains("facebookexternalhit") || ua.contains("fban") || ua.contains("fbav")) {
+            return "Facebook";
+        } else if (ua.contains("twitterbot") || ua.contains("twitter")) {
+            return "Twitter/X";
+        } else if (ua.contains("instagrambot") || ua.contains("instagram")) {
+            return "Instagram";
+        } else if (ua.contains("linkedinbot") || ua.contains("linkedin")) {
+            return "LinkedIn";
+        }
+
+        return "Direct";
+    }
+}
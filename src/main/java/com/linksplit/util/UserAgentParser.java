@@ -0,0 +1,60 @@
+package com.linksplit.util;
+
+public final class UserAgentParser {
+
+    private UserAgentParser() {
+    }
+
+    public static DeviceInfo parse(String userAgent) {
+        if (userAgent == null) {
+            return DeviceInfo.UNKNOWN;
+        }
+
+        String deviceType;
+        String browser;
+        String os;
+
+        // Detect device type
+        if (userAgent.contains("Mobile") || userAgent.contains("Android") || userAgent.contains("iPhone")) {
+            deviceType = "Mobile";
+        } else if (userAgent.contains("Tablet") || userAgent.contains("iPad")) {
+            deviceType = "Tablet";
+        } else {
+            deviceType = "Desktop";
+        }
+
+        // Detect browser
+        if (userAgent.contains("Chrome") && !userAgent.contains("Edg")) {
+            browser = "Chrome";
+        } else if (userAgent.contains("Safari") && !userAgent.contains("Chrome")) {
+            browser = "Safari";
+        } else if (userAgent.contains("Firefox")) {
+            browser = "Firefox";
+        } else if (userAgent.contains("Edg")) {
+            browser = "Edge";
+        } else {
+            browser = "Other";
+        }
+
+        // Detect OS
+        if (userAgent.contains("Windows")) {
+            os = "Windows";
+        } else if (userAgent.contains("Mac OS")) {
+            os = "macOS";
+        } else if (userAgent.contains("Linux")) {
+            os = "Linux";
+        } else if (userAgent.contains("Android")) {
+            os = "Android";
+        } else if (userAgent.contains("iPhone") || userAgent.contains("iPad")) {
+            os = "iOS";
+        } else {
+            os = "Other";
+        }
+
+        return new DeviceInfo(deviceType, browser, os);
+    }
+
+    public record DeviceInfo(String deviceType, String browser, String operatingSystem) {
+        public static final DeviceInfo UNKNOWN = new DeviceInfo("Unknown", "Unknown", "Unknown");
+    }
+}
@@ -0,0 +1,8 @@
+-- HyperLogLog sketch of the visitor IPs per link and day, written by the visitor
+-- sketch job and merged for unique visitor counts over a range
+CREATE TABLE IF NOT EXISTS link_view_daily_visitors (
+    link_id BIGINT NOT NULL,
+    view_date DATE NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (link_id, view_date)
+);
@@ -0,0 +1,3 @@
+-- View exports page through a link's views in id order, resuming after the last id
+-- delivered; this index serves them without sorting the link's whole history
+CREATE INDEX IF NOT EXISTS idx_link_views_link_id_id ON link_views(link_id, id);
@@ -0,0 +1,15 @@
+-- The admin link browser pages newest first on (created_at, id), optionally within one
+-- owner's links; the owner index also serves every per-user lookup the single-column
+-- index did
+CREATE INDEX IF NOT EXISTS idx_links_created_at_id ON links(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_links_user_created_at_id ON links(user_id, created_at, id);
+DROP INDEX IF EXISTS idx_links_user_id;
+
+-- Short-code and owner-email searches match prefixes, which a LIKE can only use a
+-- btree index for under the C collation or with the pattern operator class
+CREATE INDEX IF NOT EXISTS idx_links_short_code_pattern ON links(short_code text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_email_lower_pattern ON users(LOWER(email) text_pattern_ops);
+
+-- Destination searches match anywhere in the URL, case-insensitively
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_links_long_url_trgm ON links USING gin (long_url gin_trgm_ops);
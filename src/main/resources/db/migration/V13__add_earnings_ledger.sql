@@ -0,0 +1,38 @@
+-- Append-only record of every change to a creator's money: earnings accrued or reversed
+-- on their links, and payout amounts moving into and out of held and paid-out
+CREATE TABLE IF NOT EXISTS earnings_ledger (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    entry_type VARCHAR(16) NOT NULL,
+    amount DECIMAL(14, 4) NOT NULL,
+    payout_id BIGINT,
+    created_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_earnings_ledger_user_id ON earnings_ledger(user_id, id);
+
+-- Running totals of each user's ledger, updated in the same transaction as every entry;
+-- the available balance is accrued - held - paid_out
+CREATE TABLE IF NOT EXISTS user_balances (
+    user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    accrued DECIMAL(14, 4) NOT NULL,
+    held DECIMAL(14, 4) NOT NULL,
+    paid_out DECIMAL(14, 4) NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+-- Opening entries for existing earnings and payouts, and the balances they add up to
+INSERT INTO earnings_ledger (user_id, entry_type, amount, payout_id, created_at)
+SELECT user_id, 'ACCRUAL', SUM(estimated_earnings), NULL, CURRENT_TIMESTAMP
+FROM links WHERE user_id IS NOT NULL GROUP BY user_id;
+
+INSERT INTO earnings_ledger (user_id, entry_type, amount, payout_id, created_at)
+SELECT user_id, CASE WHEN status = 'COMPLETED' THEN 'PAY' ELSE 'HOLD' END, amount, id, CURRENT_TIMESTAMP
+FROM payouts WHERE status IN ('PENDING', 'PROCESSING', 'COMPLETED');
+
+INSERT INTO user_balances (user_id, accrued, held, paid_out, updated_at)
+SELECT user_id,
+       SUM(CASE WHEN entry_type = 'ACCRUAL' THEN amount ELSE 0 END),
+       SUM(CASE WHEN entry_type = 'HOLD' THEN amount WHEN entry_type = 'RELEASE' THEN -amount ELSE 0 END),
+       SUM(CASE WHEN entry_type = 'PAY' THEN amount WHEN entry_type = 'REVERSAL' THEN -amount ELSE 0 END),
+       CURRENT_TIMESTAMP
+FROM earnings_ledger GROUP BY user_id;
@@ -0,0 +1,10 @@
+-- Records that the earnings ledger was opened from the link and payout totals, so the
+-- opening never depends on whether any balance row exists yet; V13 opened it
+CREATE TABLE IF NOT EXISTS earnings_ledger_opening (
+    id INT PRIMARY KEY,
+    opened_at TIMESTAMP NOT NULL
+);
+
+INSERT INTO earnings_ledger_opening (id, opened_at)
+SELECT 1, CURRENT_TIMESTAMP
+WHERE NOT EXISTS (SELECT 1 FROM earnings_ledger_opening);
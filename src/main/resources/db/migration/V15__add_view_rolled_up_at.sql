@@ -0,0 +1,15 @@
+-- Views are stamped in the same transaction that folds them into the hourly rollups,
+-- replacing the id watermark, which skipped views whose insert committed late
+ALTER TABLE link_views ADD COLUMN IF NOT EXISTS rolled_up_at TIMESTAMP WITH TIME ZONE;
+
+-- Everything up to the old watermark is already in the rollups; run while the rollup
+-- job is stopped. The watermark row stays as the job's lock
+UPDATE link_views SET rolled_up_at = w.updated_at
+FROM job_watermarks w
+WHERE w.job_name = 'view-rollup' AND link_views.id <= w.last_id AND link_views.rolled_up_at IS NULL;
+UPDATE job_watermarks SET last_id = 0 WHERE job_name = 'view-rollup';
+
+-- Only views still to be rolled up are indexed: by id for the job, by link for the
+-- dashboard's raw tail
+CREATE INDEX IF NOT EXISTS idx_link_views_not_rolled_up ON link_views(id) WHERE rolled_up_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_link_views_link_not_rolled_up ON link_views(link_id) WHERE rolled_up_at IS NULL;
@@ -0,0 +1,13 @@
+-- Views are stamped in the same transaction that adds their IP to the daily visitor
+-- sketches, replacing the sketch job's id watermark the same way as V15
+ALTER TABLE link_views ADD COLUMN IF NOT EXISTS sketched_at TIMESTAMP WITH TIME ZONE;
+
+-- Everything up to the old watermark is already sketched; run while the rollup job is
+-- stopped. The watermark row stays as the job's lock
+UPDATE link_views SET sketched_at = w.updated_at
+FROM job_watermarks w
+WHERE w.job_name = 'visitor-sketch' AND link_views.id <= w.last_id AND link_views.sketched_at IS NULL;
+UPDATE job_watermarks SET last_id = 0 WHERE job_name = 'visitor-sketch';
+
+-- Only views still to be sketched are indexed
+CREATE INDEX IF NOT EXISTS idx_link_views_not_sketched ON link_views(id) WHERE sketched_at IS NULL;
@@ -0,0 +1,15 @@
+-- Views are stored raw and enriched with location/device data in the background
+ALTER TABLE link_views ADD COLUMN IF NOT EXISTS enriched_at TIMESTAMP WITH TIME ZONE;
+
+-- Everything recorded before deferred enrichment existed was enriched inline
+UPDATE link_views SET enriched_at = viewed_at WHERE enriched_at IS NULL;
+
+-- Only raw rows are indexed, so the backlog scan stays small
+CREATE INDEX IF NOT EXISTS idx_link_views_unenriched ON link_views(id) WHERE enriched_at IS NULL;
+
+-- Resume points for background jobs
+CREATE TABLE IF NOT EXISTS job_watermarks (
+    job_name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
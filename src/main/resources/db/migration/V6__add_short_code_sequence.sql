@@ -0,0 +1,3 @@
+-- Short codes are derived from ids leased in blocks of 1000; each nextval reserves
+-- one block. The increment must match LinkJdbcRepository.SHORT_CODE_BLOCK_SIZE
+CREATE SEQUENCE IF NOT EXISTS short_code_seq START WITH 0 MINVALUE 0 INCREMENT BY 1000;
@@ -0,0 +1,21 @@
+-- Hourly view totals per link, maintained by ViewRollupService from link_views. The
+-- hour bucket is the wall-clock hour the application records viewed_at in
+CREATE TABLE IF NOT EXISTS link_view_hourly (
+    link_id BIGINT NOT NULL,
+    hour_bucket TIMESTAMP NOT NULL,
+    views BIGINT NOT NULL,
+    completed_views BIGINT NOT NULL,
+    time_to_skip_total BIGINT NOT NULL,
+    time_to_skip_count BIGINT NOT NULL,
+    PRIMARY KEY (link_id, hour_bucket)
+);
+
+-- Views per link and hour for each country, city, device, browser, OS and traffic source
+CREATE TABLE IF NOT EXISTS link_view_hourly_dimensions (
+    link_id BIGINT NOT NULL,
+    hour_bucket TIMESTAMP NOT NULL,
+    dimension VARCHAR(16) NOT NULL,
+    dimension_value VARCHAR(255) NOT NULL,
+    views BIGINT NOT NULL,
+    PRIMARY KEY (link_id, hour_bucket, dimension, dimension_value)
+);
@@ -0,0 +1,4 @@
+-- Dashboard queries filter views by link and time range; the composite index serves
+-- them and makes the single-column link index redundant
+CREATE INDEX IF NOT EXISTS idx_link_views_link_viewed_at ON link_views(link_id, viewed_at);
+DROP INDEX IF EXISTS idx_link_views_link_id;
@@ -0,0 +1,15 @@
+-- All-time view and completed view counts per link, kept up to date by the view rollup
+-- job so completion rates need no scan of link_views
+ALTER TABLE links ADD COLUMN IF NOT EXISTS rolled_up_views BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE links ADD COLUMN IF NOT EXISTS rolled_up_completed_views BIGINT NOT NULL DEFAULT 0;
+
+-- Backfill from the hourly rollups; run while the rollup job is stopped
+UPDATE links l SET
+    rolled_up_views = totals.views,
+    rolled_up_completed_views = totals.completed_views
+FROM (
+    SELECT link_id, SUM(views) AS views, SUM(completed_views) AS completed_views
+    FROM link_view_hourly
+    GROUP BY link_id
+) totals
+WHERE totals.link_id = l.id;
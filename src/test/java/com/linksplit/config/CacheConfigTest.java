@@ -0,0 +1,65 @@
+package com.linksplit.config;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.linksplit.dto.LinkRoute;
+import com.linksplit.repository.LinkRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheConfigTest {
+    
+    private final LinkRepository linkRepository = mock(LinkRepository.class);
+    private final LoadingCache<String, LinkRoute> cache =
+            new CacheConfig().linkRouteCache(linkRepository, new AppConfig());
+    
+    @Test
+    @DisplayName("Should load a cold route once for concurrent misses")
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        LinkRoute route = new LinkRoute(1L, "viral1", "https://example.com", 2L, false);
+        CountDownLatch loading = new CountDownLatch(1);
+        when(linkRepository.findRouteByShortCode("viral1")).thenAnswer(invocation -> {
+            loading.await(1, TimeUnit.SECONDS);
+            return Optional.of(route);
+        });
+        
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<LinkRoute>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(pool.submit(() -> cache.get("viral1")));
+            }
+            loading.countDown();
+            for (Future<LinkRoute> result : results) {
+                assertEquals(route, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        verify(linkRepository, times(1)).findRouteByShortCode("viral1");
+    }
+    
+    @Test
+    @DisplayName("Should not keep unknown codes")
+    void testUnknownCodeNotCached() {
+        when(linkRepository.findRouteByShortCode("nope42")).thenReturn(Optional.empty());
+        
+        assertNull(cache.get("nope42"));
+        assertNull(cache.get("nope42"));
+        
+        assertEquals(0, cache.estimatedSize());
+        verify(linkRepository, times(2)).findRouteByShortCode("nope42");
+    }
+}
@@ -1,13 +1,14 @@
 package com.linksplit.controller;
 
 import com.linksplit.config.AppConfig;
+import com.linksplit.dto.LinkRoute;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
+import com.linksplit.service.AdSessionTokenService;
 import com.linksplit.service.AnalyticsService;
 import com.linksplit.service.RevenueService;
 import com.linksplit.service.UrlShorteningService;
 import com.linksplit.service.ViewLimitService;
-import jakarta.servlet.http.HttpSession;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -16,18 +17,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
-import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Optional;
-import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "app.short-codes.key=redirect-test-key")
 @AutoConfigureMockMvc
 class RedirectControllerTest {
     
@@ -49,8 +48,13 @@ class RedirectControllerTest {
     @MockBean
     private RevenueService revenueService;
     
+    @MockBean
+    private AdSessionTokenService adSessionTokenService;
+    
     private Link testLink;
+    private LinkRoute testRoute;
     private User testUser;
+    private AdSessionTokenService.AdSession adSession;
     
     @BeforeEach
     void setUp() {
@@ -67,14 +71,30 @@ class RedirectControllerTest {
                 .viewCount(0L)
                 .duplicateViewCount(0L)
                 .build();
+        testRoute = LinkRoute.of(testLink);
+        adSession = new AdSessionTokenService.AdSession("test123", null, System.currentTimeMillis(), 42L);
                 
         when(appConfig.getAdDisplaySeconds()).thenReturn(5);
+        when(adSessionTokenService.newSession(eq("test123"), any())).thenReturn(adSession);
+        when(adSessionTokenService.sign(adSession)).thenReturn("signed-token");
+    }
+    
+    @Test
+    @DisplayName("Should carry the original referrer to the ad page without a session")
+    void testRedirectCarriesReferrer() throws Exception {
+        when(urlShorteningService.getRouteByShortCode("test123")).thenReturn(Optional.of(testRoute));
+        
+        mockMvc.perform(get("/link/test123")
+                .header("Referer", "https://news.example.com/post?id=1"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/ad-page?id=test123&ref=https://news.example.com/post?id%3D1"))
+                .andExpect(request().sessionAttributeDoesNotExist("original_referrer_test123"));
     }
     
     @Test
     @DisplayName("Should show ad page without recording view immediately")
     void testShowAdPage() throws Exception {
-        when(urlShorteningService.getLinkByShortCode("test123")).thenReturn(Optional.of(testLink));
+        when(urlShorteningService.getRouteByShortCode("test123")).thenReturn(Optional.of(testRoute));
         when(analyticsService.extractIpAddress(any())).thenReturn("192.168.1.1");
         when(viewLimitService.checkRateLimit("192.168.1.1")).thenReturn(ViewLimitService.LimitType.ALLOWED);
         
@@ -85,24 +105,22 @@ class RedirectControllerTest {
                 .andExpect(model().attribute("destinationUrl", "https://example.com"))
                 .andExpect(model().attribute("countdownSeconds", 5))
                 .andExpect(model().attribute("shortCode", "test123"))
-                .andExpect(model().attributeExists("sessionToken"));
+                .andExpect(model().attribute("sessionToken", "signed-token"))
+                .andExpect(model().attribute("visitId", "2a"));
         
         // Verify view was NOT recorded yet
-        verify(analyticsService, never()).recordView(any(), any());
+        verify(analyticsService, never()).recordView(any(LinkRoute.class), any(), any(), any());
     }
     
     @Test
     @DisplayName("Should record view only after ad completion")
     void testCompleteAdView() throws Exception {
-        MockHttpSession session = new MockHttpSession();
-        String sessionToken = UUID.randomUUID().toString();
-        session.setAttribute("ad_session_test123", sessionToken);
-        
-        when(urlShorteningService.getLinkByShortCode("test123")).thenReturn(Optional.of(testLink));
-        when(analyticsService.recordView(eq(testLink), any())).thenReturn(true);
+        String sessionToken = "signed-token";
+        when(adSessionTokenService.redeem(sessionToken, "test123")).thenReturn(Optional.of(adSession));
+        when(urlShorteningService.getRouteByShortCode("test123")).thenReturn(Optional.of(testRoute));
+        when(analyticsService.recordView(eq(testRoute), any(), any(), any())).thenReturn(true);
         
         mockMvc.perform(post("/api/complete-ad")
-                .session(session)
                 .param("shortCode", "test123")
                 .param("token", sessionToken)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED))
@@ -111,19 +129,16 @@ class RedirectControllerTest {
                 .andExpect(jsonPath("$.message").value("View recorded"));
         
         // Verify view was recorded
-        verify(analyticsService).recordView(eq(testLink), any());
+        verify(analyticsService).recordView(eq(testRoute), any(), any(), any());
     }
     
     @Test
     @DisplayName("Should reject completion with invalid session token")
     void testCompleteAdViewInvalidToken() throws Exception {
-        MockHttpSession session = new MockHttpSession();
-        session.setAttribute("ad_session_test123", "valid-token");
-        
-        when(urlShorteningService.getLinkByShortCode("test123")).thenReturn(Optional.of(testLink));
+        when(adSessionTokenService.redeem("invalid-token", "test123")).thenReturn(Optional.empty());
+        when(urlShorteningService.getRouteByShortCode("test123")).thenReturn(Optional.of(testRoute));
         
         mockMvc.perform(post("/api/complete-ad")
-                .session(session)
                 .param("shortCode", "test123")
                 .param("token", "invalid-token")
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED))
@@ -131,13 +146,13 @@ class RedirectControllerTest {
                 .andExpect(jsonPath("$.error").value("Invalid session"));
         
         // Verify view was NOT recorded
-        verify(analyticsService, never()).recordView(any(), any());
+        verify(analyticsService, never()).recordView(any(LinkRoute.class), any(), any(), any());
     }
     
     @Test
     @DisplayName("Should show rate limit warning on ad page")
     void testShowAdPageWithRateLimit() throws Exception {
-        when(urlShorteningService.getLinkByShortCode("test123")).thenReturn(Optional.of(testLink));
+        when(urlShorteningService.getRouteByShortCode("test123")).thenReturn(Optional.of(testRoute));
         when(analyticsService.extractIpAddress(any())).thenReturn("192.168.1.1");
         when(viewLimitService.checkRateLimit("192.168.1.1"))
                 .thenReturn(ViewLimitService.LimitType.HOURLY);
@@ -154,16 +169,15 @@ class RedirectControllerTest {
     @Test
     @DisplayName("Should prevent reuse of session token")
     void testPreventTokenReuse() throws Exception {
-        MockHttpSession session = new MockHttpSession();
-        String sessionToken = UUID.randomUUID().toString();
-        session.setAttribute("ad_session_test123", sessionToken);
-        
-        when(urlShorteningService.getLinkByShortCode("test123")).thenReturn(Optional.of(testLink));
-        when(analyticsService.recordView(eq(testLink), any())).thenReturn(true);
+        String sessionToken = "signed-token";
+        when(adSessionTokenService.redeem(sessionToken, "test123"))
+                .thenReturn(Optional.of(adSession))
+                .thenReturn(Optional.empty());
+        when(urlShorteningService.getRouteByShortCode("test123")).thenReturn(Optional.of(testRoute));
+        when(analyticsService.recordView(eq(testRoute), any(), any(), any())).thenReturn(true);
         
         // First completion should succeed
         mockMvc.perform(post("/api/complete-ad")
-                .session(session)
                 .param("shortCode", "test123")
                 .param("token", sessionToken)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED))
@@ -172,7 +186,6 @@ class RedirectControllerTest {
         
         // Second attempt with same token should fail
         mockMvc.perform(post("/api/complete-ad")
-                .session(session)
                 .param("shortCode", "test123")
                 .param("token", sessionToken)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED))
@@ -180,6 +193,6 @@ class RedirectControllerTest {
                 .andExpect(jsonPath("$.error").value("Invalid session"));
         
         // Verify view was recorded only once
-        verify(analyticsService, times(1)).recordView(eq(testLink), any());
+        verify(analyticsService, times(1)).recordView(eq(testRoute), any(), any(), any());
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.linksplit.controller;
+
+import com.linksplit.dto.LinkRoute;
+import com.linksplit.service.UrlShorteningService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedirectFastPathFilterTest {
+    
+    @Mock
+    private UrlShorteningService urlShorteningService;
+    
+    @Mock
+    private ApplicationContext applicationContext;
+    
+    @Mock
+    private RequestMappingHandlerMapping handlerMapping;
+    
+    private RedirectFastPathFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        when(applicationContext.getBeansOfType(RequestMappingHandlerMapping.class))
+                .thenReturn(Map.of("requestMappingHandlerMapping", handlerMapping));
+        when(handlerMapping.getHandlerMethods()).thenReturn(Map.of(
+                RequestMappingInfo.paths("/dashboard").build(), mock(org.springframework.web.method.HandlerMethod.class),
+                RequestMappingInfo.paths("/{shortCode}").build(), mock(org.springframework.web.method.HandlerMethod.class)));
+        
+        filter = new RedirectFastPathFilter(urlShorteningService, applicationContext);
+        filter.collectReservedPaths();
+    }
+    
+    private MockHttpServletResponse perform(MockHttpServletRequest request, MockFilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+    
+    @Test
+    @DisplayName("Should redirect a known link straight to the ad page")
+    void testLinkRoute() throws Exception {
+        when(urlShorteningService.getRouteByShortCode("abc123"))
+                .thenReturn(Optional.of(new LinkRoute(1L, "abc123", "https://example.com", 2L, false)));
+        MockFilterChain chain = new MockFilterChain();
+        
+        MockHttpServletResponse response = perform(new MockHttpServletRequest("GET", "/link/abc123"), chain);
+        
+        assertEquals(302, response.getStatus());
+        assertEquals("/ad-page?id=abc123", response.getHeader("Location"));
+        assertNull(chain.getRequest(), "chain should not run");
+    }
+    
+    @Test
+    @DisplayName("Should skip the extra hop on the legacy route and keep the referrer")
+    void testLegacyRouteWithReferrer() throws Exception {
+        when(urlShorteningService.getRouteByShortCode("abc123"))
+                .thenReturn(Optional.of(new LinkRoute(1L, "abc123", "https://example.com", 2L, false)));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/abc123");
+        request.addHeader("Referer", "https://news.example.com/post?id=1");
+        
+        MockHttpServletResponse response = perform(request, new MockFilterChain());
+        
+        assertEquals(302, response.getStatus());
+        assertEquals("/ad-page?id=abc123&ref=https://news.example.com/post?id%3D1", response.getHeader("Location"));
+    }
+    
+    @Test
+    @DisplayName("Should pass unknown and deleted codes to the controller")
+    void testUnknownAndDeletedCodes() throws Exception {
+        when(urlShorteningService.getRouteByShortCode("nope42")).thenReturn(Optional.empty());
+        when(urlShorteningService.getRouteByShortCode("gone99"))
+                .thenReturn(Optional.of(new LinkRoute(1L, "gone99", "https://example.com", 2L, true)));
+        
+        MockFilterChain unknown = new MockFilterChain();
+        perform(new MockHttpServletRequest("GET", "/link/nope42"), unknown);
+        MockFilterChain deleted = new MockFilterChain();
+        perform(new MockHttpServletRequest("GET", "/gone99"), deleted);
+        
+        assertNotNull(unknown.getRequest());
+        assertNotNull(deleted.getRequest());
+    }
+    
+    @Test
+    @DisplayName("Should leave controller paths and non-code paths alone")
+    void testReservedAndOtherPaths() throws Exception {
+        for (String path : new String[]{"/dashboard", "/", "/favicon.ico", "/admin/links", "/link/abc/def"}) {
+            MockFilterChain chain = new MockFilterChain();
+            perform(new MockHttpServletRequest("GET", path), chain);
+            assertNotNull(chain.getRequest(), path);
+        }
+        
+        MockFilterChain post = new MockFilterChain();
+        perform(new MockHttpServletRequest("POST", "/abc123"), post);
+        assertNotNull(post.getRequest());
+        
+        verify(urlShorteningService, never()).getRouteByShortCode(anyString());
+    }
+}
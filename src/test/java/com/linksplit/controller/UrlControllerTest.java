@@ -1,9 +1,11 @@
 package com.linksplit.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linksplit.dto.BulkLinkResult;
 import com.linksplit.dto.CreateUrlRequest;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
+import com.linksplit.service.BulkLinkService;
 import com.linksplit.service.UrlShorteningService;
 import com.linksplit.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,6 +21,10 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -40,6 +46,9 @@ class UrlControllerTest {
     @MockBean
     private UserService userService;
     
+    @MockBean
+    private BulkLinkService bulkLinkService;
+    
     private User testUser;
     private Link testLink;
     
@@ -159,4 +168,42 @@ class UrlControllerTest {
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.error").value("Failed to create short URL"));
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Should require authentication for bulk creation")
+    void testBulkCreateRequiresAuthentication() throws Exception {
+        mockMvc.perform(post("/api/url/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"https://www.example.com\"]"))
+                .andExpect(status().isUnauthorized());
+        
+        verifyNoInteractions(bulkLinkService);
+    }
+    
+    @Test
+    @DisplayName("Should stream bulk results as NDJSON")
+    @WithMockUser(username = "test@example.com")
+    void testBulkCreateStreamsNdjson() throws Exception {
+        when(userService.getUserByEmail("test@example.com")).thenReturn(testUser);
+        doAnswer(invocation -> {
+            Iterator<String> urls = invocation.getArgument(0);
+            BulkLinkService.ChunkListener listener = invocation.getArgument(2);
+            List<BulkLinkResult> results = new ArrayList<>();
+            long index = 0;
+            while (urls.hasNext()) {
+                results.add(BulkLinkResult.builder().index(index).longUrl(urls.next()).shortCode("c" + index++).build());
+            }
+            listener.onChunk(results);
+            return null;
+        }).when(bulkLinkService).createLinks(any(), eq(testUser), any());
+        
+        mockMvc.perform(post("/api/url/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("\"https://a.example.com\"\n{\"longUrl\": \"https://b.example.com\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"index\":0,\"shortCode\":\"c0\",\"longUrl\":\"https://a.example.com\"}\n" +
+                        "{\"index\":1,\"shortCode\":\"c1\",\"longUrl\":\"https://b.example.com\"}\n"));
+    }
+}
@@ -23,7 +23,7 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+@SpringBootTest(properties = {"app.short-codes.key=integration-test-key", "app.ad-session.secret=integration-test-secret"})
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
 @Transactional
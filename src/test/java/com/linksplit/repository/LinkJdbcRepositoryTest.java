@@ -0,0 +1,109 @@
+package com.linksplit.repository;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.repository.LinkJdbcRepository.CounterDelta;
+import com.linksplit.repository.LinkJdbcRepository.EarningsChange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against an in-memory H2 database, so the row mapping of nullable columns is
+ * exercised against a real driver.
+ */
+class LinkJdbcRepositoryTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private LinkJdbcRepository linkJdbcRepository;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, email VARCHAR(255), " +
+                "custom_cpm_rate DECIMAL(10, 4), custom_revenue_share DECIMAL(5, 4))");
+        jdbcTemplate.execute("CREATE TABLE links (id BIGINT PRIMARY KEY, user_id BIGINT REFERENCES users(id), " +
+                "view_count BIGINT NOT NULL, duplicate_view_count BIGINT NOT NULL, " +
+                "estimated_earnings DECIMAL(14, 4) NOT NULL)");
+        jdbcTemplate.update("INSERT INTO users (id, email) VALUES (7, 'owner@example.com')");
+        jdbcTemplate.update("INSERT INTO links VALUES (1, 7, 0, 0, 0)");
+        jdbcTemplate.update("INSERT INTO links VALUES (2, NULL, 0, 0, 0)");
+
+        // Defaults: CPM 1.00, share 0.50
+        linkJdbcRepository = new LinkJdbcRepository(jdbcTemplate, new AppConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should report anonymous links' earnings changes without an owner")
+    void testApplyCounterDeltasAnonymousLink() {
+        List<EarningsChange> changes = linkJdbcRepository.applyCounterDeltas(List.of(
+                new CounterDelta(1, 1000, 0), new CounterDelta(2, 2000, 3)));
+
+        changes = changes.stream().sorted(Comparator.comparingLong(EarningsChange::linkId)).toList();
+        assertEquals(2, changes.size());
+        assertEquals(7L, changes.get(0).userId());
+        assertEquals(0, new BigDecimal("0.5").compareTo(changes.get(0).newEarnings()));
+        assertNull(changes.get(1).userId());
+        assertEquals(0, new BigDecimal("1.0").compareTo(changes.get(1).newEarnings()));
+
+        Map<Long, BigDecimal> byUser = EarningsChange.byUser(changes);
+        assertEquals(1, byUser.size());
+        assertEquals(0, new BigDecimal("0.5").compareTo(byUser.get(7L)));
+        assertEquals(3L, jdbcTemplate.queryForObject("SELECT duplicate_view_count FROM links WHERE id = 2", Long.class));
+    }
+
+    @Test
+    @DisplayName("Should return stale anonymous links without an owner")
+    void testLockStaleEarningsAnonymousLink() {
+        jdbcTemplate.update("UPDATE links SET view_count = 4000");
+
+        List<EarningsChange> changes = linkJdbcRepository.lockStaleEarnings(0, 2);
+        linkJdbcRepository.updateEarnings(changes);
+
+        assertEquals(2, changes.size());
+        assertEquals(7L, changes.stream().filter(c -> c.linkId() == 1).findFirst().orElseThrow().userId());
+        assertNull(changes.stream().filter(c -> c.linkId() == 2).findFirst().orElseThrow().userId());
+        Map<Long, BigDecimal> byUser = EarningsChange.byUser(changes);
+        assertEquals(1, byUser.size());
+        assertEquals(0, new BigDecimal("2").compareTo(byUser.get(7L)));
+        assertTrue(linkJdbcRepository.lockStaleEarnings(0, 2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should add counts only and leave the earnings to the stale-earnings refresh")
+    void testAddCountsThenRefreshById() {
+        linkJdbcRepository.addCounts(List.of(new CounterDelta(2, 2000, 1), new CounterDelta(1, 4000, 0)));
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(jdbcTemplate.queryForObject(
+                "SELECT estimated_earnings FROM links WHERE id = 1", BigDecimal.class)));
+        List<EarningsChange> changes = linkJdbcRepository.lockStaleEarnings(List.of(2L, 1L));
+        assertEquals(List.of(1L, 2L), changes.stream().map(EarningsChange::linkId).toList());
+        assertEquals(0, new BigDecimal("2").compareTo(changes.get(0).newEarnings()));
+        assertEquals(0, new BigDecimal("1").compareTo(changes.get(1).newEarnings()));
+
+        linkJdbcRepository.updateEarnings(changes);
+        assertTrue(linkJdbcRepository.lockStaleEarnings(List.of(1L, 2L)).isEmpty());
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT duplicate_view_count FROM links WHERE id = 2", Long.class));
+    }
+}
@@ -0,0 +1,122 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdSessionTokenServiceTest {
+    
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private AdSessionTokenService service;
+    
+    @BeforeEach
+    void setUp() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setAdDisplaySeconds(5);
+        appConfig.getAdSession().setSecret("test-secret");
+        appConfig.getAdSession().setTtlMinutes(30);
+        service = new AdSessionTokenService(appConfig, now::get);
+        service.init();
+    }
+    
+    private String issue(String shortCode, String referrer) {
+        return service.sign(service.newSession(shortCode, referrer));
+    }
+    
+    @Test
+    @DisplayName("Should redeem a token after the countdown and return its referrer")
+    void testRedeem() {
+        String token = issue("abc123", "https://news.example.com/post?id=1");
+        now.addAndGet(5000);
+        
+        Optional<AdSessionTokenService.AdSession> session = service.redeem(token, "abc123");
+        
+        assertTrue(session.isPresent());
+        assertEquals("abc123", session.get().shortCode());
+        assertEquals("https://news.example.com/post?id=1", session.get().referrer());
+    }
+    
+    @Test
+    @DisplayName("Should reject a replayed token")
+    void testReplay() {
+        String token = issue("abc123", null);
+        now.addAndGet(5000);
+        
+        assertTrue(service.redeem(token, "abc123").isPresent());
+        assertTrue(service.redeem(token, "abc123").isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Should reject a token redeemed before the countdown could end")
+    void testTooEarly() {
+        String token = issue("abc123", null);
+        now.addAndGet(1000);
+        
+        assertTrue(service.redeem(token, "abc123").isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Should reject a token for another link")
+    void testWrongShortCode() {
+        String token = issue("abc123", null);
+        now.addAndGet(5000);
+        
+        assertTrue(service.redeem(token, "xyz789").isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Should reject an expired token")
+    void testExpired() {
+        String token = issue("abc123", null);
+        now.addAndGet(31 * 60_000L);
+        
+        assertTrue(service.redeem(token, "abc123").isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Should reject tampered and malformed tokens")
+    void testTampered() {
+        String token = issue("abc123", null);
+        now.addAndGet(5000);
+        String forged = token.substring(0, token.indexOf('.') + 1) + "AAAA";
+        
+        assertTrue(service.redeem(forged, "abc123").isEmpty());
+        assertTrue(service.redeem("not-a-token", "abc123").isEmpty());
+        assertTrue(service.redeem(null, "abc123").isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Should forget burned nonces once their tokens have expired")
+    void testNonceRotation() {
+        for (int i = 0; i < 3; i++) {
+            String token = issue("abc123", null);
+            now.addAndGet(5000);
+            assertTrue(service.redeem(token, "abc123").isPresent());
+        }
+        assertEquals(3, service.getRememberedNonceCount());
+        
+        // Two rotations later the first generation is gone
+        for (int i = 0; i < 2; i++) {
+            now.addAndGet(30 * 60_000L);
+            String token = issue("abc123", null);
+            now.addAndGet(5000);
+            assertTrue(service.redeem(token, "abc123").isPresent());
+        }
+        assertEquals(2, service.getRememberedNonceCount());
+    }
+    
+    @Test
+    @DisplayName("Should refuse to start without a secret")
+    void testMissingSecret() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getAdSession().setSecret(" ");
+        
+        assertThrows(IllegalStateException.class, () -> new AdSessionTokenService(appConfig, now::get).init());
+    }
+}
@@ -0,0 +1,79 @@
+package com.linksplit.service;
+
+import com.linksplit.repository.LinkJdbcRepository;
+import com.linksplit.repository.LinkJdbcRepository.AdminLinkRow;
+import com.linksplit.repository.LinkJdbcRepository.LinkCursor;
+import com.linksplit.repository.LinkJdbcRepository.LinkSearch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminLinkServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @Mock
+    private LinkJdbcRepository linkJdbcRepository;
+
+    @InjectMocks
+    private AdminLinkService adminLinkService;
+
+    @Test
+    @DisplayName("Should continue after the last link shown when more links follow")
+    void testNextCursor() {
+        LinkSearch search = new LinkSearch(LinkSearch.Field.URL, "youtube");
+        when(linkJdbcRepository.findAdminLinks(search, null, 4)).thenReturn(rows(4));
+        when(linkJdbcRepository.estimateAdminLinkCount(search)).thenReturn(1200L);
+
+        AdminLinkService.LinkPage page = adminLinkService.getPage(search, null, 3);
+
+        assertEquals(3, page.links().size());
+        assertEquals(new LinkCursor(NOW.minusMinutes(2), 3L), page.next());
+        assertEquals(1200L, page.approximateTotal());
+    }
+
+    @Test
+    @DisplayName("Should have no next page when the extra row is missing")
+    void testLastPage() {
+        LinkCursor before = new LinkCursor(NOW, 10L);
+        when(linkJdbcRepository.findAdminLinks(null, before, 4)).thenReturn(rows(2));
+
+        AdminLinkService.LinkPage page = adminLinkService.getPage(null, before, 3);
+
+        assertEquals(2, page.links().size());
+        assertNull(page.next());
+    }
+
+    @Test
+    @DisplayName("Should cap the page size")
+    void testPageSizeCapped() {
+        when(linkJdbcRepository.findAdminLinks(any(), any(), anyInt())).thenReturn(List.of());
+
+        adminLinkService.getPage(null, null, 100_000);
+
+        verify(linkJdbcRepository).findAdminLinks(null, null, AdminLinkService.MAX_PAGE_SIZE + 1);
+    }
+
+    // Newest first, one minute apart
+    private static List<AdminLinkRow> rows(int count) {
+        List<AdminLinkRow> rows = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            rows.add(new AdminLinkRow(i, "code" + i, "https://example.com/" + i, 7L, "owner@example.com",
+                    i * 10L, 0, BigDecimal.ZERO, NOW.minusMinutes(i - 1)));
+        }
+        return rows;
+    }
+}
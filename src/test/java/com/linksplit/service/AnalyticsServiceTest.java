@@ -3,6 +3,7 @@ package com.linksplit.service;
 import com.linksplit.config.AppConfig;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.LinkView;
+import com.linksplit.repository.LinkJdbcRepository;
 import com.linksplit.repository.LinkRepository;
 import com.linksplit.repository.LinkViewRepository;
 import com.linksplit.service.ViewLimitService;
@@ -30,6 +31,9 @@ class AnalyticsServiceTest {
     @Mock
     private LinkRepository linkRepository;
     
+    @Mock
+    private LinkJdbcRepository linkJdbcRepository;
+    
     @Mock
     private LinkViewRepository linkViewRepository;
     
@@ -48,6 +52,15 @@ class AnalyticsServiceTest {
     @Mock
     private RevenueService revenueService;
     
+    @Mock
+    private ViewIngestionService viewIngestionService;
+    
+    @Mock
+    private LinkCounterService linkCounterService;
+    
+    @Mock
+    private ViewEnrichmentService viewEnrichmentService;
+    
     @Mock
     private HttpServletRequest request;
     
@@ -69,8 +82,10 @@ class AnalyticsServiceTest {
     @Test
     @DisplayName("Should record view successfully")
     void testRecordView() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
         when(request.getHeader("X-Forwarded-For")).thenReturn(null);
         when(request.getHeader("X-Real-IP")).thenReturn(null);
+        when(request.getHeader("X-Original-Forwarded-For")).thenReturn(null);
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
         when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
         when(request.getHeader("Referer")).thenReturn(null);
@@ -90,13 +105,14 @@ class AnalyticsServiceTest {
         
         assertTrue(result);
         verify(linkViewRepository).save(any(LinkView.class));
-        verify(linkRepository).incrementViewCount(testLink.getId());
-        verify(linkRepository).updateEarnings(eq(testLink.getId()), any());
+        verify(linkCounterService).recordView(testLink.getId());
+        verify(linkRepository, never()).updateEarnings(anyLong(), any());
     }
     
     @Test
     @DisplayName("Should extract IP from X-Forwarded-For header")
     void testExtractIpFromXForwardedFor() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
         when(request.getHeader("X-Forwarded-For")).thenReturn("203.0.113.1, 198.51.100.1");
         when(request.getHeader("User-Agent")).thenReturn("TestAgent");
         when(request.getHeader("Referer")).thenReturn(null);
@@ -111,7 +127,7 @@ class AnalyticsServiceTest {
         analyticsService.recordView(testLink, request);
         
         verify(linkViewRepository).save(any(LinkView.class));
-        verify(linkRepository).updateEarnings(eq(testLink.getId()), any());
+        verify(linkCounterService).recordView(testLink.getId());
     }
     
     @Test
@@ -127,13 +143,16 @@ class AnalyticsServiceTest {
         assertFalse(result);
         verify(linkViewRepository, never()).save(any(LinkView.class));
         verify(linkRepository, never()).incrementViewCount(anyLong());
+        verify(linkCounterService).recordDuplicate(testLink.getId());
     }
     
     @Test
     @DisplayName("Should allow view when no rate limit exceeded")
     void testAllowViewWhenNoRateLimitExceeded() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
         when(request.getHeader("X-Forwarded-For")).thenReturn(null);
         when(request.getHeader("X-Real-IP")).thenReturn(null);
+        when(request.getHeader("X-Original-Forwarded-For")).thenReturn(null);
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
         when(request.getHeader("User-Agent")).thenReturn("TestAgent");
         when(request.getHeader("Referer")).thenReturn(null);
@@ -145,8 +164,100 @@ class AnalyticsServiceTest {
         
         assertTrue(result);
         verify(linkViewRepository).save(any(LinkView.class));
-        verify(linkRepository).incrementViewCount(testLink.getId());
-        verify(linkRepository).updateEarnings(eq(testLink.getId()), any());
+        verify(linkCounterService).recordView(testLink.getId());
+        verify(linkRepository, never()).updateEarnings(anyLong(), any());
+    }
+    
+    @Test
+    @DisplayName("Should store raw view without lookups when enrichment is deferred")
+    void testRecordViewDeferredEnrichment() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
+        when(request.getHeader("X-Original-Forwarded-For")).thenReturn(null);
+        when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
+        when(request.getHeader("Referer")).thenReturn(null);
+        when(viewLimitService.checkAndRecordView("192.168.1.1")).thenReturn(ViewLimitService.LimitType.ALLOWED);
+        when(viewEnrichmentService.isDeferred()).thenReturn(true);
+        
+        boolean result = analyticsService.recordView(testLink, request);
+        
+        assertTrue(result);
+        verify(linkViewRepository).save(argThat(view ->
+                "192.168.1.1".equals(view.getIpAddress())
+                        && "Mozilla/5.0".equals(view.getUserAgent())
+                        && view.getCountry() == null
+                        && view.getEnrichedAt() == null));
+        verify(geoLocationService, never()).getLocation(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should count view through the counter service and leave earnings to its flush")
+    void testRecordViewCountsThroughCounterService() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
+        when(request.getHeader("X-Original-Forwarded-For")).thenReturn(null);
+        when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("User-Agent")).thenReturn("TestAgent");
+        when(request.getHeader("Referer")).thenReturn(null);
+        when(viewLimitService.checkAndRecordView("192.168.1.1")).thenReturn(ViewLimitService.LimitType.ALLOWED);
+        when(geoLocationService.getLocation("192.168.1.1")).thenReturn(GeoLocationService.GeoLocation.unknown());
+        
+        boolean result = analyticsService.recordView(testLink, request);
+        
+        assertTrue(result);
+        verify(linkViewRepository).save(any(LinkView.class));
+        verify(linkCounterService).recordView(testLink.getId());
+        verify(linkRepository, never()).updateEarnings(anyLong(), any());
+    }
+    
+    @Test
+    @DisplayName("Should hand view to ingestion queue when async ingestion is enabled")
+    void testRecordViewAsync() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
+        when(request.getHeader("X-Original-Forwarded-For")).thenReturn(null);
+        when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("User-Agent")).thenReturn("TestAgent");
+        when(request.getHeader("Referer")).thenReturn("https://t.me/somechannel");
+        when(viewLimitService.checkAndRecordView("192.168.1.1")).thenReturn(ViewLimitService.LimitType.ALLOWED);
+        when(viewIngestionService.isEnabled()).thenReturn(true);
+        when(viewIngestionService.submit(any(ViewEvent.class))).thenReturn(true);
+        
+        boolean result = analyticsService.recordView(testLink, request, 6);
+        
+        assertTrue(result);
+        verify(viewIngestionService).submit(argThat(event ->
+                event.linkId() == 1L
+                        && "192.168.1.1".equals(event.ipAddress())
+                        && "https://t.me/somechannel".equals(event.referrer())
+                        && Integer.valueOf(6).equals(event.timeToSkip())));
+        verify(linkViewRepository, never()).save(any(LinkView.class));
+        verify(linkRepository, never()).incrementViewCount(anyLong());
+        verify(geoLocationService, never()).getLocation(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should report view as not recorded when ingestion queue drops it")
+    void testRecordViewAsyncDropped() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
+        when(request.getHeader("X-Original-Forwarded-For")).thenReturn(null);
+        when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("User-Agent")).thenReturn("TestAgent");
+        when(request.getHeader("Referer")).thenReturn(null);
+        when(viewLimitService.checkAndRecordView("192.168.1.1")).thenReturn(ViewLimitService.LimitType.ALLOWED);
+        when(viewIngestionService.isEnabled()).thenReturn(true);
+        when(viewIngestionService.submit(any(ViewEvent.class))).thenReturn(false);
+        
+        boolean result = analyticsService.recordView(testLink, request);
+        
+        assertFalse(result);
+        verify(request).setAttribute(eq("rateLimitMessage"), anyString());
     }
     
     @Test
@@ -180,8 +291,10 @@ class AnalyticsServiceTest {
     @Test
     @DisplayName("Should handle exception when recording view")
     void testRecordViewException() {
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(null);
         when(request.getHeader("X-Forwarded-For")).thenReturn(null);
         when(request.getHeader("X-Real-IP")).thenReturn(null);
+        when(request.getHeader("X-Original-Forwarded-For")).thenReturn(null);
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
         when(request.getHeader("User-Agent")).thenReturn("TestAgent");
         when(request.getHeader("Referer")).thenReturn(null);
@@ -192,6 +305,35 @@ class AnalyticsServiceTest {
         boolean result = analyticsService.recordView(testLink, request);
         
         assertFalse(result);
-        verify(linkRepository, never()).incrementViewCount(anyLong());
+        verify(linkCounterService, never()).recordView(anyLong());
+    }
+    
+    @Test
+    @DisplayName("Should refresh earnings in id ranges up to the highest link id")
+    void testUpdateEarningsInChunks() {
+        AppConfig.Earnings earnings = new AppConfig.Earnings();
+        earnings.setChunkSize(1000);
+        when(appConfig.getEarnings()).thenReturn(earnings);
+        when(linkJdbcRepository.findMaxId()).thenReturn(2500L);
+        when(revenueService.refreshEarnings(anyLong(), anyLong())).thenReturn(3);
+        
+        analyticsService.updateEarnings();
+        
+        verify(revenueService).refreshEarnings(0, 1000);
+        verify(revenueService).refreshEarnings(1000, 2000);
+        verify(revenueService).refreshEarnings(2000, 2500);
+        verify(revenueService, times(3)).refreshEarnings(anyLong(), anyLong());
+        verify(linkRepository, never()).findAll();
+    }
+    
+    @Test
+    @DisplayName("Should not touch links when there are none")
+    void testUpdateEarningsWithoutLinks() {
+        when(appConfig.getEarnings()).thenReturn(new AppConfig.Earnings());
+        when(linkJdbcRepository.findMaxId()).thenReturn(0L);
+        
+        analyticsService.updateEarnings();
+        
+        verify(revenueService, never()).refreshEarnings(anyLong(), anyLong());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,175 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.dto.BulkLinkResult;
+import com.linksplit.entity.User;
+import com.linksplit.repository.LinkJdbcRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkLinkServiceTest {
+
+    @Mock
+    private UrlShorteningService urlShorteningService;
+    
+    @Mock
+    private ShortCodeAllocator shortCodeAllocator;
+    
+    @Mock
+    private ShortCodeFilterService shortCodeFilterService;
+    
+    @Mock
+    private LinkJdbcRepository linkJdbcRepository;
+    
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    
+    private final AppConfig appConfig = new AppConfig();
+    private final User user = User.builder().id(7L).email("partner@example.com").build();
+    
+    private BulkLinkService bulkLinkService;
+    
+    @BeforeEach
+    void setUp() {
+        appConfig.getBulkLinks().setChunkSize(2);
+        bulkLinkService = new BulkLinkService(appConfig, urlShorteningService, shortCodeAllocator,
+                shortCodeFilterService, linkJdbcRepository, transactionTemplate);
+        bulkLinkService.init();
+    
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(shortCodeAllocator.allocate(anyInt())).thenAnswer(invocation -> IntStream
+                .range(0, invocation.<Integer>getArgument(0))
+                .mapToObj(i -> "c" + i)
+                .collect(Collectors.toList()));
+        lenient().when(urlShorteningService.getFullShortUrl(anyString()))
+                .thenAnswer(invocation -> "https://frwrd.pro/" + invocation.getArgument(0));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        bulkLinkService.stop();
+    }
+    
+    @Test
+    @DisplayName("Should insert each chunk in one batch and report results in input order")
+    @SuppressWarnings("unchecked")
+    void testCreatesLinksInChunks() throws Exception {
+        List<BulkLinkResult> results = new ArrayList<>();
+    
+        bulkLinkService.createLinks(urls("https://a.com", "https://b.com", "https://c.com"), user, results::addAll);
+    
+        ArgumentCaptor<List<LinkJdbcRepository.NewLink>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(linkJdbcRepository, times(2)).insertLinks(inserted.capture(), any());
+        assertEquals(2, inserted.getAllValues().get(0).size());
+        assertEquals(1, inserted.getAllValues().get(1).size());
+        assertEquals(7L, inserted.getAllValues().get(0).get(0).userId());
+    
+        assertEquals(3, results.size());
+        assertEquals(0L, results.get(0).getIndex());
+        assertEquals("https://a.com", results.get(0).getLongUrl());
+        assertEquals("https://frwrd.pro/c0", results.get(0).getShortUrl());
+        assertEquals(2L, results.get(2).getIndex());
+        assertNull(results.get(2).getError());
+        verify(shortCodeFilterService, times(3)).recordCreated(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should report invalid URLs without allocating codes for them")
+    void testInvalidUrlsReported() throws Exception {
+        lenient().doThrow(new IllegalArgumentException("URL must start with http:// or https://"))
+                .when(urlShorteningService).validateUrl("ftp://a.com");
+        List<BulkLinkResult> results = new ArrayList<>();
+    
+        bulkLinkService.createLinks(urls("ftp://a.com", "https://b.com"), user, results::addAll);
+    
+        verify(shortCodeAllocator).allocate(1);
+        assertEquals("URL must start with http:// or https://", results.get(0).getError());
+        assertNull(results.get(0).getShortCode());
+        assertEquals("c0", results.get(1).getShortCode());
+    }
+    
+    @Test
+    @DisplayName("Should fail only the chunk whose insert fails")
+    void testFailedChunkIsIsolated() throws Exception {
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .doNothing()
+                .when(linkJdbcRepository).insertLinks(anyList(), any());
+        List<BulkLinkResult> results = new ArrayList<>();
+    
+        bulkLinkService.createLinks(urls("https://a.com", "https://b.com", "https://c.com"), user, results::addAll);
+    
+        assertEquals("Failed to create short URL", results.get(0).getError());
+        assertEquals("Failed to create short URL", results.get(1).getError());
+        assertNotNull(results.get(2).getShortCode());
+        verify(shortCodeFilterService, times(1)).recordCreated(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should stop reading at the per-request limit")
+    void testLimitPerRequest() throws Exception {
+        appConfig.getBulkLinks().setMaxLinksPerRequest(2);
+        List<BulkLinkResult> results = new ArrayList<>();
+    
+        bulkLinkService.createLinks(urls("https://a.com", "https://b.com", "https://c.com"), user, results::addAll);
+    
+        assertEquals(3, results.size());
+        assertEquals(2L, results.get(2).getIndex());
+        assertTrue(results.get(2).getError().startsWith("Limit of 2 links"));
+    }
+    
+    @Test
+    @DisplayName("Should create the links read before malformed input and then rethrow")
+    void testReadFailureAfterPartialInput() throws Exception {
+        Iterator<String> source = new Iterator<>() {
+            private int read;
+    
+            @Override
+            public boolean hasNext() {
+                if (read == 3) {
+                    throw new IllegalStateException("malformed");
+                }
+                return true;
+            }
+    
+            @Override
+            public String next() {
+                return "https://example.com/" + read++;
+            }
+        };
+        List<BulkLinkResult> results = new ArrayList<>();
+    
+        assertThrows(IllegalStateException.class, () -> bulkLinkService.createLinks(source, user, results::addAll));
+    
+        assertEquals(3, results.size());
+        verify(linkJdbcRepository, times(2)).insertLinks(anyList(), any());
+    }
+    
+    private static Iterator<String> urls(String... urls) {
+        return List.of(urls).iterator();
+    }
+}
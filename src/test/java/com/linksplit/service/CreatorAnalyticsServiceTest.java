@@ -0,0 +1,190 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.dto.analytics.AnalyticsDashboard;
+import com.linksplit.entity.Link;
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.ClickHeatmapRepository;
+import com.linksplit.repository.LinkRepository;
+import com.linksplit.repository.LinkViewJdbcRepository;
+import com.linksplit.repository.LinkViewRepository;
+import com.linksplit.repository.ViewRollupJdbcRepository;
+import com.linksplit.util.HyperLogLog;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CreatorAnalyticsServiceTest {
+
+    @Mock
+    private LinkRepository linkRepository;
+
+    @Mock
+    private LinkViewRepository linkViewRepository;
+
+    @Mock
+    private LinkViewJdbcRepository linkViewJdbcRepository;
+
+    @Mock
+    private ClickHeatmapRepository clickHeatmapRepository;
+
+    @Mock
+    private LinkCounterService linkCounterService;
+
+    @Mock
+    private ViewRollupService viewRollupService;
+
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+
+    @InjectMocks
+    private CreatorAnalyticsService creatorAnalyticsService;
+
+    private final List<Link> links = List.of(Link.builder().id(1L).shortCode("abc123").build());
+    private final ViewRollupJdbcRepository.Scope scope = ViewRollupJdbcRepository.Scope.link(1L);
+
+    @Test
+    @DisplayName("Should read whole hours from rollups and only the partial hours and the tail raw")
+    void testCombinesRollupsAndRawViews() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 30);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 1, 14, 15);
+        LocalDateTime rolledUpFrom = LocalDateTime.of(2024, 3, 1, 10, 0);
+        LocalDateTime rolledUpTo = LocalDateTime.of(2024, 3, 1, 14, 0);
+        doAnswer(invocation -> {
+            ViewStatistics statistics = invocation.getArgument(0);
+            statistics.addHour(rolledUpFrom, 10, 8, 0, 0);
+            return null;
+        }).when(viewRollupService).addRollups(any(), eq(scope), eq(rolledUpFrom), eq(rolledUpTo));
+        doAnswer(invocation -> {
+            Consumer<LinkViewJdbcRepository.ViewChunk> consumer = invocation.getArgument(7);
+            consumer.accept(LinkViewJdbcRepository.ViewChunk.of(List.of(LinkView.builder()
+                    .viewedAt(LocalDateTime.of(2024, 3, 1, 14, 5))
+                    .country("India")
+                    .adCompleted(true)
+                    .build())));
+            return null;
+        }).when(linkViewJdbcRepository).streamViewsNotRolledUp(eq(scope), eq(start), eq(end),
+                eq(rolledUpFrom), eq(rolledUpTo), anyInt(), anyInt(), any());
+
+        ViewStatistics statistics = creatorAnalyticsService.collectStatistics(links, scope, start, end);
+
+        assertEquals(11, statistics.getViews());
+        assertEquals(9, statistics.getCompletedViews());
+        assertEquals(1L, statistics.getViewsBy(ViewDimension.COUNTRY).get("India"));
+        assertEquals(1L, statistics.getViewsByHour().get(rolledUpTo));
+    }
+
+    @Test
+    @DisplayName("Should read the whole range raw when it holds no complete hour")
+    void testShortRangeReadsRaw() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 10);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 1, 9, 50);
+
+        creatorAnalyticsService.collectStatistics(links, scope, start, end);
+
+        verify(viewRollupService, never()).addRollups(any(), any(), any(), any());
+        verify(linkViewJdbcRepository).streamViewsNotRolledUp(eq(scope), eq(start), eq(end),
+                eq(start), eq(start), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Should not query anything for a user without links")
+    void testNoLinks() {
+        ViewStatistics statistics = creatorAnalyticsService.collectStatistics(List.of(), scope,
+                LocalDateTime.now().minusDays(1), LocalDateTime.now());
+
+        assertEquals(0, statistics.getViews());
+        verifyNoInteractions(viewRollupService, linkViewRepository, linkViewJdbcRepository);
+    }
+
+    @Test
+    @DisplayName("Should combine rolled-up link counters with the views not rolled up yet")
+    void testCompletionRateFromCountersAndTail() {
+        Link link = links.get(0);
+        link.setViewCount(8L);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 10);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 1, 9, 50);
+        when(linkRepository.findRolledUpViewCounts(List.of(1L))).thenReturn(List.<Object[]>of(
+                new Object[]{1L, 6L, 3L}));
+        when(linkViewRepository.getCompletionCountsNotRolledUp(List.of(link))).thenReturn(List.<Object[]>of(
+                new Object[]{1L, 2L, 1L}));
+
+        AnalyticsDashboard dashboard = creatorAnalyticsService.getAnalyticsForLink(link, start, end);
+
+        assertEquals(50.0, dashboard.getTopPerformingLinks().get(0).getCompletionRate());
+        verify(linkViewRepository, never()).findByLink(any());
+    }
+
+    @Test
+    @DisplayName("Should merge whole-day visitor sketches with the IPs of partial days and the tail")
+    void testUniqueVisitorsFromSketches() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 30);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 4, 12, 0);
+        HyperLogLog sketch = new HyperLogLog(ViewRollupService.VISITOR_SKETCH_PRECISION);
+        sketch.add("10.0.0.1");
+        sketch.add("10.0.0.2");
+        when(viewRollupService.getVisitorSketch(scope, LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 4)))
+                .thenReturn(sketch);
+        when(linkViewRepository.findIpAddressesNotSketched(links, start, end,
+                LocalDateTime.of(2024, 3, 2, 0, 0), LocalDateTime.of(2024, 3, 4, 0, 0)))
+                .thenReturn(List.of("10.0.0.2", "10.0.0.3"));
+
+        assertEquals(3, creatorAnalyticsService.countUniqueVisitors(links, scope, start, end));
+        verify(linkViewRepository, never()).countDistinctIpAddresses(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should count unique visitors exactly when the range holds no whole day")
+    void testUniqueVisitorsWithinDay() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 30);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 1, 18, 0);
+        when(linkViewRepository.countDistinctIpAddresses(links, start, end)).thenReturn(7L);
+
+        assertEquals(7, creatorAnalyticsService.countUniqueVisitors(links, scope, start, end));
+        verify(viewRollupService, never()).getVisitorSketch(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should build statistics from grouped projections with the SQL engine")
+    void testSqlEngine() {
+        appConfig.getAnalytics().setEngine(AppConfig.Analytics.Engine.SQL);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 2, 0, 0);
+        when(linkViewRepository.getHourlyStatistics(links, start, end)).thenReturn(List.<Object[]>of(
+                new Object[]{2024, 3, 1, 10, 4L, 3, 12L, 3L},
+                new Object[]{2024, 3, 1, 11, 1L, 0, null, 0L}));
+        when(linkViewRepository.getCountryStatistics(links, start, end)).thenReturn(List.<Object[]>of(
+                new Object[]{"India", 3L}, new Object[]{null, 2L}));
+        when(linkViewRepository.getCityStatistics(links, start, end)).thenReturn(List.<Object[]>of(
+                new Object[]{"India", "Mumbai", 3L}));
+        when(linkViewRepository.getTrafficSourceStatistics(links, start, end)).thenReturn(List.<Object[]>of(
+                new Object[]{null, "https://t.me/channel", null, 4L},
+                new Object[]{null, null, null, 1L}));
+
+        ViewStatistics statistics = creatorAnalyticsService.collectStatistics(links, scope, start, end);
+
+        assertEquals(5, statistics.getViews());
+        assertEquals(3, statistics.getCompletedViews());
+        assertEquals(4.0, statistics.getAverageTimeToSkip());
+        assertEquals(4L, statistics.getViewsByHour().get(LocalDateTime.of(2024, 3, 1, 10, 0)));
+        assertEquals(2L, statistics.getViewsBy(ViewDimension.COUNTRY).get("Unknown"));
+        assertEquals(3L, statistics.getViewsBy(ViewDimension.CITY).get("India|Mumbai"));
+        assertEquals(4L, statistics.getViewsBy(ViewDimension.TRAFFIC_SOURCE).get("Telegram"));
+        assertEquals(1L, statistics.getViewsBy(ViewDimension.TRAFFIC_SOURCE).get("Direct"));
+        verifyNoInteractions(viewRollupService);
+    }
+}
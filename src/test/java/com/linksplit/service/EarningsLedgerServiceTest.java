@@ -0,0 +1,194 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.Payout;
+import com.linksplit.entity.User;
+import com.linksplit.repository.EarningsLedgerJdbcRepository;
+import com.linksplit.repository.EarningsLedgerJdbcRepository.Balance;
+import com.linksplit.repository.EarningsLedgerJdbcRepository.Entry;
+import com.linksplit.repository.EarningsLedgerJdbcRepository.EntryType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EarningsLedgerServiceTest {
+
+    @Mock
+    private EarningsLedgerJdbcRepository earningsLedgerJdbcRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private EarningsLedgerService earningsLedgerService;
+
+    @BeforeEach
+    void setUp() {
+        earningsLedgerService = new EarningsLedgerService(earningsLedgerJdbcRepository, transactionTemplate, appConfig);
+    }
+
+    @Test
+    @DisplayName("Should post one accrual per user and skip zero changes")
+    void testAccrueSkipsZero() {
+        Map<Long, BigDecimal> deltas = new LinkedHashMap<>();
+        deltas.put(1L, new BigDecimal("0.0125"));
+        deltas.put(2L, new BigDecimal("0.0000"));
+        deltas.put(3L, new BigDecimal("-4.5000"));
+
+        earningsLedgerService.accrue(deltas);
+
+        assertEquals(List.of(
+                new Entry(1L, EntryType.ACCRUAL, new BigDecimal("0.0125"), null),
+                new Entry(3L, EntryType.ACCRUAL, new BigDecimal("-4.5000"), null)), appended());
+    }
+
+    @Test
+    @DisplayName("Should hold the amount of a new payout")
+    void testNewPayoutHeld() {
+        earningsLedgerService.recordPayoutStatus(payout(Payout.PayoutStatus.PENDING), null);
+
+        assertEquals(List.of(new Entry(7L, EntryType.HOLD, new BigDecimal("150.00"), 11L)), appended());
+    }
+
+    @Test
+    @DisplayName("Should release the hold and pay out when a payout completes")
+    void testPayoutCompleted() {
+        earningsLedgerService.recordPayoutStatus(payout(Payout.PayoutStatus.COMPLETED), Payout.PayoutStatus.PENDING);
+
+        assertEquals(List.of(
+                new Entry(7L, EntryType.RELEASE, new BigDecimal("150.00"), 11L),
+                new Entry(7L, EntryType.PAY, new BigDecimal("150.00"), 11L)), appended());
+    }
+
+    @Test
+    @DisplayName("Should only release the hold when a payout is cancelled")
+    void testPayoutCancelled() {
+        earningsLedgerService.recordPayoutStatus(payout(Payout.PayoutStatus.CANCELLED), Payout.PayoutStatus.PENDING);
+
+        assertEquals(List.of(new Entry(7L, EntryType.RELEASE, new BigDecimal("150.00"), 11L)), appended());
+    }
+
+    @Test
+    @DisplayName("Should post nothing when a payout stays held")
+    void testPayoutStillHeld() {
+        earningsLedgerService.recordPayoutStatus(payout(Payout.PayoutStatus.PROCESSING), Payout.PayoutStatus.PENDING);
+
+        verify(earningsLedgerJdbcRepository, never()).append(anyList(), any());
+    }
+
+    @Test
+    @DisplayName("Should compute the available balance from the balance row")
+    void testAvailableBalance() {
+        when(earningsLedgerJdbcRepository.findBalance(7L)).thenReturn(Optional.of(
+                balance(7L, "500.0000", "100.0000", "250.0000")));
+
+        assertEquals(0, new BigDecimal("150").compareTo(earningsLedgerService.getAvailableBalance(7L)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(earningsLedgerService.getAvailableBalance(8L)));
+    }
+
+    @Test
+    @DisplayName("Should report balances that disagree with the ledger or the link and payout totals")
+    void testReconcile() {
+        appConfig.getLedger().setReconcileBatchSize(3);
+        when(transactionTemplate.getTransactionManager()).thenReturn(transactionManager);
+        when(earningsLedgerJdbcRepository.findBalancesAfter(0, 3)).thenReturn(List.of(
+                balance(1L, "10", "0", "0"),
+                balance(2L, "20", "5", "0"),
+                balance(3L, "30", "0", "10")));
+        when(earningsLedgerJdbcRepository.sumLedger(0, 3)).thenReturn(Map.of(
+                1L, balance(1L, "10.0000", "0", "0"),
+                2L, balance(2L, "20", "5", "0"),
+                3L, balance(3L, "30", "0", "10")));
+        when(earningsLedgerJdbcRepository.sumSources(0, 3)).thenReturn(Map.of(
+                1L, balance(1L, "10", "0", "0"),
+                2L, balance(2L, "20", "0", "0"),
+                3L, balance(3L, "30", "0", "10")));
+        when(earningsLedgerJdbcRepository.findBalancesAfter(3, 3)).thenReturn(List.of(
+                balance(4L, "1", "0", "0")));
+        when(earningsLedgerJdbcRepository.sumLedger(3, 4)).thenReturn(Map.of());
+        when(earningsLedgerJdbcRepository.sumSources(3, 4)).thenReturn(Map.of(4L, balance(4L, "1", "0", "0")));
+
+        EarningsLedgerService.Reconciliation result = earningsLedgerService.reconcile();
+
+        assertEquals(4, result.checkedBalances());
+        assertEquals(2, result.discrepancyCount());
+        assertEquals(List.of(2L, 4L), result.discrepancies().stream()
+                .map(EarningsLedgerService.Discrepancy::userId).toList());
+        assertSame(result, earningsLedgerService.getLastReconciliation());
+    }
+
+    @Test
+    @DisplayName("Should not open the ledger twice")
+    void testOpenLedgerAlreadyOpened() {
+        when(earningsLedgerJdbcRepository.markOpened(any())).thenReturn(false);
+
+        assertFalse(earningsLedgerService.openLedger(LocalDateTime.now()));
+
+        verify(earningsLedgerJdbcRepository, never()).append(anyList(), any());
+    }
+
+    @Test
+    @DisplayName("Should open the ledger with the difference from any existing balances")
+    void testOpenLedger() {
+        when(earningsLedgerJdbcRepository.markOpened(any())).thenReturn(true);
+        when(earningsLedgerJdbcRepository.findUserIdsAfter(0, 1000)).thenReturn(List.of(1L, 2L));
+        when(earningsLedgerJdbcRepository.sumSources(0, 2)).thenReturn(Map.of(
+                1L, balance(1L, "12.5000", "100.00", "50.00"),
+                2L, balance(2L, "3", "0", "0")));
+        when(earningsLedgerJdbcRepository.findBalances(0, 2)).thenReturn(Map.of(
+                2L, balance(2L, "1", "5", "0")));
+
+        assertTrue(earningsLedgerService.openLedger(LocalDateTime.now()));
+
+        assertEquals(List.of(
+                new Entry(1L, EntryType.ACCRUAL, new BigDecimal("12.5000"), null),
+                new Entry(1L, EntryType.HOLD, new BigDecimal("100.00"), null),
+                new Entry(1L, EntryType.PAY, new BigDecimal("50.00"), null),
+                new Entry(2L, EntryType.ACCRUAL, new BigDecimal("2"), null),
+                new Entry(2L, EntryType.RELEASE, new BigDecimal("5"), null)), appended());
+    }
+
+    private List<Entry> appended() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Entry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(earningsLedgerJdbcRepository).append(captor.capture(), any(LocalDateTime.class));
+        return captor.getValue();
+    }
+
+    private static Payout payout(Payout.PayoutStatus status) {
+        User user = new User();
+        user.setId(7L);
+        Payout payout = new Payout();
+        payout.setId(11L);
+        payout.setUser(user);
+        payout.setAmount(new BigDecimal("150.00"));
+        payout.setStatus(status);
+        return payout;
+    }
+
+    private static Balance balance(long userId, String accrued, String held, String paidOut) {
+        return new Balance(userId, new BigDecimal(accrued), new BigDecimal(held), new BigDecimal(paidOut));
+    }
+}
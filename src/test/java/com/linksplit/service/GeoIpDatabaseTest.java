@@ -0,0 +1,89 @@
+package com.linksplit.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoIpDatabaseTest {
+    
+    private static final String CSV = String.join("\n",
+            "1.0.0.0,1.0.0.255,OC,AU,Queensland,South Brisbane,-27.4767,153.017",
+            "8.8.4.0,8.8.8.255,NA,US,California,Mountain View,37.4223,-122.085",
+            "203.0.113.0,203.0.113.255,AS,IN,Maharashtra,\"Mumbai, Fort\",18.9388,72.8354",
+            "2001:4860::,2001:4860:ffff:ffff:ffff:ffff:ffff:ffff,NA,US,California,Mountain View,37.4223,-122.085",
+            "2400:cb00::,2400:cb00:ffff:ffff:ffff:ffff:ffff:ffff,AS,SG,Central Singapore,Singapore,1.2897,103.85");
+    
+    private GeoIpDatabase database;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        database = GeoIpDatabase.read(new BufferedReader(new StringReader(CSV)));
+    }
+    
+    @Test
+    @DisplayName("Should find IPv4 addresses at range bounds and inside ranges")
+    void testLookupV4() {
+        assertEquals("Australia", database.lookup("1.0.0.0").getCountry());
+        assertEquals("South Brisbane", database.lookup("1.0.0.255").getCity());
+        assertEquals("United States", database.lookup("8.8.8.8").getCountry());
+        assertEquals("Mumbai, Fort", database.lookup("203.0.113.7").getCity());
+        assertEquals(18.9388, database.lookup("203.0.113.7").getLatitude());
+    }
+    
+    @Test
+    @DisplayName("Should return null for addresses outside every range")
+    void testLookupMiss() {
+        assertNull(database.lookup("0.255.255.255"));
+        assertNull(database.lookup("1.0.1.0"));
+        assertNull(database.lookup("255.255.255.255"));
+        assertNull(database.lookup("2001:4861::1"));
+    }
+    
+    @Test
+    @DisplayName("Should find IPv6 and IPv4-mapped addresses")
+    void testLookupV6() {
+        assertEquals("Mountain View", database.lookup("2001:4860:4860::8888").getCity());
+        assertEquals("Singapore", database.lookup("2400:cb00:2048:1::c629:d7a2").getCountry());
+        assertEquals("United States", database.lookup("::ffff:8.8.8.8").getCountry());
+    }
+    
+    @Test
+    @DisplayName("Should reject text that is not an IP literal")
+    void testInvalidAddresses() {
+        assertNull(database.lookup("256.1.1.1"));
+        assertNull(database.lookup("1.2.3"));
+        assertNull(database.lookup("unknown"));
+        assertNull(database.lookup("example.com:80"));
+    }
+    
+    @Test
+    @DisplayName("Should share one location object between identical ranges and sort unsorted input")
+    void testBuilder() {
+        GeoLocationService.GeoLocation us = GeoLocationService.GeoLocation.builder().country("United States").build();
+        GeoIpDatabase built = new GeoIpDatabase.Builder()
+                .addV4(300, 399, us)
+                .addV4(100, 199, us)
+                .addV4(200, 299, GeoLocationService.GeoLocation.builder().country("Canada").build())
+                .build();
+        
+        assertEquals(2, built.getLocationCount());
+        assertEquals("United States", built.lookupV4(150).getCountry());
+        assertEquals("Canada", built.lookupV4(250).getCountry());
+        assertEquals("United States", built.lookupV4(399).getCountry());
+        assertNull(built.lookupV4(400));
+        assertNull(built.lookupV4(99));
+    }
+    
+    @Test
+    @DisplayName("Should fail on a malformed line after the first")
+    void testMalformedFile() {
+        String csv = CSV + "\nnot-an-ip,1.2.3.4,EU,DE,Berlin,Berlin,52.52,13.40";
+        assertThrows(IOException.class, () -> GeoIpDatabase.read(new BufferedReader(new StringReader(csv))));
+    }
+}
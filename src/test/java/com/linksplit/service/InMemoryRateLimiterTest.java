@@ -0,0 +1,99 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRateLimiterTest {
+    
+    private static final long MINUTE = 60_000L;
+    
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private InMemoryRateLimiter rateLimiter;
+    
+    @BeforeEach
+    void setUp() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getViewFraudPrevention().getRateLimits().put("five-minutes", limit(5, 5));
+        appConfig.getViewFraudPrevention().getRateLimits().put("hourly", limit(60, 20));
+        appConfig.getViewFraudPrevention().getRateLimits().put("daily", limit(1440, 50));
+        rateLimiter = new InMemoryRateLimiter(appConfig, now::get);
+    }
+    
+    @Test
+    @DisplayName("Should block the sixth view within five minutes")
+    void testFiveMinuteLimit() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(ViewLimitService.LimitType.ALLOWED, rateLimiter.checkAndRecord("10.0.0.1"));
+            now.addAndGet(1000);
+        }
+        
+        assertEquals(ViewLimitService.LimitType.FIVE_MINUTE, rateLimiter.checkAndRecord("10.0.0.1"));
+        assertEquals(ViewLimitService.LimitType.FIVE_MINUTE, rateLimiter.check("10.0.0.1"));
+        assertEquals(5, rateLimiter.countSince("10.0.0.1", Duration.ofMinutes(5)));
+        assertEquals(ViewLimitService.LimitType.ALLOWED, rateLimiter.check("10.0.0.2"));
+    }
+    
+    @Test
+    @DisplayName("Should allow views again once the oldest one leaves the window")
+    void testWindowSlides() {
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.checkAndRecord("10.0.0.1");
+        }
+        assertEquals(ViewLimitService.LimitType.FIVE_MINUTE, rateLimiter.check("10.0.0.1"));
+        
+        now.addAndGet(5 * MINUTE);
+        
+        assertEquals(ViewLimitService.LimitType.ALLOWED, rateLimiter.checkAndRecord("10.0.0.1"));
+    }
+    
+    @Test
+    @DisplayName("Should apply hourly limit across several five-minute windows")
+    void testHourlyLimit() {
+        for (int i = 0; i < 20; i++) {
+            assertEquals(ViewLimitService.LimitType.ALLOWED, rateLimiter.checkAndRecord("10.0.0.1"));
+            now.addAndGet(2 * MINUTE);
+        }
+        
+        assertEquals(ViewLimitService.LimitType.HOURLY, rateLimiter.checkAndRecord("10.0.0.1"));
+        assertEquals(20, rateLimiter.countSince("10.0.0.1", Duration.ofHours(1)));
+    }
+    
+    @Test
+    @DisplayName("Should not record views that were rejected")
+    void testRejectedViewsNotRecorded() {
+        for (int i = 0; i < 8; i++) {
+            rateLimiter.checkAndRecord("10.0.0.1");
+        }
+        
+        assertEquals(5, rateLimiter.countSince("10.0.0.1", Duration.ofDays(1)));
+    }
+    
+    @Test
+    @DisplayName("Should evict IPs whose views have left every window")
+    void testEvictIdle() {
+        rateLimiter.checkAndRecord("10.0.0.1");
+        now.addAndGet(1439 * MINUTE);
+        rateLimiter.checkAndRecord("10.0.0.2");
+        now.addAndGet(MINUTE);
+        
+        rateLimiter.evictIdle();
+        
+        assertEquals(1, rateLimiter.getTrackedIpCount());
+        assertEquals(0, rateLimiter.countSince("10.0.0.1", Duration.ofDays(1)));
+        assertEquals(ViewLimitService.LimitType.ALLOWED, rateLimiter.checkAndRecord("10.0.0.1"));
+    }
+    
+    private static AppConfig.ViewFraudPrevention.RateLimit limit(int durationMinutes, int maxViews) {
+        AppConfig.ViewFraudPrevention.RateLimit limit = new AppConfig.ViewFraudPrevention.RateLimit();
+        limit.setDurationMinutes(durationMinutes);
+        limit.setMaxViews(maxViews);
+        return limit;
+    }
+}
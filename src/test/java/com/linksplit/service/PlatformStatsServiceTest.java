@@ -0,0 +1,73 @@
+package com.linksplit.service;
+
+import com.linksplit.dto.PlatformStats;
+import com.linksplit.entity.User;
+import com.linksplit.repository.LinkRepository;
+import com.linksplit.repository.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlatformStatsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private LinkRepository linkRepository;
+
+    @InjectMocks
+    private PlatformStatsService platformStatsService;
+
+    @Test
+    @DisplayName("Should build the snapshot from aggregates and serve it until the next refresh")
+    void testSnapshot() {
+        User alice = User.builder().id(1L).email("alice@example.com").build();
+        User bob = User.builder().id(2L).email("bob@example.com").build();
+        when(linkRepository.getPlatformTotals()).thenReturn(List.<Object[]>of(
+                new Object[]{5L, 1200L, new BigDecimal("0.600")}));
+        when(userRepository.count()).thenReturn(2L);
+        when(userRepository.findTop10ByOrderByCreatedAtDesc()).thenReturn(List.of(bob, alice));
+        when(linkRepository.findTopUserIdsByEarnings(any())).thenReturn(List.<Object[]>of(
+                new Object[]{2L, new BigDecimal("0.500")}, new Object[]{1L, new BigDecimal("0.100")}));
+        when(userRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(alice, bob));
+
+        PlatformStats stats = platformStatsService.getStats();
+        platformStatsService.getStats();
+
+        assertEquals(2, stats.getTotalUsers());
+        assertEquals(5, stats.getTotalLinks());
+        assertEquals(1200, stats.getTotalViews());
+        assertEquals(new BigDecimal("0.600"), stats.getTotalEarnings());
+        assertEquals("bob@example.com", stats.getRecentUsers().get(0).email());
+        assertEquals("bob@example.com", stats.getTopCreators().get(0).email());
+        assertEquals(new BigDecimal("0.100"), stats.getTopCreators().get(1).totalEarnings());
+        verify(linkRepository, times(1)).getPlatformTotals();
+        verify(linkRepository, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("Should keep the previous snapshot when a refresh fails")
+    void testFailedRefreshKeepsSnapshot() {
+        when(linkRepository.getPlatformTotals()).thenReturn(List.<Object[]>of(new Object[]{0L, 0L, BigDecimal.ZERO}));
+        when(userRepository.findTop10ByOrderByCreatedAtDesc()).thenReturn(List.of());
+        when(linkRepository.findTopUserIdsByEarnings(any())).thenReturn(List.of());
+        PlatformStats first = platformStatsService.getStats();
+
+        when(linkRepository.getPlatformTotals()).thenThrow(new IllegalStateException("database down"));
+        platformStatsService.refreshScheduled();
+
+        assertSame(first, platformStatsService.getStats());
+    }
+}
@@ -0,0 +1,105 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.repository.LinkJdbcRepository;
+import com.linksplit.repository.LinkRepository;
+import com.linksplit.util.Base62Encoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShortCodeAllocatorTest {
+    
+    private static final int BLOCK = LinkJdbcRepository.SHORT_CODE_BLOCK_SIZE;
+    
+    @Mock
+    private LinkJdbcRepository linkJdbcRepository;
+    
+    @Mock
+    private LinkRepository linkRepository;
+    
+    @Mock
+    private ShortCodeFilterService shortCodeFilterService;
+    
+    private ShortCodeAllocator allocator;
+    
+    @BeforeEach
+    void setUp() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setShortcodeLength(6);
+        appConfig.getShortCodes().setKey("test-key");
+        allocator = new ShortCodeAllocator(appConfig, linkJdbcRepository, linkRepository,
+                shortCodeFilterService, new Base62Encoder());
+        allocator.init();
+    }
+    
+    @Test
+    @DisplayName("Should allocate distinct fixed-length codes across full blocks without database checks")
+    void testNoCollisionsAcrossBlocks() {
+        when(linkJdbcRepository.leaseShortCodeBlock()).thenReturn(0L, (long) BLOCK);
+        when(shortCodeFilterService.isDefinitelyUnused(anyString())).thenReturn(true);
+        
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 2 * BLOCK; i++) {
+            String code = allocator.allocate();
+            assertEquals(6, code.length());
+            assertTrue(code.matches("[0-9A-Za-z]{6}"), code);
+            assertTrue(codes.add(code), "duplicate code " + code);
+        }
+        
+        verify(linkJdbcRepository, times(2)).leaseShortCodeBlock();
+        verify(linkRepository, never()).existsByShortCode(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should lease a new block only when the current one is used up")
+    void testLeasesLazily() {
+        when(linkJdbcRepository.leaseShortCodeBlock()).thenReturn(5000L);
+        when(shortCodeFilterService.isDefinitelyUnused(anyString())).thenReturn(true);
+        
+        for (int i = 0; i < BLOCK; i++) {
+            allocator.allocate();
+        }
+        
+        verify(linkJdbcRepository, times(1)).leaseShortCodeBlock();
+    }
+    
+    @Test
+    @DisplayName("Should skip codes already taken by older random-code links")
+    void testSkipsLegacyCodes() {
+        when(linkJdbcRepository.leaseShortCodeBlock()).thenReturn(0L);
+        when(shortCodeFilterService.isDefinitelyUnused(anyString())).thenReturn(false);
+        when(linkRepository.existsByShortCode(anyString())).thenReturn(true, false);
+        
+        String code = allocator.allocate();
+        
+        assertNotNull(code);
+        verify(linkRepository, times(2)).existsByShortCode(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should allocate a batch of distinct codes spanning a block boundary")
+    void testAllocateBatch() {
+        when(linkJdbcRepository.leaseShortCodeBlock()).thenReturn(0L, (long) BLOCK);
+        when(shortCodeFilterService.isDefinitelyUnused(anyString())).thenReturn(true);
+        
+        allocator.allocate();
+        List<String> codes = allocator.allocate(BLOCK);
+        
+        assertEquals(BLOCK, codes.size());
+        assertEquals(BLOCK, new HashSet<>(codes).size());
+        verify(linkJdbcRepository, times(2)).leaseShortCodeBlock();
+    }
+}
@@ -0,0 +1,98 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.repository.LinkJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShortCodeFilterServiceTest {
+
+    private static final long START = 1_000_000_000L;
+
+    @Mock
+    private LinkJdbcRepository linkJdbcRepository;
+
+    private final AppConfig appConfig = new AppConfig();
+    private final AtomicLong now = new AtomicLong(START);
+    // Committed links by id
+    private final TreeMap<Long, String> links = new TreeMap<>();
+
+    private ShortCodeFilterService shortCodeFilterService;
+
+    @BeforeEach
+    void setUp() {
+        appConfig.getShortCodeFilter().setExpectedInsertions(1000);
+        shortCodeFilterService = new ShortCodeFilterService(appConfig, linkJdbcRepository,
+                new SimpleMeterRegistry(), now::get);
+        shortCodeFilterService.init();
+        when(linkJdbcRepository.forEachShortCode(anyLong(), anyInt(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Consumer<String> consumer = invocation.getArgument(2);
+            long maxId = afterId;
+            for (Map.Entry<Long, String> link : links.tailMap(afterId, false).entrySet()) {
+                consumer.accept(link.getValue());
+                maxId = link.getKey();
+            }
+            return maxId;
+        });
+        links.put(1L, "aaaaaa");
+        shortCodeFilterService.rebuild();
+    }
+
+    @Test
+    @DisplayName("Should pick up a link whose insert commits after a higher id was synced")
+    void testSyncRereadsLookback() {
+        links.put(3L, "cccccc");
+        now.addAndGet(2_000);
+        shortCodeFilterService.syncNewLinks();
+
+        // Id 2 commits half a minute after id 3 was seen
+        links.put(2L, "bbbbbb");
+        now.addAndGet(28_000);
+        shortCodeFilterService.syncNewLinks();
+
+        assertFalse(shortCodeFilterService.isDefinitelyUnused("bbbbbb"));
+        assertFalse(shortCodeFilterService.isDefinitelyUnused("cccccc"));
+        verify(linkJdbcRepository, atLeast(3)).forEachShortCode(eq(1L), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Should stop re-reading ids once they are older than the lookback")
+    void testSyncWindowMovesOn() {
+        links.put(2L, "bbbbbb");
+        now.addAndGet(2_000);
+        shortCodeFilterService.syncNewLinks();
+
+        now.addAndGet(appConfig.getShortCodeFilter().getSyncLookbackMillis());
+        shortCodeFilterService.syncNewLinks();
+
+        verify(linkJdbcRepository).forEachShortCode(eq(2L), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Should rebuild on the rebuild interval even when the filter is healthy")
+    void testPeriodicRebuild() {
+        now.addAndGet(60_000);
+        shortCodeFilterService.rebuildIfStale();
+        verify(linkJdbcRepository, times(1)).forEachShortCode(eq(0L), anyInt(), any());
+
+        now.addAndGet(appConfig.getShortCodeFilter().getRebuildIntervalMillis());
+        shortCodeFilterService.rebuildIfStale();
+        verify(linkJdbcRepository, times(2)).forEachShortCode(eq(0L), anyInt(), any());
+    }
+}
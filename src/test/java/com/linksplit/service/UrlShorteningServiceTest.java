@@ -1,10 +1,11 @@
 package com.linksplit.service;
 
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.linksplit.config.AppConfig;
+import com.linksplit.dto.LinkRoute;
 import com.linksplit.entity.Link;
 import com.linksplit.entity.User;
 import com.linksplit.repository.LinkRepository;
-import com.linksplit.util.Base62Encoder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -26,11 +27,17 @@ class UrlShorteningServiceTest {
     private LinkRepository linkRepository;
     
     @Mock
-    private Base62Encoder base62Encoder;
+    private ShortCodeAllocator shortCodeAllocator;
     
     @Mock
     private AppConfig appConfig;
     
+    @Mock
+    private LoadingCache<String, LinkRoute> linkRouteCache;
+    
+    @Mock
+    private ShortCodeFilterService shortCodeFilterService;
+    
     @InjectMocks
     private UrlShorteningService urlShorteningService;
     
@@ -49,9 +56,7 @@ class UrlShorteningServiceTest {
     @DisplayName("Should create short URL successfully")
     void testCreateShortUrl() {
         String longUrl = "https://www.example.com/very/long/url";
-        when(appConfig.getShortcodeLength()).thenReturn(6);
-        when(base62Encoder.encode(anyLong())).thenReturn("abc123");
-        when(linkRepository.existsByShortCode(anyString())).thenReturn(false);
+        when(shortCodeAllocator.allocate()).thenReturn("abc123");
         when(linkRepository.save(any(Link.class))).thenAnswer(invocation -> {
             Link link = invocation.getArgument(0);
             link.setId(1L);
@@ -62,19 +67,19 @@ class UrlShorteningServiceTest {
         
         assertNotNull(result);
         assertEquals(longUrl, result.getLongUrl());
-        assertNotNull(result.getShortCode());
+        assertEquals("abc123", result.getShortCode());
         assertEquals(testUser, result.getUser());
         
         verify(linkRepository).save(any(Link.class));
+        verify(linkRepository, never()).existsByShortCode(anyString());
+        verify(shortCodeFilterService).recordCreated("abc123");
     }
     
     @Test
     @DisplayName("Should create anonymous short URL")
     void testCreateAnonymousShortUrl() {
         String longUrl = "https://www.example.com/page";
-        when(appConfig.getShortcodeLength()).thenReturn(6);
-        when(base62Encoder.encode(anyLong())).thenReturn("xyz789");
-        when(linkRepository.existsByShortCode(anyString())).thenReturn(false);
+        when(shortCodeAllocator.allocate()).thenReturn("xyz789");
         when(linkRepository.save(any(Link.class))).thenAnswer(invocation -> invocation.getArgument(0));
         
         Link result = urlShorteningService.createShortUrl(longUrl, null);
@@ -101,25 +106,6 @@ class UrlShorteningServiceTest {
             () -> urlShorteningService.createShortUrl(tooLongUrl, testUser));
     }
     
-    @Test
-    @DisplayName("Should handle duplicate short codes")
-    void testHandleDuplicateShortCodes() {
-        String longUrl = "https://www.example.com";
-        when(appConfig.getShortcodeLength()).thenReturn(6);
-        when(base62Encoder.encode(anyLong()))
-            .thenReturn("dup123")
-            .thenReturn("unique");
-        
-        when(linkRepository.existsByShortCode("dup123")).thenReturn(true);
-        when(linkRepository.existsByShortCode("unique")).thenReturn(false);
-        when(linkRepository.save(any(Link.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        
-        Link result = urlShorteningService.createShortUrl(longUrl, testUser);
-        
-        assertNotNull(result);
-        verify(linkRepository, times(2)).existsByShortCode(anyString());
-    }
-    
     @Test
     @DisplayName("Should get link by short code")
     void testGetLinkByShortCode() {
@@ -148,6 +134,42 @@ class UrlShorteningServiceTest {
         assertFalse(result.isPresent());
     }
     
+    @Test
+    @DisplayName("Should load route projection by short code")
+    void testGetRouteByShortCode() {
+        LinkRoute route = new LinkRoute(1L, "test123", "https://example.com", 7L, false);
+        when(linkRouteCache.get("test123")).thenReturn(route);
+        
+        Optional<LinkRoute> result = urlShorteningService.getRouteByShortCode("test123");
+        
+        assertTrue(result.isPresent());
+        assertEquals("https://example.com", result.get().longUrl());
+        assertEquals(7L, result.get().ownerId());
+        verify(linkRepository, never()).findByShortCode(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should reject codes known to be missing without querying")
+    void testGetRouteByShortCodeKnownMissing() {
+        when(shortCodeFilterService.isKnownMissing("nope42")).thenReturn(true);
+        
+        Optional<LinkRoute> result = urlShorteningService.getRouteByShortCode("nope42");
+        
+        assertFalse(result.isPresent());
+        verify(linkRouteCache, never()).get(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should remember codes that were not found")
+    void testGetRouteByShortCodeRecordsMiss() {
+        when(linkRouteCache.get("nope42")).thenReturn(null);
+        
+        Optional<LinkRoute> result = urlShorteningService.getRouteByShortCode("nope42");
+        
+        assertFalse(result.isPresent());
+        verify(shortCodeFilterService).recordMiss("nope42");
+    }
+    
     @Test
     @DisplayName("Should generate full short URL")
     void testGetFullShortUrl() {
@@ -157,16 +179,4 @@ class UrlShorteningServiceTest {
         
         assertEquals("http://localhost:8080/abc123", fullUrl);
     }
-    
-    @Test
-    @DisplayName("Should throw exception after max attempts")
-    void testMaxAttemptsExceeded() {
-        String longUrl = "https://www.example.com";
-        when(appConfig.getShortcodeLength()).thenReturn(6);
-        when(base62Encoder.encode(anyLong())).thenReturn("always");
-        when(linkRepository.existsByShortCode(anyString())).thenReturn(true);
-        
-        assertThrows(RuntimeException.class, 
-            () -> urlShorteningService.createShortUrl(longUrl, testUser));
-    }
 }
\ No newline at end of file
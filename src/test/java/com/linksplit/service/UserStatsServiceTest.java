@@ -0,0 +1,99 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.config.CacheConfig;
+import com.linksplit.dto.UserStats;
+import com.linksplit.repository.UserStatsJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserStatsServiceTest {
+
+    @Mock
+    private UserStatsJdbcRepository userStatsJdbcRepository;
+
+    private UserStatsService userStatsService;
+
+    @BeforeEach
+    void setUp() {
+        userStatsService = new UserStatsService(userStatsJdbcRepository,
+                new CacheConfig().userStatsCache(new AppConfig()));
+        when(userStatsJdbcRepository.findStats(any())).thenAnswer(invocation -> {
+            Collection<Long> userIds = invocation.getArgument(0);
+            Map<Long, UserStats> stats = new HashMap<>();
+            // User 404 does not exist
+            userIds.stream().filter(id -> id != 404L).forEach(id -> stats.put(id, stats(id)));
+            return stats;
+        });
+    }
+
+    @Test
+    @DisplayName("Should load a page of users with one query")
+    void testLoadsPageInOneQuery() {
+        Map<Long, UserStats> stats = userStatsService.getStats(List.of(1L, 2L, 3L));
+
+        assertEquals(3, stats.size());
+        assertEquals(10L, stats.get(2L).getLinkCount());
+        assertEquals(new BigDecimal("2.50"), stats.get(1L).getPending());
+        verify(userStatsJdbcRepository, times(1)).findStats(any());
+    }
+
+    @Test
+    @DisplayName("Should only query the users that are not cached")
+    void testQueriesMissingUsersOnly() {
+        userStatsService.getStats(List.of(1L, 2L));
+        userStatsService.getStats(List.of(2L, 3L));
+        userStatsService.getStats(3L);
+
+        verify(userStatsJdbcRepository).findStats(argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L))));
+        verify(userStatsJdbcRepository).findStats(argThat(ids -> Set.copyOf(ids).equals(Set.of(3L))));
+        verifyNoMoreInteractions(userStatsJdbcRepository);
+    }
+
+    @Test
+    @DisplayName("Should reload a user after eviction")
+    void testEvict() {
+        userStatsService.getStats(1L);
+        userStatsService.evict(1L);
+        userStatsService.getStats(1L);
+
+        verify(userStatsJdbcRepository, times(2)).findStats(any());
+    }
+
+    @Test
+    @DisplayName("Should return empty totals for unknown users")
+    void testUnknownUser() {
+        UserStats stats = userStatsService.getStats(404L);
+
+        assertEquals(404L, stats.getUserId());
+        assertEquals(0L, stats.getTotalViews());
+        assertEquals(BigDecimal.ZERO, stats.getTotalEarnings());
+    }
+
+    private static UserStats stats(long userId) {
+        return UserStats.builder()
+                .userId(userId)
+                .linkCount(userId * 5)
+                .totalViews(userId * 1000)
+                .totalEarnings(new BigDecimal("0.5000").multiply(BigDecimal.valueOf(userId)))
+                .paidOut(BigDecimal.ZERO)
+                .pending(new BigDecimal("2.50"))
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.linksplit.service;
+
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.LinkViewJdbcRepository.ViewChunk;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewAggregatorTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final String[] COUNTRIES = {"India", "United States", null};
+    private static final String[] REFERRERS = {"https://t.me/channel", "https://www.google.com/search", "", null};
+
+    @Test
+    @DisplayName("Should count every dimension the way the rollups key views")
+    void testSinglePass() {
+        List<LinkView> views = List.of(
+                LinkView.builder().viewedAt(START.plusMinutes(5)).country("India").city("Mumbai")
+                        .deviceType("mobile").browser("Chrome").operatingSystem("Android")
+                        .referrer("https://t.me/channel").adCompleted(true).timeToSkip(6).build(),
+                LinkView.builder().viewedAt(START.plusMinutes(50)).country("India").city("Mumbai")
+                        .utmSource("newsletter").adCompleted(false).build(),
+                LinkView.builder().viewedAt(START.plusHours(3)).userAgent("WhatsApp/2.23").timeToSkip(2).build());
+
+        ViewAggregator aggregator = new ViewAggregator();
+        aggregator.add(ViewChunk.of(views));
+        ViewStatistics statistics = new ViewStatistics();
+        aggregator.addTo(statistics);
+
+        assertEquals(3, statistics.getViews());
+        assertEquals(1, statistics.getCompletedViews());
+        assertEquals(4.0, statistics.getAverageTimeToSkip());
+        assertEquals(2L, statistics.getViewsByHour().get(START));
+        assertEquals(1L, statistics.getViewsByHour().get(START.plusHours(3)));
+        assertEquals(2L, statistics.getViewsBy(ViewDimension.COUNTRY).get("India"));
+        assertEquals(1L, statistics.getViewsBy(ViewDimension.COUNTRY).get("Unknown"));
+        assertEquals(2L, statistics.getViewsBy(ViewDimension.CITY).get("India|Mumbai"));
+        assertEquals(2L, statistics.getViewsBy(ViewDimension.DEVICE).get("Unknown"));
+        assertEquals(1L, statistics.getViewsBy(ViewDimension.TRAFFIC_SOURCE).get("Telegram"));
+        assertEquals(1L, statistics.getViewsBy(ViewDimension.TRAFFIC_SOURCE).get("newsletter"));
+        assertEquals(1L, statistics.getViewsBy(ViewDimension.TRAFFIC_SOURCE).get("WhatsApp"));
+    }
+
+    @Test
+    @DisplayName("Should match the per-view rollup keys when chunks are aggregated in parallel")
+    void testParallelMatchesSequential() {
+        List<LinkView> views = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            views.add(LinkView.builder()
+                    .viewedAt(START.plusMinutes(i * 7L))
+                    .country(COUNTRIES[i % COUNTRIES.length])
+                    .city(i % 5 == 0 ? null : "City " + (i % 11))
+                    .deviceType(i % 2 == 0 ? "mobile" : "desktop")
+                    .browser("Browser " + (i % 4))
+                    .referrer(REFERRERS[i % REFERRERS.length])
+                    .utmSource(i % 13 == 0 ? "campaign" : null)
+                    .adCompleted(i % 3 == 0)
+                    .timeToSkip(i % 7 == 0 ? null : i % 10)
+                    .build());
+        }
+
+        // What the rollup job would store for the same views
+        ViewStatistics expected = new ViewStatistics();
+        for (LinkView view : views) {
+            Integer timeToSkip = view.getTimeToSkip();
+            expected.addHour(view.getViewedAt().truncatedTo(ChronoUnit.HOURS), 1,
+                    Boolean.TRUE.equals(view.getAdCompleted()) ? 1 : 0,
+                    timeToSkip != null ? timeToSkip : 0, timeToSkip != null ? 1 : 0);
+            for (ViewDimension dimension : ViewDimension.values()) {
+                String value = dimension.valueOf(view);
+                if (value != null) {
+                    expected.addDimension(dimension, value, 1);
+                }
+            }
+        }
+        ViewAggregator aggregator = ViewAggregator.aggregate(consumer -> {
+            for (int from = 0; from < views.size(); from += 3000) {
+                consumer.accept(ViewChunk.of(views.subList(from, Math.min(views.size(), from + 3000))));
+            }
+        }, new ForkJoinPool(4));
+        ViewStatistics actual = new ViewStatistics();
+        aggregator.addTo(actual);
+
+        assertEquals(views.size(), aggregator.getViews());
+        assertEquals(expected.getViews(), actual.getViews());
+        assertEquals(expected.getCompletedViews(), actual.getCompletedViews());
+        assertEquals(expected.getAverageTimeToSkip(), actual.getAverageTimeToSkip(), 1e-9);
+        assertEquals(expected.getViewsByHour(), actual.getViewsByHour());
+        for (ViewDimension dimension : ViewDimension.values()) {
+            assertEquals(expected.getViewsBy(dimension), actual.getViewsBy(dimension), dimension.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Should truncate values to the rollup column length")
+    void testTruncatesLongValues() {
+        String longSource = "x".repeat(300);
+        ViewAggregator aggregator = new ViewAggregator();
+        aggregator.add(ViewChunk.of(List.of(LinkView.builder().viewedAt(START).utmSource(longSource).build())));
+        ViewStatistics statistics = new ViewStatistics();
+        aggregator.addTo(statistics);
+
+        assertEquals(1L, statistics.getViewsBy(ViewDimension.TRAFFIC_SOURCE).get(longSource.substring(0, 255)));
+    }
+}
@@ -0,0 +1,107 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.JobWatermarkRepository;
+import com.linksplit.repository.LinkViewJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ViewEnrichmentServiceTest {
+    
+    private static final String CHROME_UA = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+    
+    @Mock
+    private AppConfig appConfig;
+    
+    @Mock
+    private LinkViewJdbcRepository linkViewJdbcRepository;
+    
+    @Mock
+    private JobWatermarkRepository jobWatermarkRepository;
+    
+    @Mock
+    private GeoLocationService geoLocationService;
+    
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    
+    @InjectMocks
+    private ViewEnrichmentService viewEnrichmentService;
+    
+    private final AppConfig.ViewEnrichment config = new AppConfig.ViewEnrichment();
+    
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+    
+    @Test
+    @DisplayName("Should resolve each distinct IP once and record the last id enriched")
+    @SuppressWarnings("unchecked")
+    void testEnrichBatchDeduplicatesLookups() {
+        when(linkViewJdbcRepository.findUnenriched(config.getBatchSize())).thenReturn(List.of(
+                new LinkViewJdbcRepository.RawView(11, "203.0.113.1", CHROME_UA, false),
+                new LinkViewJdbcRepository.RawView(12, "203.0.113.1", CHROME_UA, false),
+                new LinkViewJdbcRepository.RawView(13, "198.51.100.7", null, false)));
+        when(geoLocationService.getLocation("203.0.113.1")).thenReturn(
+                GeoLocationService.GeoLocation.builder().country("India").city("Mumbai").region("Maharashtra").build());
+        when(geoLocationService.getLocation("198.51.100.7")).thenReturn(GeoLocationService.GeoLocation.unknown());
+        
+        int processed = viewEnrichmentService.enrichBatch(config);
+        
+        assertEquals(3, processed);
+        verify(geoLocationService, times(1)).getLocation("203.0.113.1");
+        
+        ArgumentCaptor<List<LinkView>> enriched = ArgumentCaptor.forClass(List.class);
+        verify(linkViewJdbcRepository).applyEnrichment(enriched.capture(), eq(List.of()), any());
+        assertEquals(3, enriched.getValue().size());
+        assertEquals("Mumbai", enriched.getValue().get(1).getCity());
+        assertEquals("Chrome", enriched.getValue().get(0).getBrowser());
+        assertEquals("Unknown", enriched.getValue().get(2).getCountry());
+        verify(jobWatermarkRepository).save(argThat(watermark -> watermark.getLastId() == 13L));
+    }
+    
+    @Test
+    @DisplayName("Should only stamp rows that already carry location data")
+    void testEnrichBatchStampsLegacyRows() {
+        when(linkViewJdbcRepository.findUnenriched(anyInt())).thenReturn(List.of(
+                new LinkViewJdbcRepository.RawView(1, "203.0.113.1", CHROME_UA, true)));
+        
+        viewEnrichmentService.enrichBatch(config);
+        
+        verify(linkViewJdbcRepository).applyEnrichment(eq(List.of()), eq(List.of(1L)), any());
+        verify(geoLocationService, never()).getLocation(anyString());
+    }
+    
+    @Test
+    @DisplayName("Should leave the watermark alone when nothing is pending")
+    void testEnrichBatchEmpty() {
+        when(linkViewJdbcRepository.findUnenriched(anyInt())).thenReturn(List.of());
+        
+        assertEquals(0, viewEnrichmentService.enrichBatch(config));
+        verify(jobWatermarkRepository, never()).save(any());
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+    }
+}
@@ -0,0 +1,170 @@
+package com.linksplit.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linksplit.config.AppConfig;
+import com.linksplit.repository.LinkViewJdbcRepository;
+import com.linksplit.repository.LinkViewJdbcRepository.ExportedView;
+import com.linksplit.repository.ViewRollupJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ViewExportServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 3, 31, 0, 0);
+
+    @Mock
+    private LinkViewJdbcRepository linkViewJdbcRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AppConfig appConfig = new AppConfig();
+    private final ViewRollupJdbcRepository.Scope scope = ViewRollupJdbcRepository.Scope.link(1L);
+
+    private ViewExportService viewExportService;
+
+    @BeforeEach
+    void setUp() {
+        appConfig.getViewExport().setFetchSize(2);
+        viewExportService = new ViewExportService(linkViewJdbcRepository, objectMapper, appConfig);
+    }
+
+    @Test
+    @DisplayName("Should stream gzipped CSV with quoted fields and a header")
+    void testCsvExport() throws IOException {
+        streamViews(0, List.of(
+                view(11, "https://example.com/?a=1,b=2", null),
+                view(12, null, true),
+                view(13, "say \"hi\"", false)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = viewExportService.export(scope, START, END, 0, ViewExportService.Format.CSV, out);
+
+        String[] lines = gunzip(out).split("\r\n");
+        assertEquals(3, written);
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("id,short_code,viewed_at,"));
+        assertEquals("11,abc123,2024-03-01T10:15,10.0.0.1,,India,,,,,,\"https://example.com/?a=1,b=2\",,,,5,",
+                lines[1]);
+        assertTrue(lines[2].endsWith(",5,true"));
+        assertTrue(lines[3].contains(",\"say \"\"hi\"\"\","));
+    }
+
+    @Test
+    @DisplayName("Should omit the CSV header when resuming after an id")
+    void testCsvResumeHasNoHeader() throws IOException {
+        streamViews(12, List.of(view(13, null, null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        viewExportService.export(scope, START, END, 12, ViewExportService.Format.CSV, out);
+
+        assertTrue(gunzip(out).startsWith("13,abc123,"));
+    }
+
+    @Test
+    @DisplayName("Should prefix CSV text that a spreadsheet would read as a formula")
+    void testCsvFormulaNeutralized() throws IOException {
+        streamViews(0, List.of(
+                view(11, "=HYPERLINK(\"http://evil.example\")", null),
+                view(12, "@SUM(A1)", null),
+                view(13, "https://example.com/-1", null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        viewExportService.export(scope, START, END, 0, ViewExportService.Format.CSV, out);
+
+        String[] lines = gunzip(out).split("\r\n");
+        assertTrue(lines[1].contains(",\"'=HYPERLINK(\"\"http://evil.example\"\")\","));
+        assertTrue(lines[2].contains(",'@SUM(A1),"));
+        assertTrue(lines[3].contains(",https://example.com/-1,"));
+    }
+
+    @Test
+    @DisplayName("Should write one JSON object per line")
+    void testNdjsonExport() throws IOException {
+        streamViews(0, List.of(view(11, null, true), view(12, "https://t.me/channel", null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        viewExportService.export(scope, START, END, 0, ViewExportService.Format.NDJSON, out);
+
+        String[] lines = gunzip(out).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(11, first.get("id").asLong());
+        assertTrue(first.get("ad_completed").asBoolean());
+        assertTrue(first.get("referrer").isNull());
+        assertEquals("https://t.me/channel", objectMapper.readTree(lines[1]).get("referrer").asText());
+    }
+
+    @Test
+    @DisplayName("Should stop reading and rethrow when the client goes away")
+    void testClientDisconnect() {
+        streamViews(0, List.of(view(11, null, null), view(12, null, null), view(13, null, null)));
+        // Accepts the gzip header, then fails on the first flush of rows
+        OutputStream broken = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 10) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+
+        assertThrows(IOException.class, () ->
+                viewExportService.export(scope, START, END, 0, ViewExportService.Format.CSV, broken));
+    }
+
+    @Test
+    @DisplayName("Should read one page at a time after the last id written")
+    void testPagedReads() throws IOException {
+        streamViews(0, List.of(view(11, null, null), view(12, null, null), view(13, null, null),
+                view(14, null, null)));
+
+        long written = viewExportService.export(scope, START, END, 0, ViewExportService.Format.NDJSON,
+                new ByteArrayOutputStream());
+
+        assertEquals(4, written);
+        verify(linkViewJdbcRepository).findViewsForExport(scope, START, END, 0, 2);
+        verify(linkViewJdbcRepository).findViewsForExport(scope, START, END, 12, 2);
+        verify(linkViewJdbcRepository).findViewsForExport(scope, START, END, 14, 2);
+    }
+
+    // Serves the views in pages as the repository would: ids above the cursor, in order
+    private void streamViews(long afterId, List<ExportedView> views) {
+        when(linkViewJdbcRepository.findViewsForExport(eq(scope), eq(START), eq(END), anyLong(), eq(2)))
+                .thenAnswer(invocation -> {
+                    long after = Math.max(afterId, invocation.<Long>getArgument(3));
+                    return views.stream().filter(view -> view.id() > after).limit(2).toList();
+                });
+    }
+
+    private static ExportedView view(long id, String referrer, Boolean adCompleted) {
+        return new ExportedView(id, "abc123", LocalDateTime.of(2024, 3, 1, 10, 15), "10.0.0.1", null,
+                "India", null, null, null, null, null, referrer, null, null, null, 5, adCompleted);
+    }
+
+    private static String gunzip(ByteArrayOutputStream out) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
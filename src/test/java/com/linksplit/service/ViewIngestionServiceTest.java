@@ -0,0 +1,85 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.LinkViewJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ViewIngestionServiceTest {
+
+    @Mock
+    private LinkViewJdbcRepository linkViewJdbcRepository;
+
+    @Mock
+    private LinkCounterService linkCounterService;
+
+    @Mock
+    private GeoLocationService geoLocationService;
+
+    @Mock
+    private ViewEnrichmentService viewEnrichmentService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final AppConfig appConfig = new AppConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ViewIngestionService viewIngestionService;
+
+    @BeforeEach
+    void setUp() {
+        appConfig.getViewIngestion().setAsync(true);
+        appConfig.getViewIngestion().setWriterThreads(1);
+        appConfig.getViewIngestion().setBatchSize(1);
+        appConfig.getViewIngestion().setPollTimeoutMillis(10);
+        viewIngestionService = new ViewIngestionService(appConfig, linkViewJdbcRepository, linkCounterService,
+                geoLocationService, viewEnrichmentService, transactionTemplate, meterRegistry);
+
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Should keep draining after a batch fails before its transaction")
+    @SuppressWarnings("unchecked")
+    void testWriterSurvivesEnrichmentFailure() {
+        when(geoLocationService.getLocation("10.0.0.1")).thenThrow(new IllegalStateException("lookup failed"));
+        when(geoLocationService.getLocation("10.0.0.2")).thenReturn(GeoLocationService.GeoLocation.unknown());
+
+        viewIngestionService.start();
+        assertTrue(viewIngestionService.submit(event("10.0.0.1")));
+        assertTrue(viewIngestionService.submit(event("10.0.0.2")));
+        viewIngestionService.stop();
+
+        ArgumentCaptor<List<LinkView>> captor = ArgumentCaptor.forClass(List.class);
+        verify(linkViewJdbcRepository).insertAll(captor.capture());
+        assertEquals("10.0.0.2", captor.getValue().get(0).getIpAddress());
+        assertEquals(1.0, meterRegistry.get("linksplit.views.ingest.events").tag("outcome", "failed").counter().count());
+    }
+
+    private static ViewEvent event(String ipAddress) {
+        return new ViewEvent(1L, "test123", ipAddress, "TestAgent", null, null, LocalDateTime.now());
+    }
+}
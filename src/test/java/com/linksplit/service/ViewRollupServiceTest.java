@@ -0,0 +1,213 @@
+package com.linksplit.service;
+
+import com.linksplit.config.AppConfig;
+import com.linksplit.entity.JobWatermark;
+import com.linksplit.entity.LinkView;
+import com.linksplit.repository.JobWatermarkRepository;
+import com.linksplit.repository.ViewRollupJdbcRepository;
+import com.linksplit.repository.ViewRollupJdbcRepository.DayKey;
+import com.linksplit.repository.ViewRollupJdbcRepository.DimensionKey;
+import com.linksplit.repository.ViewRollupJdbcRepository.HourKey;
+import com.linksplit.repository.ViewRollupJdbcRepository.HourTotals;
+import com.linksplit.repository.ViewRollupJdbcRepository.Stamp;
+import com.linksplit.util.HyperLogLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ViewRollupServiceTest {
+
+    private static final String CHROME_UA = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
+    @Mock
+    private ViewRollupJdbcRepository viewRollupJdbcRepository;
+
+    @Mock
+    private JobWatermarkRepository jobWatermarkRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private ViewRollupService viewRollupService;
+
+    @BeforeEach
+    void setUp() {
+        viewRollupService = new ViewRollupService(appConfig, viewRollupJdbcRepository,
+                jobWatermarkRepository, transactionTemplate);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            TransactionCallback<?> callback = invocation.getArgument(0);
+            return callback.doInTransaction(null);
+        });
+    }
+
+    @Test
+    @DisplayName("Should fold views into hourly and dimension totals and stamp them")
+    @SuppressWarnings("unchecked")
+    void testRollUpBatch() {
+        LocalDateTime hour = LocalDateTime.now().minusHours(3).truncatedTo(ChronoUnit.HOURS);
+        when(viewRollupJdbcRepository.findUnstamped(Stamp.ROLLED_UP, appConfig.getViewRollup().getBatchSize())).thenReturn(List.of(
+                source(11, 1, hour.plusMinutes(5), "India", 4, true),
+                source(12, 1, hour.plusMinutes(50), "India", null, true),
+                source(13, 2, hour.plusMinutes(10), null, 6, false)));
+
+        int processed = viewRollupService.rollUpBatch(appConfig.getViewRollup());
+
+        assertEquals(3, processed);
+        ArgumentCaptor<Map<HourKey, HourTotals>> hourly = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<DimensionKey, Long>> dimensions = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<Long, HourTotals>> linkTotals = ArgumentCaptor.forClass(Map.class);
+        verify(viewRollupJdbcRepository).addHourly(hourly.capture());
+        verify(viewRollupJdbcRepository).addDimensions(dimensions.capture());
+        verify(viewRollupJdbcRepository).addLinkTotals(linkTotals.capture());
+        verify(viewRollupJdbcRepository).lockWatermark(ViewRollupService.JOB_NAME);
+        verify(viewRollupJdbcRepository).stamp(eq(Stamp.ROLLED_UP), eq(List.of(11L, 12L, 13L)), any());
+        verify(viewRollupJdbcRepository, never()).saveWatermark(anyString(), anyLong(), any());
+
+        assertEquals(new HourTotals(2, 2, 4, 1), hourly.getValue().get(new HourKey(1, hour)));
+        assertEquals(new HourTotals(1, 0, 6, 1), hourly.getValue().get(new HourKey(2, hour)));
+        assertEquals(2L, dimensions.getValue().get(new DimensionKey(1, hour, "country", "India")));
+        assertEquals(1L, dimensions.getValue().get(new DimensionKey(2, hour, "country", "Unknown")));
+        assertEquals(2L, dimensions.getValue().get(new DimensionKey(1, hour, "browser", "Chrome")));
+        assertEquals(2L, dimensions.getValue().get(new DimensionKey(1, hour, "source", "Direct")));
+        assertEquals(new HourTotals(2, 2, 4, 1), linkTotals.getValue().get(1L));
+        assertEquals(new HourTotals(1, 0, 6, 1), linkTotals.getValue().get(2L));
+    }
+
+    @Test
+    @DisplayName("Should roll up a view that committed after higher ids were stamped")
+    void testLateCommittedView() {
+        LocalDateTime now = LocalDateTime.now();
+        when(viewRollupJdbcRepository.findUnstamped(eq(Stamp.ROLLED_UP), anyInt()))
+                .thenReturn(List.of(source(20, 1, now, "India", null, true)))
+                .thenReturn(List.of(source(15, 1, now.minusMinutes(1), "India", null, true)));
+
+        assertEquals(1, viewRollupService.rollUpBatch(appConfig.getViewRollup()));
+        assertEquals(1, viewRollupService.rollUpBatch(appConfig.getViewRollup()));
+
+        verify(viewRollupJdbcRepository).stamp(eq(Stamp.ROLLED_UP), eq(List.of(20L)), any());
+        verify(viewRollupJdbcRepository).stamp(eq(Stamp.ROLLED_UP), eq(List.of(15L)), any());
+    }
+
+    @Test
+    @DisplayName("Should write nothing when no view is waiting")
+    void testNothingPending() {
+        when(viewRollupJdbcRepository.findUnstamped(eq(Stamp.ROLLED_UP), anyInt())).thenReturn(List.of());
+
+        assertEquals(0, viewRollupService.rollUpBatch(appConfig.getViewRollup()));
+        verify(viewRollupJdbcRepository, never()).addHourly(any());
+        verify(viewRollupJdbcRepository, never()).addLinkTotals(any());
+        verify(viewRollupJdbcRepository, never()).stamp(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should stamp views up to the old id watermark once and clear it")
+    void testStampWatermarkedViews() {
+        when(jobWatermarkRepository.findById(ViewRollupService.JOB_NAME)).thenReturn(Optional.of(JobWatermark.builder()
+                .jobName(ViewRollupService.JOB_NAME).lastId(500L).updatedAt(LocalDateTime.now()).build()));
+        when(viewRollupJdbcRepository.lockWatermark(ViewRollupService.JOB_NAME)).thenReturn(500L);
+
+        viewRollupService.stampWatermarkedViews(ViewRollupService.JOB_NAME, Stamp.ROLLED_UP);
+
+        verify(viewRollupJdbcRepository).stampThrough(eq(Stamp.ROLLED_UP), eq(500L), any());
+        verify(viewRollupJdbcRepository).saveWatermark(eq(ViewRollupService.JOB_NAME), eq(0L), any());
+    }
+
+    @Test
+    @DisplayName("Should not stamp anything once the old watermark is cleared")
+    void testStampWatermarkedViewsCleared() {
+        when(jobWatermarkRepository.findById(ViewRollupService.JOB_NAME)).thenReturn(Optional.of(JobWatermark.builder()
+                .jobName(ViewRollupService.JOB_NAME).lastId(0L).updatedAt(LocalDateTime.now()).build()));
+
+        viewRollupService.stampWatermarkedViews(ViewRollupService.JOB_NAME, Stamp.ROLLED_UP);
+
+        verify(viewRollupJdbcRepository, never()).stampThrough(any(), anyLong(), any());
+        verify(transactionTemplate, never()).execute(any());
+    }
+
+    @Test
+    @DisplayName("Should merge new visitor IPs into the stored daily sketches and stamp the views")
+    @SuppressWarnings("unchecked")
+    void testSketchBatch() {
+        LocalDateTime day = LocalDateTime.now().minusDays(2).truncatedTo(ChronoUnit.DAYS);
+        DayKey key = new DayKey(1, day.toLocalDate());
+        HyperLogLog stored = new HyperLogLog(ViewRollupService.VISITOR_SKETCH_PRECISION);
+        stored.add("10.0.0.1");
+        stored.add("10.0.0.9");
+        when(viewRollupJdbcRepository.findUnstamped(eq(Stamp.SKETCHED), anyInt())).thenReturn(List.of(
+                source(11, 1, day.plusHours(1), "10.0.0.1"),
+                source(12, 1, day.plusHours(2), "10.0.0.2"),
+                source(13, 1, day.plusHours(3), "10.0.0.2"),
+                source(14, 2, day.plusHours(4), "10.0.0.3")));
+        when(viewRollupJdbcRepository.findVisitorSketches(any())).thenReturn(Map.of(key, stored));
+
+        assertEquals(4, viewRollupService.sketchBatch(appConfig.getViewRollup()));
+
+        ArgumentCaptor<Map<DayKey, HyperLogLog>> sketches = ArgumentCaptor.forClass(Map.class);
+        verify(viewRollupJdbcRepository).saveVisitorSketches(sketches.capture());
+        verify(viewRollupJdbcRepository).lockWatermark(ViewRollupService.SKETCH_JOB_NAME);
+        verify(viewRollupJdbcRepository).stamp(eq(Stamp.SKETCHED), eq(List.of(11L, 12L, 13L, 14L)), any());
+        assertEquals(3, sketches.getValue().get(key).estimate());
+        assertEquals(1, sketches.getValue().get(new DayKey(2, day.toLocalDate())).estimate());
+    }
+
+    @Test
+    @DisplayName("Should add rolled-up hours and dimension values to the statistics")
+    void testAddRollups() {
+        LocalDateTime hour = LocalDateTime.of(2024, 3, 1, 10, 0);
+        ViewRollupJdbcRepository.Scope scope = ViewRollupJdbcRepository.Scope.link(1);
+        when(viewRollupJdbcRepository.sumHourly(scope, hour, hour.plusHours(2))).thenReturn(List.of(
+                new ViewRollupJdbcRepository.HourlyTotal(hour, new HourTotals(5, 4, 20, 4))));
+        when(viewRollupJdbcRepository.sumDimensions(scope, hour, hour.plusHours(2))).thenReturn(List.of(
+                new ViewRollupJdbcRepository.DimensionTotal("country", "India", 5)));
+        ViewStatistics statistics = new ViewStatistics();
+
+        viewRollupService.addRollups(statistics, scope, hour, hour.plusHours(2));
+
+        assertEquals(5, statistics.getViews());
+        assertEquals(4, statistics.getCompletedViews());
+        assertEquals(5.0, statistics.getAverageTimeToSkip());
+        assertEquals(5L, statistics.getViewsByHour().get(hour));
+        assertEquals(5L, statistics.getViewsBy(ViewDimension.COUNTRY).get("India"));
+    }
+
+    private static ViewRollupJdbcRepository.SourceView source(long id, long linkId, LocalDateTime viewedAt,
+                                                              String ipAddress) {
+        ViewRollupJdbcRepository.SourceView source = source(id, linkId, viewedAt, null, null, true);
+        source.view().setIpAddress(ipAddress);
+        return source;
+    }
+
+    private static ViewRollupJdbcRepository.SourceView source(long id, long linkId, LocalDateTime viewedAt,
+                                                              String country, Integer timeToSkip, boolean completed) {
+        return new ViewRollupJdbcRepository.SourceView(linkId, LinkView.builder()
+                .id(id)
+                .viewedAt(viewedAt)
+                .userAgent(CHROME_UA)
+                .country(country)
+                .browser("Chrome")
+                .timeToSkip(timeToSkip)
+                .adCompleted(completed)
+                .enrichedAt(viewedAt)
+                .build());
+    }
+}
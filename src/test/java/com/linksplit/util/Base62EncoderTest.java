@@ -81,4 +81,36 @@ class Base62EncoderTest {
         long decoded = encoder.decode(encoded);
         assertEquals(Long.MAX_VALUE, decoded);
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Should encode to a fixed width with zero padding")
+    void testEncodeFixed() {
+        assertEquals("000000", encoder.encodeFixed(0, 6));
+        assertEquals("000010", encoder.encodeFixed(62, 6));
+        assertEquals("zzzzzz", encoder.encodeFixed(56_800_235_583L, 6));
+        assertThrows(IllegalArgumentException.class, () -> encoder.encodeFixed(56_800_235_584L, 6));
+    }
+    
+    @Test
+    @DisplayName("Should encode and decode in caller-supplied buffers")
+    void testBufferRoundTrip() {
+        char[] chars = new char[10];
+        byte[] bytes = new byte[10];
+        
+        encoder.encodeFixed(123456789, 6, chars, 2);
+        encoder.encodeFixed(123456789, 6, bytes, 2);
+        
+        assertEquals(encoder.encodeFixed(123456789, 6), new String(chars, 2, 6));
+        assertEquals(123456789, encoder.decode(new String(chars), 2, 8));
+        assertEquals(123456789, encoder.decode(bytes, 2, 8));
+    }
+    
+    @Test
+    @DisplayName("Should reject negative values and overflowing input")
+    void testRangeChecks() {
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(-1));
+        assertThrows(IllegalArgumentException.class, () -> encoder.decode("AzL8n0Y58m8"));
+        assertThrows(IllegalArgumentException.class, () -> encoder.decode("zzzzzzzzzzzz"));
+        assertThrows(IllegalArgumentException.class, () -> encoder.decode("ab\u00e9"));
+    }
+}
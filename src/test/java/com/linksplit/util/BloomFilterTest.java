@@ -0,0 +1,68 @@
+package com.linksplit.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+    
+    @Test
+    @DisplayName("Should contain every added key")
+    void testNoFalseNegatives() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("code" + i);
+        }
+        
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("code" + i));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should keep the false-positive rate near the target when full")
+    void testFalsePositiveRate() {
+        BloomFilter filter = BloomFilter.create(50_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("code" + i);
+        }
+        
+        int falsePositives = 0;
+        for (int i = 0; i < 50_000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        
+        assertTrue(falsePositives / 50_000.0 < 0.02, "observed rate " + falsePositives / 50_000.0);
+        assertEquals(0.01, filter.getExpectedFalsePositiveRate(), 0.005);
+    }
+    
+    @Test
+    @DisplayName("Should report nothing for an empty filter")
+    void testEmptyFilter() {
+        BloomFilter filter = BloomFilter.create(1000, 0.01);
+        
+        assertFalse(filter.mightContain("abc123"));
+        assertEquals(0, filter.getApproximateElementCount());
+        assertEquals(0.0, filter.getExpectedFalsePositiveRate());
+    }
+    
+    @Test
+    @DisplayName("Should not count duplicate keys twice")
+    void testDuplicatePut() {
+        BloomFilter filter = BloomFilter.create(1000, 0.01);
+        filter.put("abc123");
+        filter.put("abc123");
+        
+        assertEquals(1, filter.getApproximateElementCount());
+    }
+    
+    @Test
+    @DisplayName("Should reject invalid sizing")
+    void testInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(1000, 1.5));
+    }
+}
@@ -0,0 +1,84 @@
+package com.linksplit.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EarningsRateTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    @DisplayName("Should match the BigDecimal calculation for random stored rates and view counts")
+    void testMatchesBigDecimalForStoredRates() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Custom rates as stored: DECIMAL(10, 4) CPM and DECIMAL(5, 4) share
+            BigDecimal cpm = BigDecimal.valueOf(random.nextLong(1_000_000), 4);
+            BigDecimal share = BigDecimal.valueOf(random.nextLong(10_001), 4);
+            long views = i % 2 == 0 ? random.nextLong(100_000) : random.nextLong(10_000_000_000L);
+
+            assertMatches(EarningsRate.of(cpm, share), views);
+        }
+    }
+
+    @Test
+    @DisplayName("Should match the BigDecimal calculation for configured double rates")
+    void testMatchesBigDecimalForConfiguredRates() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Includes rates with more digits than the fixed-point scale holds
+            double cpm = i % 3 == 0 ? random.nextDouble(0, 50) : random.nextInt(5000) / 100.0;
+            double share = i % 3 == 1 ? random.nextDouble() : random.nextInt(101) / 100.0;
+
+            assertMatches(EarningsRate.of(cpm, share), random.nextLong(1_000_000_000L));
+        }
+    }
+
+    @Test
+    @DisplayName("Should round exact halves up")
+    void testHalves() {
+        EarningsRate rate = EarningsRate.of(new BigDecimal("1.0000"), new BigDecimal("0.0001"));
+        assertEquals(new BigDecimal("0.0001"), rate.earnings(500));
+        assertEquals(new BigDecimal("0.0000"), rate.earnings(499));
+        assertEquals(new BigDecimal("0.0002"), rate.earnings(1500));
+        assertMatches(rate, 500);
+        assertMatches(rate, 1500);
+
+        assertEquals(1, EarningsRate.divideHalfUp(5, 10));
+        assertEquals(-1, EarningsRate.divideHalfUp(-5, 10));
+        assertEquals(0, EarningsRate.divideHalfUp(-4, 10));
+    }
+
+    @Test
+    @DisplayName("Should fall back to BigDecimal when the product overflows a long")
+    void testOverflow() {
+        EarningsRate rate = EarningsRate.of(new BigDecimal("999999.9999"), new BigDecimal("1.0000"));
+        assertMatches(rate, 100_000);
+        assertMatches(rate, 9_223_372_036L);
+    }
+
+    @Test
+    @DisplayName("Should reuse a rate built from the same configured values")
+    void testRefresh() {
+        EarningsRate rate = EarningsRate.of(1.5, 0.7);
+        assertSame(rate, EarningsRate.refresh(rate, 1.5, 0.7));
+        assertNotSame(rate, EarningsRate.refresh(rate, 2.0, 0.7));
+        assertNotNull(EarningsRate.refresh(null, 1.5, 0.7));
+        assertTrue(rate.isFor(new BigDecimal("1.50"), new BigDecimal("0.7000")));
+    }
+
+    private static void assertMatches(EarningsRate rate, long views) {
+        BigDecimal expected = BigDecimal.valueOf(views)
+                .divide(BigDecimal.valueOf(1000), 10, RoundingMode.HALF_UP)
+                .multiply(rate.getCpmRate())
+                .multiply(rate.getRevenueShare())
+                .setScale(4, RoundingMode.HALF_UP);
+        assertEquals(expected, rate.earnings(views), () -> rate + " for " + views + " views");
+    }
+}
@@ -0,0 +1,77 @@
+package com.linksplit.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeistelPermutationTest {
+    
+    @Test
+    @DisplayName("Should be a bijection over a whole small domain")
+    void testBijectionEvenLength() {
+        assertBijection(new FeistelPermutation(62, 2, "key"));
+        assertBijection(new FeistelPermutation(62, 4, "key"));
+    }
+    
+    @Test
+    @DisplayName("Should be a bijection when the halves differ in size")
+    void testBijectionOddLength() {
+        assertBijection(new FeistelPermutation(62, 3, "key"));
+        assertBijection(new FeistelPermutation(10, 5, "key"));
+    }
+    
+    @Test
+    @DisplayName("Should invert every value of the six-digit base62 space it produces")
+    void testInvertSixDigits() {
+        FeistelPermutation permutation = new FeistelPermutation(62, 6, "key");
+        assertEquals(56_800_235_584L, permutation.getDomainSize());
+        
+        for (long id = 0; id < 100_000; id++) {
+            long code = permutation.permute(id);
+            assertTrue(code >= 0 && code < permutation.getDomainSize());
+            assertEquals(id, permutation.invert(code));
+        }
+        long last = permutation.getDomainSize() - 1;
+        assertEquals(last, permutation.invert(permutation.permute(last)));
+    }
+    
+    @Test
+    @DisplayName("Should scatter consecutive ids and depend on the key")
+    void testScatterAndKey() {
+        FeistelPermutation a = new FeistelPermutation(62, 6, "key-a");
+        FeistelPermutation b = new FeistelPermutation(62, 6, "key-b");
+        
+        Set<Long> gaps = new HashSet<>();
+        for (long id = 1; id < 100; id++) {
+            gaps.add(a.permute(id) - a.permute(id - 1));
+        }
+        assertTrue(gaps.size() > 90, "consecutive ids should not map to evenly spaced codes");
+        assertNotEquals(a.permute(1), b.permute(1));
+    }
+    
+    @Test
+    @DisplayName("Should reject values outside the domain")
+    void testOutOfRange() {
+        FeistelPermutation permutation = new FeistelPermutation(62, 2, "key");
+        
+        assertThrows(IllegalArgumentException.class, () -> permutation.permute(-1));
+        assertThrows(IllegalArgumentException.class, () -> permutation.permute(3844));
+    }
+    
+    private static void assertBijection(FeistelPermutation permutation) {
+        int size = (int) permutation.getDomainSize();
+        BitSet seen = new BitSet(size);
+        for (long value = 0; value < size; value++) {
+            long permuted = permutation.permute(value);
+            assertFalse(seen.get((int) permuted), "collision at " + value);
+            seen.set((int) permuted);
+            assertEquals(value, permutation.invert(permuted));
+        }
+        assertEquals(size, seen.cardinality());
+    }
+}
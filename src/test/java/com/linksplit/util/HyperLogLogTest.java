@@ -0,0 +1,81 @@
+package com.linksplit.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+    
+    @Test
+    @DisplayName("Should count small cardinalities almost exactly")
+    void testSmallCardinality() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 50; i++) {
+            sketch.add("10.0.0." + i);
+            sketch.add("10.0.0." + i);
+        }
+        
+        assertEquals(50, sketch.estimate(), 1);
+    }
+    
+    @Test
+    @DisplayName("Should stay within three standard errors for large cardinalities")
+    void testLargeCardinality() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            sketch.add(ip(i));
+        }
+        
+        double error = Math.abs(sketch.estimate() - count) / (double) count;
+        assertTrue(error < 3 * sketch.getStandardError(), "relative error " + error);
+    }
+    
+    @Test
+    @DisplayName("Should estimate a union of merged sketches like a single sketch")
+    void testMerge() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog all = new HyperLogLog(12);
+        for (int i = 0; i < 30_000; i++) {
+            first.add(ip(i));
+            all.add(ip(i));
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            second.add(ip(i));
+            all.add(ip(i));
+        }
+        
+        first.merge(second);
+        
+        assertEquals(all.estimate(), first.estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(10)));
+    }
+    
+    @Test
+    @DisplayName("Should round-trip both the sparse and the dense encoding")
+    void testSerialization() {
+        HyperLogLog sparse = new HyperLogLog(12);
+        for (int i = 0; i < 100; i++) {
+            sparse.add(ip(i));
+        }
+        HyperLogLog dense = new HyperLogLog(12);
+        for (int i = 0; i < 100_000; i++) {
+            dense.add(ip(i));
+        }
+        
+        byte[] sparseBytes = sparse.toBytes();
+        byte[] denseBytes = dense.toBytes();
+        
+        assertTrue(sparseBytes.length < 400, "sparse size " + sparseBytes.length);
+        assertEquals(2 + 4096, denseBytes.length);
+        assertEquals(sparse.estimate(), HyperLogLog.fromBytes(sparseBytes).estimate());
+        assertEquals(dense.estimate(), HyperLogLog.fromBytes(denseBytes).estimate());
+        assertEquals(12, HyperLogLog.fromBytes(sparseBytes).getPrecision());
+    }
+    
+    private static String ip(int i) {
+        return "10." + (i >>> 16) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+    }
+}
@@ -0,0 +1,41 @@
+package com.linksplit.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongCountMapTest {
+
+    @Test
+    @DisplayName("Should sum counts per key across growth")
+    void testAddAndGet() {
+        LongCountMap map = new LongCountMap(2);
+        for (long key = -500; key < 500; key++) {
+            map.add(key << 32, 1);
+            map.add(key << 32, 2);
+        }
+
+        assertEquals(1000, map.size());
+        assertEquals(3, map.get(7L << 32));
+        assertEquals(3, map.get(-500L << 32));
+        assertEquals(0, map.get(501L << 32));
+    }
+
+    @Test
+    @DisplayName("Should visit every key exactly once")
+    void testForEach() {
+        LongCountMap map = new LongCountMap();
+        for (long key = 0; key < 100; key++) {
+            map.add(key, key);
+        }
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach((key, count) -> assertNull(visited.put(key, count)));
+
+        assertEquals(100, visited.size());
+        assertEquals(42L, visited.get(42L));
+    }
+}
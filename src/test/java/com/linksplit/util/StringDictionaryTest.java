@@ -0,0 +1,25 @@
+package com.linksplit.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDictionaryTest {
+
+    @Test
+    @DisplayName("Should assign dense ids in first-seen order and reuse them")
+    void testEncodeDecode() {
+        StringDictionary dictionary = new StringDictionary(2);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dictionary.encode("value-" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dictionary.encode("value-" + i));
+            assertEquals("value-" + i, dictionary.decode(i));
+        }
+
+        assertEquals(1000, dictionary.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.decode(1000));
+    }
+}